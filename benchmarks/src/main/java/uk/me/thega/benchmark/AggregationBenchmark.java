@@ -0,0 +1,69 @@
+package uk.me.thega.benchmark;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.me.thega.Analyser;
+import uk.me.thega.graph.DependencyGraph;
+import uk.me.thega.pom.PomSummary;
+
+/**
+ * Times the aggregation of the dependencies of a corpus of modules into the
+ * {@link DependencyGraph} of an {@link Analyser}.
+ *
+ * @author pwhittlesea
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregationBenchmark {
+
+	/** The number of modules. */
+	@Param({ "100", "1000", "10000", "100000" })
+	public int modules;
+
+	/** The summaries of the modules. */
+	private PomSummary[] poms;
+
+	/**
+	 * Create the summaries of the modules.
+	 */
+	@Setup
+	public void setUp() {
+		final PomCorpus corpus = new PomCorpus(42);
+		poms = new PomSummary[modules];
+		for (int module = 0; module < modules; module++) {
+			poms[module] = PomSummary.of(corpus.createModel(module));
+		}
+	}
+
+	/**
+	 * Add every module to a new graph.
+	 *
+	 * @return the graph.
+	 */
+	@Benchmark
+	public DependencyGraph aggregate() {
+		final Analyser analyser = new Analyser(Collections.<String> emptyList(), "", null, null, false);
+		for (final PomSummary pom : poms) {
+			analyser.addPom(pom);
+		}
+		return analyser.getDependencyGraph();
+	}
+}
@@ -0,0 +1,111 @@
+package uk.me.thega.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.me.thega.Analyser;
+import uk.me.thega.graph.DependencyGraph;
+import uk.me.thega.pom.PomSummary;
+import uk.me.thega.graph.DotGenerator;
+import uk.me.thega.graph.VersionIndex;
+import uk.me.thega.pom.PomSummary;
+
+/**
+ * Times the emission of the nodes and edges of the graph of a corpus of
+ * modules by a {@link DotGenerator}, streamed to a writer that discards it.
+ *
+ * @author pwhittlesea
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DotEmissionBenchmark {
+
+	/**
+	 * A writer that counts and discards what is written.
+	 */
+	private static final class CountingWriter extends Writer {
+
+		/** The number of characters written. */
+		private long count;
+
+		@Override
+		public void write(final char[] buffer, final int offset, final int length) {
+			count += length;
+		}
+
+		@Override
+		public void write(final String text, final int offset, final int length) {
+			count += length;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/** The number of modules. */
+	@Param({ "100", "1000", "10000", "100000" })
+	public int modules;
+
+	/** The graph of the modules. */
+	private DependencyGraph graph;
+
+	/** The out of date flag by edge Id. */
+	private boolean[] outOfDate;
+
+	/**
+	 * Build the graph.
+	 */
+	@Setup
+	public void setUp() {
+		final PomCorpus corpus = new PomCorpus(42);
+		final Analyser analyser = new Analyser(Collections.<String> emptyList(), "", null, null, false);
+		for (int module = 0; module < modules; module++) {
+			analyser.addPom(PomSummary.of(corpus.createModel(module)));
+		}
+		graph = analyser.getDependencyGraph();
+		outOfDate = new VersionIndex(graph).findStaleEdges();
+	}
+
+	/**
+	 * Write every node and edge of the graph.
+	 *
+	 * @return the number of characters written.
+	 * @throws IOException never, as nothing is really written.
+	 */
+	@Benchmark
+	public long emit() throws IOException {
+		final CountingWriter writer = new CountingWriter();
+		final DotGenerator generator = new DotGenerator();
+		generator.start(writer, 1000, 1000);
+		generator.writeNodesToGraph(true, graph);
+		for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+			generator.linkNodesOnGraph(graph.getDependency(edge), graph.getDependee(edge), outOfDate[edge]);
+		}
+		generator.end();
+		return writer.count;
+	}
+}
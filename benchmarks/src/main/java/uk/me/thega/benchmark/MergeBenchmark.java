@@ -0,0 +1,62 @@
+package uk.me.thega.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.model.Model;
+import org.fuin.maven.MavenPomReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times {@link MavenPomReader#merge(Model, Model)} down a deep parent chain,
+ * as each read of a module of a deep hierarchy does.
+ *
+ * @author pwhittlesea
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MergeBenchmark {
+
+	/** The number of POMs in the chain. */
+	@Param({ "5", "10", "20" })
+	public int depth;
+
+	/** The chain, the root first. */
+	private Model[] chain;
+
+	/**
+	 * Create the chain.
+	 */
+	@Setup
+	public void setUp() {
+		chain = PomCorpus.createChain(depth);
+	}
+
+	/**
+	 * Merge each POM of the chain into the merge of those before it.
+	 *
+	 * @return the merged model of the last POM.
+	 */
+	@Benchmark
+	public Model mergeChain() {
+		Model merged = chain[0];
+		for (int i = 1; i < chain.length; i++) {
+			merged = MavenPomReader.merge(merged, chain[i]);
+		}
+		return merged;
+	}
+}
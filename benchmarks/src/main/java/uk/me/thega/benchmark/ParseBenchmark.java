@@ -0,0 +1,89 @@
+package uk.me.thega.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.model.Model;
+import org.fuin.maven.MavenPomReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times {@link MavenPomReader#readModelFromFile(File, File)} over a corpus
+ * of POMs on disk, with and without merging each with its parent.
+ *
+ * @author pwhittlesea
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+	/** The number of POMs read in turn. */
+	@Param({ "1000" })
+	public int modules;
+
+	/** Is each POM merged with its parent? */
+	@Param({ "false", "true" })
+	public boolean merge;
+
+	/** The directory the corpus is written to. */
+	private File dir;
+
+	/** The POM files. */
+	private File[] files;
+
+	/** The local repository parents are read from, or null. */
+	private File repositoryDir;
+
+	/** The next POM to read. */
+	private int next;
+
+	/**
+	 * Write the corpus.
+	 *
+	 * @throws IOException if the corpus cannot be written.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		dir = File.createTempFile("corpus", "");
+		dir.delete();
+		files = new PomCorpus(42).writeCorpus(dir, modules);
+		repositoryDir = (merge) ? PomCorpus.repositoryDir(dir) : null;
+	}
+
+	/**
+	 * Delete the corpus.
+	 */
+	@TearDown
+	public void tearDown() {
+		PomCorpus.delete(dir);
+	}
+
+	/**
+	 * Read the next POM.
+	 *
+	 * @return the model.
+	 */
+	@Benchmark
+	public Model readModelFromFile() {
+		final File file = files[next];
+		next = (next + 1) % files.length;
+		return MavenPomReader.readModelFromFile(file, repositoryDir);
+	}
+}
@@ -0,0 +1,404 @@
+package uk.me.thega.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Generator of a synthetic, but repeatable, corpus of modules.
+ * <br>
+ * Module <code>n</code> of a corpus is always the same for the same seed: it
+ * sits in one of {@link #GROUPS} groups, inherits from a shared parent and
+ * depends upon {@link #DEPENDENCIES} earlier modules at one of
+ * {@link #VERSIONS} versions, some of them in test scope.
+ *
+ * @author pwhittlesea
+ *
+ */
+public final class PomCorpus {
+
+	/** The number of groups the modules are spread over. */
+	public static final int GROUPS = 50;
+
+	/** The number of dependencies of each module, where there are enough earlier modules. */
+	public static final int DEPENDENCIES = 8;
+
+	/** The number of versions each module is depended upon at. */
+	public static final int VERSIONS = 4;
+
+	/** The groupId of the parent all modules inherit from. */
+	public static final String PARENT_GROUP_ID = "com.acme";
+
+	/** The artifactId of the parent all modules inherit from. */
+	public static final String PARENT_ARTIFACT_ID = "acme-parent";
+
+	/** The version of the parent all modules inherit from. */
+	public static final String PARENT_VERSION = "1.0";
+
+	/** The seed the modules are generated from. */
+	private final long seed;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param seed the seed the modules are generated from.
+	 */
+	public PomCorpus(final long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Get the groupId of a module.
+	 *
+	 * @param module the module number.
+	 * @return the groupId.
+	 */
+	public static String groupId(final int module) {
+		return PARENT_GROUP_ID + ".group" + (module % GROUPS);
+	}
+
+	/**
+	 * Get the artifactId of a module.
+	 *
+	 * @param module the module number.
+	 * @return the artifactId.
+	 */
+	public static String artifactId(final int module) {
+		return "module-" + module;
+	}
+
+	/**
+	 * Create the model of a module, as it would be read.
+	 *
+	 * @param module the module number.
+	 * @return the model.
+	 */
+	public Model createModel(final int module) {
+		final Model model = new Model();
+		model.setModelVersion("4.0.0");
+		model.setParent(createParentReference());
+		model.setGroupId(groupId(module));
+		model.setArtifactId(artifactId(module));
+		model.setVersion(PARENT_VERSION);
+
+		final Random random = random(module);
+		final int count = Math.min(DEPENDENCIES, module);
+		for (int i = 0; i < count; i++) {
+			final int target = random.nextInt(module);
+			final Dependency dependency = new Dependency();
+			dependency.setGroupId(groupId(target));
+			dependency.setArtifactId(artifactId(target));
+			dependency.setVersion("1." + random.nextInt(VERSIONS));
+			if (random.nextInt(4) == 0) {
+				dependency.setScope("test");
+			}
+			model.addDependency(dependency);
+		}
+		return model;
+	}
+
+	/**
+	 * Create the POM of a module.
+	 *
+	 * @param module the module number.
+	 * @return the POM XML.
+	 */
+	public String createPom(final int module) {
+		final Model model = createModel(module);
+		final StringBuilder xml = new StringBuilder(4096);
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		xml.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+		xml.append("\t<modelVersion>4.0.0</modelVersion>\n");
+		xml.append("\t<parent>\n");
+		gav(xml, "\t\t", PARENT_GROUP_ID, PARENT_ARTIFACT_ID, PARENT_VERSION);
+		xml.append("\t</parent>\n");
+		gav(xml, "\t", model.getGroupId(), model.getArtifactId(), model.getVersion());
+		xml.append("\t<name>Module ").append(module).append("</name>\n");
+		xml.append("\t<properties>\n");
+		xml.append("\t\t<project.build.sourceEncoding>UTF-8</project.build.sourceEncoding>\n");
+		xml.append("\t</properties>\n");
+		xml.append("\t<dependencies>\n");
+		for (final Dependency dependency : model.getDependencies()) {
+			xml.append("\t\t<dependency>\n");
+			gav(xml, "\t\t\t", dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion());
+			if (dependency.getScope() != null) {
+				xml.append("\t\t\t<scope>").append(dependency.getScope()).append("</scope>\n");
+			}
+			xml.append("\t\t</dependency>\n");
+		}
+		xml.append("\t</dependencies>\n");
+		xml.append("\t<build>\n");
+		xml.append("\t\t<plugins>\n");
+		xml.append("\t\t\t<plugin>\n");
+		xml.append("\t\t\t\t<artifactId>maven-compiler-plugin</artifactId>\n");
+		xml.append("\t\t\t\t<configuration>\n");
+		xml.append("\t\t\t\t\t<source>1.6</source>\n");
+		xml.append("\t\t\t\t\t<target>1.6</target>\n");
+		xml.append("\t\t\t\t</configuration>\n");
+		xml.append("\t\t\t</plugin>\n");
+		xml.append("\t\t</plugins>\n");
+		xml.append("\t</build>\n");
+		xml.append("</project>\n");
+		return xml.toString();
+	}
+
+	/**
+	 * Create a large POM of a module, such as a corporate build produces:
+	 * its dependencies amid dozens of configured plugins, managed
+	 * dependencies, reports and profiles.
+	 *
+	 * @param module the module number.
+	 * @param plugins the number of plugins, and of managed dependencies over ten.
+	 * @return the POM XML.
+	 */
+	public String createPluginHeavyPom(final int module, final int plugins) {
+		final String pom = createPom(module);
+		final StringBuilder extra = new StringBuilder(plugins * 1024);
+		extra.append("\t<dependencyManagement>\n\t\t<dependencies>\n");
+		for (int i = 0; i < plugins * 10; i++) {
+			extra.append("\t\t\t<dependency>\n");
+			gav(extra, "\t\t\t\t", "com.acme.managed" + (i % GROUPS), "managed-" + i, "2." + i);
+			extra.append("\t\t\t\t<exclusions>\n\t\t\t\t\t<exclusion>\n");
+			extra.append("\t\t\t\t\t\t<groupId>commons-logging</groupId>\n\t\t\t\t\t\t<artifactId>commons-logging</artifactId>\n");
+			extra.append("\t\t\t\t\t</exclusion>\n\t\t\t\t</exclusions>\n");
+			extra.append("\t\t\t</dependency>\n");
+		}
+		extra.append("\t\t</dependencies>\n\t</dependencyManagement>\n");
+		extra.append("\t<build>\n\t\t<plugins>\n");
+		for (int i = 0; i < plugins; i++) {
+			extra.append("\t\t\t<plugin>\n");
+			gav(extra, "\t\t\t\t", "com.acme.plugins", "plugin-" + i + "-maven-plugin", "1." + i);
+			extra.append("\t\t\t\t<executions>\n");
+			for (int j = 0; j < 3; j++) {
+				extra.append("\t\t\t\t\t<execution>\n\t\t\t\t\t\t<id>execution-").append(j).append("</id>\n");
+				extra.append("\t\t\t\t\t\t<phase>package</phase>\n\t\t\t\t\t\t<goals>\n\t\t\t\t\t\t\t<goal>run</goal>\n\t\t\t\t\t\t</goals>\n");
+				extra.append("\t\t\t\t\t\t<configuration>\n");
+				for (int k = 0; k < 8; k++) {
+					extra.append("\t\t\t\t\t\t\t<option").append(k).append(">value-").append(k).append("</option").append(k).append(">\n");
+				}
+				extra.append("\t\t\t\t\t\t\t<items>\n");
+				for (int k = 0; k < 4; k++) {
+					extra.append("\t\t\t\t\t\t\t\t<item><name>item-").append(k).append("</name><path>target/item-").append(k).append("</path></item>\n");
+				}
+				extra.append("\t\t\t\t\t\t\t</items>\n\t\t\t\t\t\t</configuration>\n\t\t\t\t\t</execution>\n");
+			}
+			extra.append("\t\t\t\t</executions>\n\t\t\t</plugin>\n");
+		}
+		extra.append("\t\t</plugins>\n\t</build>\n");
+		extra.append("\t<reporting>\n\t\t<plugins>\n");
+		for (int i = 0; i < plugins / 4; i++) {
+			extra.append("\t\t\t<plugin>\n");
+			gav(extra, "\t\t\t\t", "com.acme.reports", "report-" + i + "-maven-plugin", "1." + i);
+			extra.append("\t\t\t</plugin>\n");
+		}
+		extra.append("\t\t</plugins>\n\t</reporting>\n");
+		extra.append("\t<profiles>\n");
+		for (int i = 0; i < plugins / 4; i++) {
+			extra.append("\t\t<profile>\n\t\t\t<id>profile-").append(i).append("</id>\n");
+			extra.append("\t\t\t<properties>\n\t\t\t\t<profile.name>profile-").append(i).append("</profile.name>\n\t\t\t</properties>\n");
+			extra.append("\t\t</profile>\n");
+		}
+		extra.append("\t</profiles>\n");
+
+		// Replace the small build with the large one
+		final int build = pom.indexOf("\t<build>");
+		return pom.substring(0, build) + extra + pom.substring(pom.indexOf("</project>"));
+	}
+
+	/**
+	 * Write the POMs of modules <code>0..modules)</code> into a directory,
+	 * with the parent installed in a local repository beneath it.
+	 *
+	 * @param dir the directory.
+	 * @param modules the number of modules.
+	 * @return the POM files, by module number.
+	 * @throws IOException if a file cannot be written.
+	 */
+	public File[] writeCorpus(final File dir, final int modules) throws IOException {
+		write(parentFile(dir), createParentPom());
+
+		final File[] files = new File[modules];
+		for (int module = 0; module < modules; module++) {
+			files[module] = new File(dir, artifactId(module) + "/pom.xml");
+			write(files[module], createPom(module));
+		}
+		return files;
+	}
+
+	/**
+	 * Get the local repository of a corpus written to a directory.
+	 *
+	 * @param dir the directory.
+	 * @return the local repository.
+	 */
+	public static File repositoryDir(final File dir) {
+		return new File(dir, "repository");
+	}
+
+	/**
+	 * Create a chain of models, each inheriting from the one before, as a
+	 * deep hierarchy of corporate parents would.
+	 *
+	 * @param depth the number of models.
+	 * @return the models, the root first.
+	 */
+	public static Model[] createChain(final int depth) {
+		final Model[] chain = new Model[depth];
+		for (int level = 0; level < depth; level++) {
+			final Model model = new Model();
+			model.setModelVersion("4.0.0");
+			model.setGroupId("com.acme.level" + level);
+			model.setArtifactId("artifact-" + level);
+			model.setVersion("1." + level);
+			if (level > 0) {
+				final Parent parent = new Parent();
+				parent.setGroupId("com.acme.level" + (level - 1));
+				parent.setArtifactId("artifact-" + (level - 1));
+				parent.setVersion("1." + (level - 1));
+				model.setParent(parent);
+			}
+			model.addProperty("level" + level + ".version", "1." + level);
+
+			final DependencyManagement management = new DependencyManagement();
+			for (int i = 0; i < 10; i++) {
+				final Dependency dependency = new Dependency();
+				dependency.setGroupId("com.acme.lib" + i);
+				dependency.setArtifactId("lib-" + level + "-" + i);
+				dependency.setVersion("2." + i);
+				management.addDependency(dependency);
+				model.addDependency(dependency.clone());
+			}
+			model.setDependencyManagement(management);
+
+			final Build build = new Build();
+			final Plugin plugin = new Plugin();
+			plugin.setArtifactId("maven-compiler-plugin");
+			plugin.setVersion("2.3." + level);
+			final Xpp3Dom configuration = new Xpp3Dom("configuration");
+			final Xpp3Dom source = new Xpp3Dom("source");
+			source.setValue("1.6");
+			configuration.addChild(source);
+			plugin.setConfiguration(configuration);
+			final PluginExecution execution = new PluginExecution();
+			execution.setId("default-" + level);
+			execution.addGoal("compile");
+			plugin.addExecution(execution);
+			build.addPlugin(plugin);
+			model.setBuild(build);
+			chain[level] = model;
+		}
+		return chain;
+	}
+
+	/**
+	 * Delete a directory and everything in it.
+	 *
+	 * @param file the directory or file.
+	 */
+	public static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Create the reference each module makes to the shared parent.
+	 *
+	 * @return the parent reference.
+	 */
+	private static Parent createParentReference() {
+		final Parent parent = new Parent();
+		parent.setGroupId(PARENT_GROUP_ID);
+		parent.setArtifactId(PARENT_ARTIFACT_ID);
+		parent.setVersion(PARENT_VERSION);
+		return parent;
+	}
+
+	/**
+	 * Create the POM of the shared parent.
+	 *
+	 * @return the POM XML.
+	 */
+	private static String createParentPom() {
+		final StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		xml.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+		xml.append("\t<modelVersion>4.0.0</modelVersion>\n");
+		gav(xml, "\t", PARENT_GROUP_ID, PARENT_ARTIFACT_ID, PARENT_VERSION);
+		xml.append("\t<packaging>pom</packaging>\n");
+		xml.append("\t<properties>\n");
+		xml.append("\t\t<project.build.sourceEncoding>UTF-8</project.build.sourceEncoding>\n");
+		xml.append("\t</properties>\n");
+		xml.append("</project>\n");
+		return xml.toString();
+	}
+
+	/**
+	 * Get the file of the shared parent in the local repository of a corpus.
+	 *
+	 * @param dir the directory of the corpus.
+	 * @return the file.
+	 */
+	private static File parentFile(final File dir) {
+		final String path = PARENT_GROUP_ID.replace('.', '/') + "/" + PARENT_ARTIFACT_ID + "/" + PARENT_VERSION + "/"
+				+ PARENT_ARTIFACT_ID + "-" + PARENT_VERSION + ".pom";
+		return new File(repositoryDir(dir), path);
+	}
+
+	/**
+	 * Append the groupId, artifactId and version elements.
+	 *
+	 * @param xml the XML being built.
+	 * @param indent the indent of each element.
+	 * @param groupId the groupId.
+	 * @param artifactId the artifactId.
+	 * @param version the version.
+	 */
+	private static void gav(final StringBuilder xml, final String indent, final String groupId, final String artifactId, final String version) {
+		xml.append(indent).append("<groupId>").append(groupId).append("</groupId>\n");
+		xml.append(indent).append("<artifactId>").append(artifactId).append("</artifactId>\n");
+		xml.append(indent).append("<version>").append(version).append("</version>\n");
+	}
+
+	/**
+	 * Write a file, creating its directory.
+	 *
+	 * @param file the file.
+	 * @param content the content.
+	 * @throws IOException if the file cannot be written.
+	 */
+	private static void write(final File file, final String content) throws IOException {
+		file.getParentFile().mkdirs();
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Get the random source of a module.
+	 *
+	 * @param module the module number.
+	 * @return the random source.
+	 */
+	private Random random(final int module) {
+		return new Random(seed * 31 + module);
+	}
+}
@@ -0,0 +1,75 @@
+package uk.me.thega.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.me.thega.pom.ModelPomParser;
+import uk.me.thega.pom.PomParser;
+import uk.me.thega.pom.PomSummary;
+import uk.me.thega.pom.StaxPomParser;
+
+/**
+ * Times each {@link PomParser} summarising a large, plugin heavy POM.
+ * <br>
+ * Run with <code>-prof gc</code> to compare the allocation of each as well.
+ *
+ * @author pwhittlesea
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PomParserBenchmark {
+
+	/** The parser. */
+	@Param({ "model", "stax" })
+	public String parser;
+
+	/** The number of plugins in the POM. */
+	@Param({ "10", "40" })
+	public int plugins;
+
+	/** The POM. */
+	private byte[] pom;
+
+	/** The parser used. */
+	private PomParser pomParser;
+
+	/**
+	 * Create the POM and parser.
+	 *
+	 * @throws IOException never.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		pom = new PomCorpus(42).createPluginHeavyPom(100, plugins).getBytes("UTF-8");
+		pomParser = (parser.equals("stax")) ? new StaxPomParser() : new ModelPomParser();
+	}
+
+	/**
+	 * Parse the POM.
+	 *
+	 * @return the summary.
+	 * @throws IOException never.
+	 */
+	@Benchmark
+	public PomSummary parse() throws IOException {
+		return pomParser.parse(new ByteArrayInputStream(pom));
+	}
+}
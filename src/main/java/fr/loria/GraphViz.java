@@ -26,12 +26,19 @@ package fr.loria;
  */
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
 
 /**
  * <dl>
@@ -54,11 +61,17 @@ import java.io.InputStreamReader;
  *    String type = "gif";
  *    File out = new File("out." + type);   // out.gif in this example
  *    gv.writeGraphToFile( gv.getGraph( gv.getDotSource(), type ), out );
+ *
+ *    // or stream the source through dot without holding the image
+ *    OutputStream os = new FileOutputStream(out);
+ *    GraphViz.render(new StringReader(gv.getDotSource()), type, os, GraphViz.DEFAULT_TIMEOUT);
  * </pre>
  * </dd>
  *
  * </dl>
  *
+ * @version v0.5 -- dot is fed and read through pipes instead of temp files,
+ * with a timeout, so several graphs can be rendered at once.
  * @version v0.4, 2011/02/05 (February) -- Patch of Keheliya Gallaba is added. Now you
  * can specify the type of the output file: gif, dot, fig, pdf, ps, svg, png, etc.
  * @version v0.3, 2010/11/29 (November) -- Windows support + ability 
@@ -70,16 +83,21 @@ import java.io.InputStreamReader;
 public class GraphViz
 {
    /**
-    * The dir. where temporary files will be created.
+    * Where is your dot program located? It will be called externally,
+    * unless the system property {@link #DOT_PROPERTY} names another.
     */
-   private static String TEMP_DIR = "/tmp";	// Linux
- //  private static String TEMP_DIR = "c:/temp";	// Windows
+   private static final String DOT = "/usr/bin/dot";	// Linux
+//   private static final String DOT = "c:/Program Files/Graphviz2.26.3/bin/dot.exe";	// Windows
 
    /**
-    * Where is your dot program located? It will be called externally.
+    * The system property naming the dot program to call instead of {@link #DOT}.
     */
-   private static String DOT = "/usr/bin/dot";	// Linux
-//   private static String DOT = "c:/Program Files/Graphviz2.26.3/bin/dot.exe";	// Windows
+   public static final String DOT_PROPERTY = "graphviz.dot";
+
+   /**
+    * How long dot may run for, in milliseconds, when no timeout is given.
+    */
+   public static final long DEFAULT_TIMEOUT = 60 * 60 * 1000L;
 
    /**
     * The source of the graph written in dot language.
@@ -122,6 +140,14 @@ public class GraphViz
       graph.append('\n');
    }
 
+   /**
+    * Returns the dot program to call.
+    * @return The value of the system property {@link #DOT_PROPERTY}, or {@link #DOT} if it is not set.
+    */
+   public static String getDotExecutable() {
+      return System.getProperty(DOT_PROPERTY, DOT);
+   }
+
    /**
     * Returns the graph as an image in binary format.
     * @param dot_source Source of the graph to be drawn.
@@ -130,20 +156,201 @@ public class GraphViz
     */
    public byte[] getGraph(String dot_source, String type)
    {
-      File dot;
-      byte[] img_stream = null;
-   
+      ByteArrayOutputStream img_stream = new ByteArrayOutputStream();
       try {
-         dot = writeDotSourceToFile(dot_source);
-         if (dot != null)
-         {
-            img_stream = get_img_stream(dot, type);
-            if (dot.delete() == false) 
-               System.err.println("Warning: " + dot.getAbsolutePath() + " could not be deleted!");
-            return img_stream;
-         }
+         render(new StringReader(dot_source), type, img_stream, DEFAULT_TIMEOUT);
+         return img_stream.toByteArray();
+      } catch (java.io.IOException ioe) {
+         System.err.println("Error: " + ioe.getMessage());
          return null;
-      } catch (java.io.IOException ioe) { return null; }
+      }
+   }
+
+   /**
+    * Renders a graph by piping its source into dot and its image straight
+    * to a stream, without temporary files.
+    * @param dot_source Source of the graph to be drawn.
+    * @param type Type of the output image to be produced, e.g.: gif, dot, fig, pdf, ps, svg, png.
+    * @param out Stream the image is written to. It is not closed.
+    * @param timeout How long dot may run for, in milliseconds.
+    * @throws IOException If dot cannot be run, fails or times out.
+    */
+   public static void render(Reader dot_source, String type, OutputStream out, long timeout)
+         throws IOException
+   {
+      Renderer renderer = new Renderer(type, out, timeout);
+      try {
+         Writer in = new OutputStreamWriter(renderer.getDotInput(), "UTF-8");
+         char[] buffer = new char[8192];
+         int read;
+         while ((read = dot_source.read(buffer)) != -1) {
+            in.write(buffer, 0, read);
+         }
+         in.flush();
+      } catch (IOException ioe) {
+         // dot stopped reading, finish() will report why
+      }
+      renderer.finish();
+   }
+
+   /**
+    * A running dot process. The source is written to {@link #getDotInput()}
+    * while the image is copied to the destination stream and the errors are
+    * collected on separate threads, so neither pipe can fill up and block dot.
+    */
+   public static class Renderer
+   {
+      private final Process process;
+      private final Thread image_pump;
+      private final Thread error_pump;
+      private final Thread watchdog;
+      private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+      private volatile IOException image_failure;
+      private volatile boolean timed_out;
+
+      /**
+       * Starts dot, as given by {@link GraphViz#getDotExecutable()}.
+       * @param type Type of the output image to be produced, e.g.: gif, dot, fig, pdf, ps, svg, png.
+       * @param out Stream the image is written to. It is not closed.
+       * @param timeout How long dot may run for, in milliseconds.
+       * @throws IOException If dot cannot be started.
+       */
+      public Renderer(String type, final OutputStream out, final long timeout) throws IOException
+      {
+         this(getDotExecutable(), type, out, timeout);
+      }
+
+      /**
+       * Starts a given dot program.
+       * @param dot Path of the dot program, called with only <code>-T&lt;type&gt;</code>.
+       * @param type Type of the output image to be produced, e.g.: gif, dot, fig, pdf, ps, svg, png.
+       * @param out Stream the image is written to. It is not closed.
+       * @param timeout How long dot may run for, in milliseconds.
+       * @throws IOException If dot cannot be started.
+       */
+      public Renderer(String dot, String type, final OutputStream out, final long timeout) throws IOException
+      {
+         process = new ProcessBuilder(dot, "-T" + type).start();
+
+         image_pump = new Thread("dot-stdout") {
+            public void run() {
+               try {
+                  copy(process.getInputStream(), out);
+               } catch (IOException ioe) {
+                  image_failure = ioe;
+                  process.destroy();
+               }
+            }
+         };
+         error_pump = new Thread("dot-stderr") {
+            public void run() {
+               try {
+                  copy(process.getErrorStream(), errors);
+               } catch (IOException ioe) {
+                  // Only used to explain a failure
+               }
+            }
+         };
+         watchdog = new Thread("dot-watchdog") {
+            public void run() {
+               try {
+                  Thread.sleep(timeout);
+                  timed_out = true;
+                  process.destroy();
+               } catch (InterruptedException ie) {
+                  // Finished in time
+               }
+            }
+         };
+         image_pump.setDaemon(true);
+         error_pump.setDaemon(true);
+         watchdog.setDaemon(true);
+         image_pump.start();
+         error_pump.start();
+         watchdog.start();
+      }
+
+      /**
+       * Returns the stream the source of the graph (in dot language) is
+       * written to.
+       * @return The standard input of dot.
+       */
+      public OutputStream getDotInput() {
+         return process.getOutputStream();
+      }
+
+      /**
+       * Closes the source and waits for dot to write the whole image.
+       * @throws IOException If dot fails, times out or the image cannot be written.
+       */
+      public void finish() throws IOException
+      {
+         try {
+            process.getOutputStream().close();
+         } catch (IOException ioe) {
+            // dot has already gone, the exit value says why
+         }
+         int exit_value;
+         try {
+            exit_value = process.waitFor();
+            if (timed_out) {
+               // Anything dot started may still hold the pipes open
+               throw new IOException("dot did not finish within the timeout");
+            }
+            image_pump.join();
+            error_pump.join();
+         } catch (InterruptedException ie) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for dot");
+         } finally {
+            watchdog.interrupt();
+         }
+
+         if (image_failure != null) {
+            throw image_failure;
+         }
+         if (exit_value != 0) {
+            throw new IOException("dot exited with " + exit_value + ": " + errors.toString().trim());
+         }
+      }
+
+      /**
+       * Returns whether dot is still running.
+       * @return True until dot exits.
+       */
+      public boolean isRunning() {
+         return process.isAlive();
+      }
+
+      /**
+       * Stops dot without waiting for the image, when the source cannot be
+       * written in full.
+       */
+      public void destroy()
+      {
+         watchdog.interrupt();
+         process.destroy();
+         try {
+            process.getOutputStream().close();
+         } catch (IOException ioe) {
+            // dot has already gone
+         }
+      }
+
+      private static void copy(InputStream in, OutputStream out) throws IOException
+      {
+         byte[] buffer = new byte[8192];
+         int read;
+         try {
+            while ((read = in.read(buffer)) != -1) {
+               out.write(buffer, 0, read);
+            }
+            out.flush();
+         } finally {
+            in.close();
+         }
+      }
    }
 
    /**
@@ -174,72 +381,6 @@ public class GraphViz
       return 1;
    }
 
-   /**
-    * It will call the external dot program, and return the image in
-    * binary format.
-    * @param dot Source of the graph (in dot language).
-    * @param type Type of the output image to be produced, e.g.: gif, dot, fig, pdf, ps, svg, png.
-    * @return The image of the graph in .gif format.
-    */
-   private byte[] get_img_stream(File dot, String type)
-   {
-      File img;
-      byte[] img_stream = null;
-
-      try {
-         img = File.createTempFile("graph_", "."+type, new File(GraphViz.TEMP_DIR));
-         Runtime rt = Runtime.getRuntime();
-         
-         // patch by Mike Chenault
-         String[] args = {DOT, "-T"+type, dot.getAbsolutePath(), "-o", img.getAbsolutePath()};
-         Process p = rt.exec(args);
-         
-         p.waitFor();
-
-         FileInputStream in = new FileInputStream(img.getAbsolutePath());
-         img_stream = new byte[in.available()];
-         in.read(img_stream);
-         // Close it if we need to
-         if( in != null ) in.close();
-
-         if (img.delete() == false) 
-            System.err.println("Warning: " + img.getAbsolutePath() + " could not be deleted!");
-      }
-      catch (java.io.IOException ioe) {
-         System.err.println("Error:    in I/O processing of tempfile in dir " + GraphViz.TEMP_DIR+"\n");
-         System.err.println("       or in calling external command");
-         ioe.printStackTrace();
-      }
-      catch (java.lang.InterruptedException ie) {
-         System.err.println("Error: the execution of the external program was interrupted");
-         ie.printStackTrace();
-      }
-
-      return img_stream;
-   }
-
-   /**
-    * Writes the source of the graph in a file, and returns the written file
-    * as a File object.
-    * @param str Source of the graph (in dot language).
-    * @return The file (as a File object) that contains the source of the graph.
-    */
-   private File writeDotSourceToFile(String str) throws java.io.IOException
-   {
-      File temp;
-      try {
-         temp = File.createTempFile("graph_", ".dot.tmp", new File(GraphViz.TEMP_DIR));
-         FileWriter fout = new FileWriter(temp);
-         fout.write(str);
-         fout.close();
-      }
-      catch (Exception e) {
-         System.err.println("Error: I/O error while writing the dot source to temp file!");
-         return null;
-      }
-      return temp;
-   }
-
    /**
     * Returns a string that is used to start a graph.
     * @return A string to open a graph.
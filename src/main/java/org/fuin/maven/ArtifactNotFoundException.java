@@ -0,0 +1,21 @@
+package org.fuin.maven;
+
+/**
+ * Thrown when a POM, or the metadata naming its versions, is not in a local
+ * repository.
+ */
+public final class ArtifactNotFoundException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor with a message.
+     *
+     * @param message
+     *            What was not found.
+     */
+    public ArtifactNotFoundException(final String message) {
+        super(message);
+    }
+
+}
@@ -17,15 +17,24 @@
  */
 package org.fuin.maven;
 
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -38,8 +47,6 @@ import org.apache.maven.model.Model;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
-import org.fuin.utils4j.InvokeMethodFailedException;
-import org.fuin.utils4j.Utils4J;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -47,9 +54,30 @@ import org.w3c.dom.NodeList;
 /**
  * Helper class for reading a Maven POM file. WARNING: This is just a quick
  * "hack" to read a project "pom.xml" - May not work in all cases!
+ * <p>
+ * Parents are parsed and merged once per repository and GAV, even when
+ * several reads ask for the same parent at once, and kept in a bounded cache
+ * shared by all (concurrent) reads. Merging never modifies the cached parent.
  */
 public final class MavenPomReader {
 
+    /** Default maximum number of parents (and latest versions) kept. */
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+
+    /** Parsed and fully merged parent models, by repository and GAV. */
+    private static final ResolutionCache<Model> PARENTS = new ResolutionCache<Model>(
+            DEFAULT_CACHE_SIZE);
+
+    /** Latest versions found in the local repository, by repository and GA. */
+    private static final ResolutionCache<String> LATEST_VERSIONS = new ResolutionCache<String>(
+            DEFAULT_CACHE_SIZE);
+
+    /** Cached in place of a parent that, or one of whose parents, is not in the repository. */
+    private static final Model MISSING_PARENT = new Model();
+
+    /** Cached in place of the latest version of an artifact with no metadata in the repository. */
+    private static final String MISSING_VERSION = "";
+
     private MavenPomReader() {
         throw new UnsupportedOperationException("");
     }
@@ -78,62 +106,66 @@ public final class MavenPomReader {
         return createPath(groupId, artifactId) + "/" + version + "/" + filename;
     }
 
-    private static String toGetter(final String field) {
-        return "get" + Character.toUpperCase(field.charAt(0)) + field.substring(1);
-    }
+    /**
+     * A property with a public getter and a matching setter, looked up once
+     * per class and called through method handles typed to take and return
+     * plain objects, so every call is an exact invocation.
+     */
+    private static final class Accessor {
 
-    private static String toIs(final String field) {
-        return "is" + Character.toUpperCase(field.charAt(0)) + field.substring(1);
-    }
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class,
+                Object.class);
 
-    private static String toSetter(final String field) {
-        return "set" + Character.toUpperCase(field.charAt(0)) + field.substring(1);
-    }
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class,
+                Object.class, Object.class);
 
-    private static Object get(final Object src, final String field) {
-        try {
-            return Utils4J.invoke(src, toGetter(field), new Class[] {}, new Object[] {});
-        } catch (InvokeMethodFailedException ex) {
+        private final String field;
+
+        private final MethodHandle getter;
+
+        private final MethodHandle setter;
+
+        Accessor(final String field, final Method getter, final Method setter) {
+            this.field = field;
             try {
-                return Utils4J.invoke(src, toIs(field), new Class[] {}, new Object[] {});
-            } catch (InvokeMethodFailedException ex2) {
-                throw new RuntimeException("Error getting field '" + field + "' from '" + src
-                        + "'!", ex2);
+                this.getter = MethodHandles.publicLookup().unreflect(getter).asType(GETTER_TYPE);
+                this.setter = MethodHandles.publicLookup().unreflect(setter).asType(SETTER_TYPE);
+            } catch (final IllegalAccessException ex) {
+                throw new RuntimeException("Error accessing field '" + field + "' of '"
+                        + getter.getDeclaringClass() + "'!", ex);
             }
         }
-    }
 
-    @SuppressWarnings("rawtypes")
-    private static void set(final Object dest, final String field, final Object value,
-            final Class clasz) {
-        try {
-            Utils4J.invoke(dest, toSetter(field), new Class[] { clasz }, new Object[] { value });
-        } catch (InvokeMethodFailedException ex) {
-            throw new RuntimeException("Error setting value '" + value + "' for '" + field
-                    + "' in '" + dest + "'!", ex);
+        Object get(final Object src) {
+            try {
+                return (Object) getter.invokeExact(src);
+            } catch (final RuntimeException ex) {
+                throw ex;
+            } catch (final Error ex) {
+                throw ex;
+            } catch (final Throwable ex) {
+                throw new RuntimeException("Error getting field '" + field + "' from '" + src
+                        + "'!", ex);
+            }
         }
-    }
 
-    private static void set(final Object dest, final String field, final Object value) {
-        try {
-            Utils4J.invoke(dest, toSetter(field), new Class[] { value.getClass() },
-                    new Object[] { value });
-        } catch (InvokeMethodFailedException ex) {
-            if (value instanceof Boolean) {
-                set(dest, field, value, boolean.class);
-            } else if (value instanceof Integer) {
-                set(dest, field, value, int.class);
-            } else if (value instanceof Long) {
-                set(dest, field, value, long.class);
-            } else if (value instanceof Short) {
-                set(dest, field, value, short.class);
-            } else {
+        void set(final Object dest, final Object value) {
+            try {
+                setter.invokeExact(dest, value);
+            } catch (final RuntimeException ex) {
+                throw ex;
+            } catch (final Error ex) {
+                throw ex;
+            } catch (final Throwable ex) {
                 throw new RuntimeException("Error setting value '" + value + "' for '" + field
                         + "' in '" + dest + "'!", ex);
             }
         }
     }
 
+    /** Accessors of each class copied so far. */
+    private static final ConcurrentMap<Class<?>, Accessor[]> ACCESSORS = new ConcurrentHashMap<Class<?>, Accessor[]>();
+
     @SuppressWarnings("rawtypes")
     private static Object createInstance(final Class clasz) {
         try {
@@ -187,11 +219,12 @@ public final class MavenPomReader {
     }
 
     @SuppressWarnings("unchecked")
-    private static void copyList(final List<Object> fromValue, final Object to, final String field) {
-        List<Object> toList = (List<Object>) get(to, field);
+    private static void copyList(final List<Object> fromValue, final Object to,
+            final Accessor accessor) {
+        List<Object> toList = (List<Object>) accessor.get(to);
         if (toList == null) {
             toList = (List<Object>) createInstance(fromValue.getClass());
-            set(to, field, toList);
+            accessor.set(to, toList);
         }
         for (int i = 0; i < fromValue.size(); i++) {
             final Object fromObj = fromValue.get(i);
@@ -202,75 +235,94 @@ public final class MavenPomReader {
     }
 
     private static void copyProperties(final Properties fromProps, final Object to,
-            final String field) {
-        Properties toProps = (Properties) get(to, field);
+            final Accessor accessor) {
+        Properties toProps = (Properties) accessor.get(to);
         if (toProps == null) {
             toProps = (Properties) createInstance(fromProps.getClass());
-            set(to, field, toProps);
+            accessor.set(to, toProps);
         }
         final Iterator<Object> it = fromProps.keySet().iterator();
         while (it.hasNext()) {
             final Object fromKey = it.next();
             final Object fromValue = fromProps.get(fromKey);
             if (fromValue != null) {
-                final Object toKey = copy(fromKey);
-                final Object toValue = copy(fromValue);
-                copyObjectFields(fromValue, toValue);
-                toProps.put(toKey, toValue);
+                toProps.put(copy(fromKey), copy(fromValue));
             }
         }
     }
 
-    @SuppressWarnings({ "rawtypes" })
-    private static List<String> getFields(final Object obj) {
-        final List<String> fields = new ArrayList<String>();
-        final Method[] methods = obj.getClass().getMethods();
+    private static Method findMethod(final Class<?> clasz, final String name,
+            final Class<?>... parameterTypes) {
+        try {
+            return clasz.getMethod(name, parameterTypes);
+        } catch (final NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    private static Accessor[] getAccessors(final Class<?> clasz) {
+        final Accessor[] cached = ACCESSORS.get(clasz);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Every "getX" or "isX" with a "setX" taking the same type; "getX" wins
+        final Map<String, Accessor> accessors = new LinkedHashMap<String, Accessor>();
+        final Method[] methods = clasz.getMethods();
         for (int i = 0; i < methods.length; i++) {
+            final String name = methods[i].getName();
             final String field;
-            if (methods[i].getName().startsWith("get")) {
-                field = methods[i].getName().substring(3);
-            } else if (methods[i].getName().startsWith("is")) {
-                field = methods[i].getName().substring(2);
+            if (name.startsWith("get")) {
+                field = name.substring(3);
+            } else if (name.startsWith("is")) {
+                field = name.substring(2);
             } else {
-                field = null;
+                continue;
             }
-            if (field != null) {
-                try {
-                    final Class type = methods[i].getReturnType();
-                    obj.getClass().getMethod(toSetter(field), new Class[] { type });
-                    fields.add(field);
-                } catch (final NoSuchMethodException ex) {
-                    // Ignore
-                }
+            if (field.length() == 0 || methods[i].getParameterTypes().length > 0
+                    || accessors.containsKey(field)) {
+                continue;
+            }
+            Method getter = findMethod(clasz, "get" + field);
+            if (getter == null) {
+                getter = findMethod(clasz, "is" + field);
+            }
+            final Method setter = findMethod(clasz, "set" + field, getter.getReturnType());
+            if (setter != null) {
+                accessors.put(field, new Accessor(field, getter, setter));
             }
         }
-        return fields;
+
+        final Accessor[] found = accessors.values().toArray(new Accessor[accessors.size()]);
+        ACCESSORS.putIfAbsent(clasz, found);
+        return found;
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
     private static void copyObjectFields(final Object from, final Object to) {
         if ((from != null) && (to != null)) {
-            final List<String> fields = getFields(from);
-            for (int i = 0; i < fields.size(); i++) {
-                final String field = fields.get(i);
-                final Object fromValue = get(from, field);
+            final Accessor[] accessors = getAccessors(from.getClass());
+            for (int i = 0; i < accessors.length; i++) {
+                final Accessor accessor = accessors[i];
+                final Object fromValue = accessor.get(from);
                 if (fromValue != null) {
                     if (isBaseObject(fromValue)) {
-                        set(to, field, fromValue);
+                        accessor.set(to, fromValue);
                     } else if (fromValue instanceof List) {
-                        copyList((List) fromValue, to, field);
+                        copyList((List) fromValue, to, accessor);
                     } else if (fromValue instanceof Properties) {
-                        copyProperties((Properties) fromValue, to, field);
+                        copyProperties((Properties) fromValue, to, accessor);
                     } else if (fromValue.getClass().getPackage().getName().equals(
                             "org.apache.maven.model")) {
-                        copyObjectField(fromValue, to, field);
+                        copyObjectField(fromValue, to, accessor);
                     } else {
                         if (fromValue instanceof Xpp3Dom) {
-                            set(to, field, fromValue, Object.class);
+                            accessor.set(to, fromValue);
                         } else {
-                            throw new IllegalArgumentException("Cannot copy field '" + field
-                                    + "' of type '" + fromValue.getClass().getName() + "' from '"
-                                    + from + "' to '" + to + "'!");
+                            throw new IllegalArgumentException("Cannot copy field '"
+                                    + accessor.field + "' of type '"
+                                    + fromValue.getClass().getName() + "' from '" + from
+                                    + "' to '" + to + "'!");
                         }
                     }
                 }
@@ -278,18 +330,33 @@ public final class MavenPomReader {
         }
     }
 
-    private static void copyObjectField(final Object fromValue, final Object to, final String field) {
-        Object toValue = get(to, field);
+    private static void copyObjectField(final Object fromValue, final Object to,
+            final Accessor accessor) {
+        Object toValue = accessor.get(to);
         if (toValue == null) {
             toValue = createInstance(fromValue.getClass());
-            set(to, field, fromValue);
+            accessor.set(to, toValue);
         }
         copyObjectFields(fromValue, toValue);
     }
 
-    private static Model merge(final Model parent, final Model child) {
+    /**
+     * Merges a child model into a copy of its parent. Neither model is
+     * modified.
+     * 
+     * @param parent
+     *            Parent model.
+     * @param child
+     *            Child model.
+     * 
+     * @return New model with the values of the parent, overridden and
+     *         extended by those of the child, but with the modules of the
+     *         child alone, as Maven never inherits them.
+     */
+    public static Model merge(final Model parent, final Model child) {
         final Model newModel = new Model();
         copyObjectFields(parent, newModel);
+        newModel.setModules(new ArrayList<String>());
         copyObjectFields(child, newModel);
         return newModel;
     }
@@ -297,10 +364,30 @@ public final class MavenPomReader {
     private static String findLatestVersion(final File repositoryDir, final String groupId,
             final String artifactId) {
 
+        final String key = repositoryDir.getPath() + "|" + groupId + ":" + artifactId;
+        final String latest = LATEST_VERSIONS.get(key, new Callable<String>() {
+            public String call() {
+                try {
+                    return readLatestVersion(repositoryDir, groupId, artifactId);
+                } catch (final ArtifactNotFoundException ex) {
+                    return MISSING_VERSION;
+                }
+            }
+        });
+        if (latest.equals(MISSING_VERSION)) {
+            throw new ArtifactNotFoundException("Latest version for '" + groupId + ":"
+                    + artifactId + "' not found! [" + repositoryDir + "]");
+        }
+        return latest;
+    }
+
+    private static String readLatestVersion(final File repositoryDir, final String groupId,
+            final String artifactId) {
+
         final File dir = new File(repositoryDir, createPath(groupId, artifactId));
         final File file = new File(dir, "maven-metadata-local.xml");
         if (!file.exists()) {
-            throw new IllegalArgumentException("File '" + file + "' not found!");
+            throw new ArtifactNotFoundException("File '" + file + "' not found!");
         }
 
         final String path = "//versions/version/text()";
@@ -327,10 +414,66 @@ public final class MavenPomReader {
         } catch (final Exception ex) {
             throw new RuntimeException(ex);
         }
-
+        if (latest == null) {
+            throw new IllegalStateException("No version found in '" + file + "'!");
+        }
         return latest;
     }
 
+    /**
+     * Returns the parent model of a POM, parsed and merged with its own
+     * parents, from the cache shared by all reads if possible. A parent not
+     * in the repository is cached as missing, so it is looked for only once.
+     * 
+     * @throws ArtifactNotFoundException
+     *             If the parent, or one of its parents, is not in the
+     *             repository.
+     */
+    private static Model resolveParent(final File repositoryDir, final String groupId,
+            final String artifactId, final String version) {
+
+        final String resolvedVersion = (version == null) ? findLatestVersion(repositoryDir,
+                groupId, artifactId) : version;
+
+        final String key = repositoryDir.getPath() + "|" + groupId + ":" + artifactId + ":"
+                + resolvedVersion;
+        final Model parent = PARENTS.get(key, new Callable<Model>() {
+            public Model call() {
+                try {
+                    return readModel(repositoryDir, groupId, artifactId, resolvedVersion);
+                } catch (final ArtifactNotFoundException ex) {
+                    return MISSING_PARENT;
+                }
+            }
+        });
+        if (parent == MISSING_PARENT) {
+            throw new ArtifactNotFoundException("Parent '" + groupId + ":" + artifactId + ":"
+                    + resolvedVersion + "', or one of its parents, not found! [" + repositoryDir
+                    + "]");
+        }
+        return parent;
+    }
+
+    /**
+     * Returns the cache of parsed and merged parent models shared by all
+     * reads, to report its hit rate, bound its size or clear it.
+     * 
+     * @return Parent model cache.
+     */
+    public static ResolutionCache<Model> getParentCache() {
+        return PARENTS;
+    }
+
+    /**
+     * Returns the cache of latest versions found in local repositories
+     * shared by all reads.
+     * 
+     * @return Latest version cache.
+     */
+    public static ResolutionCache<String> getLatestVersionCache() {
+        return LATEST_VERSIONS;
+    }
+
     /**
      * Read the latest version of a POM from a local repository.
      * 
@@ -342,6 +485,10 @@ public final class MavenPomReader {
      *            Artifact ID.
      * 
      * @return Model created from POM and Super-POM.
+     * 
+     * @throws ArtifactNotFoundException
+     *             If the POM, or one of its parents, is not in the
+     *             repository.
      */
     public static Model readModel(final File repositoryDir, final String groupId,
             final String artifactId) {
@@ -364,48 +511,105 @@ public final class MavenPomReader {
      *            used.
      * 
      * @return Model created from POM and Super-POM.
+     * 
+     * @throws ArtifactNotFoundException
+     *             If the POM, or one of its parents, is not in the
+     *             repository.
      */
     public static Model readModel(final File repositoryDir, final String groupId,
             final String artifactId, final String version) {
 
-        final String latestVersion;
-        if (version == null) {
-            latestVersion = findLatestVersion(repositoryDir, groupId, artifactId);
-            if (latestVersion == null) {
-                throw new IllegalStateException("Latest version for '" + groupId + ":" + artifactId
-                        + "' not found! [" + repositoryDir + "]");
-            }
-        } else {
-            latestVersion = version;
-        }
+        final String latestVersion = (version == null) ? findLatestVersion(repositoryDir,
+                groupId, artifactId) : version;
 
         final File pomXmlFile = new File(repositoryDir, createPathAndFilename(groupId, artifactId,
                 latestVersion, "pom"));
+        if (!pomXmlFile.isFile()) {
+            throw new ArtifactNotFoundException("File '" + pomXmlFile + "' not found!");
+        }
         return readModelFromFile(pomXmlFile, repositoryDir);
     }
     
+    /**
+     * Read a POM from a stream. The stream is read to the end of the
+     * document but not closed.
+     * 
+     * @param in
+     *            Stream to read the POM from.
+     * 
+     * @return Model created from POM.
+     * 
+     * @throws IOException
+     *             Error reading from the stream.
+     */
+    public static Model readModel(final InputStream in) throws IOException {
+        return readModel(in, null);
+    }
+
+    /**
+     * Read a POM from a stream and merge it with its parents from a local
+     * repository. The stream is read to the end of the document but not
+     * closed.
+     * 
+     * @param in
+     *            Stream to read the POM from.
+     * @param repositoryDir
+     *            Repository path - If <code>null</code> no parents will be
+     *            merged.
+     * 
+     * @return Model created from POM and parent POMs.
+     * 
+     * @throws IOException
+     *             Error reading from the stream.
+     */
+    public static Model readModel(final InputStream in, final File repositoryDir)
+            throws IOException {
+        final Model model;
+        try {
+            final MavenXpp3Reader xpp3Reader = new MavenXpp3Reader();
+            model = xpp3Reader.read(in);
+        } catch (XmlPullParserException ex) {
+            throw new RuntimeException("Error parsing POM!", ex);
+        }
+        return mergeParents(model, repositoryDir);
+    }
+
+    /**
+     * Merge a model with its parents from a local repository.
+     * 
+     * @param model
+     *            Model read from a POM.
+     * @param repositoryDir
+     *            Repository path - If <code>null</code> no parents will be
+     *            merged.
+     * 
+     * @return Model merged with its parent POMs, or the model itself if it
+     *         has no parent.
+     * 
+     * @throws ArtifactNotFoundException
+     *             If a parent is not in the repository.
+     */
+    public static Model mergeParents(final Model model, final File repositoryDir) {
+        if (model.getParent() == null || repositoryDir == null) {
+            return model;
+        } else {
+            final String parentGroupId = model.getParent().getGroupId();
+            final String parentArtifactId = model.getParent().getArtifactId();
+            final String parentVersion = model.getParent().getVersion();
+            final Model parentModel = resolveParent(repositoryDir, parentGroupId,
+                    parentArtifactId, parentVersion);
+            return merge(parentModel, model);
+        }
+    }
+
     public static Model readModelFromFile(final File pomXmlFile, final File repositoryDir) {
         try {
-            final Reader reader = new FileReader(pomXmlFile);
-            final Model model;
+            final InputStream in = new BufferedInputStream(new FileInputStream(pomXmlFile));
             try {
-                final MavenXpp3Reader xpp3Reader = new MavenXpp3Reader();
-                model = xpp3Reader.read(reader);
+                return readModel(in, repositoryDir);
             } finally {
-                reader.close();
+                in.close();
             }
-            if (model.getParent() == null || repositoryDir == null) {
-                return model;
-            } else {
-                final String parentGroupId = model.getParent().getGroupId();
-                final String parentArtifactId = model.getParent().getArtifactId();
-                final String parentVersion = model.getParent().getVersion();
-                final Model parentModel = readModel(repositoryDir, parentGroupId, parentArtifactId,
-                        parentVersion);
-                return merge(parentModel, model);
-            }
-        } catch (XmlPullParserException ex) {
-            throw new RuntimeException("Error parsing POM!", ex);
         } catch (final IOException ex) {
             throw new RuntimeException("Error reading POM!", ex);
         }
@@ -0,0 +1,209 @@
+package org.fuin.maven;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Thread safe, size bounded, least recently used cache of values resolved
+ * from a local repository, with hit and miss counts. A value looked up by
+ * several threads at once is only loaded by the first of them.
+ *
+ * @param <V>
+ *            Type of the cached values.
+ */
+public final class ResolutionCache<V> {
+
+    private final LinkedHashMap<String, V> values;
+
+    private final Map<String, FutureTask<V>> loading = new HashMap<String, FutureTask<V>>();
+
+    private int maxEntries;
+
+    private long hits;
+
+    private long misses;
+
+    /**
+     * Constructor with the size bound.
+     *
+     * @param maxEntries
+     *            Maximum number of values to keep.
+     */
+    public ResolutionCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.values = new LinkedHashMap<String, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+                return size() > ResolutionCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached value, counting a hit or a miss.
+     *
+     * @param key
+     *            Key of the value.
+     *
+     * @return Value or <code>null</code> if it is not cached.
+     */
+    public synchronized V get(final String key) {
+        final V value = values.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Returns a cached value, loading and caching it first if it is not
+     * cached. A lookup that finds the value cached, or being loaded by
+     * another thread, counts as a hit, and one that loads it as a miss. A
+     * value that fails to load is not cached.
+     *
+     * @param key
+     *            Key of the value.
+     * @param loader
+     *            Loads the value - Cannot return <code>null</code>.
+     *
+     * @return Value.
+     */
+    public V get(final String key, final Callable<V> loader) {
+        final FutureTask<V> task;
+        final boolean load;
+        synchronized (this) {
+            final V value = values.get(key);
+            if (value != null) {
+                hits++;
+                return value;
+            }
+            final FutureTask<V> loadingTask = loading.get(key);
+            if (loadingTask == null) {
+                misses++;
+                task = new FutureTask<V>(loader);
+                loading.put(key, task);
+                load = true;
+            } else {
+                hits++;
+                task = loadingTask;
+                load = false;
+            }
+        }
+        if (load) {
+            task.run();
+        }
+        try {
+            final V value = task.get();
+            if (load) {
+                synchronized (this) {
+                    values.put(key, value);
+                }
+            }
+            return value;
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new RuntimeException("Error loading '" + key + "'!", ex.getCause());
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted loading '" + key + "'!", ex);
+        } finally {
+            if (load) {
+                synchronized (this) {
+                    loading.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Caches a value, evicting the least recently used value if the cache is
+     * full.
+     *
+     * @param key
+     *            Key of the value.
+     * @param value
+     *            Value - Cannot be <code>null</code>.
+     */
+    public synchronized void put(final String key, final V value) {
+        values.put(key, value);
+    }
+
+    /**
+     * Changes the size bound, evicting values if there are now too many.
+     *
+     * @param maxEntries
+     *            Maximum number of values to keep.
+     */
+    public synchronized void setMaxEntries(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        while (values.size() > maxEntries) {
+            values.remove(values.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Removes all values and resets the counts.
+     */
+    public synchronized void clear() {
+        values.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Returns the number of values cached.
+     *
+     * @return Number of values.
+     */
+    public synchronized int size() {
+        return values.size();
+    }
+
+    /**
+     * Returns the number of lookups that found a value.
+     *
+     * @return Number of hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not find a value.
+     *
+     * @return Number of misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the share of lookups that found a value.
+     *
+     * @return Hit rate between 0 and 1, or 0 if nothing was looked up.
+     */
+    public synchronized double getHitRate() {
+        final long lookups = hits + misses;
+        return (lookups == 0) ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return hits + " hits, " + misses + " misses ("
+                + Math.round(getHitRate() * 100) + "% hit rate)";
+    }
+
+}
@@ -1,15 +1,52 @@
 package uk.me.thega;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
-import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Model;
+import org.fuin.maven.MavenPomReader;
+import org.fuin.maven.ResolutionCache;
 
+import fr.loria.GraphViz;
+import uk.me.thega.file.RepoDirectoryReader;
 import uk.me.thega.file.RepoFileReader;
+import uk.me.thega.filter.ArtifactFilter;
+import uk.me.thega.filter.Patterns;
+import uk.me.thega.graph.ComponentIndex;
+import uk.me.thega.graph.DependencyGraph;
 import uk.me.thega.graph.DotGenerator;
+import uk.me.thega.graph.EdgeListWriter;
+import uk.me.thega.graph.GraphQuery;
+import uk.me.thega.graph.GraphSnapshot;
+import uk.me.thega.graph.TransitiveReduction;
+import uk.me.thega.graph.VersionIndex;
+import uk.me.thega.metrics.Metrics;
+import uk.me.thega.pom.IncrementalPomParser;
+import uk.me.thega.pom.ModelPomParser;
+import uk.me.thega.pom.PomParser;
+import uk.me.thega.pom.PomSnapshot;
+import uk.me.thega.pom.PomSummary;
+import uk.me.thega.url.FetchScheduler;
+import uk.me.thega.url.PomCache;
 import uk.me.thega.url.RepoURLReader;
 
 /**
@@ -18,9 +55,28 @@ import uk.me.thega.url.RepoURLReader;
  * Takes arguments for:
  * <ul>
  * <li>The file to read the repo paths from</li>
+ * <li>Whether the repos are URLs or checked out directories</li>
+ * <li>The parser to read POMs with</li>
  * <li>The restriction upon the artifacts mapped</li>
+ * <li>The patterns of the artifacts to include and exclude</li>
+ * <li>The scopes of the dependencies to exclude</li>
+ * <li>The patterns of the repos and modules never to read</li>
  * <li>The username if the repos are behind basic HTTP authentication</li>
  * <li>The password if the repos are behind basic HTTP authentication</li>
+ * <li>The number of POMs to fetch concurrently</li>
+ * <li>The time to wait for a connection and for each response</li>
+ * <li>The number of times to retry a fetch and the most fetches in flight to a host</li>
+ * <li>The directory and size of the cache POMs are kept in between runs</li>
+ * <li>The file POM summaries are kept in between runs, to parse only changed POMs</li>
+ * <li>Whether to crawl and aggregate the POMs in a pipeline</li>
+ * <li>The file to save the graph to, or to load it from rather than crawling</li>
+ * <li>The artifacts to write only the transitive dependents or dependencies of, and how deep</li>
+ * <li>Whether to report dependency cycles, or fail if there are any</li>
+ * <li>Whether to leave out, or mark, the links implied by others</li>
+ * <li>The file to write the graph to</li>
+ * <li>The format to write the graph in</li>
+ * <li>The type of image to render the graph as</li>
+ * <li>The file to write a report of timings and fetch metrics to</li>
  * </ul>
  * 
  * @author pwhittlesea
@@ -28,11 +84,42 @@ import uk.me.thega.url.RepoURLReader;
  */
 public class Analyser {
 
-	/** Collection to store the links between versions of dependencies and dependees. */
-	private final Map<String, Map<String, List<String>>> dependedArtifacts = new HashMap<String, Map<String, List<String>>>();
+	/** The format of a dot graph, written once the crawl is complete. */
+	public static final String DOT_FORMAT = "dot";
 
-	/** The list of artifacts by groupId. */
-	private final Map<String, List<String>> artifactsByGroupId = new HashMap<String, List<String>>();
+	/** The format of an edge list, streamed as the crawl finds each edge. */
+	public static final String EDGES_FORMAT = "edges";
+
+	/** Report dependency cycles and highlight their links. */
+	public static final String CYCLES_REPORT = "report";
+
+	/** Report dependency cycles and highlight their links, failing if there are any. */
+	public static final String CYCLES_FAIL = "fail";
+
+	/** Leave the links implied by others out of a dot graph. */
+	public static final String REDUCE_DROP = "drop";
+
+	/** Mark the links implied by others in a dot graph, without laying the graph out by them. */
+	public static final String REDUCE_MARK = "mark";
+
+	/** The number of poms queued between a pipelined crawl and aggregation before the crawl waits. */
+	static final int PIPELINE_CAPACITY = 256;
+
+	/** The marker queued after the last pom of a pipelined crawl. */
+	private static final PomSummary END_OF_CRAWL = new PomSummary(new PomSummary.Coordinate(null, null, null), null,
+			Collections.<String> emptyList(), Collections.<PomSummary.Dependency> emptyList());
+
+	/** The artifacts, grouped by groupId, and the links between versions of dependencies and dependees. */
+	private DependencyGraph dependencyGraph = new DependencyGraph();
+
+	/** The out of date flag of each edge once the graph is complete, or null if not yet found. */
+	private boolean[] staleEdges;
+
+	/** The groupId:artifactId of each module passed on by the crawl, so one reached twice is added once. */
+	private final Set<String> modules = new HashSet<String>();
+
+	/** The number of modules passed on again, and left out. */
+	private int duplicates;
 
 	/** The repos to search. */
 	private final List<String> repos;
@@ -49,6 +136,99 @@ public class Analyser {
 	/** Do we print test dependencies? */
 	private final boolean includeTestDeps;
 
+	/** The number of concurrent POM fetches. */
+	private int threads = 1;
+
+	/** The time to wait for a connection when reading the repos as URLs, in milliseconds. */
+	private long connectTimeout = RepoURLReader.DEFAULT_CONNECT_TIMEOUT;
+
+	/** The time to wait for each response when reading the repos as URLs, in milliseconds. */
+	private long readTimeout = RepoURLReader.DEFAULT_READ_TIMEOUT;
+
+	/** The number of times to retry a failed fetch when reading the repos as URLs. */
+	private int retries = FetchScheduler.DEFAULT_MAX_RETRIES;
+
+	/** The most fetches in flight to one host when reading the repos as URLs. */
+	private int hostConcurrency = FetchScheduler.DEFAULT_HOST_CONCURRENCY;
+
+	/** The source of the POMs, or null to read the repos as URLs. */
+	private PomSource source;
+
+	/** The parser of the POMs, or null for the source's default. */
+	private PomParser parser;
+
+	/** The cache of POMs between runs, or null. */
+	private PomCache cache;
+
+	/** The file POM summaries are kept in between runs, or null to parse every POM. */
+	private File snapshot;
+
+	/** The file to load a saved graph from rather than crawling, or null. */
+	private File graphIn;
+
+	/** The file to save the graph to, or null. */
+	private File graphOut;
+
+	/** The groupId:artifactId to write only the transitive dependents of, or null. */
+	private String dependentsOf;
+
+	/** The groupId:artifactId to write only the transitive dependencies of, or null. */
+	private String dependenciesOf;
+
+	/** The most levels of edges followed from {@link #dependentsOf} and {@link #dependenciesOf}. */
+	private int depth = GraphQuery.UNLIMITED;
+
+	/** The artifacts found by the query, or null to write every artifact. */
+	private BitSet selection;
+
+	/** What to do about dependency cycles, or null not to look for them. */
+	private String cycles;
+
+	/** The number of dependency cycles found. */
+	private int cycleCount;
+
+	/** The cycle flag of each edge, or null if cycles were not looked for. */
+	private boolean[] cycleEdges;
+
+	/** What to do with links implied by others in a dot graph, or null to draw them as any other. */
+	private String reduce;
+
+	/** The file to write the graph to, or null for stdout. */
+	private File output;
+
+	/** The type of image to render the graph as, or null for the dot source. */
+	private String renderType;
+
+	/** The patterns of the artifacts whose links are printed, besides the restriction. */
+	private List<String> includes = Collections.emptyList();
+
+	/** The patterns of the artifacts whose links are never printed. */
+	private List<String> excludes = Collections.emptyList();
+
+	/** The scopes of the dependencies left out, besides test unless included. */
+	private List<String> excludedScopes = Collections.emptyList();
+
+	/** The patterns of the repos and modules never read. */
+	private List<String> excludedPaths = Collections.emptyList();
+
+	/** The filter compiled from the restriction, patterns and scopes, or null if not yet compiled. */
+	private ArtifactFilter filter;
+
+	/** The class of each artifact under the filter, 0 if not yet classified. */
+	private byte[] artifactClasses = new byte[0];
+
+	/** Do we crawl on a separate thread from aggregation? */
+	private boolean pipelined;
+
+	/** The format to write the graph in. */
+	private String format = DOT_FORMAT;
+
+	/** The writer each new edge is streamed to while an edge list is written, or null. */
+	private EdgeListWriter edgeWriter;
+
+	/** The metrics of the analysis. */
+	private final Metrics metrics = new Metrics();
+
 	/**
 	 * The main method.
 	 * 
@@ -60,13 +240,55 @@ public class Analyser {
 		cli.parse(args);
 
 		final String restriction = cli.getRestriction();
-		final List<String> repos = RepoFileReader.getReposFromFile(cli.getFile());
+		final List<String> repos = (cli.getFile() == null) ? Collections.<String> emptyList() : RepoFileReader.getReposFromFile(cli.getFile());
 		final String username = cli.getUsername();
 		final String password = cli.getPassword();
 		final boolean printTest = cli.getTestPreference();
 
 		final Analyser analyser = new Analyser(repos, restriction, username, password, printTest);
+		analyser.setThreads(cli.getThreads());
+		analyser.setTimeouts(cli.getConnectTimeout(), cli.getReadTimeout());
+		analyser.setRetries(cli.getRetries());
+		analyser.setHostConcurrency(cli.getHostConcurrency());
+		analyser.setPipelined(cli.getPipelinePreference());
+		analyser.setIncludes(cli.getIncludes());
+		analyser.setExcludes(cli.getExcludes());
+		analyser.setExcludedScopes(cli.getExcludedScopes());
+		analyser.setExcludedPaths(cli.getExcludedPaths());
+		analyser.setFormat(cli.getFormat());
+		if (cli.getLocalPreference()) {
+			analyser.setSource(new RepoDirectoryReader());
+		}
+		analyser.setParser(cli.getParser());
+		if (cli.getCacheDir() != null) {
+			analyser.setCache(new PomCache(new File(cli.getCacheDir()), cli.getCacheSize()));
+		}
+		if (cli.getSnapshot() != null) {
+			analyser.setSnapshot(new File(cli.getSnapshot()));
+		}
+		if (cli.getGraphIn() != null) {
+			analyser.setGraphIn(new File(cli.getGraphIn()));
+		}
+		if (cli.getGraphOut() != null) {
+			analyser.setGraphOut(new File(cli.getGraphOut()));
+		}
+		analyser.setDependentsOf(cli.getDependentsOf());
+		analyser.setDependenciesOf(cli.getDependenciesOf());
+		analyser.setDepth(cli.getDepth());
+		analyser.setCycles(cli.getCycles());
+		analyser.setReduce(cli.getReduce());
+		if (cli.getOutput() != null) {
+			analyser.setOutput(new File(cli.getOutput()));
+		}
+		analyser.setRenderType(cli.getRender());
 		analyser.analyse();
+		if (cli.getMetricsOut() != null) {
+			analyser.getMetrics().writeJson(new File(cli.getMetricsOut()));
+		}
+		if (CYCLES_FAIL.equals(cli.getCycles()) && analyser.getCycleCount() > 0) {
+			System.err.println("Failing on " + analyser.getCycleCount() + " dependency cycles");
+			System.exit(1);
+		}
 	}
 
 	/**
@@ -86,68 +308,901 @@ public class Analyser {
 		this.includeTestDeps = printTest;
 	}
 
+	/**
+	 * Set the number of POMs to fetch concurrently.
+	 * <br>
+	 * Reading the repos as URLs does not tie up a thread for each fetch, so
+	 * this may be far more than the number of processors.
+	 * 
+	 * @param threads the number of concurrent fetches
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Set the patterns of the artifacts whose links are printed, as well as
+	 * those matching the restriction.
+	 * <br>
+	 * Patterns are globs or regular expressions over
+	 * <code>groupId:artifactId</code>, as read by {@link Patterns}.
+	 * 
+	 * @param includes the patterns, or empty to print the links of every artifact matching the restriction
+	 */
+	public void setIncludes(final List<String> includes) {
+		this.includes = includes;
+		filter = null;
+	}
+
+	/**
+	 * Set the patterns of the artifacts whose links are never printed.
+	 * 
+	 * @param excludes the patterns over <code>groupId:artifactId</code>
+	 */
+	public void setExcludes(final List<String> excludes) {
+		this.excludes = excludes;
+		filter = null;
+	}
+
+	/**
+	 * Set the scopes of the dependencies to leave out, as well as test
+	 * unless test dependencies are included.
+	 * 
+	 * @param excludedScopes the scopes
+	 */
+	public void setExcludedScopes(final List<String> excludedScopes) {
+		this.excludedScopes = excludedScopes;
+		filter = null;
+	}
+
+	/**
+	 * Set the patterns of the repos and modules never to read, along with
+	 * the modules beneath them.
+	 * <br>
+	 * Each location is matched as the repo, ending in a '/', followed by the
+	 * sub-directory of the module, so no request is made for it at all.
+	 * 
+	 * @param excludedPaths the patterns of the locations
+	 */
+	public void setExcludedPaths(final List<String> excludedPaths) {
+		this.excludedPaths = excludedPaths;
+	}
+
+	/**
+	 * Set whether to crawl on a separate thread from aggregation, passing
+	 * each POM between them through a bounded queue.
+	 * 
+	 * @param pipelined do we pipeline the crawl and aggregation?
+	 */
+	public void setPipelined(final boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+
+	/**
+	 * Set the format to write the graph in.
+	 * 
+	 * @param format {@link #DOT_FORMAT} or {@link #EDGES_FORMAT}
+	 */
+	public void setFormat(final String format) {
+		if (!format.equals(DOT_FORMAT) && !format.equals(EDGES_FORMAT)) {
+			throw new IllegalArgumentException("Unknown format '" + format + "'");
+		}
+		this.format = format;
+	}
+
+	/**
+	 * Set the time to wait when reading the repos as URLs.
+	 * 
+	 * @param connectTimeout the time to wait for a connection, in milliseconds
+	 * @param readTimeout the time to wait for each response, in milliseconds
+	 */
+	public void setTimeouts(final long connectTimeout, final long readTimeout) {
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Set the number of times to retry a fetch that fails or is throttled
+	 * when reading the repos as URLs.
+	 * 
+	 * @param retries the number of retries
+	 */
+	public void setRetries(final int retries) {
+		this.retries = retries;
+	}
+
+	/**
+	 * Set the most fetches in flight to one host when reading the repos as
+	 * URLs.
+	 * 
+	 * @param hostConcurrency the number of fetches
+	 */
+	public void setHostConcurrency(final int hostConcurrency) {
+		this.hostConcurrency = hostConcurrency;
+	}
+
+	/**
+	 * Set the source to read the POMs of the repos from.
+	 * 
+	 * @param source the source, or null to read the repos as URLs
+	 */
+	public void setSource(final PomSource source) {
+		this.source = source;
+	}
+
+	/**
+	 * Set the parser to read the POMs with.
+	 * 
+	 * @param parser the parser, or null for the source's default
+	 */
+	public void setParser(final PomParser parser) {
+		this.parser = parser;
+	}
+
+	/**
+	 * Set the cache to keep POMs in between runs.
+	 * <br>
+	 * The cache is only used when reading the repos as URLs.
+	 * 
+	 * @param cache the cache, or null to always download
+	 */
+	public void setCache(final PomCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Set the file POM summaries are kept in between runs.
+	 * <br>
+	 * The summaries of the last run are read from it, if it exists, and a
+	 * POM whose content is unchanged since is not parsed again but added to
+	 * the graph from its summary. Once the crawl is done it is replaced with
+	 * the summaries of the POMs of this run.
+	 * <br>
+	 * Summaries are keyed by the content of the POM alone, so a snapshot
+	 * cannot be kept of POMs merged with parents from a local repository,
+	 * which may change between runs while the POMs do not.
+	 * 
+	 * @param snapshot the file, or null to parse every POM
+	 */
+	public void setSnapshot(final File snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Set the file to load a graph saved by an earlier run from, rather
+	 * than crawling the repos.
+	 * <br>
+	 * The graph is loaded as it was saved: the restriction, patterns and
+	 * excluded scopes still apply to the links written, but scopes left out
+	 * when it was saved cannot be brought back.
+	 * 
+	 * @param graphIn the file, or null to crawl the repos
+	 */
+	public void setGraphIn(final File graphIn) {
+		this.graphIn = graphIn;
+	}
+
+	/**
+	 * Set the file to save the graph to, once it is complete, as a
+	 * {@link GraphSnapshot}.
+	 * 
+	 * @param graphOut the file, or null not to save the graph
+	 */
+	public void setGraphOut(final File graphOut) {
+		this.graphOut = graphOut;
+	}
+
+	/**
+	 * Set the artifact to write only the dependents of: the artifacts that
+	 * depend upon it, directly or through others, and the links between
+	 * them.
+	 * 
+	 * @param dependentsOf the groupId:artifactId, or null
+	 */
+	public void setDependentsOf(final String dependentsOf) {
+		this.dependentsOf = dependentsOf;
+	}
+
+	/**
+	 * Set the artifact to write only the dependencies of: the artifacts it
+	 * depends upon, directly or through others, and the links between them.
+	 * <br>
+	 * Set along with {@link #setDependentsOf(String)}, the artifacts found
+	 * by either are written.
+	 * 
+	 * @param dependenciesOf the groupId:artifactId, or null
+	 */
+	public void setDependenciesOf(final String dependenciesOf) {
+		this.dependenciesOf = dependenciesOf;
+	}
+
+	/**
+	 * Set the most levels of edges to follow when finding dependents or
+	 * dependencies.
+	 * 
+	 * @param depth the number of levels, 1 for direct links only, or {@link GraphQuery#UNLIMITED}
+	 */
+	public void setDepth(final int depth) {
+		this.depth = depth;
+	}
+
+	/**
+	 * Set what to do about dependency cycles: sets of artifacts that each
+	 * depend upon every other, however indirectly.
+	 * <br>
+	 * Each cycle is listed, with the links and versions between its
+	 * artifacts, and the links are highlighted in a dot graph. To fail on
+	 * them, check {@link #getCycleCount()} once the analysis is done.
+	 * 
+	 * @param cycles {@link #CYCLES_REPORT} or {@link #CYCLES_FAIL}, or null not to look for cycles
+	 */
+	public void setCycles(final String cycles) {
+		if (cycles != null && !cycles.equals(CYCLES_REPORT) && !cycles.equals(CYCLES_FAIL)) {
+			throw new IllegalArgumentException("Unknown cycles mode '" + cycles + "'");
+		}
+		this.cycles = cycles;
+	}
+
+	/**
+	 * Get the number of dependency cycles found by the analysis.
+	 * 
+	 * @return the number of cycles, 0 if they were not looked for
+	 */
+	public int getCycleCount() {
+		return cycleCount;
+	}
+
+	/**
+	 * Set what to do with the links of a dot graph implied by others: a
+	 * link from one artifact to another that it still reaches through some
+	 * other path.
+	 * <br>
+	 * Leaving them out keeps every dependency, direct or transitive, in the
+	 * graph while shrinking it, and the time dot takes to lay it out, many
+	 * times over. Links within a dependency cycle are always kept.
+	 * 
+	 * @param reduce {@link #REDUCE_DROP} or {@link #REDUCE_MARK}, or null to draw them as any other
+	 */
+	public void setReduce(final String reduce) {
+		if (reduce != null && !reduce.equals(REDUCE_DROP) && !reduce.equals(REDUCE_MARK)) {
+			throw new IllegalArgumentException("Unknown reduce mode '" + reduce + "'");
+		}
+		this.reduce = reduce;
+	}
+
+	/**
+	 * Set the file to write the graph to.
+	 * <br>
+	 * The graph is gzipped if the file name ends in <code>.gz</code>.
+	 * 
+	 * @param output the file, or null to write to stdout
+	 */
+	public void setOutput(final File output) {
+		this.output = output;
+	}
+
+	/**
+	 * Set the type of image to render the graph as.
+	 * 
+	 * @param renderType the dot output type, e.g. png, or null to write the dot source
+	 */
+	public void setRenderType(final String renderType) {
+		this.renderType = renderType;
+	}
+
+	/**
+	 * Get the metrics of the analysis: the time taken by each phase, the
+	 * fetch times by host, the bytes downloaded, the POMs parsed and the
+	 * size of the graph.
+	 * 
+	 * @return the metrics
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
 	/**
 	 * Analyse the repos and generate the graph
 	 * 
 	 * @throws Exception if analysis fails
 	 */
 	public void analyse() throws Exception {
-		System.out.println("Processing");
+		if (renderType != null && !format.equals(DOT_FORMAT)) {
+			throw new IllegalStateException("Only the " + DOT_FORMAT + " format can be rendered");
+		}
+		if (reduce != null && !format.equals(DOT_FORMAT)) {
+			throw new IllegalStateException("Only the " + DOT_FORMAT + " format can be reduced");
+		}
+		if (snapshot != null && parser instanceof ModelPomParser && ((ModelPomParser) parser).getRepositoryDir() != null) {
+			throw new IllegalStateException("POMs merged with their parents cannot be kept in a snapshot");
+		}
+		System.err.println("Processing");
 
-		final RepoURLReader pomReader = new RepoURLReader(username, password);
+		final boolean compress = output != null && output.getName().endsWith(".gz");
+		final OutputStream out = (output == null) ? System.out : new BufferedOutputStream(new FileOutputStream(output));
+		try {
+			if (graphIn == null) {
+				crawl(out, compress);
+			} else {
+				load();
+			}
 
-		// Fetch the models at the repo location
-		final List<Model> poms = new ArrayList<Model>();
-		for (final String repo : repos) {
-			final List<Model> foundPoms = pomReader.readPomsAt(repo);
-			poms.addAll(foundPoms);
+			if (graphOut != null) {
+				new GraphSnapshot(dependencyGraph, getStaleEdges()).write(graphOut);
+			}
+			selection = query();
+			if (cycles != null) {
+				cycleEdges = findCycles();
+			}
+
+			final Metrics.Phase generate = metrics.startPhase("generate");
+			if (edgeWriter != null) {
+				edgeWriter.end();
+				edgeWriter = null;
+				generate.end();
+			} else if (format.equals(EDGES_FORMAT)) {
+				writeEdges(out, compress);
+				generate.end();
+			} else {
+				writeDot(out, compress, generate);
+			}
+		} finally {
+			edgeWriter = null;
+			if (output != null) {
+				out.close();
+			}
+		}
+
+		reportCaches();
+	}
+
+	/**
+	 * Print the counts of each cache used, and record them in the metrics.
+	 */
+	private void reportCaches() {
+		if (cache != null) {
+			metrics.recordCache("pom", "hits", cache.getHits());
+			metrics.recordCache("pom", "misses", cache.getMisses());
+			metrics.recordCache("pom", "revalidations", cache.getRevalidations());
+			metrics.recordCache("pom", "bytesSaved", cache.getBytesSaved());
+			System.err.println(cache);
+		}
+		if (parser instanceof ModelPomParser && ((ModelPomParser) parser).getRepositoryDir() != null) {
+			final ResolutionCache<Model> parents = MavenPomReader.getParentCache();
+			final ResolutionCache<String> latestVersions = MavenPomReader.getLatestVersionCache();
+			metrics.recordCache("parent", "hits", parents.getHits());
+			metrics.recordCache("parent", "misses", parents.getMisses());
+			metrics.recordCache("latestVersion", "hits", latestVersions.getHits());
+			metrics.recordCache("latestVersion", "misses", latestVersions.getMisses());
+			System.err.println("Parent cache: " + parents);
+			System.err.println("Latest version cache: " + latestVersions);
+		}
+	}
+
+	/**
+	 * Load the graph saved by an earlier run.
+	 * 
+	 * @throws IOException if the graph cannot be read
+	 */
+	private void load() throws IOException {
+		final Metrics.Phase load = metrics.startPhase("load");
+		final GraphSnapshot saved = GraphSnapshot.read(graphIn);
+		dependencyGraph = saved.getGraph();
+		staleEdges = saved.getStaleEdges();
+		artifactClasses = new byte[0];
+		load.end();
+		metrics.recordGraph(dependencyGraph);
+
+		System.err.println("Loaded " + dependencyGraph.getArtifactCount() + " artifacts and " + dependencyGraph.getEdgeCount() + " dependencies");
+	}
+
+	/**
+	 * Find the dependents and dependencies asked for.
+	 * 
+	 * @return the Ids of the artifacts found, or null if none were asked for
+	 */
+	private BitSet query() {
+		if (dependentsOf == null && dependenciesOf == null) {
+			return null;
 		}
+		final Metrics.Phase phase = metrics.startPhase("query");
+		// Follow only the links that are written, so nothing is reached through a left out scope or artifact
+		final GraphQuery query = new GraphQuery(dependencyGraph, findLinkedEdges());
+		final BitSet found = new BitSet(dependencyGraph.getArtifactCount());
+		if (dependentsOf != null) {
+			final BitSet dependents = query.findDependents(findArtifact(dependentsOf), depth);
+			System.err.println("Found " + (dependents.cardinality() - 1) + " dependents of " + dependentsOf);
+			found.or(dependents);
+		}
+		if (dependenciesOf != null) {
+			final BitSet dependencies = query.findDependencies(findArtifact(dependenciesOf), depth);
+			System.err.println("Found " + (dependencies.cardinality() - 1) + " dependencies of " + dependenciesOf);
+			found.or(dependencies);
+		}
+		phase.end();
+		return found;
+	}
 
-		for (final Model pom : poms) {
-			final String groupId = (pom.getGroupId() == null) ? pom.getParent().getGroupId() : pom.getGroupId();
-			final String artifactId = pom.getArtifactId();
+	/**
+	 * Find the dependency cycles of the graph, listing them on standard error
+	 * so they are kept apart from a graph written to standard output.
+	 * 
+	 * @return the cycle flag by edge Id
+	 */
+	private boolean[] findCycles() {
+		final Metrics.Phase phase = metrics.startPhase("cycles");
+		final ComponentIndex components = new ComponentIndex(dependencyGraph, findIncludedEdges());
+		final List<int[]> found = components.findCycles();
+		final boolean[] inCycle = components.findCycleEdges();
+		phase.end();
 
-			final List<Dependency> dependencies = pom.getDependencies();
-			for (final Dependency dependency : dependencies) {
-				if (includeTestDeps || dependency.getScope() == null || (dependency.getScope() != null && !dependency.getScope().equals("test"))) {
-					addDependencyBetweenAtrifacts(dependency, groupId, artifactId);
+		cycleCount = found.size();
+		System.err.println("Found " + cycleCount + " dependency cycles" + ((cycleCount == 0) ? "" : ":"));
+		final DependencyGraph.Index dependencies = dependencyGraph.getDependencies();
+		for (final int[] cycle : found) {
+			final StringBuilder members = new StringBuilder("  ");
+			for (int i = 0; i < cycle.length; i++) {
+				members.append((i == 0) ? "" : ", ").append(getCoordinate(cycle[i]));
+			}
+			System.err.println(members);
+			for (final int artifact : cycle) {
+				for (int i = dependencies.start(artifact); i < dependencies.end(artifact); i++) {
+					final int edge = dependencies.get(i);
+					if (inCycle[edge]) {
+						final String version = dependencyGraph.getVersion(dependencyGraph.getEdgeVersion(edge));
+						System.err.println("    " + getCoordinate(artifact) + " -> " + getCoordinate(dependencyGraph.getDependency(edge))
+								+ ((version == null) ? "" : " " + version));
+					}
 				}
 			}
 		}
+		return inCycle;
+	}
 
-		System.out.println("Processed " + poms.size() + " modules");
+	/**
+	 * Get the groupId:artifactId of an artifact.
+	 * 
+	 * @param artifact the Id of the artifact
+	 * @return the groupId:artifactId
+	 */
+	private String getCoordinate(final int artifact) {
+		return dependencyGraph.getGroupId(artifact) + ":" + dependencyGraph.getArtifactId(artifact);
+	}
 
+	/**
+	 * Find an artifact in the graph.
+	 * 
+	 * @param coordinate the groupId:artifactId of the artifact
+	 * @return the Id of the artifact
+	 */
+	private int findArtifact(final String coordinate) {
+		final int separator = coordinate.indexOf(':');
+		final int artifact = (separator < 0) ? -1
+				: dependencyGraph.findArtifact(coordinate.substring(0, separator), coordinate.substring(separator + 1));
+		if (artifact == -1) {
+			throw new IllegalArgumentException("No artifact '" + coordinate + "' in the graph");
+		}
+		return artifact;
+	}
+
+	/**
+	 * Crawl the repos, adding each POM to the graph as it arrives.
+	 * 
+	 * @param out the stream an edge list is written to
+	 * @param compress do we gzip an edge list?
+	 * @throws Exception if the crawl fails
+	 */
+	private void crawl(final OutputStream out, final boolean compress) throws Exception {
+		final RepoURLReader urlReader = (source == null) ? new RepoURLReader(username, password) : null;
+		final PomSource pomReader;
+		if (urlReader != null) {
+			urlReader.setCache(cache);
+			urlReader.setConnectTimeout(connectTimeout);
+			urlReader.setReadTimeout(readTimeout);
+			urlReader.setMaxRetries(retries);
+			urlReader.setHostConcurrency(hostConcurrency);
+			pomReader = urlReader;
+		} else {
+			pomReader = source;
+		}
+		pomReader.setMetrics(metrics);
+		// Parse only the poms that changed since the last run, if it left a snapshot
+		final IncrementalPomParser incremental = (snapshot == null) ? null
+				: new IncrementalPomParser((parser == null) ? new ModelPomParser() : parser, PomSnapshot.read(snapshot));
+		if (incremental != null) {
+			pomReader.setParser(incremental);
+		} else if (parser != null) {
+			pomReader.setParser(parser);
+		}
+		pomReader.setExcludedPaths(new Patterns(excludedPaths));
+
+		// An edge list needs nothing but each edge, so stream it as the graph grows, unless only some are queried
+		if (format.equals(EDGES_FORMAT) && dependentsOf == null && dependenciesOf == null) {
+			edgeWriter = new EdgeListWriter();
+			edgeWriter.start(out, compress);
+		}
+
+		// Fetch the poms at the repo locations, adding each to the graph as it arrives
+		final int processed;
+		try {
+			processed = (pipelined) ? crawlPipelined(pomReader) : crawl(pomReader);
+		} finally {
+			// Every read has finished, so stop the threads the responses were handled on
+			if (urlReader != null) {
+				urlReader.close();
+			}
+		}
+		metrics.recordGraph(dependencyGraph);
+
+		System.err.println("Processed " + processed + " modules");
+		if (duplicates > 0) {
+			System.err.println("Skipped " + duplicates + " duplicate modules");
+		}
+		if (incremental != null) {
+			incremental.getSnapshot().write(snapshot);
+			System.err.println("Parsed " + incremental.getParsed() + " new or changed POMs, " + incremental.getReused() + " unchanged");
+		}
+		printFailures();
+	}
+
+	/**
+	 * Print every POM that could not be read, and why.
+	 */
+	private void printFailures() {
+		final List<Metrics.Failure> failures = metrics.getFailures();
+		if (!failures.isEmpty()) {
+			System.err.println("Failed to read " + failures.size() + " POMs:");
+			for (final Metrics.Failure failure : failures) {
+				System.err.println("  " + failure.getLocation() + " (" + failure.getReason() + ")");
+			}
+		}
+	}
+
+	/**
+	 * Crawl the repos, adding each pom to the graph on the crawl's own
+	 * thread as it is passed on.
+	 * 
+	 * @param pomReader the source of the poms
+	 * @return the number of poms added
+	 * @throws IOException if the crawl fails
+	 */
+	private int crawl(final PomSource pomReader) throws IOException {
+		final int[] processed = new int[1];
+		final Metrics.Phase crawl = metrics.startPhase("crawl");
+		pomReader.readPomsAt(repos, threads, new PomHandler() {
+			public void handlePom(final PomSummary pom) {
+				if (isNewModule(pom)) {
+					aggregate(pom);
+					processed[0]++;
+				}
+			}
+		});
+		crawl.end();
+		return processed[0];
+	}
+
+	/**
+	 * Crawl the repos on another thread, passing each pom through a bounded
+	 * queue to be added to the graph on this one.
+	 * <br>
+	 * The crawl never waits on the graph, or on the output an edge list is
+	 * streamed to, unless the queue is full. Duplicate modules are dropped
+	 * on the crawl's thread, before they take up room in the queue.
+	 * 
+	 * @param pomReader the source of the poms
+	 * @return the number of poms added
+	 * @throws Exception if the crawl fails
+	 */
+	private int crawlPipelined(final PomSource pomReader) throws Exception {
+		final BlockingQueue<PomSummary> queue = new ArrayBlockingQueue<PomSummary>(PIPELINE_CAPACITY);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<Void> crawled = executor.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					try {
+						final Metrics.Phase crawl = metrics.startPhase("crawl");
+						pomReader.readPomsAt(repos, threads, new PomHandler() {
+							public void handlePom(final PomSummary pom) throws IOException {
+								if (!isNewModule(pom)) {
+									return;
+								}
+								try {
+									queue.put(pom);
+								} catch (final InterruptedException e) {
+									Thread.currentThread().interrupt();
+									throw new InterruptedIOException("Interrupted while queueing poms");
+								}
+							}
+						});
+						crawl.end();
+					} finally {
+						try {
+							queue.put(END_OF_CRAWL);
+						} catch (final InterruptedException e) {
+							// Only interrupted once nothing is taking from the queue
+							Thread.currentThread().interrupt();
+						}
+					}
+					return null;
+				}
+			});
+
+			int processed = 0;
+			for (PomSummary pom = queue.take(); pom != END_OF_CRAWL; pom = queue.take()) {
+				aggregate(pom);
+				processed++;
+			}
+			try {
+				crawled.get();
+			} catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof Exception) {
+					throw (Exception) cause;
+				}
+				throw (Error) cause;
+			}
+			return processed;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Is a pom passed on by the crawl the first of its module?
+	 * <br>
+	 * The crawl reads each location once, but the same groupId:artifactId
+	 * can still be found at two, such as a repo listed under two URLs.
+	 * 
+	 * @param pom the pom
+	 * @return true if no pom of the same groupId:artifactId came before it
+	 */
+	private boolean isNewModule(final PomSummary pom) {
+		if (modules.add(getGroupId(pom) + ":" + pom.getArtifactId())) {
+			return true;
+		}
+		duplicates++;
+		return false;
+	}
+
+	/**
+	 * Add a pom to the graph, timed as part of the aggregate phase.
+	 * <br>
+	 * The phase runs while the crawl goes on around it, so it is charged the
+	 * CPU time of this thread alone.
+	 * 
+	 * @param pom the pom
+	 */
+	private void aggregate(final PomSummary pom) {
+		final Metrics.Phase aggregate = metrics.startThreadPhase("aggregate");
+		addPom(pom);
+		aggregate.end();
+	}
+
+	/**
+	 * Write the complete graph as dot, rendering it if asked to.
+	 * 
+	 * @param out the stream to write to
+	 * @param compress do we gzip the dot source?
+	 * @param generate the generate phase, ended once the source is written
+	 * @throws Exception if the graph cannot be written or rendered
+	 */
+	private void writeDot(final OutputStream out, final boolean compress, final Metrics.Phase generate) throws Exception {
+		// Pipe the source straight into dot if we are rendering
+		final GraphViz.Renderer renderer = (renderType == null) ? null : new GraphViz.Renderer(renderType, out, GraphViz.DEFAULT_TIMEOUT);
+		boolean written = false;
+		try {
+			writeDotSource(out, compress, renderer);
+			generate.end();
+			written = true;
+		} finally {
+			if (renderer != null) {
+				if (written || !renderer.isRunning()) {
+					// A failure in dot explains itself better than the broken pipe it leaves
+					final Metrics.Phase render = metrics.startPhase("render");
+					renderer.finish();
+					render.end();
+				} else {
+					// Stop dot rather than leave it waiting for the rest of the source
+					renderer.destroy();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write the dot source of the graph.
+	 * 
+	 * @param out the stream to write to, unless rendering
+	 * @param compress do we gzip the graph?
+	 * @param renderer the dot process to write to, or null to write to the stream
+	 * @throws Exception if the graph cannot be written
+	 */
+	private void writeDotSource(final OutputStream out, final boolean compress, final GraphViz.Renderer renderer) throws Exception {
 		final DotGenerator graphGenerator = new DotGenerator();
-		graphGenerator.start(1000, 1000);
-		
+		if (renderer == null) {
+			graphGenerator.start(out, compress, 1000, 1000);
+		} else {
+			graphGenerator.start(renderer.getDotInput(), false, 1000, 1000);
+		}
+
 		// Write all the artifacts to the graph, this does not include links
-		graphGenerator.writeNodesToGraph(true, artifactsByGroupId);
+		graphGenerator.writeNodesToGraph(true, dependencyGraph, selection);
+
+		// Find the links to older versions than the newest in use
+		final boolean[] outOfDate = getStaleEdges();
+
+		// Find the links to write, and those implied by others if we reduce them
+		final boolean[] linked = findLinkedEdges();
+		for (int edge = 0; edge < linked.length; edge++) {
+			linked[edge] = linked[edge] && isSelected(edge);
+		}
+		final boolean[] implied = (reduce == null) ? null : reduce(linked);
 
 		// Get the list of dependencies seen
-		for (final String dependency : dependedArtifacts.keySet()) {
-			final String[] dependencyComponents = dependency.split(":");
-			final String dependencyGroupId = dependencyComponents[0];
-			final String dependencyArtifactId = dependencyComponents[1];
-
-			// Get the list of dependency versions
-			final Map<String, List<String>> dependedVersions = dependedArtifacts.get(dependency);
-			for (final String dependencyVersion : dependedVersions.keySet()) {
-				// TODO Figure out which is the latest version of a Dependency
-				final boolean outOfDate = false;
-				final int importance = (outOfDate) ? 10 : 1;
-				// Iterate over the modules that depend upon our current dependency version 
-				for (final String dependee : dependedVersions.get(dependencyVersion)) {
-					// Get the groupId and artifactId from our components
-					final String[] dependeeComponents = dependee.split(":");
-					final String dependeeGroupId = dependeeComponents[0];
-					final String dependeeArtifactId = dependeeComponents[1];
-					if (dependee.startsWith(restriction) || dependency.startsWith(restriction)) {
-						graphGenerator.linkNodesOnGraph(dependencyGroupId, dependencyArtifactId, dependeeGroupId, dependeeArtifactId, importance);
+		final DependencyGraph.Index dependents = dependencyGraph.getDependents();
+		for (int dependency = 0; dependency < dependencyGraph.getArtifactCount(); dependency++) {
+			// Iterate over the modules that depend upon any version of our current dependency
+			for (int i = dependents.start(dependency); i < dependents.end(dependency); i++) {
+				final int edge = dependents.get(i);
+				final int dependee = dependencyGraph.getDependee(edge);
+				if (!linked[edge]) {
+					continue;
+				}
+				if (implied != null && implied[edge]) {
+					if (reduce.equals(REDUCE_MARK)) {
+						graphGenerator.linkImpliedNodesOnGraph(dependency, dependee);
 					}
+				} else {
+					graphGenerator.linkNodesOnGraph(dependency, dependee, outOfDate[edge], cycleEdges != null && cycleEdges[edge]);
 				}
 			}
 		}
-		System.out.println(graphGenerator.end());
+		graphGenerator.end();
+	}
+
+	/**
+	 * Find the links implied by others, among those to be written.
+	 * 
+	 * @param linked the written flag by edge Id
+	 * @return the implied flag by edge Id
+	 */
+	private boolean[] reduce(final boolean[] linked) {
+		final Metrics.Phase phase = metrics.startPhase("reduce");
+		final boolean[] implied = new TransitiveReduction(dependencyGraph, linked).findRedundantEdges();
+		phase.end();
+
+		int count = 0;
+		for (final boolean edge : implied) {
+			count += (edge) ? 1 : 0;
+		}
+		System.err.println(((reduce.equals(REDUCE_MARK)) ? "Marked " : "Left out ") + count + " links implied by others");
+		return implied;
+	}
+
+	/**
+	 * Is an edge between two of the artifacts found by the query?
+	 * 
+	 * @param edge the Id of the edge
+	 * @return true if both ends were found, or there was no query
+	 */
+	private boolean isSelected(final int edge) {
+		return selection == null || selection.get(dependencyGraph.getDependee(edge)) && selection.get(dependencyGraph.getDependency(edge));
+	}
+
+	/**
+	 * Write every edge of the complete graph as a list, as when the graph
+	 * was loaded rather than crawled or only some of it was queried.
+	 * 
+	 * @param out the stream to write to
+	 * @param compress do we gzip the list?
+	 * @throws IOException if the list cannot be written
+	 */
+	private void writeEdges(final OutputStream out, final boolean compress) throws IOException {
+		final EdgeListWriter writer = new EdgeListWriter();
+		writer.start(out, compress);
+		final boolean[] linked = findLinkedEdges();
+		for (int edge = 0; edge < linked.length; edge++) {
+			if (linked[edge] && isSelected(edge)) {
+				writer.writeEdge(dependencyGraph, edge);
+			}
+		}
+		writer.end();
+	}
+
+	/**
+	 * Get the edges of the complete graph that depend upon an older version
+	 * of an artifact than the newest one in use, found once.
+	 * 
+	 * @return the out of date flag by edge Id
+	 */
+	private boolean[] getStaleEdges() {
+		if (staleEdges == null) {
+			staleEdges = new VersionIndex(dependencyGraph).findStaleEdges();
+		}
+		return staleEdges;
+	}
+
+	/**
+	 * Find the edges of the graph in included scopes.
+	 * 
+	 * @return the included flag by edge Id
+	 */
+	private boolean[] findIncludedEdges() {
+		final boolean[] scopes = findIncludedScopes();
+		final boolean[] edges = new boolean[dependencyGraph.getEdgeCount()];
+		for (int edge = 0; edge < edges.length; edge++) {
+			edges[edge] = scopes[dependencyGraph.getEdgeScope(edge)];
+		}
+		return edges;
+	}
+
+	/**
+	 * Find the edges of the graph in included scopes, between artifacts the
+	 * filter links.
+	 * 
+	 * @return the linked flag by edge Id
+	 */
+	private boolean[] findLinkedEdges() {
+		final boolean[] edges = findIncludedEdges();
+		for (int edge = 0; edge < edges.length; edge++) {
+			edges[edge] = edges[edge]
+					&& ArtifactFilter.isLinked(classify(dependencyGraph.getDependee(edge)), classify(dependencyGraph.getDependency(edge)));
+		}
+		return edges;
+	}
+
+	/**
+	 * Find the scopes of the graph whose dependencies are included.
+	 * <br>
+	 * Every scope of a crawled graph is, as the others are never added, but
+	 * a loaded graph may have been saved with more.
+	 * 
+	 * @return the included flag by scope Id
+	 */
+	private boolean[] findIncludedScopes() {
+		final ArtifactFilter filter = getFilter();
+		final boolean[] scopes = new boolean[dependencyGraph.getScopeCount()];
+		for (int scope = 0; scope < scopes.length; scope++) {
+			scopes[scope] = filter.includesScope(dependencyGraph.getScope(scope));
+		}
+		return scopes;
+	}
+
+	/**
+	 * Add the dependencies of a POM to the dependency graph.
+	 * 
+	 * @param pom the POM
+	 */
+	public void addPom(final PomSummary pom) {
+		final String groupId = getGroupId(pom);
+		final String artifactId = pom.getArtifactId();
+
+		final ArtifactFilter filter = getFilter();
+		final List<PomSummary.Dependency> dependencies = pom.getDependencies();
+		for (final PomSummary.Dependency dependency : dependencies) {
+			if (filter.includesScope(dependency.getScope())) {
+				addDependencyBetweenAtrifacts(dependency, groupId, artifactId);
+			}
+		}
+	}
+
+	/**
+	 * Get the groupId of a POM, inherited from its parent if not its own.
+	 * 
+	 * @param pom the POM
+	 * @return the groupId
+	 */
+	private static String getGroupId(final PomSummary pom) {
+		return (pom.getGroupId() == null) ? pom.getParent().getGroupId() : pom.getGroupId();
+	}
+
+	/**
+	 * Get the dependency graph built so far.
+	 * 
+	 * @return the dependency graph
+	 */
+	public DependencyGraph getDependencyGraph() {
+		return dependencyGraph;
 	}
 
 	/**
@@ -157,45 +1212,55 @@ public class Analyser {
 	 * @param groupId the referencing groupId
 	 * @param artifactId the referencing artifactId
 	 */
-	private void addDependencyBetweenAtrifacts(final Dependency dependency, String groupId, String artifactId) {
-		final String depGroupId = dependency.getGroupId();
-		final String depArtifactId = dependency.getArtifactId();
-		final String depVersion = dependency.getVersion();
-
-		// Create the UUID for this artifact
-		final String refererUUID = groupId + ":" + artifactId;
-
-		// Create the UUID for this dependency
-		final String depUUID = depGroupId + ":" + depArtifactId;
+	private void addDependencyBetweenAtrifacts(final PomSummary.Dependency dependency, String groupId, String artifactId) {
+		// Add the artifacts to our graph of artifacts to create
+		final int referer = dependencyGraph.addArtifact(groupId, artifactId);
+		final int depArtifact = dependencyGraph.addArtifact(dependency.getGroupId(), dependency.getArtifactId());
+		final int depVersion = dependencyGraph.addVersion(dependency.getVersion());
+		final int depScope = dependencyGraph.addScope(dependency.getScope());
 
-		// Add the artifact to our list of artifacts to create
-		addArtifactToList(groupId, artifactId);
-		addArtifactToList(depGroupId, depArtifactId);
-
-		if (!dependedArtifacts.containsKey(depUUID)) {
-			dependedArtifacts.put(depUUID, new HashMap<String, List<String>>());
+		if (dependencyGraph.addDependency(referer, depArtifact, depVersion, depScope) && edgeWriter != null
+				&& ArtifactFilter.isLinked(classify(referer), classify(depArtifact))) {
+			edgeWriter.writeEdge(dependencyGraph, dependencyGraph.getEdgeCount() - 1);
 		}
-		final Map<String, List<String>> artifactVersions = dependedArtifacts.get(depUUID);
-		if (!artifactVersions.containsKey(depVersion)) {
-			artifactVersions.put(depVersion, new ArrayList<String>());
+	}
+
+	/**
+	 * Get the filter compiled from the restriction, patterns and scopes.
+	 * 
+	 * @return the filter
+	 */
+	private ArtifactFilter getFilter() {
+		if (filter == null) {
+			final List<String> included = new ArrayList<String>(includes);
+			if (restriction.length() > 0) {
+				// The restriction is a prefix of groupId:artifactId
+				included.add("regex:" + Pattern.quote(restriction) + ".*");
+			}
+			final List<String> scopes = new ArrayList<String>(excludedScopes);
+			if (!includeTestDeps) {
+				scopes.add("test");
+			}
+			filter = new ArtifactFilter(included, excludes, scopes);
+			artifactClasses = new byte[0];
 		}
-		final List<String> referencingArtifacts = artifactVersions.get(depVersion);
-		referencingArtifacts.add(refererUUID);
+		return filter;
 	}
 
 	/**
-	 * Add an artifact to the list of artifacts stored by groupId.
+	 * Classify an artifact under the filter, once however many links it has.
 	 * 
-	 * @param groupId the groupId
-	 * @param artifactId the artifactId
+	 * @param artifact the Id of the artifact
+	 * @return the class, as given by {@link ArtifactFilter#classify(String, String)}
 	 */
-	private void addArtifactToList(final String groupId, final String artifactId) {
-		if (!artifactsByGroupId.containsKey(groupId)) {
-			artifactsByGroupId.put(groupId, new ArrayList<String>());
+	private int classify(final int artifact) {
+		final ArtifactFilter filter = getFilter();
+		if (artifact >= artifactClasses.length) {
+			artifactClasses = Arrays.copyOf(artifactClasses, Math.max(dependencyGraph.getArtifactCount(), artifactClasses.length * 2));
 		}
-		final List<String> list = artifactsByGroupId.get(groupId);
-		if (!list.contains(artifactId)) {
-			list.add(artifactId);
+		if (artifactClasses[artifact] == 0) {
+			artifactClasses[artifact] = (byte) filter.classify(dependencyGraph.getGroupId(artifact), dependencyGraph.getArtifactId(artifact));
 		}
+		return artifactClasses[artifact];
 	}
 }
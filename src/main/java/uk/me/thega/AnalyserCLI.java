@@ -1,5 +1,10 @@
 package uk.me.thega;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import javax.naming.ConfigurationException;
 
 import org.apache.commons.cli.BasicParser;
@@ -11,6 +16,13 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import uk.me.thega.graph.GraphQuery;
+import uk.me.thega.pom.ModelPomParser;
+import uk.me.thega.pom.PomParser;
+import uk.me.thega.pom.StaxPomParser;
+import uk.me.thega.url.FetchScheduler;
+import uk.me.thega.url.RepoURLReader;
+
 /**
  * Command line parser for the Analyser application.
  * 
@@ -19,7 +31,7 @@ import org.apache.commons.cli.ParseException;
  */
 public class AnalyserCLI {
 
-	/** The file argument the user must specify. */
+	/** The file argument the user must specify, unless loading a saved graph. */
 	final static String FILE_ARGUMENT = "file";
 
 	/** The restriction argument the user must specify. */
@@ -34,6 +46,99 @@ public class AnalyserCLI {
 	/** The test argument the user must specify. */
 	final static String TEST_ARGUMENT = "printTest";
 
+	/** The number of threads argument the user may specify. */
+	final static String THREADS_ARGUMENT = "threads";
+
+	/** The cache directory argument the user may specify. */
+	final static String CACHE_DIR_ARGUMENT = "cacheDir";
+
+	/** The cache size argument the user may specify. */
+	final static String CACHE_SIZE_ARGUMENT = "cacheSize";
+
+	/** The output file argument the user may specify. */
+	final static String OUTPUT_ARGUMENT = "output";
+
+	/** The render type argument the user may specify. */
+	final static String RENDER_ARGUMENT = "render";
+
+	/** The metrics report file argument the user may specify. */
+	final static String METRICS_OUT_ARGUMENT = "metricsOut";
+
+	/** The long form of the metrics report file argument. */
+	final static String METRICS_OUT_LONG_ARGUMENT = "metrics-out";
+
+	/** The local repos argument the user may specify. */
+	final static String LOCAL_ARGUMENT = "local";
+
+	/** The POM parser argument the user may specify. */
+	final static String PARSER_ARGUMENT = "parser";
+
+	/** The local Maven repository argument the user may specify. */
+	final static String REPOSITORY_ARGUMENT = "repository";
+
+	/** The pipeline argument the user may specify. */
+	final static String PIPELINE_ARGUMENT = "pipeline";
+
+	/** The output format argument the user may specify. */
+	final static String FORMAT_ARGUMENT = "format";
+
+	/** The include patterns argument the user may specify. */
+	final static String INCLUDE_ARGUMENT = "include";
+
+	/** The exclude patterns argument the user may specify. */
+	final static String EXCLUDE_ARGUMENT = "exclude";
+
+	/** The excluded scopes argument the user may specify. */
+	final static String EXCLUDE_SCOPES_ARGUMENT = "excludeScopes";
+
+	/** The excluded paths argument the user may specify. */
+	final static String EXCLUDE_PATHS_ARGUMENT = "excludePaths";
+
+	/** The connect timeout argument the user may specify. */
+	final static String CONNECT_TIMEOUT_ARGUMENT = "connectTimeout";
+
+	/** The read timeout argument the user may specify. */
+	final static String READ_TIMEOUT_ARGUMENT = "readTimeout";
+
+	/** The retries argument the user may specify. */
+	final static String RETRIES_ARGUMENT = "retries";
+
+	/** The host concurrency argument the user may specify. */
+	final static String HOST_CONCURRENCY_ARGUMENT = "hostConcurrency";
+
+	/** The snapshot argument the user may specify. */
+	final static String SNAPSHOT_ARGUMENT = "snapshot";
+
+	/** The saved graph to load argument the user may specify. */
+	final static String GRAPH_IN_ARGUMENT = "graphIn";
+
+	/** The file to save the graph to argument the user may specify. */
+	final static String GRAPH_OUT_ARGUMENT = "graphOut";
+
+	/** The artifact to find the dependents of argument the user may specify. */
+	final static String DEPENDENTS_OF_ARGUMENT = "dependentsOf";
+
+	/** The long form of the dependents argument. */
+	final static String DEPENDENTS_OF_LONG_ARGUMENT = "dependents-of";
+
+	/** The artifact to find the dependencies of argument the user may specify. */
+	final static String DEPENDENCIES_OF_ARGUMENT = "dependenciesOf";
+
+	/** The long form of the dependencies argument. */
+	final static String DEPENDENCIES_OF_LONG_ARGUMENT = "dependencies-of";
+
+	/** The query depth argument the user may specify. */
+	final static String DEPTH_ARGUMENT = "depth";
+
+	/** The dependency cycles argument the user may specify. */
+	final static String CYCLES_ARGUMENT = "cycles";
+
+	/** The transitive reduction argument the user may specify. */
+	final static String REDUCE_ARGUMENT = "reduce";
+
+	/** The default cache size in megabytes. */
+	final static long DEFAULT_CACHE_SIZE = 256;
+
 	/** The parsed command line arguments. */
 	private CommandLine cmd;
 
@@ -57,14 +162,66 @@ public class AnalyserCLI {
 		final Option username = new Option(USERNAME_ARGUMENT, true, "Username for web requests (if needed)");
 		final Option password = new Option(PASSWORD_ARGUMENT, true, "Password for web requests (if needed)");
 		final Option test = new Option(TEST_ARGUMENT, true, "Include test dependencies");
-		
-		file.setRequired(true);
+		final Option threads = new Option(THREADS_ARGUMENT, true, "Number of concurrent POM fetches (default 1)");
+		final Option cacheDir = new Option(CACHE_DIR_ARGUMENT, true, "Directory to cache POMs in between runs");
+		final Option cacheSize = new Option(CACHE_SIZE_ARGUMENT, true, "Maximum size of the POM cache in MB (default " + DEFAULT_CACHE_SIZE + ")");
+		final Option output = new Option(OUTPUT_ARGUMENT, true, "File to write the graph to, gzipped if it ends in .gz (default stdout)");
+		final Option render = new Option(RENDER_ARGUMENT, true, "Render the graph through dot as this type, e.g. png or svg");
+		final Option local = new Option(LOCAL_ARGUMENT, true, "Read repos from checked out directories rather than URLs");
+		final Option parser = new Option(PARSER_ARGUMENT, true, "Parser to read POMs with, 'model' for the full Maven model or 'stax' to stream only what is needed (default model)");
+		final Option repository = new Option(REPOSITORY_ARGUMENT, true, "Local Maven repository to merge each POM with its parents from, with the model parser and no --" + SNAPSHOT_ARGUMENT);
+		final Option pipeline = new Option(PIPELINE_ARGUMENT, true, "Aggregate POMs on a separate thread from the crawl as they arrive");
+		final Option format = new Option(FORMAT_ARGUMENT, true, "Format to write the graph in, 'dot' or 'edges' to stream an edge list during the crawl (default dot)");
+		final Option include = new Option(INCLUDE_ARGUMENT, true, "Comma separated globs, or regex: patterns, of the groupId:artifactId whose links are printed");
+		final Option exclude = new Option(EXCLUDE_ARGUMENT, true, "Comma separated globs, or regex: patterns, of the groupId:artifactId whose links are never printed");
+		final Option excludeScopes = new Option(EXCLUDE_SCOPES_ARGUMENT, true, "Comma separated scopes of dependencies to leave out");
+		final Option excludePaths = new Option(EXCLUDE_PATHS_ARGUMENT, true, "Comma separated globs, or regex: patterns, of repo/module/ locations never to read");
+		final Option connectTimeout = new Option(CONNECT_TIMEOUT_ARGUMENT, true, "Milliseconds to wait for a connection (default " + RepoURLReader.DEFAULT_CONNECT_TIMEOUT + ")");
+		final Option readTimeout = new Option(READ_TIMEOUT_ARGUMENT, true, "Milliseconds to wait for each response (default " + RepoURLReader.DEFAULT_READ_TIMEOUT + ")");
+		final Option retries = new Option(RETRIES_ARGUMENT, true, "Times to retry a POM fetch that fails or is throttled (default " + FetchScheduler.DEFAULT_MAX_RETRIES + ")");
+		final Option hostConcurrency = new Option(HOST_CONCURRENCY_ARGUMENT, true, "Most POM fetches in flight to one host, halved while it throttles (default " + FetchScheduler.DEFAULT_HOST_CONCURRENCY + ")");
+		final Option snapshot = new Option(SNAPSHOT_ARGUMENT, true, "File to keep POM summaries in between runs, so only changed POMs are parsed again");
+		final Option graphIn = new Option(GRAPH_IN_ARGUMENT, true, "File to load a graph saved with --" + GRAPH_OUT_ARGUMENT + " from, rather than reading repos");
+		final Option graphOut = new Option(GRAPH_OUT_ARGUMENT, true, "File to save the graph to in a compact binary form");
+		final Option dependentsOf = new Option(DEPENDENTS_OF_ARGUMENT, DEPENDENTS_OF_LONG_ARGUMENT, true, "groupId:artifactId to write only the transitive dependents of");
+		final Option dependenciesOf = new Option(DEPENDENCIES_OF_ARGUMENT, DEPENDENCIES_OF_LONG_ARGUMENT, true, "groupId:artifactId to write only the transitive dependencies of");
+		final Option depth = new Option(DEPTH_ARGUMENT, true, "Most levels of links to follow from --" + DEPENDENTS_OF_LONG_ARGUMENT + " or --" + DEPENDENCIES_OF_LONG_ARGUMENT + " (default unlimited)");
+		final Option cycles = new Option(CYCLES_ARGUMENT, true, "Find dependency cycles, 'report' to list them and highlight their links or 'fail' to also exit with an error if there are any");
+		final Option reduce = new Option(REDUCE_ARGUMENT, true, "Links implied by others in a dot graph, 'drop' to leave them out or 'mark' to draw them dotted without laying the graph out by them");
+		final Option metricsOut = new Option(METRICS_OUT_ARGUMENT, METRICS_OUT_LONG_ARGUMENT, true, "File to write a JSON report of timings and fetch metrics to");
 
 		options.addOption(file);
 		options.addOption(restriction);
 		options.addOption(username);
 		options.addOption(password);
 		options.addOption(test);
+		options.addOption(threads);
+		options.addOption(cacheDir);
+		options.addOption(cacheSize);
+		options.addOption(output);
+		options.addOption(render);
+		options.addOption(metricsOut);
+		options.addOption(local);
+		options.addOption(parser);
+		options.addOption(repository);
+		options.addOption(pipeline);
+		options.addOption(format);
+		options.addOption(include);
+		options.addOption(exclude);
+		options.addOption(excludeScopes);
+		options.addOption(excludePaths);
+		options.addOption(connectTimeout);
+		options.addOption(readTimeout);
+		options.addOption(retries);
+		options.addOption(hostConcurrency);
+		options.addOption(snapshot);
+		options.addOption(graphIn);
+		options.addOption(graphOut);
+		options.addOption(dependentsOf);
+		options.addOption(dependenciesOf);
+		options.addOption(depth);
+		options.addOption(cycles);
+		options.addOption(reduce);
 
 		return options;
 	}
@@ -82,7 +239,12 @@ public class AnalyserCLI {
 		final Options options = getCLIOptions();
 
 		try {
-			cmd = parser.parse(options, args);
+			final CommandLine parsed = parser.parse(options, args);
+			// The repos are only read if no saved graph is loaded instead
+			if (!parsed.hasOption(FILE_ARGUMENT) && !parsed.hasOption(GRAPH_IN_ARGUMENT)) {
+				throw new MissingOptionException(Collections.singletonList(FILE_ARGUMENT));
+			}
+			cmd = parsed;
 		} catch (final MissingOptionException e) {
 			final HelpFormatter formatter = new HelpFormatter();
 			formatter.setOptPrefix(" --");
@@ -107,7 +269,7 @@ public class AnalyserCLI {
 	/**
 	 * Get the path of the file containing the repos to scan.
 	 * 
-	 * @return the string of the file passed to the application
+	 * @return the string of the file passed to the application, or null if a saved graph is loaded instead
 	 * @throws ConfigurationException if cmd is null
 	 */
 	public String getFile() throws ConfigurationException {
@@ -170,4 +332,481 @@ public class AnalyserCLI {
 		}
 		return false;
 	}
+
+	/**
+	 * Get the number of concurrent POM fetches
+	 * 
+	 * @return the number of threads, 1 if not specified
+	 * @throws ConfigurationException if cmd is null or the value is not a positive number
+	 */
+	public int getThreads() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(THREADS_ARGUMENT)) {
+			final String value = cmd.getOptionValue(THREADS_ARGUMENT);
+			try {
+				final int threads = Integer.parseInt(value);
+				if (threads > 0) {
+					return threads;
+				}
+			} catch (final NumberFormatException e) {
+				// Fall through to the error below
+			}
+			throw new ConfigurationException("Invalid number of threads '" + value + "'");
+		}
+		return 1;
+	}
+
+	/**
+	 * Get the directory to cache POMs in
+	 * 
+	 * @return the cache directory, or null if POMs are not cached
+	 * @throws ConfigurationException if cmd is null
+	 */
+	public String getCacheDir() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(CACHE_DIR_ARGUMENT)) {
+			return cmd.getOptionValue(CACHE_DIR_ARGUMENT);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the maximum size of the POM cache
+	 * 
+	 * @return the cache size in bytes
+	 * @throws ConfigurationException if cmd is null or the value is not a positive number
+	 */
+	public long getCacheSize() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		long megabytes = DEFAULT_CACHE_SIZE;
+		if (cmd.hasOption(CACHE_SIZE_ARGUMENT)) {
+			final String value = cmd.getOptionValue(CACHE_SIZE_ARGUMENT);
+			try {
+				megabytes = Long.parseLong(value);
+			} catch (final NumberFormatException e) {
+				megabytes = -1;
+			}
+			if (megabytes <= 0) {
+				throw new ConfigurationException("Invalid cache size '" + value + "'");
+			}
+		}
+		return megabytes * 1024 * 1024;
+	}
+
+	/**
+	 * Get the file to keep POM summaries in between runs
+	 * 
+	 * @return the snapshot file, or null if every POM is parsed
+	 * @throws ConfigurationException if cmd is null, or POMs are merged with their parents
+	 */
+	public String getSnapshot() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(SNAPSHOT_ARGUMENT)) {
+			if (getRepository() != null) {
+				// A snapshot is keyed by the content of each POM, so it would miss a change to a parent
+				throw new ConfigurationException("POMs merged with their parents cannot be kept in a snapshot");
+			}
+			return cmd.getOptionValue(SNAPSHOT_ARGUMENT);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the file to load a saved graph from
+	 * 
+	 * @return the saved graph file, or null to read the repos
+	 * @throws ConfigurationException if cmd is null
+	 */
+	public String getGraphIn() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(GRAPH_IN_ARGUMENT)) {
+			return cmd.getOptionValue(GRAPH_IN_ARGUMENT);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the file to save the graph to
+	 * 
+	 * @return the graph file, or null not to save the graph
+	 * @throws ConfigurationException if cmd is null
+	 */
+	public String getGraphOut() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(GRAPH_OUT_ARGUMENT)) {
+			return cmd.getOptionValue(GRAPH_OUT_ARGUMENT);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the artifact to write only the transitive dependents of
+	 * 
+	 * @return the groupId:artifactId, or null to write every artifact
+	 * @throws ConfigurationException if cmd is null or the value is not a groupId:artifactId
+	 */
+	public String getDependentsOf() throws ConfigurationException {
+		return getCoordinate(DEPENDENTS_OF_ARGUMENT);
+	}
+
+	/**
+	 * Get the artifact to write only the transitive dependencies of
+	 * 
+	 * @return the groupId:artifactId, or null to write every artifact
+	 * @throws ConfigurationException if cmd is null or the value is not a groupId:artifactId
+	 */
+	public String getDependenciesOf() throws ConfigurationException {
+		return getCoordinate(DEPENDENCIES_OF_ARGUMENT);
+	}
+
+	/**
+	 * Get a groupId:artifactId argument
+	 * 
+	 * @param argument the argument
+	 * @return the groupId:artifactId, or null if not specified
+	 * @throws ConfigurationException if cmd is null or the value is not a groupId:artifactId
+	 */
+	private String getCoordinate(final String argument) throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(argument)) {
+			final String value = cmd.getOptionValue(argument);
+			final int separator = value.indexOf(':');
+			if (separator > 0 && separator < value.length() - 1 && value.indexOf(':', separator + 1) < 0) {
+				return value;
+			}
+			throw new ConfigurationException("Invalid artifact '" + value + "'");
+		}
+		return null;
+	}
+
+	/**
+	 * Get the most levels of links to follow when finding dependents or
+	 * dependencies
+	 * 
+	 * @return the depth, {@link GraphQuery#UNLIMITED} if not specified
+	 * @throws ConfigurationException if cmd is null or the value is not a positive number
+	 */
+	public int getDepth() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(DEPTH_ARGUMENT)) {
+			final String value = cmd.getOptionValue(DEPTH_ARGUMENT);
+			try {
+				final int depth = Integer.parseInt(value);
+				if (depth > 0) {
+					return depth;
+				}
+			} catch (final NumberFormatException e) {
+				// Fall through to the error below
+			}
+			throw new ConfigurationException("Invalid depth '" + value + "'");
+		}
+		return GraphQuery.UNLIMITED;
+	}
+
+	/**
+	 * Get the file to write the graph to
+	 * 
+	 * @return the output file, or null to write to stdout
+	 * @throws ConfigurationException if cmd is null
+	 */
+	public String getOutput() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(OUTPUT_ARGUMENT)) {
+			return cmd.getOptionValue(OUTPUT_ARGUMENT);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the type of image to render the graph as
+	 * 
+	 * @return the dot output type, or null to write the dot source
+	 * @throws ConfigurationException if cmd is null
+	 */
+	public String getRender() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(RENDER_ARGUMENT)) {
+			return cmd.getOptionValue(RENDER_ARGUMENT);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the file to write the metrics report to
+	 * 
+	 * @return the report file, or null if no report is wanted
+	 * @throws ConfigurationException if cmd is null
+	 */
+	public String getMetricsOut() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(METRICS_OUT_ARGUMENT)) {
+			return cmd.getOptionValue(METRICS_OUT_ARGUMENT);
+		}
+		return null;
+	}
+
+	/**
+	 * Are the repos checked out directories rather than URLs?
+	 * 
+	 * @return if the repos are local directories
+	 * @throws ConfigurationException if cmd is null
+	 */
+	public boolean getLocalPreference() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(LOCAL_ARGUMENT)) {
+			return cmd.getOptionValue(LOCAL_ARGUMENT).equals("true");
+		}
+		return false;
+	}
+
+	/**
+	 * Get the parser to read POMs with
+	 * 
+	 * @return the parser
+	 * @throws ConfigurationException if cmd is null or the parser is not known
+	 */
+	public PomParser getParser() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		final String value = cmd.getOptionValue(PARSER_ARGUMENT, "model");
+		if (value.equals("model")) {
+			return new ModelPomParser((getRepository() == null) ? null : new File(getRepository()));
+		}
+		if (value.equals("stax")) {
+			if (getRepository() != null) {
+				throw new ConfigurationException("Only the model parser merges POMs with their parents");
+			}
+			return new StaxPomParser();
+		}
+		throw new ConfigurationException("Invalid parser '" + value + "'");
+	}
+
+	/**
+	 * Get the local Maven repository to merge POMs with their parents from
+	 * 
+	 * @return the repository directory, or null if parents are not merged
+	 * @throws ConfigurationException if cmd is null
+	 */
+	public String getRepository() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(REPOSITORY_ARGUMENT)) {
+			return cmd.getOptionValue(REPOSITORY_ARGUMENT);
+		}
+		return null;
+	}
+
+	/**
+	 * Does the user want the crawl and aggregation pipelined?
+	 * 
+	 * @return if the POMs are aggregated on a separate thread from the crawl
+	 * @throws ConfigurationException if cmd is null
+	 */
+	public boolean getPipelinePreference() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(PIPELINE_ARGUMENT)) {
+			return cmd.getOptionValue(PIPELINE_ARGUMENT).equals("true");
+		}
+		return false;
+	}
+
+	/**
+	 * Get the format to write the graph in
+	 * 
+	 * @return the format, {@link Analyser#DOT_FORMAT} if not specified
+	 * @throws ConfigurationException if cmd is null or the format is not known
+	 */
+	public String getFormat() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		final String value = cmd.getOptionValue(FORMAT_ARGUMENT, Analyser.DOT_FORMAT);
+		if (value.equals(Analyser.DOT_FORMAT) || value.equals(Analyser.EDGES_FORMAT)) {
+			return value;
+		}
+		throw new ConfigurationException("Invalid format '" + value + "'");
+	}
+
+	/**
+	 * Get what to do about dependency cycles
+	 * 
+	 * @return {@link Analyser#CYCLES_REPORT} or {@link Analyser#CYCLES_FAIL}, or null not to look for cycles
+	 * @throws ConfigurationException if cmd is null or the value is not known
+	 */
+	public String getCycles() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(CYCLES_ARGUMENT)) {
+			final String value = cmd.getOptionValue(CYCLES_ARGUMENT);
+			if (value.equals(Analyser.CYCLES_REPORT) || value.equals(Analyser.CYCLES_FAIL)) {
+				return value;
+			}
+			throw new ConfigurationException("Invalid cycles mode '" + value + "'");
+		}
+		return null;
+	}
+
+	/**
+	 * Get what to do with links implied by others
+	 * 
+	 * @return {@link Analyser#REDUCE_DROP} or {@link Analyser#REDUCE_MARK}, or null to draw them as any other
+	 * @throws ConfigurationException if cmd is null or the value is not known
+	 */
+	public String getReduce() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(REDUCE_ARGUMENT)) {
+			final String value = cmd.getOptionValue(REDUCE_ARGUMENT);
+			if (value.equals(Analyser.REDUCE_DROP) || value.equals(Analyser.REDUCE_MARK)) {
+				return value;
+			}
+			throw new ConfigurationException("Invalid reduce mode '" + value + "'");
+		}
+		return null;
+	}
+
+	/**
+	 * Get the patterns of the artifacts whose links are printed
+	 * 
+	 * @return the patterns, empty if not specified
+	 * @throws ConfigurationException if cmd is null
+	 */
+	public List<String> getIncludes() throws ConfigurationException {
+		return getList(INCLUDE_ARGUMENT);
+	}
+
+	/**
+	 * Get the patterns of the artifacts whose links are never printed
+	 * 
+	 * @return the patterns, empty if not specified
+	 * @throws ConfigurationException if cmd is null
+	 */
+	public List<String> getExcludes() throws ConfigurationException {
+		return getList(EXCLUDE_ARGUMENT);
+	}
+
+	/**
+	 * Get the scopes of the dependencies to leave out
+	 * 
+	 * @return the scopes, empty if not specified
+	 * @throws ConfigurationException if cmd is null
+	 */
+	public List<String> getExcludedScopes() throws ConfigurationException {
+		return getList(EXCLUDE_SCOPES_ARGUMENT);
+	}
+
+	/**
+	 * Get the patterns of the repo and module locations never to read
+	 * 
+	 * @return the patterns, empty if not specified
+	 * @throws ConfigurationException if cmd is null
+	 */
+	public List<String> getExcludedPaths() throws ConfigurationException {
+		return getList(EXCLUDE_PATHS_ARGUMENT);
+	}
+
+	/**
+	 * Get the comma separated values of an argument
+	 * 
+	 * @param argument the argument
+	 * @return the trimmed, non-empty values, empty if the argument is not specified
+	 * @throws ConfigurationException if cmd is null
+	 */
+	private List<String> getList(final String argument) throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		final List<String> values = new ArrayList<String>();
+		if (cmd.hasOption(argument)) {
+			for (final String value : cmd.getOptionValue(argument).split(",")) {
+				if (value.trim().length() > 0) {
+					values.add(value.trim());
+				}
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Get the time to wait for a connection
+	 * 
+	 * @return the timeout in milliseconds
+	 * @throws ConfigurationException if cmd is null or the value is not a positive number
+	 */
+	public long getConnectTimeout() throws ConfigurationException {
+		return getTimeout(CONNECT_TIMEOUT_ARGUMENT, RepoURLReader.DEFAULT_CONNECT_TIMEOUT);
+	}
+
+	/**
+	 * Get the time to wait for each response
+	 * 
+	 * @return the timeout in milliseconds
+	 * @throws ConfigurationException if cmd is null or the value is not a positive number
+	 */
+	public long getReadTimeout() throws ConfigurationException {
+		return getTimeout(READ_TIMEOUT_ARGUMENT, RepoURLReader.DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * Get the number of times to retry a failed fetch
+	 * 
+	 * @return the number of retries
+	 * @throws ConfigurationException if cmd is null or the value is not a number of at least 0
+	 */
+	public int getRetries() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(RETRIES_ARGUMENT)) {
+			final String value = cmd.getOptionValue(RETRIES_ARGUMENT);
+			try {
+				final int retries = Integer.parseInt(value);
+				if (retries >= 0) {
+					return retries;
+				}
+			} catch (final NumberFormatException e) {
+				// Fall through to the error below
+			}
+			throw new ConfigurationException("Invalid number of retries '" + value + "'");
+		}
+		return FetchScheduler.DEFAULT_MAX_RETRIES;
+	}
+
+	/**
+	 * Get the most fetches in flight to one host
+	 * 
+	 * @return the number of fetches
+	 * @throws ConfigurationException if cmd is null or the value is not a positive number
+	 */
+	public int getHostConcurrency() throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(HOST_CONCURRENCY_ARGUMENT)) {
+			final String value = cmd.getOptionValue(HOST_CONCURRENCY_ARGUMENT);
+			try {
+				final int hostConcurrency = Integer.parseInt(value);
+				if (hostConcurrency > 0) {
+					return hostConcurrency;
+				}
+			} catch (final NumberFormatException e) {
+				// Fall through to the error below
+			}
+			throw new ConfigurationException("Invalid host concurrency '" + value + "'");
+		}
+		return FetchScheduler.DEFAULT_HOST_CONCURRENCY;
+	}
+
+	/**
+	 * Get a timeout argument
+	 * 
+	 * @param argument the argument
+	 * @param defaultTimeout the timeout if the argument is not specified
+	 * @return the timeout in milliseconds
+	 * @throws ConfigurationException if cmd is null or the value is not a positive number
+	 */
+	private long getTimeout(final String argument, final long defaultTimeout) throws ConfigurationException {
+		final CommandLine cmd = getCommandLine();
+		if (cmd.hasOption(argument)) {
+			final String value = cmd.getOptionValue(argument);
+			try {
+				final long timeout = Long.parseLong(value);
+				if (timeout > 0) {
+					return timeout;
+				}
+			} catch (final NumberFormatException e) {
+				// Fall through to the error below
+			}
+			throw new ConfigurationException("Invalid timeout '" + value + "'");
+		}
+		return defaultTimeout;
+	}
 }
@@ -0,0 +1,430 @@
+package uk.me.thega;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import uk.me.thega.filter.Patterns;
+import uk.me.thega.metrics.Metrics;
+import uk.me.thega.pom.ModelPomParser;
+import uk.me.thega.pom.PomParser;
+import uk.me.thega.pom.PomSummary;
+
+/**
+ * A {@link PomSource} that crawls each repo from the pom.xml at its root,
+ * following the modules each pom declares into their sub-directories.
+ * <br>
+ * Sub-classes read a single pom.xml given the repo and the sub-directory of
+ * it; this class walks the module trees, serially or concurrently, pruning
+ * excluded locations before they are read. Each location, with the
+ * <code>..</code> of module paths resolved, is read once a crawl however
+ * many repos or aggregators reach it, so overlapping repos cost nothing
+ * extra.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public abstract class PomCrawler implements PomSource {
+
+	/** The name of the file to search for in each folder. */
+	protected static final String POM_NAME = "pom.xml";
+
+	/** The metrics to record reads and parses in, or null. */
+	private Metrics metrics;
+
+	/** The parser of each pom read. */
+	private PomParser parser = new ModelPomParser();
+
+	/** The locations never to read, or null. */
+	private Patterns excludedPaths;
+
+	/**
+	 * A pom.xml location queued for reading, and the pom found there once
+	 * it has been read. A node keeps nothing once its pom has been passed on,
+	 * but stays the node of its location for the rest of the crawl.
+	 */
+	private static final class CrawlNode {
+
+		/** The directory the pom.xml lives in, as given by {@link PomCrawler#location(String, String)}. */
+		private final String location;
+
+		/** The child modules, in the order they are declared. */
+		private final List<CrawlNode> children = new ArrayList<CrawlNode>();
+
+		/** The summary of the pom read, or null if the pom.xml could not be read. */
+		private PomSummary pom;
+
+		/** Has the crawl seen the pom read, and queued its children? */
+		private boolean read;
+
+		/** Has the pom been passed on, or skipped, already? */
+		private boolean passed;
+
+		/** The reason the location could not be read, or null. */
+		private Throwable failure;
+
+		/**
+		 * Default constructor.
+		 * 
+		 * @param location the directory of the pom.xml.
+		 */
+		CrawlNode(final String location) {
+			this.location = location;
+		}
+	}
+
+	/**
+	 * Read the pom.xml in a sub-directory of a repo.
+	 * 
+	 * @param repo the repo to search.
+	 * @param subDir the sub-directory to search, empty or ending in a '/'.
+	 * @return the summary of the pom, or null if the pom could not be read.
+	 * @throws IOException if the location itself is invalid.
+	 */
+	protected abstract PomSummary readPomAt(String repo, String subDir) throws IOException;
+
+	public void setMetrics(final Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public void setParser(final PomParser parser) {
+		this.parser = parser;
+	}
+
+	/**
+	 * Set the locations never to read, along with the modules beneath them.
+	 * <br>
+	 * Each location is matched before it is queued, so no request is made
+	 * for it at all.
+	 *
+	 * @param excludedPaths the patterns of the locations, or null to read every module.
+	 */
+	public void setExcludedPaths(final Patterns excludedPaths) {
+		this.excludedPaths = excludedPaths;
+	}
+
+	/**
+	 * Get the parser of each pom read.
+	 * 
+	 * @return the parser.
+	 */
+	protected PomParser getParser() {
+		return parser;
+	}
+
+	/**
+	 * Get the metrics to record reads and parses in.
+	 * 
+	 * @return the metrics, or null to record nothing.
+	 */
+	protected Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Describe why a pom could not be read, for the metrics.
+	 *
+	 * @param failure the failure.
+	 * @return the description.
+	 */
+	protected static String reason(final Throwable failure) {
+		final String name = failure.getClass().getSimpleName();
+		return (failure.getMessage() == null) ? name : name + ": " + failure.getMessage();
+	}
+
+	/**
+	 * Read the pom (and child modules) at the specified location.
+	 * 
+	 * @param repo the repo to read from
+	 * @return the list of Poms at the location
+	 * @throws IOException if the repo specified cannot be loaded.
+	 */
+	public List<PomSummary> readPomsAt(final String repo) throws IOException {
+		final List<PomSummary> modules = new ArrayList<PomSummary>();
+		readPomsAt(repo, collector(modules), new HashSet<String>());
+		return modules;
+	}
+
+	/**
+	 * Read the poms (and child modules) at each of the specified locations
+	 * into a list, in the order {@link #readPomsAt(List, int, PomHandler)}
+	 * passes them on.
+	 * 
+	 * @param repos the repos to read from
+	 * @param threads the maximum number of concurrent reads
+	 * @return the list of Poms at the locations
+	 * @throws IOException if a repo specified cannot be loaded or the crawl is interrupted.
+	 */
+	public List<PomSummary> readPomsAt(final List<String> repos, final int threads) throws IOException {
+		final List<PomSummary> modules = new ArrayList<PomSummary>();
+		readPomsAt(repos, threads, collector(modules));
+		return modules;
+	}
+
+	/**
+	 * Read the poms (and child modules) at each of the specified locations.
+	 * <br>
+	 * With more than one thread every repo and every discovered module is
+	 * read concurrently, and each pom is passed on once every pom before it
+	 * in the serial order has been. Nothing is kept of a pom once it has
+	 * been passed on but the locations of its modules still to be read.
+	 * <br>
+	 * A location reached a second time, by another repo or aggregator, is
+	 * not read again, and its pom and the modules beneath it are passed on
+	 * only where they first come in the serial order.
+	 * 
+	 * @param repos the repos to read from
+	 * @param threads the maximum number of concurrent reads
+	 * @param handler the handler of each pom read
+	 * @throws IOException if a repo specified cannot be loaded or the crawl is interrupted.
+	 */
+	public void readPomsAt(final List<String> repos, final int threads, final PomHandler handler) throws IOException {
+		if (threads <= 1) {
+			final Set<String> visited = new HashSet<String>();
+			for (final String repo : repos) {
+				readPomsAt(repo, handler, visited);
+			}
+			return;
+		}
+
+		// The node of each location reached, so one reached again is shared rather than read again
+		final Map<String, CrawlNode> reached = new HashMap<String, CrawlNode>();
+
+		// The nodes yet to be passed on, popped depth first to match the serial order
+		final LinkedList<CrawlNode> stack = new LinkedList<CrawlNode>();
+		// The nodes yet to be read, first found first
+		final LinkedList<CrawlNode> waiting = new LinkedList<CrawlNode>();
+		final BlockingQueue<CrawlNode> completed = new LinkedBlockingQueue<CrawlNode>();
+		// The pool only starts a thread when a blocking read is run on it
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (final String repo : repos) {
+				final String location = location(repo, "");
+				if (isExcluded(location)) {
+					continue;
+				}
+				CrawlNode root = reached.get(location);
+				if (root == null) {
+					root = new CrawlNode(location);
+					reached.put(location, root);
+					waiting.add(root);
+				}
+				stack.add(root);
+			}
+
+			int reading = 0;
+			while (reading > 0 || !waiting.isEmpty()) {
+				while (reading < threads && !waiting.isEmpty()) {
+					read(waiting.poll(), executor, completed);
+					reading++;
+				}
+
+				// Queue the children of each pom as it arrives
+				final CrawlNode node = completed.take();
+				reading--;
+				if (node.failure != null) {
+					throw node.failure;
+				}
+				node.read = true;
+				if (node.pom != null) {
+					for (final String subModule : node.pom.getModules()) {
+						final String location = location(node.location, subModule + "/");
+						if (isExcluded(location)) {
+							continue;
+						}
+						CrawlNode child = reached.get(location);
+						if (child == null) {
+							child = new CrawlNode(location);
+							reached.put(location, child);
+							waiting.add(child);
+						}
+						node.children.add(child);
+					}
+				}
+
+				// Pass on every pom now at the front of the order
+				while (!stack.isEmpty() && (stack.peek().read || stack.peek().passed)) {
+					final CrawlNode next = stack.pop();
+					if (next.passed) {
+						continue;
+					}
+					next.passed = true;
+					if (next.pom != null) {
+						handler.handlePom(next.pom);
+					}
+					for (int i = next.children.size() - 1; i >= 0; i--) {
+						stack.push(next.children.get(i));
+					}
+					next.pom = null;
+					next.children.clear();
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while reading poms");
+		} catch (final IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (final Throwable e) {
+			throw new IOException(e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Read the pom.xml in a sub-directory of a repo, without waiting for it.
+	 * <br>
+	 * By default the blocking {@link #readPomAt(String, String)} is run on
+	 * the executor given; sub-classes that can read without blocking a
+	 * thread override this, so that the crawl's concurrency is bounded by
+	 * the number of reads in flight rather than of threads.
+	 * 
+	 * @param repo the repo to search.
+	 * @param subDir the sub-directory to search, empty or ending in a '/'.
+	 * @param executor the executor to block on, with a thread for each read in flight.
+	 * @return the summary of the pom, or null if the pom could not be read,
+	 *         completed exceptionally with an {@link IOException} if the location itself is invalid.
+	 */
+	protected CompletableFuture<PomSummary> readPomAtAsync(final String repo, final String subDir, final Executor executor) {
+		return CompletableFuture.supplyAsync(new Supplier<PomSummary>() {
+			public PomSummary get() {
+				try {
+					return readPomAt(repo, subDir);
+				} catch (final IOException e) {
+					throw new CompletionException(e);
+				}
+			}
+		}, executor);
+	}
+
+	/**
+	 * Read the pom (and child modules) at the specified location, one at a
+	 * time.
+	 * 
+	 * @param repo the repo to read from
+	 * @param handler the handler of each pom read
+	 * @param visited the locations already reached, added to as more are
+	 * @throws IOException if the repo specified cannot be loaded.
+	 */
+	private void readPomsAt(final String repo, final PomHandler handler, final Set<String> visited) throws IOException {
+		final LinkedList<String> locations = new LinkedList<String>();
+		locations.push(location(repo, ""));
+
+		// Depth first, children in declared order
+		while (!locations.isEmpty()) {
+			final String location = locations.pop();
+			if (isExcluded(location) || !visited.add(location)) {
+				continue;
+			}
+			final PomSummary pom = readPomAt(location, "");
+			if (pom == null) {
+				continue;
+			}
+			handler.handlePom(pom);
+
+			final List<String> subModules = pom.getModules();
+			for (int i = subModules.size() - 1; i >= 0; i--) {
+				locations.push(location(location, subModules.get(i) + "/"));
+			}
+		}
+	}
+
+	/**
+	 * Is a location excluded from the crawl?
+	 * 
+	 * @param location the directory of the pom.xml, as given by {@link #location(String, String)}.
+	 * @return true if the pom there, and the modules beneath it, are not read.
+	 */
+	private boolean isExcluded(final String location) {
+		return excludedPaths != null && excludedPaths.matches(location);
+	}
+
+	/**
+	 * Get the location of a pom.xml, the same however it was reached:
+	 * <code>.</code> and <code>..</code> segments of module paths are
+	 * resolved, and the repo ends in a '/'.
+	 * 
+	 * @param repo the repo.
+	 * @param subDir the sub-directory of the repo, empty or ending in a '/'.
+	 * @return the location of the directory holding the pom.xml.
+	 */
+	static String location(final String repo, final String subDir) {
+		final String path = (repo.endsWith("/") ? repo : repo + "/") + subDir;
+		if (!path.contains("./")) {
+			return path;
+		}
+
+		final LinkedList<String> segments = new LinkedList<String>();
+		for (final String segment : path.split("/", -1)) {
+			if (segment.equals(".")) {
+				continue;
+			}
+			if (segment.equals("..") && !segments.isEmpty() && segments.peekLast().length() > 0 && !segments.peekLast().equals("..")
+					&& !segments.peekLast().endsWith(":")) {
+				segments.removeLast();
+				continue;
+			}
+			segments.add(segment);
+		}
+		final StringBuilder location = new StringBuilder();
+		for (final String segment : segments) {
+			location.append(segment).append('/');
+		}
+		// The last segment is the empty one after the final '/'
+		return location.substring(0, location.length() - 1);
+	}
+
+	/**
+	 * Create a handler that adds each pom to a list.
+	 * 
+	 * @param modules the list.
+	 * @return the handler.
+	 */
+	private static PomHandler collector(final List<PomSummary> modules) {
+		return new PomHandler() {
+			public void handlePom(final PomSummary pom) {
+				modules.add(pom);
+			}
+		};
+	}
+
+	/**
+	 * Start reading the pom for a crawl node.
+	 * 
+	 * @param node the node to populate.
+	 * @param executor the executor to block on.
+	 * @param completed the queue to add the node to once populated.
+	 */
+	private void read(final CrawlNode node, final Executor executor, final BlockingQueue<CrawlNode> completed) {
+		final CompletableFuture<PomSummary> read;
+		try {
+			read = readPomAtAsync(node.location, "", executor);
+		} catch (final RuntimeException e) {
+			node.failure = e;
+			completed.add(node);
+			return;
+		}
+		read.whenComplete(new BiConsumer<PomSummary, Throwable>() {
+			public void accept(final PomSummary pom, final Throwable failure) {
+				node.pom = pom;
+				node.failure = (failure instanceof CompletionException && failure.getCause() != null) ? failure.getCause() : failure;
+				completed.add(node);
+			}
+		});
+	}
+}
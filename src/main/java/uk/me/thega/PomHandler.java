@@ -0,0 +1,23 @@
+package uk.me.thega;
+
+import java.io.IOException;
+
+import uk.me.thega.pom.PomSummary;
+
+/**
+ * Receiver of the poms read by a {@link PomSource}, one at a time as they
+ * are read, so that nothing need hold on to every pom of a crawl.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public interface PomHandler {
+
+	/**
+	 * Handle a pom.
+	 * 
+	 * @param pom the summary of the pom.
+	 * @throws IOException if the pom cannot be handled, which ends the read.
+	 */
+	void handlePom(PomSummary pom) throws IOException;
+}
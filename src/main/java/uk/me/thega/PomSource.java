@@ -0,0 +1,57 @@
+package uk.me.thega;
+
+import java.io.IOException;
+import java.util.List;
+
+import uk.me.thega.filter.Patterns;
+import uk.me.thega.metrics.Metrics;
+import uk.me.thega.pom.PomParser;
+
+/**
+ * A source of the poms of the modules in a list of repos, wherever they are
+ * kept.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public interface PomSource {
+
+	/**
+	 * Set the metrics to record the time taken to read and parse each pom in.
+	 * 
+	 * @param metrics the metrics, or null to record nothing.
+	 */
+	void setMetrics(Metrics metrics);
+
+	/**
+	 * Set the parser of each pom read.
+	 * 
+	 * @param parser the parser.
+	 */
+	void setParser(PomParser parser);
+
+	/**
+	 * Set the locations never to read, along with the modules beneath them.
+	 * <br>
+	 * A location is matched as the repo, ending in a '/', followed by the
+	 * sub-directory of the module, empty or ending in a '/'.
+	 * 
+	 * @param excludedPaths the patterns of the locations, or null to read every module.
+	 */
+	void setExcludedPaths(Patterns excludedPaths);
+
+	/**
+	 * Read the poms (and child modules) at each of the specified locations,
+	 * each repo in turn and the modules of each depth first in the order
+	 * they are declared.
+	 * <br>
+	 * Each pom is passed to the handler on the calling thread, in that
+	 * order, as soon as it and every pom before it have been read.
+	 * 
+	 * @param repos the repos to read from
+	 * @param threads the maximum number of concurrent reads
+	 * @param handler the handler of each pom read
+	 * @throws IOException if a repo specified cannot be loaded or the read is interrupted.
+	 */
+	void readPomsAt(List<String> repos, int threads, PomHandler handler) throws IOException;
+}
@@ -0,0 +1,69 @@
+package uk.me.thega.file;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import uk.me.thega.PomCrawler;
+import uk.me.thega.metrics.Metrics;
+import uk.me.thega.pom.PomSummary;
+
+/**
+ * Class to read the poms of repos already checked out on disk, each repo
+ * being the directory of the pom.xml at its root.
+ * <br>
+ * Poms are read straight from their {@link Path}s, with no HTTP involved, so
+ * concurrent reads pay off as soon as parsing outweighs the disk.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public class RepoDirectoryReader extends PomCrawler {
+
+	/** The host reads are recorded against in the metrics. */
+	static final String METRICS_HOST = "file";
+
+	@Override
+	protected PomSummary readPomAt(final String repo, final String subDir) throws IOException {
+		final Path path;
+		try {
+			path = Paths.get(repo, subDir, POM_NAME);
+		} catch (final InvalidPathException e) {
+			throw new IOException("Invalid repo directory '" + repo + "'", e);
+		}
+
+		final Metrics metrics = getMetrics();
+		final long start = System.nanoTime();
+		final byte[] body;
+		try {
+			body = Files.readAllBytes(path);
+		} catch (final IOException e) {
+			if (metrics != null) {
+				metrics.recordFetch(METRICS_HOST, System.nanoTime() - start, false);
+				metrics.recordFailure(path.toString(), reason(e));
+			}
+			return null;
+		}
+		final long read = System.nanoTime();
+		if (metrics != null) {
+			metrics.recordFetch(METRICS_HOST, read - start, true);
+		}
+
+		try {
+			final PomSummary pom = getParser().parse(new ByteArrayInputStream(body));
+			if (metrics != null) {
+				metrics.recordParse(System.nanoTime() - read);
+			}
+			return pom;
+		} catch (final IOException | RuntimeException e) {
+			// A file that is not a pom fails only that module
+			if (metrics != null) {
+				metrics.recordFailure(path.toString(), reason(e));
+			}
+			return null;
+		}
+	}
+}
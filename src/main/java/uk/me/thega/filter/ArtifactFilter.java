@@ -0,0 +1,95 @@
+package uk.me.thega.filter;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filter of the artifacts and dependency scopes an analysis covers.
+ * <br>
+ * Artifacts are matched as <code>groupId:artifactId</code> against include
+ * and exclude {@link Patterns}: an artifact matching an exclude is
+ * {@link #EXCLUDED}, otherwise one matching an include, or any artifact if
+ * there are no includes, is {@link #INCLUDED}, and the rest are
+ * {@link #UNMATCHED}. A link between two artifacts is shown if neither is
+ * excluded and at least one is included, so classifying each artifact once
+ * is enough to decide every link.
+ * <br>
+ * Instances are immutable.
+ *
+ * @author pwhittlesea
+ *
+ */
+public final class ArtifactFilter {
+
+	/** The class of an artifact that matches an include, never 0. */
+	public static final int INCLUDED = 1;
+
+	/** The class of an artifact that matches neither an include nor an exclude, never 0. */
+	public static final int UNMATCHED = 2;
+
+	/** The class of an artifact that matches an exclude, never 0. */
+	public static final int EXCLUDED = 3;
+
+	/** The scope of a dependency that does not give one. */
+	static final String DEFAULT_SCOPE = "compile";
+
+	/** The artifacts included. */
+	private final Patterns includes;
+
+	/** The artifacts excluded. */
+	private final Patterns excludes;
+
+	/** The scopes of the dependencies excluded. */
+	private final Set<String> excludedScopes;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param includes the patterns of the artifacts included, or empty to include all.
+	 * @param excludes the patterns of the artifacts excluded.
+	 * @param excludedScopes the scopes of the dependencies excluded.
+	 */
+	public ArtifactFilter(final List<String> includes, final List<String> excludes, final Collection<String> excludedScopes) {
+		this.includes = new Patterns(includes);
+		this.excludes = new Patterns(excludes);
+		this.excludedScopes = new HashSet<String>(excludedScopes);
+	}
+
+	/**
+	 * Classify an artifact.
+	 *
+	 * @param groupId the groupId.
+	 * @param artifactId the artifactId.
+	 * @return {@link #INCLUDED}, {@link #UNMATCHED} or {@link #EXCLUDED}.
+	 */
+	public int classify(final String groupId, final String artifactId) {
+		final String artifactUUID = groupId + ":" + artifactId;
+		if (excludes.matches(artifactUUID)) {
+			return EXCLUDED;
+		}
+		return (includes.isEmpty() || includes.matches(artifactUUID)) ? INCLUDED : UNMATCHED;
+	}
+
+	/**
+	 * Is a link between two artifacts shown?
+	 *
+	 * @param from the class of one artifact.
+	 * @param to the class of the other.
+	 * @return true if neither is excluded and at least one is included.
+	 */
+	public static boolean isLinked(final int from, final int to) {
+		return from != EXCLUDED && to != EXCLUDED && (from == INCLUDED || to == INCLUDED);
+	}
+
+	/**
+	 * Is a dependency scope included?
+	 *
+	 * @param scope the scope, or null for the default scope.
+	 * @return true if dependencies in the scope are included.
+	 */
+	public boolean includesScope(final String scope) {
+		return !excludedScopes.contains((scope == null) ? DEFAULT_SCOPE : scope);
+	}
+}
@@ -0,0 +1,96 @@
+package uk.me.thega.filter;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A set of patterns, each compiled once, which a value matches if it
+ * matches any one of them in full.
+ * <br>
+ * Each pattern is either <code>regex:</code> followed by a
+ * {@link Pattern regular expression}, or a glob, optionally prefixed with
+ * <code>glob:</code>, in which <code>*</code> matches any run of characters
+ * and <code>?</code> any single character.
+ * <br>
+ * Instances are immutable.
+ *
+ * @author pwhittlesea
+ *
+ */
+public final class Patterns {
+
+	/** The prefix of a regular expression. */
+	static final String REGEX_PREFIX = "regex:";
+
+	/** The prefix of a glob. */
+	static final String GLOB_PREFIX = "glob:";
+
+	/** The compiled patterns. */
+	private final Pattern[] patterns;
+
+	/**
+	 * Compile some patterns.
+	 *
+	 * @param patterns the patterns, may be empty.
+	 * @throws java.util.regex.PatternSyntaxException if a regular expression is invalid.
+	 */
+	public Patterns(final List<String> patterns) {
+		this.patterns = new Pattern[patterns.size()];
+		for (int i = 0; i < this.patterns.length; i++) {
+			this.patterns[i] = Pattern.compile(toRegex(patterns.get(i)));
+		}
+	}
+
+	/**
+	 * Are there no patterns?
+	 *
+	 * @return true if nothing matches.
+	 */
+	public boolean isEmpty() {
+		return patterns.length == 0;
+	}
+
+	/**
+	 * Does a value match any of the patterns in full?
+	 *
+	 * @param value the value.
+	 * @return true if it matches.
+	 */
+	public boolean matches(final CharSequence value) {
+		for (final Pattern pattern : patterns) {
+			if (pattern.matcher(value).matches()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get the regular expression of a pattern.
+	 *
+	 * @param pattern the pattern.
+	 * @return the regular expression.
+	 */
+	static String toRegex(final String pattern) {
+		if (pattern.startsWith(REGEX_PREFIX)) {
+			return pattern.substring(REGEX_PREFIX.length());
+		}
+		final String glob = (pattern.startsWith(GLOB_PREFIX)) ? pattern.substring(GLOB_PREFIX.length()) : pattern;
+		final StringBuilder regex = new StringBuilder();
+		int literal = 0;
+		for (int i = 0; i < glob.length(); i++) {
+			final char c = glob.charAt(i);
+			if (c == '*' || c == '?') {
+				if (literal < i) {
+					regex.append(Pattern.quote(glob.substring(literal, i)));
+				}
+				regex.append((c == '*') ? ".*" : ".");
+				literal = i + 1;
+			}
+		}
+		if (literal < glob.length()) {
+			regex.append(Pattern.quote(glob.substring(literal)));
+		}
+		return regex.toString();
+	}
+}
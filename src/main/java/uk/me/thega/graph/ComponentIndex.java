@@ -0,0 +1,226 @@
+package uk.me.thega.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index of the strongly connected components of a {@link DependencyGraph}:
+ * the largest sets of artifacts that each depend upon every other, however
+ * indirectly. A component of more than one artifact, or of one that depends
+ * upon itself, is a dependency cycle.
+ * <br>
+ * The components are found by Tarjan's algorithm, once, in time linear in
+ * the number of artifacts and edges. The depth first search keeps its own
+ * stack rather than recursing, so it is bounded by the heap rather than the
+ * thread's stack however long the chains of dependencies are.
+ * <br>
+ * Components are numbered in the order they are completed, so every edge
+ * between two components goes from a higher number to a lower one: in
+ * ascending order, each component comes after everything it depends upon.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class ComponentIndex {
+
+	/** The graph indexed. */
+	private final DependencyGraph graph;
+
+	/** The followed flag by edge Id, or null to follow every edge. */
+	private final boolean[] followed;
+
+	/** The component of each artifact. */
+	private final int[] components;
+
+	/** The number of components. */
+	private int componentCount;
+
+	/** The cycle flag of each component, by component number. */
+	private boolean[] cyclic;
+
+	/**
+	 * Index the components of a graph, following every edge.
+	 *
+	 * @param graph the graph.
+	 */
+	public ComponentIndex(final DependencyGraph graph) {
+		this(graph, null);
+	}
+
+	/**
+	 * Index the components of a graph, following only some of its edges,
+	 * such as those of included scopes.
+	 *
+	 * @param graph the graph.
+	 * @param followed the followed flag by edge Id, or null to follow every edge.
+	 */
+	public ComponentIndex(final DependencyGraph graph, final boolean[] followed) {
+		this.graph = graph;
+		this.followed = followed;
+
+		final int count = graph.getArtifactCount();
+		final DependencyGraph.Index dependencies = graph.getDependencies();
+		components = new int[count];
+		cyclic = new boolean[Math.max(count, 1)];
+
+		// The order each artifact was reached in, and the earliest reachable from it still on the stack
+		final int[] order = new int[count];
+		final int[] low = new int[count];
+		Arrays.fill(order, -1);
+		int reached = 0;
+
+		// The artifacts not yet assigned a component, in the order reached
+		final int[] stack = new int[count];
+		final boolean[] stacked = new boolean[count];
+		int stackSize = 0;
+
+		// The artifacts being searched from, and the position in each's edges
+		final int[] path = new int[count];
+		final int[] positions = new int[count];
+		int pathSize = 0;
+
+		for (int root = 0; root < count; root++) {
+			if (order[root] != -1) {
+				continue;
+			}
+			order[root] = low[root] = reached++;
+			stack[stackSize++] = root;
+			stacked[root] = true;
+			path[pathSize] = root;
+			positions[pathSize++] = dependencies.start(root);
+
+			while (pathSize > 0) {
+				final int artifact = path[pathSize - 1];
+				final int position = positions[pathSize - 1];
+				if (position < dependencies.end(artifact)) {
+					positions[pathSize - 1]++;
+					final int edge = dependencies.get(position);
+					if (!isFollowed(edge)) {
+						continue;
+					}
+					final int dependency = graph.getDependency(edge);
+					if (order[dependency] == -1) {
+						// Descend into the dependency
+						order[dependency] = low[dependency] = reached++;
+						stack[stackSize++] = dependency;
+						stacked[dependency] = true;
+						path[pathSize] = dependency;
+						positions[pathSize++] = dependencies.start(dependency);
+					} else if (stacked[dependency]) {
+						low[artifact] = Math.min(low[artifact], order[dependency]);
+					}
+					continue;
+				}
+
+				// Every edge is followed, so return to the artifact we came from
+				pathSize--;
+				if (low[artifact] == order[artifact]) {
+					int member;
+					int size = 0;
+					do {
+						member = stack[--stackSize];
+						stacked[member] = false;
+						components[member] = componentCount;
+						size++;
+					} while (member != artifact);
+					cyclic[componentCount++] = size > 1;
+				}
+				if (pathSize > 0) {
+					final int dependee = path[pathSize - 1];
+					low[dependee] = Math.min(low[dependee], low[artifact]);
+				}
+			}
+		}
+
+		// An artifact that depends upon itself is a cycle of one
+		for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+			if (graph.getDependee(edge) == graph.getDependency(edge) && isFollowed(edge)) {
+				cyclic[components[graph.getDependee(edge)]] = true;
+			}
+		}
+		cyclic = Arrays.copyOf(cyclic, componentCount);
+	}
+
+	/**
+	 * Is an edge followed?
+	 *
+	 * @param edge the Id of the edge.
+	 * @return true if the edge is followed.
+	 */
+	boolean isFollowed(final int edge) {
+		return followed == null || followed[edge];
+	}
+
+	/**
+	 * Get the number of components.
+	 *
+	 * @return the number of components.
+	 */
+	public int getComponentCount() {
+		return componentCount;
+	}
+
+	/**
+	 * Get the component of an artifact.
+	 *
+	 * @param artifact the Id of the artifact.
+	 * @return the component number.
+	 */
+	public int getComponent(final int artifact) {
+		return components[artifact];
+	}
+
+	/**
+	 * Is a component a dependency cycle?
+	 *
+	 * @param component the component number.
+	 * @return true if it has more than one artifact, or one that depends upon itself.
+	 */
+	public boolean isCyclic(final int component) {
+		return cyclic[component];
+	}
+
+	/**
+	 * Find the dependency cycles of the graph.
+	 *
+	 * @return the Ids of the artifacts of each cycle, in ascending order, ordered by their first artifact.
+	 */
+	public List<int[]> findCycles() {
+		final List<int[]> cycles = new ArrayList<int[]>();
+		final int[] cycleOf = new int[componentCount];
+		Arrays.fill(cycleOf, -1);
+		final int[] sizes = new int[componentCount];
+		for (int artifact = 0; artifact < components.length; artifact++) {
+			sizes[components[artifact]]++;
+		}
+		final int[] filled = new int[componentCount];
+		for (int artifact = 0; artifact < components.length; artifact++) {
+			final int component = components[artifact];
+			if (!cyclic[component]) {
+				continue;
+			}
+			if (cycleOf[component] == -1) {
+				cycleOf[component] = cycles.size();
+				cycles.add(new int[sizes[component]]);
+			}
+			cycles.get(cycleOf[component])[filled[component]++] = artifact;
+		}
+		return cycles;
+	}
+
+	/**
+	 * Find the edges that are part of a dependency cycle: those followed
+	 * between two artifacts of the same cyclic component.
+	 *
+	 * @return the cycle flag by edge Id.
+	 */
+	public boolean[] findCycleEdges() {
+		final boolean[] inCycle = new boolean[graph.getEdgeCount()];
+		for (int edge = 0; edge < inCycle.length; edge++) {
+			final int component = components[graph.getDependee(edge)];
+			inCycle[edge] = cyclic[component] && component == components[graph.getDependency(edge)] && isFollowed(edge);
+		}
+		return inCycle;
+	}
+}
@@ -0,0 +1,606 @@
+package uk.me.thega.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact graph of the dependencies between artifacts.
+ * <br>
+ * Every groupId, groupId:artifactId pair, version and scope is interned into
+ * an <code>int</code> once, as it is added. Edges are held in parallel
+ * primitive arrays, and the dependencies and dependents of each artifact are
+ * indexed in compressed sparse row form, built on first use after the graph
+ * changes.
+ * <br>
+ * This class is not thread safe.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class DependencyGraph {
+
+	/** The initial capacity of the growable arrays. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** The scopes narrower than compile, widest first. */
+	private static final List<String> SCOPE_ORDER = Arrays.asList("runtime", "provided", "system", "test");
+
+	/**
+	 * A compressed sparse row index: the values for key <code>k</code> are
+	 * <code>get(start(k))</code> up to, but excluding, <code>get(end(k))</code>.
+	 */
+	public static final class Index {
+
+		/** The offset of the first value of each key, plus a final end offset. */
+		private final int[] offsets;
+
+		/** The values, ordered by key. */
+		private final int[] values;
+
+		/**
+		 * Default constructor.
+		 *
+		 * @param offsets the offsets by key.
+		 * @param values the values.
+		 */
+		Index(final int[] offsets, final int[] values) {
+			this.offsets = offsets;
+			this.values = values;
+		}
+
+		/**
+		 * Get the position of the first value for a key.
+		 *
+		 * @param key the key.
+		 * @return the start position.
+		 */
+		public int start(final int key) {
+			return offsets[key];
+		}
+
+		/**
+		 * Get the position after the last value for a key.
+		 *
+		 * @param key the key.
+		 * @return the end position.
+		 */
+		public int end(final int key) {
+			return offsets[key + 1];
+		}
+
+		/**
+		 * Get the value at a position.
+		 *
+		 * @param position the position.
+		 * @return the value.
+		 */
+		public int get(final int position) {
+			return values[position];
+		}
+	}
+
+	/** The Ids of each groupId. */
+	private final Map<String, Integer> groupIds = new HashMap<String, Integer>();
+
+	/** The groupId of each group Id. */
+	private final List<String> groupNames = new ArrayList<String>();
+
+	/** The Ids of each artifactId, by group Id. */
+	private final List<Map<String, Integer>> artifactIdsByGroup = new ArrayList<Map<String, Integer>>();
+
+	/** The Ids of each version. */
+	private final Map<String, Integer> versionIds = new HashMap<String, Integer>();
+
+	/** The version of each version Id. */
+	private final List<String> versionNames = new ArrayList<String>();
+
+	/** The Ids of each scope. */
+	private final Map<String, Integer> scopeIds = new HashMap<String, Integer>();
+
+	/** The scope of each scope Id. */
+	private final List<String> scopeNames = new ArrayList<String>();
+
+	/** The group Id of each artifact. */
+	private int[] artifactGroups = new int[INITIAL_CAPACITY];
+
+	/** The artifactId of each artifact. */
+	private String[] artifactNames = new String[INITIAL_CAPACITY];
+
+	/** The number of artifacts. */
+	private int artifactCount = 0;
+
+	/** The depending artifact of each edge. */
+	private int[] edgeDependees = new int[INITIAL_CAPACITY];
+
+	/** The depended upon artifact of each edge. */
+	private int[] edgeDependencies = new int[INITIAL_CAPACITY];
+
+	/** The version Id of each edge. */
+	private int[] edgeVersions = new int[INITIAL_CAPACITY];
+
+	/** The scope Id of each edge. */
+	private int[] edgeScopes = new int[INITIAL_CAPACITY];
+
+	/** The number of edges. */
+	private int edgeCount = 0;
+
+	/** Open addressed hash table of edge Ids plus one, zero when empty, or null if not yet built. */
+	private int[] edgeTable = new int[INITIAL_CAPACITY * 2];
+
+	/** The outgoing edges of each artifact, or null if not yet built. */
+	private Index dependencies;
+
+	/** The incoming edges of each artifact, or null if not yet built. */
+	private Index dependents;
+
+	/** The artifacts of each group, or null if not yet built. */
+	private Index groupMembers;
+
+	/**
+	 * Default constructor, for an empty graph.
+	 */
+	public DependencyGraph() {
+	}
+
+	/**
+	 * Construct a graph from its interned names and edge arrays, as read
+	 * by {@link GraphSnapshot}.
+	 * <br>
+	 * The arrays are taken as they are, and the edge hash table is only
+	 * built if an edge is added, so a graph that is only read costs nothing
+	 * per edge beyond the arrays themselves.
+	 *
+	 * @param groups the groupId of each group Id.
+	 * @param artifactGroups the group Id of each artifact.
+	 * @param artifactNames the artifactId of each artifact.
+	 * @param versions the version of each version Id.
+	 * @param scopes the scope of each scope Id.
+	 * @param edgeDependees the depending artifact of each edge.
+	 * @param edgeDependencies the depended upon artifact of each edge.
+	 * @param edgeVersions the version Id of each edge.
+	 * @param edgeScopes the scope Id of each edge.
+	 */
+	DependencyGraph(final String[] groups, final int[] artifactGroups, final String[] artifactNames, final String[] versions, final String[] scopes,
+			final int[] edgeDependees, final int[] edgeDependencies, final int[] edgeVersions, final int[] edgeScopes) {
+		for (final String group : groups) {
+			groupIds.put(group, groupNames.size());
+			groupNames.add(group);
+			artifactIdsByGroup.add(new HashMap<String, Integer>());
+		}
+		for (int artifact = 0; artifact < artifactNames.length; artifact++) {
+			artifactIdsByGroup.get(artifactGroups[artifact]).put(artifactNames[artifact], artifact);
+		}
+		for (final String version : versions) {
+			versionIds.put(version, versionNames.size());
+			versionNames.add(version);
+		}
+		for (final String scope : scopes) {
+			scopeIds.put(scope, scopeNames.size());
+			scopeNames.add(scope);
+		}
+
+		// Growing an array doubles it, so it must not be empty
+		this.artifactGroups = (artifactNames.length == 0) ? new int[INITIAL_CAPACITY] : artifactGroups;
+		this.artifactNames = (artifactNames.length == 0) ? new String[INITIAL_CAPACITY] : artifactNames;
+		artifactCount = artifactNames.length;
+		final boolean empty = edgeDependees.length == 0;
+		this.edgeDependees = (empty) ? new int[INITIAL_CAPACITY] : edgeDependees;
+		this.edgeDependencies = (empty) ? new int[INITIAL_CAPACITY] : edgeDependencies;
+		this.edgeVersions = (empty) ? new int[INITIAL_CAPACITY] : edgeVersions;
+		this.edgeScopes = (empty) ? new int[INITIAL_CAPACITY] : edgeScopes;
+		edgeCount = edgeDependees.length;
+		edgeTable = null;
+	}
+
+	/**
+	 * Add an artifact, if it is not already present.
+	 *
+	 * @param groupId the groupId of the artifact.
+	 * @param artifactId the artifactId of the artifact.
+	 * @return the Id of the artifact.
+	 */
+	public int addArtifact(final String groupId, final String artifactId) {
+		Integer group = groupIds.get(groupId);
+		if (group == null) {
+			group = groupNames.size();
+			groupIds.put(groupId, group);
+			groupNames.add(groupId);
+			artifactIdsByGroup.add(new HashMap<String, Integer>());
+			groupMembers = null;
+		}
+
+		final Map<String, Integer> artifactIds = artifactIdsByGroup.get(group);
+		final Integer existing = artifactIds.get(artifactId);
+		if (existing != null) {
+			return existing;
+		}
+
+		if (artifactCount == artifactNames.length) {
+			artifactGroups = Arrays.copyOf(artifactGroups, artifactCount * 2);
+			artifactNames = Arrays.copyOf(artifactNames, artifactCount * 2);
+		}
+		final int artifact = artifactCount++;
+		artifactGroups[artifact] = group;
+		artifactNames[artifact] = artifactId;
+		artifactIds.put(artifactId, artifact);
+
+		dependencies = null;
+		dependents = null;
+		groupMembers = null;
+		return artifact;
+	}
+
+	/**
+	 * Find an artifact.
+	 *
+	 * @param groupId the groupId of the artifact.
+	 * @param artifactId the artifactId of the artifact.
+	 * @return the Id of the artifact, or -1 if it is not present.
+	 */
+	public int findArtifact(final String groupId, final String artifactId) {
+		final Integer group = groupIds.get(groupId);
+		if (group == null) {
+			return -1;
+		}
+		final Integer artifact = artifactIdsByGroup.get(group).get(artifactId);
+		return (artifact == null) ? -1 : artifact;
+	}
+
+	/**
+	 * Add a version, if it is not already present.
+	 *
+	 * @param version the version, may be null.
+	 * @return the Id of the version.
+	 */
+	public int addVersion(final String version) {
+		Integer id = versionIds.get(version);
+		if (id == null) {
+			id = versionNames.size();
+			versionIds.put(version, id);
+			versionNames.add(version);
+		}
+		return id;
+	}
+
+	/**
+	 * Add a scope, if it is not already present.
+	 *
+	 * @param scope the scope, may be null.
+	 * @return the Id of the scope.
+	 */
+	public int addScope(final String scope) {
+		Integer id = scopeIds.get(scope);
+		if (id == null) {
+			id = scopeNames.size();
+			scopeIds.put(scope, id);
+			scopeNames.add(scope);
+		}
+		return id;
+	}
+
+	/**
+	 * Add a dependency of one artifact upon a version of another, with no
+	 * scope given, if it is not already present.
+	 *
+	 * @param dependee the Id of the depending artifact.
+	 * @param dependency the Id of the artifact depended upon.
+	 * @param version the Id of the version depended upon.
+	 * @return true if the edge was added.
+	 */
+	public boolean addDependency(final int dependee, final int dependency, final int version) {
+		return addDependency(dependee, dependency, version, addScope(null));
+	}
+
+	/**
+	 * Add a dependency of one artifact upon a version of another, if it is
+	 * not already present.
+	 * <br>
+	 * An edge is the same whatever its scope, so a dependency declared
+	 * again in another scope is not added again; the edge keeps the widest
+	 * of its scopes, so it is not lost when a narrower one is excluded.
+	 *
+	 * @param dependee the Id of the depending artifact.
+	 * @param dependency the Id of the artifact depended upon.
+	 * @param version the Id of the version depended upon.
+	 * @param scope the Id of the scope of the dependency.
+	 * @return true if the edge was added.
+	 */
+	public boolean addDependency(final int dependee, final int dependency, final int version, final int scope) {
+		if (edgeTable == null) {
+			// A graph read from a snapshot has no table until it changes
+			buildEdgeTable(Integer.highestOneBit(Math.max(edgeCount, INITIAL_CAPACITY)) * 4);
+		}
+		int slot = hash(dependee, dependency, version) & (edgeTable.length - 1);
+		while (edgeTable[slot] != 0) {
+			final int edge = edgeTable[slot] - 1;
+			if (edgeDependees[edge] == dependee && edgeDependencies[edge] == dependency && edgeVersions[edge] == version) {
+				if (getScopeRank(scope) < getScopeRank(edgeScopes[edge])) {
+					edgeScopes[edge] = scope;
+				}
+				return false;
+			}
+			slot = (slot + 1) & (edgeTable.length - 1);
+		}
+
+		if (edgeCount == edgeDependees.length) {
+			edgeDependees = Arrays.copyOf(edgeDependees, edgeCount * 2);
+			edgeDependencies = Arrays.copyOf(edgeDependencies, edgeCount * 2);
+			edgeVersions = Arrays.copyOf(edgeVersions, edgeCount * 2);
+			edgeScopes = Arrays.copyOf(edgeScopes, edgeCount * 2);
+		}
+		final int edge = edgeCount++;
+		edgeDependees[edge] = dependee;
+		edgeDependencies[edge] = dependency;
+		edgeVersions[edge] = version;
+		edgeScopes[edge] = scope;
+		edgeTable[slot] = edge + 1;
+
+		// Keep the table at most half full
+		if (edgeCount * 2 > edgeTable.length) {
+			buildEdgeTable(edgeTable.length * 2);
+		}
+
+		dependencies = null;
+		dependents = null;
+		return true;
+	}
+
+	/**
+	 * Rank a scope by how widely its dependencies are used: compile, then
+	 * runtime, provided, system, test and any other scope.
+	 *
+	 * @param scope the Id of the scope.
+	 * @return the rank, lowest for the widest.
+	 */
+	private int getScopeRank(final int scope) {
+		final String name = scopeNames.get(scope);
+		if (name == null || name.equals("compile")) {
+			return 0;
+		}
+		final int rank = SCOPE_ORDER.indexOf(name);
+		return (rank < 0) ? SCOPE_ORDER.size() + 1 : rank + 1;
+	}
+
+	/**
+	 * Get the number of artifacts.
+	 *
+	 * @return the number of artifacts.
+	 */
+	public int getArtifactCount() {
+		return artifactCount;
+	}
+
+	/**
+	 * Get the number of groups.
+	 *
+	 * @return the number of groups.
+	 */
+	public int getGroupCount() {
+		return groupNames.size();
+	}
+
+	/**
+	 * Get the number of edges.
+	 *
+	 * @return the number of edges.
+	 */
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * Get the number of versions.
+	 *
+	 * @return the number of versions.
+	 */
+	public int getVersionCount() {
+		return versionNames.size();
+	}
+
+	/**
+	 * Get the number of scopes.
+	 *
+	 * @return the number of scopes.
+	 */
+	public int getScopeCount() {
+		return scopeNames.size();
+	}
+
+	/**
+	 * Get the group Id of an artifact.
+	 *
+	 * @param artifact the Id of the artifact.
+	 * @return the group Id.
+	 */
+	public int getGroup(final int artifact) {
+		return artifactGroups[artifact];
+	}
+
+	/**
+	 * Get the groupId of a group.
+	 *
+	 * @param group the group Id.
+	 * @return the groupId.
+	 */
+	public String getGroupName(final int group) {
+		return groupNames.get(group);
+	}
+
+	/**
+	 * Get the groupId of an artifact.
+	 *
+	 * @param artifact the Id of the artifact.
+	 * @return the groupId.
+	 */
+	public String getGroupId(final int artifact) {
+		return groupNames.get(artifactGroups[artifact]);
+	}
+
+	/**
+	 * Get the artifactId of an artifact.
+	 *
+	 * @param artifact the Id of the artifact.
+	 * @return the artifactId.
+	 */
+	public String getArtifactId(final int artifact) {
+		return artifactNames[artifact];
+	}
+
+	/**
+	 * Get a version.
+	 *
+	 * @param version the Id of the version.
+	 * @return the version, may be null.
+	 */
+	public String getVersion(final int version) {
+		return versionNames.get(version);
+	}
+
+	/**
+	 * Get a scope.
+	 *
+	 * @param scope the Id of the scope.
+	 * @return the scope, may be null.
+	 */
+	public String getScope(final int scope) {
+		return scopeNames.get(scope);
+	}
+
+	/**
+	 * Get the depending artifact of an edge.
+	 *
+	 * @param edge the Id of the edge.
+	 * @return the Id of the depending artifact.
+	 */
+	public int getDependee(final int edge) {
+		return edgeDependees[edge];
+	}
+
+	/**
+	 * Get the artifact depended upon by an edge.
+	 *
+	 * @param edge the Id of the edge.
+	 * @return the Id of the artifact depended upon.
+	 */
+	public int getDependency(final int edge) {
+		return edgeDependencies[edge];
+	}
+
+	/**
+	 * Get the version depended upon by an edge.
+	 *
+	 * @param edge the Id of the edge.
+	 * @return the Id of the version.
+	 */
+	public int getEdgeVersion(final int edge) {
+		return edgeVersions[edge];
+	}
+
+	/**
+	 * Get the scope of an edge.
+	 *
+	 * @param edge the Id of the edge.
+	 * @return the Id of the scope.
+	 */
+	public int getEdgeScope(final int edge) {
+		return edgeScopes[edge];
+	}
+
+	/**
+	 * Get the edges from each artifact to the artifacts it depends upon,
+	 * in the order they were added.
+	 *
+	 * @return the edge Ids by depending artifact Id.
+	 */
+	public Index getDependencies() {
+		if (dependencies == null) {
+			dependencies = buildIndex(artifactCount, edgeDependees, edgeCount);
+		}
+		return dependencies;
+	}
+
+	/**
+	 * Get the edges to each artifact from the artifacts that depend upon it,
+	 * in the order they were added.
+	 *
+	 * @return the edge Ids by depended upon artifact Id.
+	 */
+	public Index getDependents() {
+		if (dependents == null) {
+			dependents = buildIndex(artifactCount, edgeDependencies, edgeCount);
+		}
+		return dependents;
+	}
+
+	/**
+	 * Get the artifacts in each group, in the order they were added.
+	 *
+	 * @return the artifact Ids by group Id.
+	 */
+	public Index getGroupMembers() {
+		if (groupMembers == null) {
+			groupMembers = buildIndex(groupNames.size(), artifactGroups, artifactCount);
+		}
+		return groupMembers;
+	}
+
+	/**
+	 * Build an index over <code>keys[0..count)</code> by counting sort,
+	 * keeping values with equal keys in their original order.
+	 *
+	 * @param keyCount the number of distinct keys.
+	 * @param keys the key of each value.
+	 * @param count the number of values.
+	 * @return the index of value positions by key.
+	 */
+	private static Index buildIndex(final int keyCount, final int[] keys, final int count) {
+		final int[] offsets = new int[keyCount + 1];
+		for (int i = 0; i < count; i++) {
+			offsets[keys[i] + 1]++;
+		}
+		for (int key = 0; key < keyCount; key++) {
+			offsets[key + 1] += offsets[key];
+		}
+
+		final int[] next = Arrays.copyOf(offsets, keyCount);
+		final int[] values = new int[count];
+		for (int i = 0; i < count; i++) {
+			values[next[keys[i]]++] = i;
+		}
+		return new Index(offsets, values);
+	}
+
+	/**
+	 * Build the edge hash table afresh.
+	 *
+	 * @param capacity the size of the table, a power of two.
+	 */
+	private void buildEdgeTable(final int capacity) {
+		edgeTable = new int[capacity];
+		for (int edge = 0; edge < edgeCount; edge++) {
+			int slot = hash(edgeDependees[edge], edgeDependencies[edge], edgeVersions[edge]) & (edgeTable.length - 1);
+			while (edgeTable[slot] != 0) {
+				slot = (slot + 1) & (edgeTable.length - 1);
+			}
+			edgeTable[slot] = edge + 1;
+		}
+	}
+
+	/**
+	 * Hash an edge.
+	 *
+	 * @param dependee the depending artifact Id.
+	 * @param dependency the depended upon artifact Id.
+	 * @param version the version Id.
+	 * @return the hash.
+	 */
+	private static int hash(final int dependee, final int dependency, final int version) {
+		int h = dependee * 0x9E3779B1;
+		h = (h ^ dependency) * 0x9E3779B1;
+		h = (h ^ version) * 0x9E3779B1;
+		return h ^ (h >>> 16);
+	}
+}
@@ -1,37 +1,66 @@
 package uk.me.thega.graph;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.BitSet;
+import java.util.zip.GZIPOutputStream;
 
 import fr.loria.GraphViz;
 
 /**
  * {@link GraphViz} wrapper for Analyser output
+ * <br>
+ * The graph is either built up in memory and returned by {@link #end()}, or
+ * streamed to a {@link Writer} or {@link OutputStream} as it is generated.
  *  
  * @author pwhittlesea
  *
  */
 public class DotGenerator {
 
+	/** The weight of a link to the newest version in use. */
+	static final int CURRENT_WEIGHT = 1;
+
+	/** The weight of a link to an older version than the newest in use. */
+	static final int STALE_WEIGHT = 10;
+
+	/** The colour of a link that is part of a dependency cycle. */
+	static final String CYCLE_COLOUR = "crimson";
+
+	/** The style of a link that is part of a dependency cycle. */
+	static final String CYCLE_STYLE = "bold";
+
+	/** The colour of a link implied by others, drawn only to mark it. */
+	static final String IMPLIED_COLOUR = "gray";
+
+	/** The style of a link implied by others, drawn only to mark it. */
+	static final String IMPLIED_STYLE = "dotted";
+
 	/** The colours generator for nodes. */
 	private final DotColours colours = new DotColours();
 
 	/** The Id of the current cluster. */
 	private int clusterNumber = 0;
 
-	/** The Id of the current node. */
-	private int nodeNumber = 0;
+	/** The graph whose nodes have been written. */
+	private DependencyGraph graph;
 
-	/** The colours of each groupId. */
-	private Map<String, String> groupIdColours = new HashMap<String, String>();
-
-	/** The node number for a specific artifact. */
-	private Map<String, String> nodeNumbersByArtifact = new HashMap<String, String>();
+	/** The colours of each group, by group Id. */
+	private String[] groupColours;
 
 	/** Our current graph. */
 	private GraphViz gv;
 
+	/** The writer the graph is streamed to, or null if it is built in memory. */
+	private PrintWriter out;
+
+	/** The compressing stream beneath {@link #out}, or null. */
+	private GZIPOutputStream gzip;
+
 	/**
 	 * Return the string that will represent a node on the Graphiz graph.
 	 * 
@@ -54,96 +83,246 @@ public class DotGenerator {
 	 * @return the string for the link.
 	 */
 	static final String linkString(final String from, final String to, final String colour, final int penwidth) {
-		return "    " + from + " -> " + to + " [color=" + colour + ",penwidth=" + penwidth + "];";
+		return linkString(from, to, colour, penwidth, null);
+	}
+
+	/**
+	 * Return the string that will represent a styled link between
+	 * two nodes on the Graphiz graph.
+	 *
+	 * @param from the node the link comes from.
+	 * @param to the node the link goes to.
+	 * @param colour the colour of the link.
+	 * @param penwidth the weight of the link.
+	 * @param style the style of the link, or null for the default.
+	 * @return the string for the link.
+	 */
+	static final String linkString(final String from, final String to, final String colour, final int penwidth, final String style) {
+		return "    " + from + " -> " + to + " [color=" + colour + ",penwidth=" + penwidth + ((style == null) ? "" : ",style=" + style) + "];";
+	}
+
+	/**
+	 * Return the string that will represent a link implied by others on the
+	 * Graphiz graph, left out of the ranking of the nodes.
+	 *
+	 * @param from the node the link comes from.
+	 * @param to the node the link goes to.
+	 * @return the string for the link.
+	 */
+	static final String impliedLinkString(final String from, final String to) {
+		return "    " + from + " -> " + to + " [color=" + IMPLIED_COLOUR + ",style=" + IMPLIED_STYLE + ",constraint=false];";
+	}
+
+	/**
+	 * Add a line to the current graph.
+	 * 
+	 * @param line the line, without a newline.
+	 */
+	private void addln(final String line) {
+		if (out == null) {
+			gv.addln(line);
+		} else {
+			out.write(line);
+			out.write('\n');
+		}
 	}
 
 	/**
 	 * End the current graph.
+	 * <br>
+	 * A streamed graph is flushed (and its compression finished) but the
+	 * underlying stream is left open.
+	 * 
+	 * @return the graph source, or null if the graph was streamed.
+	 * @throws IOException if writing a streamed graph failed.
 	 */
-	public String end() {
-		gv.addln(gv.end_graph());
-		gv.addln();
+	public String end() throws IOException {
+		addln(gv.end_graph());
+		addln("");
+
+		if (out == null) {
+			return gv.getDotSource();
+		}
 
-		return gv.getDotSource();
+		boolean failed = out.checkError();
+		if (gzip != null && !failed) {
+			gzip.finish();
+			gzip.flush();
+		}
+		failed |= out.checkError();
+		out = null;
+		gzip = null;
+		if (failed) {
+			throw new IOException("Error writing graph");
+		}
+		return null;
 	}
 
 	/**
-	 * Return the node Id for a group and artifact.
+	 * Return the node Id for an artifact.
 	 * 
-	 * @param groupId the groupId of the artifact.
-	 * @param artifactId the artifactId of the artifact.
+	 * @param artifact the Id of the artifact in the {@link DependencyGraph}.
 	 * @return the nodeId string.
 	 */
-	String getNodeIdForArtifact(final String groupId, final String artifactId) {
-		final String artifactUUID = groupId + ":" + artifactId;
-		if (!nodeNumbersByArtifact.containsKey(artifactUUID)) {
-			nodeNumbersByArtifact.put(artifactUUID, "Node_" + nodeNumber++);
-		}
-		return nodeNumbersByArtifact.get(artifactUUID);
+	static final String nodeId(final int artifact) {
+		return "Node_" + artifact;
+	}
+
+	/**
+	 * Add a link to the graph between two nodes, coloured by the dependee's
+	 * group and heavier if the dependee is out of date.
+	 * 
+	 * @param dependency the Id of the dependency.
+	 * @param dependee the Id of the dependee.
+	 * @param outOfDate does the dependee use an older version than the newest in use?
+	 */
+	public void linkNodesOnGraph(final int dependency, final int dependee, final boolean outOfDate) {
+		linkNodesOnGraph(dependency, dependee, outOfDate, false);
 	}
 
 	/**
-	 * Add a link to the graph between two nodes of a certain colour
-	 * and weight.
+	 * Add a link to the graph between two nodes, heavier if the dependee is
+	 * out of date, and highlighted if it is part of a dependency cycle
+	 * rather than coloured by the dependee's group.
 	 * 
-	 * @param depGroupId the groupId of the dependency.
-	 * @param depArtifactId the artifactId of the dependency.
-	 * @param groupId the groupId of the dependee.
-	 * @param artifactId the artifactId of the dependee.
-	 * @param importance the importance (weight) of the link.
-	 */
-	public void linkNodesOnGraph(final String depGroupId, final String depArtifactId, final String groupId, final String artifactId, final int importance) {
-		final String dependeeNodeId = getNodeIdForArtifact(groupId, artifactId);
-		final String dependencyNodeId = getNodeIdForArtifact(depGroupId, depArtifactId);
-		if (dependeeNodeId != null && dependencyNodeId != null) {
-			gv.addln(linkString(dependeeNodeId, dependencyNodeId, groupIdColours.get(groupId), importance));
+	 * @param dependency the Id of the dependency.
+	 * @param dependee the Id of the dependee.
+	 * @param outOfDate does the dependee use an older version than the newest in use?
+	 * @param inCycle is the link part of a dependency cycle, as found by {@link ComponentIndex}?
+	 */
+	public void linkNodesOnGraph(final int dependency, final int dependee, final boolean outOfDate, final boolean inCycle) {
+		final int importance = (outOfDate) ? STALE_WEIGHT : CURRENT_WEIGHT;
+		if (inCycle) {
+			addln(linkString(nodeId(dependee), nodeId(dependency), CYCLE_COLOUR, importance, CYCLE_STYLE));
+		} else {
+			addln(linkString(nodeId(dependee), nodeId(dependency), groupColours[graph.getGroup(dependee)], importance));
 		}
 	}
 
 	/**
-	 * Start a new graph.
+	 * Add a link to the graph between two nodes that is implied by others,
+	 * as found by {@link TransitiveReduction}, marked as such and not used
+	 * to lay out the graph.
+	 * 
+	 * @param dependency the Id of the dependency.
+	 * @param dependee the Id of the dependee.
+	 */
+	public void linkImpliedNodesOnGraph(final int dependency, final int dependee) {
+		addln(impliedLinkString(nodeId(dependee), nodeId(dependency)));
+	}
+
+	/**
+	 * Start a new graph, built up in memory.
 	 * 
 	 * @param width the width of the graph.
 	 * @param height the height of the graph.
 	 */
 	public void start(final int width, final int height) {
+		out = null;
+		gzip = null;
+		begin(width, height);
+	}
+
+	/**
+	 * Start a new graph, streamed to a writer.
+	 * 
+	 * @param writer the writer to stream the graph to.
+	 * @param width the width of the graph.
+	 * @param height the height of the graph.
+	 */
+	public void start(final Writer writer, final int width, final int height) {
+		out = (writer instanceof PrintWriter) ? (PrintWriter) writer : new PrintWriter(writer);
+		gzip = null;
+		begin(width, height);
+	}
+
+	/**
+	 * Start a new graph, streamed to an output stream as UTF-8.
+	 * 
+	 * @param stream the stream to write the graph to.
+	 * @param compress do we gzip the graph?
+	 * @param width the width of the graph.
+	 * @param height the height of the graph.
+	 * @throws IOException if the compressed stream cannot be started.
+	 */
+	public void start(final OutputStream stream, final boolean compress, final int width, final int height) throws IOException {
+		gzip = (compress) ? new GZIPOutputStream(stream) : null;
+		final OutputStream target = (compress) ? gzip : stream;
+		out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(target, "UTF-8")));
+		begin(width, height);
+	}
+
+	/**
+	 * Write the opening of a new graph.
+	 * 
+	 * @param width the width of the graph.
+	 * @param height the height of the graph.
+	 */
+	private void begin(final int width, final int height) {
 		gv = new GraphViz();
-		gv.addln(gv.start_graph());
-		gv.addln("    size=\"" + width + "," + height + "\";");
+		addln(gv.start_graph());
+		addln("    size=\"" + width + "," + height + "\";");
 
 		// Clean up
 		clusterNumber = 0;
-		nodeNumber = 0;
-		groupIdColours.clear();
-		nodeNumbersByArtifact.clear();
+		graph = null;
+		groupColours = null;
 	}
 
 	/**
 	 * Write all of the artifacts to the graph.
 	 * 
 	 * @param cluster do we cluster by group?
-	 * @param artifactsByGroupId the artifacts grouped by groupId
+	 * @param graph the graph of artifacts
 	 */
-	public void writeNodesToGraph(final boolean cluster, final Map<String, List<String>> artifactsByGroupId) {
-		for (final String groupId : artifactsByGroupId.keySet()) {
-			final List<String> artifactIds = artifactsByGroupId.get(groupId);
+	public void writeNodesToGraph(final boolean cluster, final DependencyGraph graph) {
+		writeNodesToGraph(cluster, graph, null);
+	}
+
+	/**
+	 * Write some of the artifacts to the graph, such as the result of a
+	 * {@link GraphQuery}, leaving out the clusters of groups with none.
+	 * <br>
+	 * Each group keeps the colour it has in the whole graph.
+	 * 
+	 * @param cluster do we cluster by group?
+	 * @param graph the graph of artifacts
+	 * @param artifacts the Ids of the artifacts to write, or null for all of them
+	 */
+	public void writeNodesToGraph(final boolean cluster, final DependencyGraph graph, final BitSet artifacts) {
+		this.graph = graph;
+		groupColours = new String[graph.getGroupCount()];
+
+		final DependencyGraph.Index groupMembers = graph.getGroupMembers();
+		for (int group = 0; group < graph.getGroupCount(); group++) {
 			final String groupIdColour = colours.next();
-			groupIdColours.put(groupId, groupIdColour);
+			groupColours[group] = groupIdColour;
+
+			boolean empty = artifacts != null;
+			for (int i = groupMembers.start(group); empty && i < groupMembers.end(group); i++) {
+				empty = !artifacts.get(groupMembers.get(i));
+			}
+			if (empty) {
+				continue;
+			}
 
 			if (cluster) {
-				gv.addln("    subgraph cluster_" + clusterNumber++ + " {");
-				gv.addln("        label=\"" + groupId + "\";");
-				gv.addln("        color=" + groupIdColour + ";");
-				gv.addln("        style=dashed;");
+				addln("    subgraph cluster_" + clusterNumber++ + " {");
+				addln("        label=\"" + graph.getGroupName(group) + "\";");
+				addln("        color=" + groupIdColour + ";");
+				addln("        style=dashed;");
 			}
 
-			for (final String artifactId : artifactIds) {
-				final String nodeId = getNodeIdForArtifact(groupId, artifactId);
-				gv.addln(nodeString(nodeId, artifactId));
+			for (int i = groupMembers.start(group); i < groupMembers.end(group); i++) {
+				final int artifact = groupMembers.get(i);
+				if (artifacts != null && !artifacts.get(artifact)) {
+					continue;
+				}
+				addln(nodeString(nodeId(artifact), graph.getArtifactId(artifact)));
 			}
 
 			if (cluster) {
-				gv.addln("    }");
+				addln("    }");
 			}
 		}
 	}
@@ -0,0 +1,103 @@
+package uk.me.thega.graph;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writer of the edges of a {@link DependencyGraph} as a list, one line per
+ * edge:
+ * <pre>
+ * dependeeGroupId:dependeeArtifactId	dependencyGroupId:dependencyArtifactId	version
+ * </pre>
+ * separated by tabs, with an empty version if none was given.
+ * <br>
+ * Unlike a dot graph, no line depends on the rest of the graph, so each edge
+ * can be written as soon as it is added.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class EdgeListWriter {
+
+	/** The writer the edges are streamed to, or null if not started. */
+	private PrintWriter out;
+
+	/** The compressing stream beneath {@link #out}, or null. */
+	private GZIPOutputStream gzip;
+
+	/**
+	 * Return the line that represents an edge.
+	 *
+	 * @param graph the graph.
+	 * @param edge the Id of the edge.
+	 * @return the line, without a newline.
+	 */
+	static String edgeString(final DependencyGraph graph, final int edge) {
+		final int dependee = graph.getDependee(edge);
+		final int dependency = graph.getDependency(edge);
+		final String version = graph.getVersion(graph.getEdgeVersion(edge));
+		return graph.getGroupId(dependee) + ":" + graph.getArtifactId(dependee) + "\t" + graph.getGroupId(dependency) + ":"
+				+ graph.getArtifactId(dependency) + "\t" + ((version == null) ? "" : version);
+	}
+
+	/**
+	 * Start a new list, streamed to a writer.
+	 *
+	 * @param writer the writer to stream the list to.
+	 */
+	public void start(final Writer writer) {
+		out = (writer instanceof PrintWriter) ? (PrintWriter) writer : new PrintWriter(writer);
+		gzip = null;
+	}
+
+	/**
+	 * Start a new list, streamed to an output stream as UTF-8.
+	 *
+	 * @param stream the stream to write the list to.
+	 * @param compress do we gzip the list?
+	 * @throws IOException if the compressed stream cannot be started.
+	 */
+	public void start(final OutputStream stream, final boolean compress) throws IOException {
+		gzip = (compress) ? new GZIPOutputStream(stream) : null;
+		final OutputStream target = (compress) ? gzip : stream;
+		out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(target, "UTF-8")));
+	}
+
+	/**
+	 * Write an edge.
+	 *
+	 * @param graph the graph.
+	 * @param edge the Id of the edge.
+	 */
+	public void writeEdge(final DependencyGraph graph, final int edge) {
+		out.write(edgeString(graph, edge));
+		out.write('\n');
+	}
+
+	/**
+	 * End the current list.
+	 * <br>
+	 * The list is flushed (and its compression finished) but the underlying
+	 * stream is left open.
+	 *
+	 * @throws IOException if writing the list failed.
+	 */
+	public void end() throws IOException {
+		boolean failed = out.checkError();
+		if (gzip != null && !failed) {
+			gzip.finish();
+			gzip.flush();
+		}
+		failed |= out.checkError();
+		out = null;
+		gzip = null;
+		if (failed) {
+			throw new IOException("Error writing edges");
+		}
+	}
+}
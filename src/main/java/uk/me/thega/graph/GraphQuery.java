@@ -0,0 +1,115 @@
+package uk.me.thega.graph;
+
+import java.util.BitSet;
+
+/**
+ * Transitive queries over a {@link DependencyGraph}: everything an artifact
+ * pulls in, and everything that would be affected by a change to it.
+ * <br>
+ * Each query is a breadth first search one level at a time, holding the
+ * artifacts reached and those on the frontier of the current level as bit
+ * sets over artifact Ids, so a closure over the whole graph costs a walk of
+ * the edges of the artifacts reached and a few bits per artifact.
+ * <br>
+ * Only some of the edges may be followed, such as those of included scopes
+ * between artifacts the filter links, so an artifact is only reached through
+ * edges that are written.
+ * <br>
+ * This class is not thread safe.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class GraphQuery {
+
+	/** The depth of a query that follows every level of edges. */
+	public static final int UNLIMITED = -1;
+
+	/** The graph queried. */
+	private final DependencyGraph graph;
+
+	/** The followed flag by edge Id, or null to follow every edge. */
+	private final boolean[] followed;
+
+	/**
+	 * Query a graph, following every edge.
+	 *
+	 * @param graph the graph.
+	 */
+	public GraphQuery(final DependencyGraph graph) {
+		this(graph, null);
+	}
+
+	/**
+	 * Query a graph, following only some of its edges.
+	 *
+	 * @param graph the graph.
+	 * @param followed the followed flag by edge Id, or null to follow every edge.
+	 */
+	public GraphQuery(final DependencyGraph graph, final boolean[] followed) {
+		this.graph = graph;
+		this.followed = followed;
+	}
+
+	/**
+	 * Find the artifacts that depend upon an artifact, directly or through
+	 * others.
+	 *
+	 * @param artifact the Id of the artifact.
+	 * @param depth the most levels of edges to follow, or {@link #UNLIMITED}.
+	 * @return the Ids of the artifact and its dependents.
+	 */
+	public BitSet findDependents(final int artifact, final int depth) {
+		return traverse(artifact, graph.getDependents(), true, depth);
+	}
+
+	/**
+	 * Find the artifacts an artifact depends upon, directly or through
+	 * others.
+	 *
+	 * @param artifact the Id of the artifact.
+	 * @param depth the most levels of edges to follow, or {@link #UNLIMITED}.
+	 * @return the Ids of the artifact and its dependencies.
+	 */
+	public BitSet findDependencies(final int artifact, final int depth) {
+		return traverse(artifact, graph.getDependencies(), false, depth);
+	}
+
+	/**
+	 * Follow the edges of an index out from an artifact, a level at a time.
+	 *
+	 * @param artifact the Id of the artifact to start from.
+	 * @param index the edges to follow, by the artifact they are followed from.
+	 * @param towardsDependee are the edges followed to their dependee, rather than their dependency?
+	 * @param depth the most levels of edges to follow, or {@link #UNLIMITED}.
+	 * @return the Ids of the artifacts reached, including the first.
+	 */
+	private BitSet traverse(final int artifact, final DependencyGraph.Index index, final boolean towardsDependee, final int depth) {
+		final BitSet reached = new BitSet(graph.getArtifactCount());
+		BitSet frontier = new BitSet(graph.getArtifactCount());
+		BitSet next = new BitSet(graph.getArtifactCount());
+		reached.set(artifact);
+		frontier.set(artifact);
+
+		for (int level = 0; !frontier.isEmpty() && (depth == UNLIMITED || level < depth); level++) {
+			for (int from = frontier.nextSetBit(0); from >= 0; from = frontier.nextSetBit(from + 1)) {
+				for (int i = index.start(from); i < index.end(from); i++) {
+					final int edge = index.get(i);
+					if (followed != null && !followed[edge]) {
+						continue;
+					}
+					final int to = (towardsDependee) ? graph.getDependee(edge) : graph.getDependency(edge);
+					if (!reached.get(to)) {
+						reached.set(to);
+						next.set(to);
+					}
+				}
+			}
+			final BitSet done = frontier;
+			frontier = next;
+			next = done;
+			next.clear();
+		}
+		return reached;
+	}
+}
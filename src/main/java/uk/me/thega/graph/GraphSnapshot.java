@@ -0,0 +1,358 @@
+package uk.me.thega.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DependencyGraph} saved in a compact binary form, with the out of
+ * date flag of each edge, so that it can be written as dot, or queried,
+ * without reading a single POM.
+ * <br>
+ * After a header of counts, the file holds the interned Ids of the graph as
+ * arrays of <code>int</code>s: the name of each group, the group and name of
+ * each artifact, the name of each version and scope, then the dependee,
+ * dependency, version and scope of each edge, followed by a byte of flags
+ * for each edge. Names are indices into a string table of UTF-8 bytes at the
+ * end of the file, or -1 for none.
+ * <br>
+ * A snapshot is read by mapping the file and copying each array out of it
+ * whole, so loading takes a handful of allocations however many edges the
+ * graph holds; only the names are decoded one by one.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class GraphSnapshot {
+
+	/** The first bytes of a snapshot file, "DGRF". */
+	static final int MAGIC = 0x44475246;
+
+	/** The version of the file format written. */
+	static final int VERSION = 1;
+
+	/** The flag of an edge to an older version than the newest in use. */
+	static final byte STALE = 1;
+
+	/** The size of the buffer the file is written through. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The graph. */
+	private final DependencyGraph graph;
+
+	/** The out of date flag by edge Id. */
+	private final boolean[] staleEdges;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param graph the graph.
+	 * @param staleEdges the out of date flag by edge Id.
+	 */
+	public GraphSnapshot(final DependencyGraph graph, final boolean[] staleEdges) {
+		this.graph = graph;
+		this.staleEdges = staleEdges;
+	}
+
+	/**
+	 * Get the graph.
+	 *
+	 * @return the graph.
+	 */
+	public DependencyGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Get the edges that depend upon an older version of an artifact than
+	 * the newest one in use, as found by {@link VersionIndex#findStaleEdges()}
+	 * when the snapshot was written.
+	 *
+	 * @return the out of date flag by edge Id.
+	 */
+	public boolean[] getStaleEdges() {
+		return staleEdges;
+	}
+
+	/**
+	 * Read a snapshot from a file.
+	 *
+	 * @param file the file.
+	 * @return the snapshot.
+	 * @throws IOException if the file cannot be read or is not a snapshot.
+	 */
+	public static GraphSnapshot read(final File file) throws IOException {
+		final MappedByteBuffer buffer;
+		final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			// The mapping outlives the channel
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+		}
+
+		try {
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("'" + file + "' is not a graph snapshot");
+			}
+			final int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported graph snapshot version " + version + " in '" + file + "'");
+			}
+			final int groupCount = buffer.getInt();
+			final int artifactCount = buffer.getInt();
+			final int versionCount = buffer.getInt();
+			final int scopeCount = buffer.getInt();
+			final int edgeCount = buffer.getInt();
+			final int stringCount = buffer.getInt();
+			final int stringBytes = buffer.getInt();
+
+			final int[] groups = readInts(buffer, groupCount);
+			final int[] artifactGroups = readInts(buffer, artifactCount);
+			final int[] artifacts = readInts(buffer, artifactCount);
+			final int[] versions = readInts(buffer, versionCount);
+			final int[] scopes = readInts(buffer, scopeCount);
+			final int[] edgeDependees = readInts(buffer, edgeCount);
+			final int[] edgeDependencies = readInts(buffer, edgeCount);
+			final int[] edgeVersions = readInts(buffer, edgeCount);
+			final int[] edgeScopes = readInts(buffer, edgeCount);
+			final byte[] flags = new byte[edgeCount];
+			buffer.get(flags);
+
+			final int[] stringOffsets = readInts(buffer, stringCount + 1);
+			final byte[] table = new byte[stringBytes];
+			buffer.get(table);
+			final String[] strings = new String[stringCount];
+			for (int i = 0; i < stringCount; i++) {
+				strings[i] = new String(table, stringOffsets[i], stringOffsets[i + 1] - stringOffsets[i], StandardCharsets.UTF_8);
+			}
+
+			final DependencyGraph graph = new DependencyGraph(names(strings, groups), artifactGroups, names(strings, artifacts), names(strings, versions),
+					names(strings, scopes), edgeDependees, edgeDependencies, edgeVersions, edgeScopes);
+			final boolean[] staleEdges = new boolean[edgeCount];
+			for (int edge = 0; edge < edgeCount; edge++) {
+				staleEdges[edge] = (flags[edge] & STALE) != 0;
+			}
+			return new GraphSnapshot(graph, staleEdges);
+		} catch (final BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+			throw new IOException("Truncated graph snapshot '" + file + "'", e);
+		}
+	}
+
+	/**
+	 * Copy an array of ints out of a buffer, moving past it.
+	 *
+	 * @param buffer the buffer.
+	 * @param count the number of ints.
+	 * @return the ints.
+	 */
+	private static int[] readInts(final ByteBuffer buffer, final int count) {
+		final int[] values = new int[count];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + count * 4);
+		return values;
+	}
+
+	/**
+	 * Look up the names of some string Ids.
+	 *
+	 * @param strings the string table.
+	 * @param ids the string Ids, -1 for none.
+	 * @return the names, null for none.
+	 */
+	private static String[] names(final String[] strings, final int[] ids) {
+		final String[] names = new String[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			names[i] = (ids[i] == -1) ? null : strings[ids[i]];
+		}
+		return names;
+	}
+
+	/**
+	 * Write the snapshot to a file, replacing it only once it is complete.
+	 * <br>
+	 * The snapshot is written to a file alongside, forced to disk, and then
+	 * moved over the file atomically, so a crash leaves either the previous
+	 * snapshot or the new one.
+	 *
+	 * @param file the file.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public void write(final File file) throws IOException {
+		// Gather every distinct name into the string table
+		final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+		final List<byte[]> strings = new ArrayList<byte[]>();
+		final int[] groups = new int[graph.getGroupCount()];
+		for (int group = 0; group < groups.length; group++) {
+			groups[group] = intern(stringIds, strings, graph.getGroupName(group));
+		}
+		final int[] artifacts = new int[graph.getArtifactCount()];
+		for (int artifact = 0; artifact < artifacts.length; artifact++) {
+			artifacts[artifact] = intern(stringIds, strings, graph.getArtifactId(artifact));
+		}
+		final int[] versions = new int[graph.getVersionCount()];
+		for (int version = 0; version < versions.length; version++) {
+			versions[version] = intern(stringIds, strings, graph.getVersion(version));
+		}
+		final int[] scopes = new int[graph.getScopeCount()];
+		for (int scope = 0; scope < scopes.length; scope++) {
+			scopes[scope] = intern(stringIds, strings, graph.getScope(scope));
+		}
+		int stringBytes = 0;
+		for (final byte[] string : strings) {
+			stringBytes += string.length;
+		}
+
+		final int edgeCount = graph.getEdgeCount();
+		final File temp = new File(file.getPath() + ".tmp");
+		boolean replaced = false;
+		try {
+			final FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+				putInt(channel, buffer, MAGIC);
+				putInt(channel, buffer, VERSION);
+				putInt(channel, buffer, groups.length);
+				putInt(channel, buffer, artifacts.length);
+				putInt(channel, buffer, versions.length);
+				putInt(channel, buffer, scopes.length);
+				putInt(channel, buffer, edgeCount);
+				putInt(channel, buffer, strings.size());
+				putInt(channel, buffer, stringBytes);
+
+				putInts(channel, buffer, groups);
+				for (int artifact = 0; artifact < artifacts.length; artifact++) {
+					putInt(channel, buffer, graph.getGroup(artifact));
+				}
+				putInts(channel, buffer, artifacts);
+				putInts(channel, buffer, versions);
+				putInts(channel, buffer, scopes);
+				for (int edge = 0; edge < edgeCount; edge++) {
+					putInt(channel, buffer, graph.getDependee(edge));
+				}
+				for (int edge = 0; edge < edgeCount; edge++) {
+					putInt(channel, buffer, graph.getDependency(edge));
+				}
+				for (int edge = 0; edge < edgeCount; edge++) {
+					putInt(channel, buffer, graph.getEdgeVersion(edge));
+				}
+				for (int edge = 0; edge < edgeCount; edge++) {
+					putInt(channel, buffer, graph.getEdgeScope(edge));
+				}
+				for (int edge = 0; edge < edgeCount; edge++) {
+					if (!buffer.hasRemaining()) {
+						flush(channel, buffer);
+					}
+					buffer.put((staleEdges[edge]) ? STALE : 0);
+				}
+
+				int offset = 0;
+				putInt(channel, buffer, offset);
+				for (final byte[] string : strings) {
+					offset += string.length;
+					putInt(channel, buffer, offset);
+				}
+				for (final byte[] string : strings) {
+					for (int i = 0; i < string.length; i++) {
+						if (!buffer.hasRemaining()) {
+							flush(channel, buffer);
+						}
+						buffer.put(string[i]);
+					}
+				}
+				flush(channel, buffer);
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (final IOException e) {
+				throw new IOException("Unable to replace graph snapshot '" + file + "'", e);
+			}
+			replaced = true;
+		} finally {
+			// Leave no partial file behind, however the write failed
+			if (!replaced) {
+				temp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Add a name to the string table, if it is not already present.
+	 *
+	 * @param stringIds the Ids of the names so far.
+	 * @param strings the UTF-8 bytes of each name so far.
+	 * @param name the name, may be null.
+	 * @return the Id of the name, or -1 for null.
+	 */
+	private static int intern(final Map<String, Integer> stringIds, final List<byte[]> strings, final String name) {
+		if (name == null) {
+			return -1;
+		}
+		Integer id = stringIds.get(name);
+		if (id == null) {
+			id = strings.size();
+			stringIds.put(name, id);
+			strings.add(name.getBytes(StandardCharsets.UTF_8));
+		}
+		return id;
+	}
+
+	/**
+	 * Write an array of ints through a buffer.
+	 *
+	 * @param channel the channel the buffer is flushed to.
+	 * @param buffer the buffer.
+	 * @param values the ints.
+	 * @throws IOException if writing fails.
+	 */
+	private static void putInts(final FileChannel channel, final ByteBuffer buffer, final int[] values) throws IOException {
+		for (final int value : values) {
+			putInt(channel, buffer, value);
+		}
+	}
+
+	/**
+	 * Write an int through a buffer, flushing it first if it is full.
+	 *
+	 * @param channel the channel the buffer is flushed to.
+	 * @param buffer the buffer.
+	 * @param value the int.
+	 * @throws IOException if writing fails.
+	 */
+	private static void putInt(final FileChannel channel, final ByteBuffer buffer, final int value) throws IOException {
+		if (buffer.remaining() < 4) {
+			flush(channel, buffer);
+		}
+		buffer.putInt(value);
+	}
+
+	/**
+	 * Write out the contents of a buffer and empty it.
+	 *
+	 * @param channel the channel to write to.
+	 * @param buffer the buffer.
+	 * @throws IOException if writing fails.
+	 */
+	private static void flush(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
@@ -0,0 +1,287 @@
+package uk.me.thega.graph;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A version string parsed once into the items Maven orders versions by.
+ * <br>
+ * This follows the rules of Maven's <code>ComparableVersion</code>:
+ * <ul>
+ * <li>numbers compare numerically, so <code>1.10</code> is after <code>1.9</code></li>
+ * <li>trailing zeros are ignored, so <code>1</code>, <code>1.0</code> and <code>1.0.0</code> are equal</li>
+ * <li>qualifiers order as <code>alpha &lt; beta &lt; milestone &lt; rc &lt; snapshot &lt; (release) &lt; sp</code>,
+ * with unknown qualifiers after those in alphabetical order</li>
+ * <li>numbers are newer than qualifiers, so <code>1.0.1</code> is after <code>1.0-sp</code></li>
+ * </ul>
+ *
+ * @author pwhittlesea
+ *
+ */
+public class MavenVersion implements Comparable<MavenVersion> {
+
+	/** The known qualifiers, oldest first; the empty qualifier is a release. */
+	private static final List<String> QUALIFIERS = Arrays.asList("alpha", "beta", "milestone", "rc", "snapshot", "", "sp");
+
+	/** The comparable form of a release qualifier. */
+	private static final String RELEASE = String.valueOf(QUALIFIERS.indexOf(""));
+
+	/**
+	 * An item of a parsed version: a number, a qualifier or a list of items.
+	 */
+	private interface Item {
+
+		/**
+		 * Compare to another item.
+		 *
+		 * @param item the other item, null for a missing item.
+		 * @return the comparison.
+		 */
+		int compareTo(Item item);
+
+		/**
+		 * Is this item equivalent to a missing one?
+		 *
+		 * @return true if the item can be dropped from the end of a list.
+		 */
+		boolean isNull();
+	}
+
+	/**
+	 * A numeric item.
+	 */
+	private static final class NumberItem implements Item {
+
+		/** The value. */
+		private final BigInteger value;
+
+		/**
+		 * Default constructor.
+		 *
+		 * @param value the digits.
+		 */
+		NumberItem(final String value) {
+			this.value = new BigInteger(value);
+		}
+
+		public int compareTo(final Item item) {
+			if (item == null) {
+				return (isNull()) ? 0 : 1;
+			}
+			if (item instanceof NumberItem) {
+				return value.compareTo(((NumberItem) item).value);
+			}
+			return 1;
+		}
+
+		public boolean isNull() {
+			return value.signum() == 0;
+		}
+	}
+
+	/**
+	 * A qualifier item.
+	 */
+	private static final class QualifierItem implements Item {
+
+		/** The qualifier in a form that sorts as Maven does. */
+		private final String comparable;
+
+		/**
+		 * Default constructor.
+		 *
+		 * @param value the qualifier.
+		 * @param followedByDigit is the qualifier directly followed by a digit?
+		 */
+		QualifierItem(final String value, final boolean followedByDigit) {
+			String qualifier = value;
+			if (followedByDigit && qualifier.length() == 1) {
+				// a1 = alpha-1, b1 = beta-1, m1 = milestone-1
+				if (qualifier.equals("a")) {
+					qualifier = "alpha";
+				} else if (qualifier.equals("b")) {
+					qualifier = "beta";
+				} else if (qualifier.equals("m")) {
+					qualifier = "milestone";
+				}
+			}
+			if (qualifier.equals("ga") || qualifier.equals("final") || qualifier.equals("release")) {
+				qualifier = "";
+			} else if (qualifier.equals("cr")) {
+				qualifier = "rc";
+			}
+			final int index = QUALIFIERS.indexOf(qualifier);
+			this.comparable = (index == -1) ? QUALIFIERS.size() + "-" + qualifier : String.valueOf(index);
+		}
+
+		public int compareTo(final Item item) {
+			if (item == null) {
+				return comparable.compareTo(RELEASE);
+			}
+			if (item instanceof QualifierItem) {
+				return comparable.compareTo(((QualifierItem) item).comparable);
+			}
+			return -1;
+		}
+
+		public boolean isNull() {
+			return comparable.equals(RELEASE);
+		}
+	}
+
+	/**
+	 * A list of items, started by each '-' and each change between digits
+	 * and letters.
+	 */
+	private static final class ListItem extends ArrayList<Item> implements Item {
+
+		/** Serial version. */
+		private static final long serialVersionUID = 1L;
+
+		public int compareTo(final Item item) {
+			if (item == null) {
+				return (isEmpty()) ? 0 : get(0).compareTo(null);
+			}
+			if (item instanceof NumberItem) {
+				return -1;
+			}
+			if (item instanceof QualifierItem) {
+				return 1;
+			}
+
+			final ListItem other = (ListItem) item;
+			final int length = Math.max(size(), other.size());
+			for (int i = 0; i < length; i++) {
+				final Item left = (i < size()) ? get(i) : null;
+				final Item right = (i < other.size()) ? other.get(i) : null;
+				final int result = (left == null) ? ((right == null) ? 0 : -right.compareTo(null)) : left.compareTo(right);
+				if (result != 0) {
+					return result;
+				}
+			}
+			return 0;
+		}
+
+		public boolean isNull() {
+			return isEmpty();
+		}
+
+		/**
+		 * Drop trailing items equivalent to missing ones.
+		 */
+		void normalize() {
+			for (int i = size() - 1; i >= 0; i--) {
+				final Item last = get(i);
+				if (last.isNull()) {
+					remove(i);
+				} else if (!(last instanceof ListItem)) {
+					break;
+				}
+			}
+		}
+	}
+
+	/** The version as given. */
+	private final String version;
+
+	/** The parsed items. */
+	private final ListItem items;
+
+	/**
+	 * Parse a version.
+	 *
+	 * @param version the version string.
+	 */
+	public MavenVersion(final String version) {
+		this.version = version;
+		this.items = parse(version.toLowerCase(Locale.ENGLISH));
+	}
+
+	/**
+	 * Parse a lower case version into items.
+	 *
+	 * @param version the version string.
+	 * @return the items.
+	 */
+	private static ListItem parse(final String version) {
+		final ListItem root = new ListItem();
+		final LinkedList<ListItem> stack = new LinkedList<ListItem>();
+		stack.push(root);
+		ListItem list = root;
+
+		boolean isDigit = false;
+		int start = 0;
+		for (int i = 0; i < version.length(); i++) {
+			final char c = version.charAt(i);
+			if (c == '.' || c == '-') {
+				list.add((i == start) ? new NumberItem("0") : item(isDigit, version.substring(start, i), false));
+				start = i + 1;
+				if (c == '-') {
+					final ListItem sublist = new ListItem();
+					list.add(sublist);
+					list = sublist;
+					stack.push(list);
+				}
+			} else if (Character.isDigit(c)) {
+				if (!isDigit && i > start) {
+					list.add(item(false, version.substring(start, i), true));
+					start = i;
+					final ListItem sublist = new ListItem();
+					list.add(sublist);
+					list = sublist;
+					stack.push(list);
+				}
+				isDigit = true;
+			} else {
+				if (isDigit && i > start) {
+					list.add(item(true, version.substring(start, i), false));
+					start = i;
+					final ListItem sublist = new ListItem();
+					list.add(sublist);
+					list = sublist;
+					stack.push(list);
+				}
+				isDigit = false;
+			}
+		}
+		if (version.length() > start) {
+			list.add(item(isDigit, version.substring(start), false));
+		}
+
+		while (!stack.isEmpty()) {
+			stack.pop().normalize();
+		}
+		return root;
+	}
+
+	/**
+	 * Create an item.
+	 *
+	 * @param isDigit is the text a number?
+	 * @param text the text of the item.
+	 * @param followedByDigit is a qualifier directly followed by a digit?
+	 * @return the item.
+	 */
+	private static Item item(final boolean isDigit, final String text, final boolean followedByDigit) {
+		return (isDigit) ? new NumberItem(text) : new QualifierItem(text, followedByDigit);
+	}
+
+	/**
+	 * Compare to another version.
+	 *
+	 * @param other the other version.
+	 * @return negative if this version is older, zero if equivalent, positive if newer.
+	 */
+	public int compareTo(final MavenVersion other) {
+		return items.compareTo(other.items);
+	}
+
+	@Override
+	public String toString() {
+		return version;
+	}
+}
@@ -0,0 +1,135 @@
+package uk.me.thega.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Finds the edges of a {@link DependencyGraph} implied by others: an edge
+ * from one artifact to another is redundant if the first still reaches the
+ * second through some other path. Leaving them out keeps every dependency,
+ * direct or transitive, while drawing far fewer links.
+ * <br>
+ * Each dependency cycle is first condensed into a single node, as given by
+ * a {@link ComponentIndex}, so the rest is a directed acyclic graph. The
+ * components are then visited in topological order, everything a component
+ * depends upon before it, building a bit set of the components each reaches.
+ * A component's links to the others are taken from the latest in that order
+ * back, and a link is redundant if the component it leads to is already
+ * reached through those taken before it. A component's bit set is dropped
+ * once every component depending upon it has been visited.
+ * <br>
+ * The edges within a cycle are all kept, and so are all the edges between
+ * two components if any one of them is needed.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class TransitiveReduction {
+
+	/** The graph reduced. */
+	private final DependencyGraph graph;
+
+	/** The components of the graph, over the edges reduced. */
+	private final ComponentIndex components;
+
+	/**
+	 * Reduce every edge of a graph.
+	 *
+	 * @param graph the graph.
+	 */
+	public TransitiveReduction(final DependencyGraph graph) {
+		this(graph, null);
+	}
+
+	/**
+	 * Reduce some of the edges of a graph, such as those to be written,
+	 * as if the others were not there.
+	 *
+	 * @param graph the graph.
+	 * @param included the included flag by edge Id, or null to reduce every edge.
+	 */
+	public TransitiveReduction(final DependencyGraph graph, final boolean[] included) {
+		this.graph = graph;
+		this.components = new ComponentIndex(graph, included);
+	}
+
+	/**
+	 * Find the edges implied by other paths through the graph.
+	 *
+	 * @return the redundant flag by edge Id, false for any edge not reduced.
+	 */
+	public boolean[] findRedundantEdges() {
+		final int count = components.getComponentCount();
+		final boolean[] redundant = new boolean[graph.getEdgeCount()];
+
+		// Index the edges between components by the component they leave, counting those entering each
+		final int[] offsets = new int[count + 1];
+		final int[] dependees = new int[count];
+		for (int edge = 0; edge < redundant.length; edge++) {
+			final int from = components.getComponent(graph.getDependee(edge));
+			final int to = components.getComponent(graph.getDependency(edge));
+			if (from != to && components.isFollowed(edge)) {
+				offsets[from + 1]++;
+				dependees[to]++;
+			}
+		}
+		int widest = 0;
+		for (int component = 0; component < count; component++) {
+			widest = Math.max(widest, offsets[component + 1]);
+			offsets[component + 1] += offsets[component];
+		}
+		final int[] next = Arrays.copyOf(offsets, count);
+		final int[] outgoing = new int[offsets[count]];
+		for (int edge = 0; edge < redundant.length; edge++) {
+			final int from = components.getComponent(graph.getDependee(edge));
+			final int to = components.getComponent(graph.getDependency(edge));
+			if (from != to && components.isFollowed(edge)) {
+				outgoing[next[from]++] = edge;
+			}
+		}
+
+		// Every edge between components leads to a lower number, so ascending order is topological
+		final BitSet[] reaches = new BitSet[count];
+		final int[] targets = new int[widest];
+		final int[] implied = new int[count];
+		Arrays.fill(implied, -1);
+		for (int component = 0; component < count; component++) {
+			int targetCount = 0;
+			for (int i = offsets[component]; i < offsets[component + 1]; i++) {
+				final int to = components.getComponent(graph.getDependency(outgoing[i]));
+				targets[targetCount++] = to;
+			}
+			Arrays.sort(targets, 0, targetCount);
+
+			// Only a later component than a target can reach it, so take the latest first
+			final BitSet reach = new BitSet();
+			for (int i = targetCount - 1; i >= 0; i--) {
+				final int to = targets[i];
+				if (i < targetCount - 1 && targets[i + 1] == to) {
+					// Another edge to the same component
+					continue;
+				}
+				if (reach.get(to)) {
+					implied[to] = component;
+				} else {
+					reach.set(to);
+					reach.or(reaches[to]);
+				}
+			}
+			reaches[component] = reach;
+
+			for (int i = offsets[component]; i < offsets[component + 1]; i++) {
+				final int to = components.getComponent(graph.getDependency(outgoing[i]));
+				redundant[outgoing[i]] = implied[to] == component;
+			}
+
+			// Drop the reach of each target once nothing else depends upon it
+			for (int i = 0; i < targetCount; i++) {
+				if (--dependees[targets[i]] == 0) {
+					reaches[targets[i]] = null;
+				}
+			}
+		}
+		return redundant;
+	}
+}
@@ -0,0 +1,111 @@
+package uk.me.thega.graph;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Index of the versions used in a {@link DependencyGraph}, to find the newest
+ * version of each artifact in use and the edges that depend on an older one.
+ * <br>
+ * Each distinct version string is parsed once, and all of them are sorted
+ * once into ranks, so every later comparison is between two ints however many
+ * versions of a library are in use.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class VersionIndex {
+
+	/** The rank of a version that cannot be compared, such as a missing one. */
+	public static final int UNRANKED = -1;
+
+	/** The graph indexed. */
+	private final DependencyGraph graph;
+
+	/** The rank of each version Id, equal for equivalent versions. */
+	private final int[] ranks;
+
+	/**
+	 * Index the versions of a graph.
+	 *
+	 * @param graph the graph.
+	 */
+	public VersionIndex(final DependencyGraph graph) {
+		this.graph = graph;
+
+		final int count = graph.getVersionCount();
+		final MavenVersion[] parsed = new MavenVersion[count];
+		Integer[] order = new Integer[count];
+		int ranked = 0;
+		for (int version = 0; version < count; version++) {
+			final String name = graph.getVersion(version);
+			// Versions that are missing or left as properties tell us nothing
+			if (name != null && name.length() > 0 && !name.contains("${")) {
+				parsed[version] = new MavenVersion(name);
+				order[ranked++] = version;
+			}
+		}
+		order = Arrays.copyOf(order, ranked);
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(final Integer a, final Integer b) {
+				return parsed[a].compareTo(parsed[b]);
+			}
+		});
+
+		ranks = new int[count];
+		Arrays.fill(ranks, UNRANKED);
+		int rank = 0;
+		for (int i = 0; i < order.length; i++) {
+			if (i > 0 && parsed[order[i - 1]].compareTo(parsed[order[i]]) < 0) {
+				rank++;
+			}
+			ranks[order[i]] = rank;
+		}
+	}
+
+	/**
+	 * Get the rank of a version: newer versions have higher ranks, and
+	 * equivalent versions (such as 1 and 1.0) share one.
+	 *
+	 * @param version the version Id.
+	 * @return the rank, or {@link #UNRANKED}.
+	 */
+	public int getRank(final int version) {
+		return ranks[version];
+	}
+
+	/**
+	 * Find the newest version of each artifact that anything depends upon.
+	 *
+	 * @return the version Id by artifact Id, or -1 if no version could be ranked.
+	 */
+	public int[] findLatestVersions() {
+		final int[] latest = new int[graph.getArtifactCount()];
+		Arrays.fill(latest, -1);
+		for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+			final int dependency = graph.getDependency(edge);
+			final int version = graph.getEdgeVersion(edge);
+			if (ranks[version] != UNRANKED && (latest[dependency] == -1 || ranks[version] > ranks[latest[dependency]])) {
+				latest[dependency] = version;
+			}
+		}
+		return latest;
+	}
+
+	/**
+	 * Find the edges that depend upon an older version of an artifact than
+	 * the newest one in use.
+	 *
+	 * @return the out of date flag by edge Id.
+	 */
+	public boolean[] findStaleEdges() {
+		final int[] latest = findLatestVersions();
+		final boolean[] stale = new boolean[graph.getEdgeCount()];
+		for (int edge = 0; edge < stale.length; edge++) {
+			final int rank = ranks[graph.getEdgeVersion(edge)];
+			final int newest = latest[graph.getDependency(edge)];
+			stale[edge] = rank != UNRANKED && rank < ranks[newest];
+		}
+		return stale;
+	}
+}
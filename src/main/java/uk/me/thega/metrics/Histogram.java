@@ -0,0 +1,106 @@
+package uk.me.thega.metrics;
+
+/**
+ * Histogram of durations in fixed, roughly logarithmic, millisecond buckets.
+ * <br>
+ * Percentiles are estimated as the upper bound of the bucket they fall in,
+ * capped at the longest duration seen, so recording is constant time and
+ * space however many durations are recorded.
+ * <br>
+ * This class is thread safe.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class Histogram {
+
+	/** The upper bound of each bucket in milliseconds, bar the last which is unbounded. */
+	static final long[] BOUNDS = { 1, 2, 3, 5, 7, 10, 15, 20, 30, 50, 70, 100, 150, 200, 300, 500, 700, 1000, 1500, 2000, 3000, 5000, 10000, 30000 };
+
+	/** The number of durations in each bucket. */
+	private final long[] counts = new long[BOUNDS.length + 1];
+
+	/** The number of durations recorded. */
+	private long count;
+
+	/** The sum of the durations recorded, in nanoseconds. */
+	private long sum;
+
+	/** The longest duration recorded, in nanoseconds. */
+	private long max;
+
+	/**
+	 * Record a duration.
+	 *
+	 * @param nanos the duration in nanoseconds.
+	 */
+	public synchronized void record(final long nanos) {
+		final double millis = nanos / 1e6;
+		int bucket = 0;
+		while (bucket < BOUNDS.length && millis > BOUNDS[bucket]) {
+			bucket++;
+		}
+		counts[bucket]++;
+		count++;
+		sum += nanos;
+		max = Math.max(max, nanos);
+	}
+
+	/**
+	 * Get the number of durations recorded.
+	 *
+	 * @return the count.
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Get the sum of the durations recorded.
+	 *
+	 * @return the sum in nanoseconds.
+	 */
+	public synchronized long getSum() {
+		return sum;
+	}
+
+	/**
+	 * Get the longest duration recorded.
+	 *
+	 * @return the duration in nanoseconds, 0 if none were recorded.
+	 */
+	public synchronized long getMax() {
+		return max;
+	}
+
+	/**
+	 * Get the number of durations in a bucket.
+	 *
+	 * @param bucket the bucket, from 0 to the number of bounds.
+	 * @return the count.
+	 */
+	public synchronized long getBucketCount(final int bucket) {
+		return counts[bucket];
+	}
+
+	/**
+	 * Estimate a percentile of the durations recorded.
+	 *
+	 * @param percentile the percentile, from 0 to 100.
+	 * @return the duration in nanoseconds, 0 if none were recorded.
+	 */
+	public synchronized long getPercentile(final double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int bucket = 0; bucket < BOUNDS.length; bucket++) {
+			seen += counts[bucket];
+			if (seen >= rank) {
+				return Math.min(BOUNDS[bucket] * 1000000, max);
+			}
+		}
+		return max;
+	}
+}
@@ -0,0 +1,588 @@
+package uk.me.thega.metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import uk.me.thega.graph.DependencyGraph;
+
+/**
+ * The timings and counts of an analysis, written out as a JSON report.
+ * <br>
+ * It records:
+ * <ul>
+ * <li>the wall and CPU time of each phase, in the order they ran</li>
+ * <li>a histogram of the time to fetch each POM, by host</li>
+ * <li>the number of fetches that failed and of bytes downloaded</li>
+ * <li>the retries and circuit breaker trips of each host</li>
+ * <li>every POM that could not be read, and why</li>
+ * <li>the number of POMs parsed and the time spent parsing them</li>
+ * <li>the largest size the dependency graph reached</li>
+ * <li>the hits, misses and other counts of each cache used</li>
+ * </ul>
+ * The CPU time of a phase started with {@link #startPhase(String)} is that
+ * of the whole process where the JVM reports it, so that phases fanned out
+ * over threads are measured, and otherwise that of the thread running the
+ * phase; such phases must not overlap. A phase started with {@link
+ * #startThreadPhase(String)} is charged only the CPU time of the thread
+ * running it, so it may overlap others, such as adding each POM to the graph
+ * while the crawl goes on around it.
+ * <br>
+ * This class is thread safe.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class Metrics {
+
+	/** The source of the process's CPU time. */
+	private static final OperatingSystemMXBean OS = ManagementFactory.getOperatingSystemMXBean();
+
+	/** The source of each thread's CPU time. */
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * A phase of the analysis being timed.
+	 */
+	public final class Phase {
+
+		/** The name of the phase. */
+		private final String name;
+
+		/** The wall clock time the phase started, in nanoseconds. */
+		private final long wallStart;
+
+		/** Is the phase charged the CPU time of its own thread alone? */
+		private final boolean threadCpu;
+
+		/** The CPU time the phase started, in nanoseconds. */
+		private final long cpuStart;
+
+		/**
+		 * Default constructor.
+		 *
+		 * @param name the name of the phase.
+		 * @param threadCpu is the phase charged the CPU time of its own thread alone?
+		 */
+		Phase(final String name, final boolean threadCpu) {
+			this.name = name;
+			this.threadCpu = threadCpu;
+			this.wallStart = System.nanoTime();
+			this.cpuStart = (threadCpu) ? threadCpuTime() : cpuTime();
+		}
+
+		/**
+		 * End the phase, adding its times to any earlier run of a phase of
+		 * the same name. A phase charged its own thread's CPU time must be
+		 * ended on the thread that started it.
+		 */
+		public void end() {
+			final long cpuEnd = (threadCpu) ? threadCpuTime() : cpuTime();
+			endPhase(name, System.nanoTime() - wallStart, cpuEnd - cpuStart);
+		}
+	}
+
+	/**
+	 * A POM that could not be read.
+	 */
+	public static final class Failure {
+
+		/** Where the POM is. */
+		private final String location;
+
+		/** Why it could not be read. */
+		private final String reason;
+
+		/**
+		 * Default constructor.
+		 *
+		 * @param location where the POM is.
+		 * @param reason why it could not be read.
+		 */
+		Failure(final String location, final String reason) {
+			this.location = location;
+			this.reason = reason;
+		}
+
+		/**
+		 * Get where the POM is.
+		 *
+		 * @return the URL or path.
+		 */
+		public String getLocation() {
+			return location;
+		}
+
+		/**
+		 * Get why the POM could not be read.
+		 *
+		 * @return the reason.
+		 */
+		public String getReason() {
+			return reason;
+		}
+	}
+
+	/** The wall and CPU time of each phase, in nanoseconds, in the order they started. */
+	private final Map<String, long[]> phases = new LinkedHashMap<String, long[]>();
+
+	/** The phases charged the CPU time of their own thread alone. */
+	private final Set<String> threadPhases = new HashSet<String>();
+
+	/** The fetch times by host. */
+	private final Map<String, Histogram> fetches = new TreeMap<String, Histogram>();
+
+	/** The number of fetches that failed. */
+	private long failures;
+
+	/** The number of retries and of circuit breaker trips, by host. */
+	private final Map<String, long[]> hostEvents = new TreeMap<String, long[]>();
+
+	/** The POMs that could not be read, in the order they failed. */
+	private final List<Failure> failed = new ArrayList<Failure>();
+
+	/** The number of bytes downloaded. */
+	private long bytesDownloaded;
+
+	/** The number of POMs parsed. */
+	private long parsed;
+
+	/** The time spent parsing, in nanoseconds, summed across threads. */
+	private long parseTime;
+
+	/** The most artifacts in the graph. */
+	private int peakArtifacts;
+
+	/** The most edges in the graph. */
+	private int peakEdges;
+
+	/** The most versions in the graph. */
+	private int peakVersions;
+
+	/** The most groups in the graph. */
+	private int peakGroups;
+
+	/** The counts of each cache used, by cache and then count name, in the order recorded. */
+	private final Map<String, Map<String, Long>> caches = new LinkedHashMap<String, Map<String, Long>>();
+
+	/**
+	 * Start timing a phase, charging it the CPU time of the whole process.
+	 *
+	 * @param name the name of the phase.
+	 * @return the phase, to end once it is done.
+	 */
+	public Phase startPhase(final String name) {
+		addPhase(name, false);
+		return new Phase(name, false);
+	}
+
+	/**
+	 * Start timing a phase run on the calling thread alone, charging it only
+	 * that thread's CPU time.
+	 *
+	 * @param name the name of the phase.
+	 * @return the phase, to end on the same thread once it is done.
+	 */
+	public Phase startThreadPhase(final String name) {
+		addPhase(name, true);
+		return new Phase(name, true);
+	}
+
+	/**
+	 * Add a phase to the report, if it is not already there.
+	 *
+	 * @param name the name of the phase.
+	 * @param threadCpu is the phase charged the CPU time of its own thread alone?
+	 */
+	private synchronized void addPhase(final String name, final boolean threadCpu) {
+		if (!phases.containsKey(name)) {
+			phases.put(name, new long[2]);
+			if (threadCpu) {
+				threadPhases.add(name);
+			}
+		}
+	}
+
+	/**
+	 * Record the fetch of a POM.
+	 *
+	 * @param host the host fetched from.
+	 * @param nanos the time taken in nanoseconds.
+	 * @param success did the fetch succeed?
+	 */
+	public void recordFetch(final String host, final long nanos, final boolean success) {
+		Histogram histogram;
+		synchronized (this) {
+			histogram = fetches.get(host);
+			if (histogram == null) {
+				histogram = new Histogram();
+				fetches.put(host, histogram);
+			}
+			if (!success) {
+				failures++;
+			}
+		}
+		histogram.record(nanos);
+	}
+
+	/**
+	 * Record the retry of a fetch.
+	 *
+	 * @param host the host fetched from.
+	 */
+	public synchronized void recordRetry(final String host) {
+		hostEvents(host)[0]++;
+	}
+
+	/**
+	 * Record the opening of a host's circuit breaker.
+	 *
+	 * @param host the host.
+	 */
+	public synchronized void recordBreakerOpen(final String host) {
+		hostEvents(host)[1]++;
+	}
+
+	/**
+	 * Record a POM that could not be read.
+	 *
+	 * @param location where the POM is.
+	 * @param reason why it could not be read.
+	 */
+	public synchronized void recordFailure(final String location, final String reason) {
+		failed.add(new Failure(location, reason));
+	}
+
+	/**
+	 * Record bytes downloaded.
+	 *
+	 * @param bytes the number of bytes.
+	 */
+	public synchronized void recordDownload(final long bytes) {
+		bytesDownloaded += bytes;
+	}
+
+	/**
+	 * Record the parse of a POM.
+	 *
+	 * @param nanos the time taken in nanoseconds.
+	 */
+	public synchronized void recordParse(final long nanos) {
+		parsed++;
+		parseTime += nanos;
+	}
+
+	/**
+	 * Record the size of the dependency graph, keeping the largest seen.
+	 *
+	 * @param graph the graph.
+	 */
+	public synchronized void recordGraph(final DependencyGraph graph) {
+		peakArtifacts = Math.max(peakArtifacts, graph.getArtifactCount());
+		peakEdges = Math.max(peakEdges, graph.getEdgeCount());
+		peakVersions = Math.max(peakVersions, graph.getVersionCount());
+		peakGroups = Math.max(peakGroups, graph.getGroupCount());
+	}
+
+	/**
+	 * Record a count of a cache, such as its hits or misses, replacing any
+	 * recorded before.
+	 *
+	 * @param cache the name of the cache.
+	 * @param count the name of the count.
+	 * @param value the count.
+	 */
+	public synchronized void recordCache(final String cache, final String count, final long value) {
+		Map<String, Long> counts = caches.get(cache);
+		if (counts == null) {
+			counts = new LinkedHashMap<String, Long>();
+			caches.put(cache, counts);
+		}
+		counts.put(count, value);
+	}
+
+	/**
+	 * Get the fetch times from a host.
+	 *
+	 * @param host the host.
+	 * @return the histogram, or null if nothing was fetched from the host.
+	 */
+	public synchronized Histogram getFetches(final String host) {
+		return fetches.get(host);
+	}
+
+	/**
+	 * Get the number of retries of fetches from a host.
+	 *
+	 * @param host the host.
+	 * @return the number of retries.
+	 */
+	public synchronized long getRetries(final String host) {
+		final long[] events = hostEvents.get(host);
+		return (events == null) ? 0 : events[0];
+	}
+
+	/**
+	 * Get the number of times a host's circuit breaker opened.
+	 *
+	 * @param host the host.
+	 * @return the number of times.
+	 */
+	public synchronized long getBreakerOpens(final String host) {
+		final long[] events = hostEvents.get(host);
+		return (events == null) ? 0 : events[1];
+	}
+
+	/**
+	 * Get the POMs that could not be read.
+	 *
+	 * @return a copy of the failures, in the order they happened.
+	 */
+	public synchronized List<Failure> getFailures() {
+		return new ArrayList<Failure>(failed);
+	}
+
+	/**
+	 * Get the number of bytes downloaded.
+	 *
+	 * @return the number of bytes.
+	 */
+	public synchronized long getBytesDownloaded() {
+		return bytesDownloaded;
+	}
+
+	/**
+	 * Get the number of POMs parsed.
+	 *
+	 * @return the number of POMs.
+	 */
+	public synchronized long getParsed() {
+		return parsed;
+	}
+
+	/**
+	 * Get a count of a cache.
+	 *
+	 * @param cache the name of the cache.
+	 * @param count the name of the count.
+	 * @return the count, or -1 if it was never recorded.
+	 */
+	public synchronized long getCacheCount(final String cache, final String count) {
+		final Map<String, Long> counts = caches.get(cache);
+		final Long value = (counts == null) ? null : counts.get(count);
+		return (value == null) ? -1 : value;
+	}
+
+	/**
+	 * Get the wall time of a phase.
+	 *
+	 * @param name the name of the phase.
+	 * @return the time in nanoseconds, or -1 if the phase never started.
+	 */
+	public synchronized long getWallTime(final String name) {
+		final long[] times = phases.get(name);
+		return (times == null) ? -1 : times[0];
+	}
+
+	/**
+	 * Get the CPU time of a phase.
+	 *
+	 * @param name the name of the phase.
+	 * @return the time in nanoseconds, or -1 if the phase never started.
+	 */
+	public synchronized long getCpuTime(final String name) {
+		final long[] times = phases.get(name);
+		return (times == null) ? -1 : times[1];
+	}
+
+	/**
+	 * Write the report as JSON to a file.
+	 *
+	 * @param file the file.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public void writeJson(final File file) throws IOException {
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			writeJson(writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Write the report as JSON.
+	 * <br>
+	 * Times are in milliseconds, and the <code>cpuOf</code> of each phase says
+	 * whether its CPU time is that of the whole <code>process</code> or of the
+	 * <code>thread</code> running it. POMs per second are those parsed over the
+	 * wall time of the <code>crawl</code> phase, or 0 if there was none.
+	 *
+	 * @param writer the writer, which is flushed but not closed.
+	 * @throws IOException if the report cannot be written.
+	 */
+	public synchronized void writeJson(final Writer writer) throws IOException {
+		writer.write("{\n");
+
+		writer.write("  \"phases\": {");
+		String separator = "\n";
+		for (final Map.Entry<String, long[]> phase : phases.entrySet()) {
+			writer.write(separator + "    " + quote(phase.getKey()) + ": {\"wallMillis\": " + millis(phase.getValue()[0]) + ", \"cpuMillis\": "
+					+ millis(phase.getValue()[1]) + ", \"cpuOf\": " + quote((threadPhases.contains(phase.getKey())) ? "thread" : "process") + "}");
+			separator = ",\n";
+		}
+		writer.write((phases.isEmpty()) ? "},\n" : "\n  },\n");
+
+		writer.write("  \"fetch\": {\n");
+		writer.write("    \"failures\": " + failures + ",\n");
+		writer.write("    \"bytesDownloaded\": " + bytesDownloaded + ",\n");
+		writer.write("    \"hosts\": {");
+		separator = "\n";
+		for (final Map.Entry<String, Histogram> host : fetches.entrySet()) {
+			final Histogram histogram = host.getValue();
+			final long[] events = hostEvents.get(host.getKey());
+			writer.write(separator + "      " + quote(host.getKey()) + ": {\"count\": " + histogram.getCount() + ", \"totalMillis\": "
+					+ millis(histogram.getSum()) + ", \"p50Millis\": " + millis(histogram.getPercentile(50)) + ", \"p99Millis\": "
+					+ millis(histogram.getPercentile(99)) + ", \"maxMillis\": " + millis(histogram.getMax()) + ", \"retries\": "
+					+ ((events == null) ? 0 : events[0]) + ", \"breakerOpens\": " + ((events == null) ? 0 : events[1]) + ", \"buckets\": {");
+			for (int bucket = 0; bucket <= Histogram.BOUNDS.length; bucket++) {
+				final String bound = (bucket < Histogram.BOUNDS.length) ? String.valueOf(Histogram.BOUNDS[bucket]) : "+Inf";
+				writer.write(((bucket == 0) ? "" : ", ") + quote(bound) + ": " + histogram.getBucketCount(bucket));
+			}
+			writer.write("}}");
+			separator = ",\n";
+		}
+		writer.write((fetches.isEmpty()) ? "}\n" : "\n    }\n");
+		writer.write("  },\n");
+
+		writer.write("  \"failed\": [");
+		separator = "\n";
+		for (final Failure failure : failed) {
+			writer.write(separator + "    {\"location\": " + quote(failure.getLocation()) + ", \"reason\": " + quote(failure.getReason()) + "}");
+			separator = ",\n";
+		}
+		writer.write((failed.isEmpty()) ? "],\n" : "\n  ],\n");
+
+		final long[] crawl = phases.get("crawl");
+		final double pomsPerSecond = (crawl == null || crawl[0] == 0) ? 0 : parsed * 1e9 / crawl[0];
+		writer.write("  \"parse\": {\"count\": " + parsed + ", \"totalMillis\": " + millis(parseTime) + ", \"pomsPerSecond\": "
+				+ String.format(Locale.ROOT, "%.1f", pomsPerSecond) + "},\n");
+
+		writer.write("  \"peakGraph\": {\"artifacts\": " + peakArtifacts + ", \"edges\": " + peakEdges + ", \"versions\": " + peakVersions
+				+ ", \"groups\": " + peakGroups + "},\n");
+
+		writer.write("  \"caches\": {");
+		separator = "\n";
+		for (final Map.Entry<String, Map<String, Long>> cache : caches.entrySet()) {
+			writer.write(separator + "    " + quote(cache.getKey()) + ": {");
+			String countSeparator = "";
+			for (final Map.Entry<String, Long> count : cache.getValue().entrySet()) {
+				writer.write(countSeparator + quote(count.getKey()) + ": " + count.getValue());
+				countSeparator = ", ";
+			}
+			writer.write("}");
+			separator = ",\n";
+		}
+		writer.write((caches.isEmpty()) ? "}\n" : "\n  }\n");
+		writer.write("}\n");
+		writer.flush();
+	}
+
+	/**
+	 * Add the times of a run of a phase.
+	 *
+	 * @param name the name of the phase.
+	 * @param wall the wall time in nanoseconds.
+	 * @param cpu the CPU time in nanoseconds.
+	 */
+	private synchronized void endPhase(final String name, final long wall, final long cpu) {
+		final long[] times = phases.get(name);
+		times[0] += wall;
+		times[1] += cpu;
+	}
+
+	/**
+	 * Get the CPU time used so far, by the process if the JVM reports it and
+	 * otherwise by the current thread.
+	 *
+	 * @return the time in nanoseconds.
+	 */
+	private static long cpuTime() {
+		if (OS instanceof com.sun.management.OperatingSystemMXBean) {
+			final long time = ((com.sun.management.OperatingSystemMXBean) OS).getProcessCpuTime();
+			if (time >= 0) {
+				return time;
+			}
+		}
+		return threadCpuTime();
+	}
+
+	/**
+	 * Get the CPU time used so far by the current thread.
+	 *
+	 * @return the time in nanoseconds, or 0 if the JVM does not report it.
+	 */
+	private static long threadCpuTime() {
+		return (THREADS.isCurrentThreadCpuTimeSupported()) ? THREADS.getCurrentThreadCpuTime() : 0;
+	}
+
+	/**
+	 * Get the retry and circuit breaker counts of a host, adding them if new.
+	 *
+	 * @param host the host.
+	 * @return the counts.
+	 */
+	private long[] hostEvents(final String host) {
+		long[] events = hostEvents.get(host);
+		if (events == null) {
+			events = new long[2];
+			hostEvents.put(host, events);
+		}
+		return events;
+	}
+
+	/**
+	 * Format nanoseconds as milliseconds.
+	 *
+	 * @param nanos the time in nanoseconds.
+	 * @return the time in milliseconds, to 3 decimal places.
+	 */
+	private static String millis(final long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+	/**
+	 * Quote a string as a JSON string.
+	 *
+	 * @param value the string.
+	 * @return the quoted string.
+	 */
+	private static String quote(final String value) {
+		final StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+}
@@ -0,0 +1,89 @@
+package uk.me.thega.pom;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link PomParser} that only parses poms whose content has changed since
+ * an earlier run, taking the summaries of the rest from that run's
+ * {@link PomSnapshot}.
+ * <br>
+ * Every pom passed through it, parsed or not, is added to a new snapshot,
+ * to be kept for the next run.
+ * <br>
+ * This class is thread safe if the parser it wraps is.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class IncrementalPomParser implements PomParser {
+
+	/** The parser of changed poms. */
+	private final PomParser parser;
+
+	/** The snapshot of the earlier run. */
+	private final PomSnapshot previous;
+
+	/** The snapshot of this run. */
+	private final PomSnapshot current = new PomSnapshot();
+
+	/** The number of poms parsed. */
+	private final AtomicInteger parsed = new AtomicInteger();
+
+	/** The number of poms taken from the earlier run. */
+	private final AtomicInteger reused = new AtomicInteger();
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param parser the parser of changed poms.
+	 * @param previous the snapshot of the earlier run.
+	 */
+	public IncrementalPomParser(final PomParser parser, final PomSnapshot previous) {
+		this.parser = parser;
+		this.previous = previous;
+	}
+
+	public PomSummary parse(final InputStream in) throws IOException {
+		final byte[] body = in.readAllBytes();
+		final long hash = PomSnapshot.hash(body);
+		PomSummary summary = previous.get(hash);
+		if (summary == null) {
+			summary = parser.parse(new ByteArrayInputStream(body));
+			parsed.incrementAndGet();
+		} else {
+			reused.incrementAndGet();
+		}
+		current.put(hash, summary);
+		return summary;
+	}
+
+	/**
+	 * Get the snapshot of the poms passed through so far.
+	 *
+	 * @return the snapshot.
+	 */
+	public PomSnapshot getSnapshot() {
+		return current;
+	}
+
+	/**
+	 * Get the number of poms parsed, being new or changed.
+	 *
+	 * @return the number of poms.
+	 */
+	public int getParsed() {
+		return parsed.get();
+	}
+
+	/**
+	 * Get the number of poms taken from the earlier run's snapshot.
+	 *
+	 * @return the number of poms.
+	 */
+	public int getReused() {
+		return reused.get();
+	}
+}
@@ -0,0 +1,79 @@
+package uk.me.thega.pom;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.fuin.maven.ArtifactNotFoundException;
+import org.fuin.maven.MavenPomReader;
+
+/**
+ * Parser that reads the whole {@link org.apache.maven.model.Model} of a pom
+ * with {@link MavenXpp3Reader} and summarises it.
+ * <br>
+ * Given a local repository, each pom is first merged with its parents from
+ * it, which are parsed once and then shared through
+ * {@link MavenPomReader#getParentCache()}. A pom whose parent is not in the
+ * repository is summarised on its own, while one whose parent cannot be read
+ * fails.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class ModelPomParser implements PomParser {
+
+	/** The local repository to merge parents from, or null. */
+	private final File repositoryDir;
+
+	/**
+	 * Constructor for a parser that summarises each pom on its own.
+	 */
+	public ModelPomParser() {
+		this(null);
+	}
+
+	/**
+	 * Constructor for a parser that merges each pom with its parents first.
+	 *
+	 * @param repositoryDir the local repository to merge parents from, or null to not merge them.
+	 */
+	public ModelPomParser(final File repositoryDir) {
+		this.repositoryDir = repositoryDir;
+	}
+
+	/**
+	 * Get the local repository parents are merged from.
+	 *
+	 * @return the repository, or null if parents are not merged.
+	 */
+	public File getRepositoryDir() {
+		return repositoryDir;
+	}
+
+	public PomSummary parse(final InputStream in) throws IOException {
+		final Model model;
+		try {
+			model = MavenPomReader.readModel(in);
+		} catch (final RuntimeException ex) {
+			// The reader wraps a pom that is not well formed in an unchecked exception
+			if (ex.getCause() instanceof XmlPullParserException) {
+				throw new IOException("Error parsing POM: " + ex.getCause().getMessage(), ex.getCause());
+			}
+			throw ex;
+		}
+		if (repositoryDir == null) {
+			return PomSummary.of(model);
+		}
+		try {
+			return PomSummary.of(MavenPomReader.mergeParents(model, repositoryDir));
+		} catch (final ArtifactNotFoundException ex) {
+			// A parent not installed in the repository, such as another module of the crawl, leaves the pom as it is
+			return PomSummary.of(model);
+		} catch (final RuntimeException ex) {
+			throw new IOException("Error merging POM with its parents: " + ex.getMessage(), ex);
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package uk.me.thega.pom;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A parser of the parts of a pom the analyser uses.
+ * <br>
+ * Implementations are thread safe.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public interface PomParser {
+
+	/**
+	 * Parse a pom from a stream. The stream is not closed.
+	 * 
+	 * @param in the stream to read the pom from.
+	 * @return the summary of the pom.
+	 * @throws IOException if reading from the stream fails, or the pom is not well formed.
+	 */
+	PomSummary parse(InputStream in) throws IOException;
+}
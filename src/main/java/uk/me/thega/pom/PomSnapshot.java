@@ -0,0 +1,249 @@
+package uk.me.thega.pom;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The summaries of the poms read by a run, keyed by a hash of each pom's
+ * content, kept between runs so that a pom whose content has not changed
+ * need not be parsed again.
+ * <br>
+ * A summary holds everything a pom adds to the graph (its coordinates,
+ * modules and dependencies with their versions and scopes), so a graph built
+ * from the summaries of unchanged poms and the parsed ones alone is the same
+ * as one built by parsing them all. Poms no longer reached are simply not
+ * stored again.
+ * <br>
+ * This class is thread safe.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class PomSnapshot {
+
+	/** The first bytes of a snapshot file, "POMS". */
+	static final int MAGIC = 0x504F4D53;
+
+	/** The version of the file format written. */
+	static final int VERSION = 1;
+
+	/** The summaries, by the hash of the pom's content. */
+	private final Map<Long, PomSummary> summaries = new ConcurrentHashMap<Long, PomSummary>();
+
+	/**
+	 * Hash the content of a pom.
+	 *
+	 * @param body the content.
+	 * @return the first 64 bits of its SHA-256.
+	 */
+	public static long hash(final byte[] body) {
+		try {
+			return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(body)).getLong();
+		} catch (final NoSuchAlgorithmException e) {
+			// Every JVM must provide SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Read a snapshot from a file.
+	 *
+	 * @param file the file.
+	 * @return the snapshot, empty if the file does not exist.
+	 * @throws IOException if the file cannot be read or is not a snapshot.
+	 */
+	public static PomSnapshot read(final File file) throws IOException {
+		final PomSnapshot snapshot = new PomSnapshot();
+		if (!file.exists()) {
+			return snapshot;
+		}
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("'" + file + "' is not a POM snapshot");
+			}
+			final int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported POM snapshot version " + version + " in '" + file + "'");
+			}
+			final int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				final long hash = in.readLong();
+				snapshot.put(hash, readSummary(in));
+			}
+		} catch (final EOFException e) {
+			throw new IOException("Truncated POM snapshot '" + file + "'", e);
+		} finally {
+			in.close();
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Get the summary of a pom.
+	 *
+	 * @param hash the hash of the pom's content.
+	 * @return the summary, or null if there is none.
+	 */
+	public PomSummary get(final long hash) {
+		return summaries.get(hash);
+	}
+
+	/**
+	 * Add the summary of a pom.
+	 *
+	 * @param hash the hash of the pom's content.
+	 * @param summary the summary.
+	 */
+	public void put(final long hash, final PomSummary summary) {
+		summaries.put(hash, summary);
+	}
+
+	/**
+	 * Get the number of poms summarised.
+	 *
+	 * @return the number of poms.
+	 */
+	public int size() {
+		return summaries.size();
+	}
+
+	/**
+	 * Write the snapshot to a file, replacing it only once it is complete.
+	 * <br>
+	 * The snapshot is written to a file alongside, forced to disk, and then
+	 * moved over the file atomically, so a crash leaves either the previous
+	 * snapshot or the new one.
+	 *
+	 * @param file the file.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public void write(final File file) throws IOException {
+		final File temp = new File(file.getPath() + ".tmp");
+		boolean replaced = false;
+		try {
+			final FileOutputStream fileOut = new FileOutputStream(temp);
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+			try {
+				final List<Map.Entry<Long, PomSummary>> entries = new ArrayList<Map.Entry<Long, PomSummary>>(summaries.entrySet());
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(entries.size());
+				for (final Map.Entry<Long, PomSummary> entry : entries) {
+					out.writeLong(entry.getKey());
+					writeSummary(out, entry.getValue());
+				}
+				out.flush();
+				fileOut.getFD().sync();
+			} finally {
+				out.close();
+			}
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (final IOException e) {
+				throw new IOException("Unable to replace POM snapshot '" + file + "'", e);
+			}
+			replaced = true;
+		} finally {
+			// Leave no partial file behind, however the write failed
+			if (!replaced) {
+				temp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Write a summary.
+	 *
+	 * @param out the stream.
+	 * @param summary the summary.
+	 * @throws IOException if writing fails.
+	 */
+	private static void writeSummary(final DataOutputStream out, final PomSummary summary) throws IOException {
+		writeString(out, summary.getGroupId());
+		writeString(out, summary.getArtifactId());
+		writeString(out, summary.getVersion());
+		final PomSummary.Coordinate parent = summary.getParent();
+		out.writeBoolean(parent != null);
+		if (parent != null) {
+			writeString(out, parent.getGroupId());
+			writeString(out, parent.getArtifactId());
+			writeString(out, parent.getVersion());
+		}
+		out.writeInt(summary.getModules().size());
+		for (final String module : summary.getModules()) {
+			writeString(out, module);
+		}
+		out.writeInt(summary.getDependencies().size());
+		for (final PomSummary.Dependency dependency : summary.getDependencies()) {
+			writeString(out, dependency.getGroupId());
+			writeString(out, dependency.getArtifactId());
+			writeString(out, dependency.getVersion());
+			writeString(out, dependency.getScope());
+		}
+	}
+
+	/**
+	 * Read a summary.
+	 *
+	 * @param in the stream.
+	 * @return the summary.
+	 * @throws IOException if reading fails.
+	 */
+	private static PomSummary readSummary(final DataInputStream in) throws IOException {
+		final PomSummary.Coordinate coordinate = new PomSummary.Coordinate(readString(in), readString(in), readString(in));
+		final PomSummary.Coordinate parent = (in.readBoolean()) ? new PomSummary.Coordinate(readString(in), readString(in), readString(in)) : null;
+		final int moduleCount = in.readInt();
+		final List<String> modules = new ArrayList<String>(moduleCount);
+		for (int i = 0; i < moduleCount; i++) {
+			modules.add(readString(in));
+		}
+		final int dependencyCount = in.readInt();
+		final List<PomSummary.Dependency> dependencies = new ArrayList<PomSummary.Dependency>(dependencyCount);
+		for (int i = 0; i < dependencyCount; i++) {
+			dependencies.add(new PomSummary.Dependency(readString(in), readString(in), readString(in), readString(in)));
+		}
+		return new PomSummary(coordinate, parent, modules, dependencies);
+	}
+
+	/**
+	 * Write a string that may be null.
+	 *
+	 * @param out the stream.
+	 * @param value the string, or null.
+	 * @throws IOException if writing fails.
+	 */
+	private static void writeString(final DataOutputStream out, final String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	/**
+	 * Read a string that may be null.
+	 *
+	 * @param in the stream.
+	 * @return the string, or null.
+	 * @throws IOException if reading fails.
+	 */
+	private static String readString(final DataInputStream in) throws IOException {
+		return (in.readBoolean()) ? in.readUTF() : null;
+	}
+}
@@ -0,0 +1,259 @@
+package uk.me.thega.pom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+
+/**
+ * The parts of a pom the analyser uses: its coordinates, its parent, the
+ * modules it declares and its dependencies.
+ * <br>
+ * Instances are immutable.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public final class PomSummary {
+
+	/**
+	 * The coordinates of an artifact, such as a parent.
+	 */
+	public static class Coordinate {
+
+		/** The groupId, may be null. */
+		private final String groupId;
+
+		/** The artifactId, may be null. */
+		private final String artifactId;
+
+		/** The version, may be null. */
+		private final String version;
+
+		/**
+		 * Default constructor.
+		 * 
+		 * @param groupId the groupId.
+		 * @param artifactId the artifactId.
+		 * @param version the version.
+		 */
+		public Coordinate(final String groupId, final String artifactId, final String version) {
+			this.groupId = groupId;
+			this.artifactId = artifactId;
+			this.version = version;
+		}
+
+		/**
+		 * Get the groupId.
+		 * 
+		 * @return the groupId, may be null.
+		 */
+		public String getGroupId() {
+			return groupId;
+		}
+
+		/**
+		 * Get the artifactId.
+		 * 
+		 * @return the artifactId, may be null.
+		 */
+		public String getArtifactId() {
+			return artifactId;
+		}
+
+		/**
+		 * Get the version.
+		 * 
+		 * @return the version, may be null.
+		 */
+		public String getVersion() {
+			return version;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (obj == null || obj.getClass() != getClass()) {
+				return false;
+			}
+			final Coordinate other = (Coordinate) obj;
+			return Objects.equals(groupId, other.groupId) && Objects.equals(artifactId, other.artifactId) && Objects.equals(version, other.version);
+		}
+
+		@Override
+		public int hashCode() {
+			return (Objects.hashCode(groupId) * 31 + Objects.hashCode(artifactId)) * 31 + Objects.hashCode(version);
+		}
+
+		@Override
+		public String toString() {
+			return groupId + ":" + artifactId + ":" + version;
+		}
+	}
+
+	/**
+	 * A dependency upon a version of an artifact.
+	 */
+	public static final class Dependency extends Coordinate {
+
+		/** The scope, or null for the default. */
+		private final String scope;
+
+		/**
+		 * Default constructor.
+		 * 
+		 * @param groupId the groupId.
+		 * @param artifactId the artifactId.
+		 * @param version the version.
+		 * @param scope the scope, or null for the default.
+		 */
+		public Dependency(final String groupId, final String artifactId, final String version, final String scope) {
+			super(groupId, artifactId, version);
+			this.scope = scope;
+		}
+
+		/**
+		 * Get the scope.
+		 * 
+		 * @return the scope, or null for the default.
+		 */
+		public String getScope() {
+			return scope;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return super.equals(obj) && Objects.equals(scope, ((Dependency) obj).scope);
+		}
+
+		@Override
+		public int hashCode() {
+			return super.hashCode() * 31 + Objects.hashCode(scope);
+		}
+
+		@Override
+		public String toString() {
+			return (scope == null) ? super.toString() : super.toString() + ":" + scope;
+		}
+	}
+
+	/** The coordinates of the pom. */
+	private final Coordinate coordinate;
+
+	/** The parent, or null. */
+	private final Coordinate parent;
+
+	/** The modules, in declared order. */
+	private final List<String> modules;
+
+	/** The dependencies, in declared order. */
+	private final List<Dependency> dependencies;
+
+	/**
+	 * Default constructor.
+	 * 
+	 * @param coordinate the coordinates of the pom.
+	 * @param parent the parent, or null.
+	 * @param modules the modules, in declared order.
+	 * @param dependencies the dependencies, in declared order.
+	 */
+	public PomSummary(final Coordinate coordinate, final Coordinate parent, final List<String> modules, final List<Dependency> dependencies) {
+		this.coordinate = coordinate;
+		this.parent = parent;
+		this.modules = Collections.unmodifiableList(new ArrayList<String>(modules));
+		this.dependencies = Collections.unmodifiableList(new ArrayList<Dependency>(dependencies));
+	}
+
+	/**
+	 * Summarise a model.
+	 * 
+	 * @param model the model.
+	 * @return the summary.
+	 */
+	public static PomSummary of(final Model model) {
+		final Parent parent = model.getParent();
+		final List<Dependency> dependencies = new ArrayList<Dependency>(model.getDependencies().size());
+		for (final org.apache.maven.model.Dependency dependency : model.getDependencies()) {
+			dependencies.add(new Dependency(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion(), dependency.getScope()));
+		}
+		return new PomSummary(new Coordinate(model.getGroupId(), model.getArtifactId(), model.getVersion()),
+				(parent == null) ? null : new Coordinate(parent.getGroupId(), parent.getArtifactId(), parent.getVersion()),
+				model.getModules(), dependencies);
+	}
+
+	/**
+	 * Get the groupId.
+	 * 
+	 * @return the groupId, null if it is inherited from the parent.
+	 */
+	public String getGroupId() {
+		return coordinate.getGroupId();
+	}
+
+	/**
+	 * Get the artifactId.
+	 * 
+	 * @return the artifactId.
+	 */
+	public String getArtifactId() {
+		return coordinate.getArtifactId();
+	}
+
+	/**
+	 * Get the version.
+	 * 
+	 * @return the version, null if it is inherited from the parent.
+	 */
+	public String getVersion() {
+		return coordinate.getVersion();
+	}
+
+	/**
+	 * Get the parent.
+	 * 
+	 * @return the parent, or null.
+	 */
+	public Coordinate getParent() {
+		return parent;
+	}
+
+	/**
+	 * Get the modules.
+	 * 
+	 * @return the modules, in declared order.
+	 */
+	public List<String> getModules() {
+		return modules;
+	}
+
+	/**
+	 * Get the dependencies.
+	 * 
+	 * @return the dependencies, in declared order.
+	 */
+	public List<Dependency> getDependencies() {
+		return dependencies;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (!(obj instanceof PomSummary)) {
+			return false;
+		}
+		final PomSummary other = (PomSummary) obj;
+		return coordinate.equals(other.coordinate) && Objects.equals(parent, other.parent) && modules.equals(other.modules)
+				&& dependencies.equals(other.dependencies);
+	}
+
+	@Override
+	public int hashCode() {
+		return ((coordinate.hashCode() * 31 + Objects.hashCode(parent)) * 31 + modules.hashCode()) * 31 + dependencies.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return coordinate + " parent=" + parent + " modules=" + modules + " dependencies=" + dependencies;
+	}
+}
@@ -0,0 +1,186 @@
+package uk.me.thega.pom;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Parser that streams through a pom with StAX, keeping only the parts the
+ * analyser uses.
+ * <br>
+ * Only the coordinates, parent, modules and dependencies directly beneath
+ * <code>&lt;project&gt;</code> are read; every other element, such as the
+ * build, profiles, reporting and dependency management, is skipped without
+ * building anything from it. Values are trimmed, as {@link
+ * org.apache.maven.model.io.xpp3.MavenXpp3Reader} trims them.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public class StaxPomParser implements PomParser {
+
+	/** The factory of stream readers, guarded by itself. */
+	private final XMLInputFactory factory;
+
+	/**
+	 * Default constructor.
+	 */
+	public StaxPomParser() {
+		factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+	}
+
+	public PomSummary parse(final InputStream in) throws IOException {
+		try {
+			final XMLStreamReader reader;
+			synchronized (factory) {
+				reader = factory.createXMLStreamReader(in);
+			}
+			try {
+				return parseProject(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (final XMLStreamException ex) {
+			throw new IOException("Error parsing POM: " + String.valueOf(ex.getMessage()).replace('\n', ' '), ex);
+		}
+	}
+
+	/**
+	 * Parse the project element.
+	 * 
+	 * @param reader the reader, before the project element.
+	 * @return the summary of the pom.
+	 * @throws XMLStreamException if the pom is not well formed.
+	 */
+	private static PomSummary parseProject(final XMLStreamReader reader) throws XMLStreamException {
+		reader.nextTag();
+		if (!"project".equals(reader.getLocalName())) {
+			throw new XMLStreamException("Expected root element 'project' but found '" + reader.getLocalName() + "'", reader.getLocation());
+		}
+
+		String groupId = null, artifactId = null, version = null;
+		PomSummary.Coordinate parent = null;
+		final List<String> modules = new ArrayList<String>();
+		final List<PomSummary.Dependency> dependencies = new ArrayList<PomSummary.Dependency>();
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			final String name = reader.getLocalName();
+			if (name.equals("groupId")) {
+				groupId = text(reader);
+			} else if (name.equals("artifactId")) {
+				artifactId = text(reader);
+			} else if (name.equals("version")) {
+				version = text(reader);
+			} else if (name.equals("parent")) {
+				parent = parseParent(reader);
+			} else if (name.equals("modules")) {
+				while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					if (reader.getLocalName().equals("module")) {
+						modules.add(text(reader));
+					} else {
+						skip(reader);
+					}
+				}
+			} else if (name.equals("dependencies")) {
+				while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+					if (reader.getLocalName().equals("dependency")) {
+						dependencies.add(parseDependency(reader));
+					} else {
+						skip(reader);
+					}
+				}
+			} else {
+				skip(reader);
+			}
+		}
+		return new PomSummary(new PomSummary.Coordinate(groupId, artifactId, version), parent, modules, dependencies);
+	}
+
+	/**
+	 * Parse a parent element.
+	 * 
+	 * @param reader the reader, at the start of the element.
+	 * @return the parent.
+	 * @throws XMLStreamException if the pom is not well formed.
+	 */
+	private static PomSummary.Coordinate parseParent(final XMLStreamReader reader) throws XMLStreamException {
+		String groupId = null, artifactId = null, version = null;
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			final String name = reader.getLocalName();
+			if (name.equals("groupId")) {
+				groupId = text(reader);
+			} else if (name.equals("artifactId")) {
+				artifactId = text(reader);
+			} else if (name.equals("version")) {
+				version = text(reader);
+			} else {
+				skip(reader);
+			}
+		}
+		return new PomSummary.Coordinate(groupId, artifactId, version);
+	}
+
+	/**
+	 * Parse a dependency element.
+	 * 
+	 * @param reader the reader, at the start of the element.
+	 * @return the dependency.
+	 * @throws XMLStreamException if the pom is not well formed.
+	 */
+	private static PomSummary.Dependency parseDependency(final XMLStreamReader reader) throws XMLStreamException {
+		String groupId = null, artifactId = null, version = null, scope = null;
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			final String name = reader.getLocalName();
+			if (name.equals("groupId")) {
+				groupId = text(reader);
+			} else if (name.equals("artifactId")) {
+				artifactId = text(reader);
+			} else if (name.equals("version")) {
+				version = text(reader);
+			} else if (name.equals("scope")) {
+				scope = text(reader);
+			} else {
+				skip(reader);
+			}
+		}
+		return new PomSummary.Dependency(groupId, artifactId, version, scope);
+	}
+
+	/**
+	 * Read the trimmed text of a text only element.
+	 * 
+	 * @param reader the reader, at the start of the element.
+	 * @return the text.
+	 * @throws XMLStreamException if the pom is not well formed.
+	 */
+	private static String text(final XMLStreamReader reader) throws XMLStreamException {
+		return reader.getElementText().trim();
+	}
+
+	/**
+	 * Skip an element and everything in it.
+	 * 
+	 * @param reader the reader, at the start of the element.
+	 * @throws XMLStreamException if the pom is not well formed.
+	 */
+	private static void skip(final XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			final int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+}
@@ -0,0 +1,440 @@
+package uk.me.thega.url;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import uk.me.thega.metrics.Metrics;
+
+/**
+ * Scheduler of the HTTP requests of a crawl, host by host.
+ * <br>
+ * For each host it:
+ * <ul>
+ * <li>caps the requests in flight, adapting the cap in AIMD style: it
+ * grows by one for each cap's worth of successes, up to the most allowed,
+ * and halves, once per cap's worth of requests, when the host throttles us
+ * with a 429 or 503 or times out</li>
+ * <li>retries requests that fail with an I/O error, a 429 or a 5xx, after a
+ * jittered exponential backoff, or as long as a Retry-After asks</li>
+ * <li>opens a circuit breaker once enough requests fail in a row, failing
+ * every request to the host at once until a cool down has passed, then
+ * lets a single request through to decide whether to close it again</li>
+ * </ul>
+ * This class is thread safe.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class FetchScheduler {
+
+	/** The default number of times a request is retried. */
+	public static final int DEFAULT_MAX_RETRIES = 3;
+
+	/** The default most requests in flight to a host. */
+	public static final int DEFAULT_HOST_CONCURRENCY = 16;
+
+	/** The default backoff before the first retry, in milliseconds, doubled for each retry after. */
+	static final long DEFAULT_BASE_BACKOFF = 100;
+
+	/** The default longest backoff before a retry, in milliseconds. */
+	static final long DEFAULT_MAX_BACKOFF = 10000;
+
+	/** The default number of failures in a row that opens a host's circuit breaker. */
+	static final int DEFAULT_BREAKER_THRESHOLD = 5;
+
+	/** The default time a host's circuit breaker stays open, in milliseconds. */
+	static final long DEFAULT_BREAKER_COOL_DOWN = 30000;
+
+	/** The thread retries wait on, which does not keep the JVM alive. */
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "FetchScheduler");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * The state of a host.
+	 */
+	private static final class Host {
+
+		/** The name of the host. */
+		private final String name;
+
+		/** The cap on requests in flight, of which the whole part is used. */
+		private double limit;
+
+		/** The number of requests in flight. */
+		private int inFlight;
+
+		/** The requests waiting for a place under the cap, first come first. */
+		private final LinkedList<Request> waiting = new LinkedList<Request>();
+
+		/** The number of requests that have failed in a row. */
+		private int failures;
+
+		/** The time the circuit breaker may let a request through, in nanoseconds, if it is open. */
+		private long openUntil;
+
+		/** Is the circuit breaker open, or letting a single request through? */
+		private boolean open;
+
+		/** Bumped each time the cap is cut, so a burst of throttled requests cuts it once. */
+		private int generation;
+
+		/**
+		 * Default constructor.
+		 *
+		 * @param name the name of the host.
+		 * @param limit the initial cap.
+		 */
+		Host(final String name, final double limit) {
+			this.name = name;
+			this.limit = limit;
+		}
+	}
+
+	/**
+	 * A request, across all of its attempts.
+	 */
+	private static final class Request {
+
+		/** The host the request is to. */
+		private final Host host;
+
+		/** Starts an attempt at the request. */
+		private final Supplier<CompletableFuture<HttpResponse<byte[]>>> attempt;
+
+		/** The final response. */
+		private final CompletableFuture<HttpResponse<byte[]>> result = new CompletableFuture<HttpResponse<byte[]>>();
+
+		/** The number of attempts started. */
+		private int attempts;
+
+		/** The generation of the host's cap when the last attempt started. */
+		private int generation;
+
+		/**
+		 * Default constructor.
+		 *
+		 * @param host the host.
+		 * @param attempt starts an attempt at the request.
+		 */
+		Request(final Host host, final Supplier<CompletableFuture<HttpResponse<byte[]>>> attempt) {
+			this.host = host;
+			this.attempt = attempt;
+		}
+	}
+
+	/** The number of times a request is retried. */
+	private final int maxRetries;
+
+	/** The most requests in flight to a host. */
+	private final int hostConcurrency;
+
+	/** The backoff before the first retry, in milliseconds. */
+	private long baseBackoff = DEFAULT_BASE_BACKOFF;
+
+	/** The longest backoff before a retry, in milliseconds. */
+	private long maxBackoff = DEFAULT_MAX_BACKOFF;
+
+	/** The number of failures in a row that opens a host's circuit breaker. */
+	private int breakerThreshold = DEFAULT_BREAKER_THRESHOLD;
+
+	/** The time a host's circuit breaker stays open, in milliseconds. */
+	private long breakerCoolDown = DEFAULT_BREAKER_COOL_DOWN;
+
+	/** The hosts, by name. */
+	private final Map<String, Host> hosts = new HashMap<String, Host>();
+
+	/** The metrics to record retries and open breakers in, or null. */
+	private volatile Metrics metrics;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param maxRetries the number of times a request is retried.
+	 * @param hostConcurrency the most requests in flight to a host.
+	 */
+	public FetchScheduler(final int maxRetries, final int hostConcurrency) {
+		this.maxRetries = maxRetries;
+		this.hostConcurrency = hostConcurrency;
+	}
+
+	/**
+	 * Set the backoff between retries.
+	 *
+	 * @param baseBackoff the backoff before the first retry, in milliseconds.
+	 * @param maxBackoff the longest backoff, in milliseconds.
+	 */
+	synchronized void setBackoff(final long baseBackoff, final long maxBackoff) {
+		this.baseBackoff = baseBackoff;
+		this.maxBackoff = maxBackoff;
+	}
+
+	/**
+	 * Set when a host's circuit breaker opens and for how long.
+	 *
+	 * @param breakerThreshold the number of failures in a row that opens it.
+	 * @param breakerCoolDown the time it stays open, in milliseconds.
+	 */
+	synchronized void setBreaker(final int breakerThreshold, final long breakerCoolDown) {
+		this.breakerThreshold = breakerThreshold;
+		this.breakerCoolDown = breakerCoolDown;
+	}
+
+	/**
+	 * Set the metrics to record retries and open breakers in.
+	 *
+	 * @param metrics the metrics, or null to record nothing.
+	 */
+	public void setMetrics(final Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Get the cap on requests in flight to a host.
+	 *
+	 * @param host the host.
+	 * @return the cap.
+	 */
+	synchronized int getLimit(final String host) {
+		final Host state = hosts.get(host);
+		return (state == null) ? hostConcurrency : allowed(state);
+	}
+
+	/**
+	 * Send a request once there is room for it under its host's cap,
+	 * retrying it if it fails.
+	 *
+	 * @param host the host the request is to.
+	 * @param attempt starts an attempt at the request.
+	 * @return the final response, which may be an error, or completed
+	 *         exceptionally with the {@link IOException} of the last attempt.
+	 */
+	public CompletableFuture<HttpResponse<byte[]>> send(final String host, final Supplier<CompletableFuture<HttpResponse<byte[]>>> attempt) {
+		final Request request;
+		synchronized (this) {
+			Host state = hosts.get(host);
+			if (state == null) {
+				state = new Host(host, hostConcurrency);
+				hosts.put(host, state);
+			}
+			request = new Request(state, attempt);
+		}
+		submit(request);
+		return request.result;
+	}
+
+	/**
+	 * Queue a request for its host, or fail it if the host's circuit breaker
+	 * is open.
+	 *
+	 * @param request the request.
+	 */
+	private void submit(final Request request) {
+		final Host host = request.host;
+		final boolean open;
+		synchronized (this) {
+			open = isOpen(host);
+			if (!open) {
+				host.waiting.add(request);
+			}
+		}
+		if (open) {
+			request.result.completeExceptionally(circuitOpen(host));
+			return;
+		}
+		drain(host);
+	}
+
+	/**
+	 * Start as many waiting requests to a host as its cap allows.
+	 *
+	 * @param host the host.
+	 */
+	private void drain(final Host host) {
+		final List<Request> started = new ArrayList<Request>();
+		synchronized (this) {
+			while (host.inFlight < allowed(host) && !host.waiting.isEmpty()) {
+				final Request request = host.waiting.poll();
+				request.generation = host.generation;
+				request.attempts++;
+				host.inFlight++;
+				started.add(request);
+			}
+		}
+		for (final Request request : started) {
+			start(request);
+		}
+	}
+
+	/**
+	 * Start an attempt at a request.
+	 *
+	 * @param request the request.
+	 */
+	private void start(final Request request) {
+		CompletableFuture<HttpResponse<byte[]>> attempt;
+		try {
+			attempt = request.attempt.get();
+		} catch (final RuntimeException e) {
+			attempt = CompletableFuture.failedFuture(e);
+		}
+		attempt.whenComplete(new BiConsumer<HttpResponse<byte[]>, Throwable>() {
+			public void accept(final HttpResponse<byte[]> response, final Throwable failure) {
+				complete(request, response, (failure instanceof CompletionException && failure.getCause() != null) ? failure.getCause() : failure);
+			}
+		});
+	}
+
+	/**
+	 * Handle the outcome of an attempt at a request: adapt its host's cap
+	 * and circuit breaker, then finish or retry the request.
+	 *
+	 * @param request the request.
+	 * @param response the response, or null if the attempt failed.
+	 * @param failure the failure, or null if there was a response.
+	 */
+	private void complete(final Request request, final HttpResponse<byte[]> response, final Throwable failure) {
+		final Host host = request.host;
+		final int status = (response == null) ? 0 : response.statusCode();
+		final boolean throttled = failure instanceof HttpTimeoutException || status == 429 || status == 503;
+		final boolean retryable = failure instanceof IOException || status == 429 || status / 100 == 5;
+
+		final boolean retry;
+		final boolean tripped;
+		List<Request> dropped = null;
+		synchronized (this) {
+			host.inFlight--;
+			if (!retryable) {
+				// The host answered, even if only to say there is no such pom
+				host.failures = 0;
+				host.open = false;
+				host.limit = Math.min(hostConcurrency, host.limit + 1 / host.limit);
+				retry = false;
+				tripped = false;
+			} else {
+				host.failures++;
+				if (throttled && request.generation == host.generation) {
+					host.limit = Math.max(1, host.limit / 2);
+					host.generation++;
+				}
+				// A failed trial request re-opens the breaker straight away
+				tripped = host.failures >= breakerThreshold || host.open;
+				if (tripped) {
+					host.open = true;
+					host.openUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(breakerCoolDown);
+					dropped = new ArrayList<Request>(host.waiting);
+					host.waiting.clear();
+				}
+				retry = !tripped && request.attempts <= maxRetries;
+			}
+		}
+
+		final Metrics metrics = this.metrics;
+		if (tripped && metrics != null) {
+			metrics.recordBreakerOpen(host.name);
+		}
+		if (retry) {
+			if (metrics != null) {
+				metrics.recordRetry(host.name);
+			}
+			TIMER.schedule(new Runnable() {
+				public void run() {
+					submit(request);
+				}
+			}, backoff(request.attempts, response), TimeUnit.MILLISECONDS);
+		} else if (response != null) {
+			request.result.complete(response);
+		} else {
+			request.result.completeExceptionally(failure);
+		}
+		if (dropped != null) {
+			for (final Request each : dropped) {
+				each.result.completeExceptionally(circuitOpen(host));
+			}
+		}
+		drain(host);
+	}
+
+	/**
+	 * Is a host's circuit breaker open, refusing every request?
+	 * <br>
+	 * Once the cool down has passed the breaker stays open only in that a
+	 * single request at a time is let through.
+	 *
+	 * @param host the host.
+	 * @return true if requests to the host must fail.
+	 */
+	private boolean isOpen(final Host host) {
+		return host.open && System.nanoTime() - host.openUntil < 0;
+	}
+
+	/**
+	 * Get the number of requests a host may have in flight.
+	 *
+	 * @param host the host.
+	 * @return the cap, 1 while its circuit breaker lets a single request through.
+	 */
+	private int allowed(final Host host) {
+		return (host.open) ? 1 : Math.max(1, (int) host.limit);
+	}
+
+	/**
+	 * Get the time to wait before retrying a request: a random time up to
+	 * the base backoff doubled for each attempt made, but no less than the
+	 * host asked for in a Retry-After header.
+	 *
+	 * @param attempts the number of attempts made.
+	 * @param response the last response, or null.
+	 * @return the time in milliseconds.
+	 */
+	private long backoff(final int attempts, final HttpResponse<byte[]> response) {
+		final long base;
+		final long max;
+		synchronized (this) {
+			base = baseBackoff;
+			max = maxBackoff;
+		}
+		final long ceiling = (attempts > 30) ? max : Math.min(max, base << (attempts - 1));
+		long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+		if (response != null) {
+			final String retryAfter = response.headers().firstValue("Retry-After").orElse(null);
+			if (retryAfter != null) {
+				try {
+					delay = Math.max(delay, Math.min(max, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()))));
+				} catch (final NumberFormatException e) {
+					// An HTTP date is not worth parsing for a backoff this short
+				}
+			}
+		}
+		return delay;
+	}
+
+	/**
+	 * Create the failure of a request refused by an open circuit breaker.
+	 *
+	 * @param host the host.
+	 * @return the failure.
+	 */
+	private static IOException circuitOpen(final Host host) {
+		return new IOException("Circuit breaker open for " + host.name);
+	}
+}
@@ -0,0 +1,437 @@
+package uk.me.thega.url;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Size bounded, least recently used, on-disk cache of fetched pom.xml bodies.
+ * <br>
+ * Each entry is keyed by URL and stored as two files: the body and a properties
+ * file holding the URL and the <code>ETag</code> and <code>Last-Modified</code>
+ * validators the server returned, so that the next run can revalidate with a
+ * conditional request. The body's modification time records when the entry
+ * was last used, which rebuilds the LRU order when the cache is reopened.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class PomCache {
+
+	/** The extension of cached bodies. */
+	private static final String BODY_EXTENSION = ".pom";
+
+	/** The extension of cached entry metadata. */
+	private static final String META_EXTENSION = ".properties";
+
+	/** The metadata key for the URL. */
+	private static final String URL_KEY = "url";
+
+	/** The metadata key for the ETag validator. */
+	private static final String ETAG_KEY = "etag";
+
+	/** The metadata key for the Last-Modified validator. */
+	private static final String LAST_MODIFIED_KEY = "lastModified";
+
+	/**
+	 * A cached pom.xml body and its validators.
+	 */
+	public static final class Entry {
+
+		/** The URL the body was fetched from. */
+		private final String url;
+
+		/** The ETag header, or null. */
+		private final String etag;
+
+		/** The Last-Modified header, or null. */
+		private final String lastModified;
+
+		/** The name the entry files share. */
+		private final String name;
+
+		/** The size of the body in bytes. */
+		private final long size;
+
+		/**
+		 * Default constructor.
+		 *
+		 * @param url the URL.
+		 * @param etag the ETag header.
+		 * @param lastModified the Last-Modified header.
+		 * @param name the file name stem.
+		 * @param size the body size.
+		 */
+		Entry(final String url, final String etag, final String lastModified, final String name, final long size) {
+			this.url = url;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.name = name;
+			this.size = size;
+		}
+
+		/**
+		 * Get the ETag header the body was served with.
+		 *
+		 * @return the ETag, or null.
+		 */
+		public String getEtag() {
+			return etag;
+		}
+
+		/**
+		 * Get the Last-Modified header the body was served with.
+		 *
+		 * @return the Last-Modified date, or null.
+		 */
+		public String getLastModified() {
+			return lastModified;
+		}
+	}
+
+	/** The directory entries are stored in. */
+	private final File directory;
+
+	/** The maximum total size of the cached bodies in bytes. */
+	private final long maxBytes;
+
+	/** The entries by URL, least recently used first. */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	/** The total size of the cached bodies in bytes. */
+	private long totalBytes = 0;
+
+	/** The number of bodies reused after a 304. */
+	private long hits = 0;
+
+	/** The number of bodies downloaded in full. */
+	private long misses = 0;
+
+	/** The number of conditional requests sent. */
+	private long revalidations = 0;
+
+	/** The number of bytes not downloaded thanks to the cache. */
+	private long bytesSaved = 0;
+
+	/**
+	 * Open (or create) a cache in a directory.
+	 *
+	 * @param directory the directory to store entries in.
+	 * @param maxBytes the maximum total size of the cached bodies.
+	 * @throws IOException if the directory cannot be created.
+	 */
+	public PomCache(final File directory, final long maxBytes) throws IOException {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create cache directory " + directory);
+		}
+		loadEntries();
+	}
+
+	/**
+	 * Find the entry cached for a URL, to revalidate it.
+	 *
+	 * @param url the URL.
+	 * @return the entry, or null if the URL has not been cached.
+	 */
+	public synchronized Entry lookup(final String url) {
+		final Entry entry = entries.get(url);
+		if (entry != null && (entry.etag != null || entry.lastModified != null)) {
+			revalidations++;
+		}
+		return entry;
+	}
+
+	/**
+	 * Read the cached body for an entry the server reported as not modified.
+	 *
+	 * @param entry the entry.
+	 * @return the body, or null if it has gone from disk.
+	 */
+	public synchronized byte[] read(final Entry entry) {
+		final File body = new File(directory, entry.name + BODY_EXTENSION);
+		try {
+			final byte[] bytes = readFile(body);
+			body.setLastModified(System.currentTimeMillis());
+			hits++;
+			bytesSaved += bytes.length;
+			return bytes;
+		} catch (final IOException e) {
+			remove(entry.url);
+			return null;
+		}
+	}
+
+	/**
+	 * Store a freshly downloaded body, evicting the least recently used
+	 * entries if the cache grows too large.
+	 *
+	 * @param url the URL the body was fetched from.
+	 * @param etag the ETag header, or null.
+	 * @param lastModified the Last-Modified header, or null.
+	 * @param body the body.
+	 */
+	public synchronized void store(final String url, final String etag, final String lastModified, final byte[] body) {
+		misses++;
+		remove(url);
+		if (body.length > maxBytes || (etag == null && lastModified == null)) {
+			// Nothing to revalidate against, so the entry could never be reused
+			return;
+		}
+
+		final String name = nameFor(url);
+		final Properties meta = new Properties();
+		meta.setProperty(URL_KEY, url);
+		if (etag != null) {
+			meta.setProperty(ETAG_KEY, etag);
+		}
+		if (lastModified != null) {
+			meta.setProperty(LAST_MODIFIED_KEY, lastModified);
+		}
+
+		try {
+			writeFile(new File(directory, name + BODY_EXTENSION), body);
+			final OutputStream out = new FileOutputStream(new File(directory, name + META_EXTENSION));
+			try {
+				meta.store(out, null);
+			} finally {
+				out.close();
+			}
+		} catch (final IOException e) {
+			// A cache that cannot be written to is just a cache that misses
+			deleteFiles(name);
+			return;
+		}
+
+		entries.put(url, new Entry(url, etag, lastModified, name, body.length));
+		totalBytes += body.length;
+		evict();
+	}
+
+	/**
+	 * Get the number of bodies reused after the server reported them unchanged.
+	 *
+	 * @return the number of hits.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of bodies downloaded in full.
+	 *
+	 * @return the number of misses.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Get the number of conditional requests sent.
+	 *
+	 * @return the number of revalidations.
+	 */
+	public synchronized long getRevalidations() {
+		return revalidations;
+	}
+
+	/**
+	 * Get the number of body bytes that were not downloaded thanks to the cache.
+	 *
+	 * @return the number of bytes saved.
+	 */
+	public synchronized long getBytesSaved() {
+		return bytesSaved;
+	}
+
+	/**
+	 * Remove the entry for a URL, if any.
+	 *
+	 * @param url the URL.
+	 */
+	private void remove(final String url) {
+		final Entry entry = entries.remove(url);
+		if (entry != null) {
+			totalBytes -= entry.size;
+			deleteFiles(entry.name);
+		}
+	}
+
+	/**
+	 * Drop least recently used entries until the cache fits its bound.
+	 */
+	private void evict() {
+		final Iterator<Entry> it = entries.values().iterator();
+		while (totalBytes > maxBytes && it.hasNext()) {
+			final Entry entry = it.next();
+			it.remove();
+			totalBytes -= entry.size;
+			deleteFiles(entry.name);
+		}
+	}
+
+	/**
+	 * Load the entries already on disk, in least recently used order.
+	 */
+	private void loadEntries() {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		final List<File> bodies = new ArrayList<File>();
+		for (final File file : files) {
+			if (file.getName().endsWith(BODY_EXTENSION)) {
+				bodies.add(file);
+			}
+		}
+		Collections.sort(bodies, new Comparator<File>() {
+			public int compare(final File a, final File b) {
+				final long lastUsedA = a.lastModified();
+				final long lastUsedB = b.lastModified();
+				return (lastUsedA < lastUsedB) ? -1 : ((lastUsedA == lastUsedB) ? 0 : 1);
+			}
+		});
+
+		for (final File body : bodies) {
+			final String name = body.getName().substring(0, body.getName().length() - BODY_EXTENSION.length());
+			final Properties meta = new Properties();
+			try {
+				final InputStream in = new FileInputStream(new File(directory, name + META_EXTENSION));
+				try {
+					meta.load(in);
+				} finally {
+					in.close();
+				}
+			} catch (final IOException e) {
+				deleteFiles(name);
+				continue;
+			}
+
+			final String url = meta.getProperty(URL_KEY);
+			if (url == null) {
+				deleteFiles(name);
+				continue;
+			}
+			entries.put(url, new Entry(url, meta.getProperty(ETAG_KEY), meta.getProperty(LAST_MODIFIED_KEY), name, body.length()));
+			totalBytes += body.length();
+		}
+		evict();
+	}
+
+	/**
+	 * Delete the files of an entry.
+	 *
+	 * @param name the file name stem.
+	 */
+	private void deleteFiles(final String name) {
+		new File(directory, name + BODY_EXTENSION).delete();
+		new File(directory, name + META_EXTENSION).delete();
+	}
+
+	/**
+	 * Get the file name stem for a URL.
+	 *
+	 * @param url the URL.
+	 * @return the hex SHA-1 of the URL.
+	 */
+	static String nameFor(final String url) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			final byte[] hash = digest.digest(url.getBytes("UTF-8"));
+			final StringBuilder name = new StringBuilder(hash.length * 2);
+			for (final byte b : hash) {
+				name.append(Character.forDigit((b >> 4) & 0xf, 16));
+				name.append(Character.forDigit(b & 0xf, 16));
+			}
+			return name.toString();
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Read the whole of a stream.
+	 *
+	 * @param in the stream.
+	 * @return the bytes read.
+	 * @throws IOException if reading fails.
+	 */
+	static byte[] readFully(final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+		final byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Read the whole of a file.
+	 *
+	 * @param file the file.
+	 * @return the bytes read.
+	 * @throws IOException if reading fails.
+	 */
+	private static byte[] readFile(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			return readFully(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Write a file via a temporary file, so a partly written body is never
+	 * mistaken for a cached one.
+	 *
+	 * @param file the file.
+	 * @param bytes the bytes to write.
+	 * @throws IOException if writing fails.
+	 */
+	private void writeFile(final File file, final byte[] bytes) throws IOException {
+		final File temp = File.createTempFile("pom", ".tmp", directory);
+		try {
+			final OutputStream out = new FileOutputStream(temp);
+			try {
+				out.write(bytes);
+			} finally {
+				out.close();
+			}
+			file.delete();
+			if (!temp.renameTo(file)) {
+				throw new IOException("Cannot rename " + temp + " to " + file);
+			}
+		} finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Describe the cache statistics.
+	 *
+	 * @return the statistics, for reporting.
+	 */
+	@Override
+	public synchronized String toString() {
+		return "Cache: " + hits + " hits, " + misses + " misses, " + revalidations + " revalidations, " + bytesSaved + " bytes saved";
+	}
+}
@@ -1,94 +1,119 @@
 package uk.me.thega.url;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLConnection;
-import java.util.ArrayList;
-import java.util.List;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-import org.apache.maven.model.Model;
 import org.codehaus.plexus.util.Base64;
-import org.fuin.maven.MavenPomReader;
+
+import uk.me.thega.PomCrawler;
+import uk.me.thega.metrics.Metrics;
+import uk.me.thega.pom.PomSummary;
 
 /**
- * Class to read the URLs from remote locations.
- * 
+ * Class to read the URLs from remote locations, each repo being the base
+ * URL of the pom.xml at its root.
+ * <br>
+ * Poms are fetched with a single {@link HttpClient}, which keeps connections
+ * open between requests and multiplexes them over HTTP/2 where an https
+ * server supports it. Requests are sent without blocking, so every read in flight
+ * shares a handful of threads, which also parse the poms as they arrive.
+ * <br>
+ * Each request goes through a {@link FetchScheduler}, which caps the
+ * requests in flight to each host, retries those that fail and stops asking
+ * a host that keeps failing. Every pom that cannot be read is recorded in
+ * the metrics, with the reason.
+ * <br>
+ * Concurrent reads of the same URL share a single fetch and parse.
+ * <br>
+ * The threads are shared by every client the reader builds, and stopped
+ * once it is closed.
+ *
  * @author pwhittlesea
  *
  */
-public class RepoURLReader {
+public class RepoURLReader extends PomCrawler implements Closeable {
+
+	/** The default time to wait for a connection, in milliseconds. */
+	public static final long DEFAULT_CONNECT_TIMEOUT = 10000;
 
-	/** The temporary file to cache the pom.xml to. */
-	private static final File outputFile;
+	/** The default time to wait for a response, in milliseconds. */
+	public static final long DEFAULT_READ_TIMEOUT = 30000;
 
-	/** The name of the file to search for in each folder. */
-	private static final String pomName = "pom.xml";
+	/** The fewest threads to handle responses on, so a parse does not hold up the next response. */
+	private static final int MIN_CLIENT_THREADS = 4;
 
 	/** The HTTP username for basic auth. */
 	private final String username;
 
 	/** The HTTP password for basic auth. */
 	private final String password;
-	
-	static {
-		String tempPath = System.getProperty("java.io.tmpdir");
-		// a fix to handle the crazy path the Mac JVM returns
-		if (tempPath.startsWith("/var/folders/")) {
-			tempPath = "/tmp/";
-		}
-		final File repositoryDir = new File(tempPath + "/maven");
-		if (!repositoryDir.exists()) {
-			repositoryDir.mkdirs();
-		}
-		outputFile = new File(repositoryDir + "/temp.pom");
-	}
+
+	/** The cache of previously fetched poms, or null. */
+	private PomCache cache;
+
+	/** The time to wait for a connection, in milliseconds. */
+	private long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+	/** The time to wait for a response, in milliseconds. */
+	private long readTimeout = DEFAULT_READ_TIMEOUT;
+
+	/** The number of times a failed request is retried. */
+	private int maxRetries = FetchScheduler.DEFAULT_MAX_RETRIES;
+
+	/** The most requests in flight to a host. */
+	private int hostConcurrency = FetchScheduler.DEFAULT_HOST_CONCURRENCY;
+
+	/** The reads in flight, by URL, for later reads of the same URL to share. */
+	private final ConcurrentMap<String, CompletableFuture<PomSummary>> inFlight = new ConcurrentHashMap<String, CompletableFuture<PomSummary>>();
+
+	/** The client, or null if not yet built. */
+	private HttpClient client;
+
+	/** The threads every client handles responses on, or null if not yet started. */
+	private ExecutorService executor;
+
+	/** The scheduler of requests, or null if not yet built. */
+	private FetchScheduler scheduler;
 
 	/**
-	 * Read a file at a URL to a specified file.
-	 * 
-	 * @param url the URL to read.
+	 * Get the value of the basic HTTP auth header for some credentials.
+	 *
 	 * @param username the basic HTTP user name.
 	 * @param password the basic HTTP password.
-	 * @throws IOException if reading/writing the file fails.
-	 */
-	static void readGitUrlToFile(final URL url, final String username, final String password) throws IOException {
-		final URLConnection uc = url.openConnection();
-		
-		if (username != null && password != null) {
-			final String passwdstring = username + ":" + password;
-			final String encoding = new String(Base64.encodeBase64(passwdstring.getBytes()));
-			uc.setRequestProperty("Authorization", "Basic " + encoding);
-		}
-	
-		final InputStream content = (InputStream) uc.getInputStream();
-		final BufferedReader in = new BufferedReader(new InputStreamReader(content));
-	
-		List<String> lines = new ArrayList<String>();
-		String line;
-		while ((line = in.readLine()) != null) {
-			lines.add(line);
-		}
-	
-		in.close();
-		
-		final OutputStream os = new FileOutputStream(outputFile);
-		for (final String p : lines) {
-			os.write(p.getBytes());
-			os.write('\n');
+	 * @return the header value, or null if either is missing.
+	 */
+	static String authorization(final String username, final String password) {
+		if (username == null || password == null) {
+			return null;
 		}
-		os.close();
+		final String passwdstring = username + ":" + password;
+		return "Basic " + new String(Base64.encodeBase64(passwdstring.getBytes()));
 	}
 
 	/**
 	 * Default constructor.
-	 * 
+	 *
 	 * @param username the basic HTTP user name.
 	 * @param password the basic HTTP password.
 	 */
@@ -98,46 +123,320 @@ public class RepoURLReader {
 	}
 
 	/**
-	 * Read the pom (and child modules) at the specified location.
-	 * 
-	 * @param repo the repo to read from
-	 * @return the list of Poms at the location
-	 * @throws MalformedURLException if the repo specified cannot be loaded.
+	 * Set the cache to read poms through.
+	 *
+	 * @param cache the cache, or null to always download.
 	 */
-	public List<Model> readPomsAt(final String repo) throws MalformedURLException {
-		final List<Model> modules = new ArrayList<Model>();
-		recursivelyReadPomsAt(modules, repo, "");
-		return modules;
+	public void setCache(final PomCache cache) {
+		this.cache = cache;
 	}
 
 	/**
-	 * Read the Pom (and child modules) at the specified location 
-	 * and sub-directory
-	 * 
-	 * @param modules the list of already found modules.
-	 * @param repo the repo to search.
-	 * @param subDir the sub-directory to search.
-	 * @throws MalformedURLException if the location cannot be loaded.
+	 * Set the time to wait for a connection to a host.
+	 *
+	 * @param connectTimeout the time in milliseconds.
 	 */
-	private void recursivelyReadPomsAt(List<Model> modules, final String repo, final String subDir) throws MalformedURLException {
-		final URL url = new URL(repo + subDir + pomName);
+	public synchronized void setConnectTimeout(final long connectTimeout) {
+		this.connectTimeout = connectTimeout;
+		client = null;
+	}
+
+	/**
+	 * Set the time to wait for the response to each request.
+	 *
+	 * @param readTimeout the time in milliseconds.
+	 */
+	public void setReadTimeout(final long readTimeout) {
+		this.readTimeout = readTimeout;
+	}
 
+	/**
+	 * Set the number of times a request that fails with an I/O error, a
+	 * 429 or a 5xx is retried.
+	 *
+	 * @param maxRetries the number of retries.
+	 */
+	public synchronized void setMaxRetries(final int maxRetries) {
+		this.maxRetries = maxRetries;
+		scheduler = null;
+	}
+
+	/**
+	 * Set the most requests in flight to a host, which is cut while the host
+	 * throttles us.
+	 *
+	 * @param hostConcurrency the number of requests.
+	 */
+	public synchronized void setHostConcurrency(final int hostConcurrency) {
+		this.hostConcurrency = hostConcurrency;
+		scheduler = null;
+	}
+
+	@Override
+	protected PomSummary readPomAt(final String repo, final String subDir) throws IOException {
+		try {
+			return readPomAtAsync(repo, subDir, null).join();
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	protected CompletableFuture<PomSummary> readPomAtAsync(final String repo, final String subDir, final Executor executor) {
+		final URL url;
+		final URI uri;
 		try {
-			RepoURLReader.readGitUrlToFile(url, username, password);
-		} catch (Exception e) {
-			return;
+			url = new URL(repo + subDir + POM_NAME);
+			uri = url.toURI();
+		} catch (final MalformedURLException e) {
+			return CompletableFuture.failedFuture(e);
+		} catch (final URISyntaxException e) {
+			return CompletableFuture.failedFuture(new MalformedURLException(e.getMessage()));
+		}
+		final String key = url.toString();
+		final CompletableFuture<PomSummary> shared = new CompletableFuture<PomSummary>();
+		final CompletableFuture<PomSummary> existing = inFlight.putIfAbsent(key, shared);
+		if (existing != null) {
+			return existing;
+		}
+		fetchPom(url, uri).whenComplete(new BiConsumer<PomSummary, Throwable>() {
+			public void accept(final PomSummary pom, final Throwable failure) {
+				// Stop sharing before completing, so no later read joins a fetch that has finished
+				inFlight.remove(key, shared);
+				if (failure != null) {
+					shared.completeExceptionally(failure);
+				} else {
+					shared.complete(pom);
+				}
+			}
+		});
+		return shared;
+	}
+
+	/**
+	 * Fetch and parse the pom.xml at a URL, recording both in the metrics.
+	 *
+	 * @param url the URL.
+	 * @param uri the URL as a URI.
+	 * @return the summary of the pom, or null if it could not be read.
+	 */
+	private CompletableFuture<PomSummary> fetchPom(final URL url, final URI uri) {
+		final String host = url.getHost() + ((url.getPort() == -1) ? "" : ":" + url.getPort());
+
+		final Metrics metrics = getMetrics();
+		final long start = System.nanoTime();
+		return fetch(uri).handle(new BiFunction<byte[], Throwable, PomSummary>() {
+			public PomSummary apply(final byte[] body, final Throwable failure) {
+				final long fetched = System.nanoTime();
+				if (metrics != null) {
+					metrics.recordFetch(host, fetched - start, failure == null);
+				}
+				if (failure != null) {
+					if (metrics != null) {
+						metrics.recordFailure(url.toString(), reason((failure instanceof CompletionException) ? failure.getCause() : failure));
+					}
+					return null;
+				}
+
+				try {
+					final PomSummary pom = getParser().parse(new ByteArrayInputStream(body));
+					if (metrics != null) {
+						metrics.recordParse(System.nanoTime() - fetched);
+					}
+					return pom;
+				} catch (final IOException | RuntimeException e) {
+					// A body that is not a pom, such as a login page, fails only that module
+					if (metrics != null) {
+						metrics.recordFailure(url.toString(), reason(e));
+					}
+					return null;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Fetch the body of a pom.xml at a URI, through the cache if there is one.
+	 *
+	 * @param uri the URI to read.
+	 * @return the body, completed exceptionally if reading the URI fails.
+	 */
+	private CompletableFuture<byte[]> fetch(final URI uri) {
+		if (cache != null) {
+			return fetchCached(uri);
+		}
+		return send(newRequest(uri).build()).thenApply(new Function<HttpResponse<byte[]>, byte[]>() {
+			public byte[] apply(final HttpResponse<byte[]> response) {
+				return download(response);
+			}
+		});
+	}
+
+	/**
+	 * Fetch the body of a pom.xml at a URI through the cache, revalidating
+	 * any cached copy with a conditional request.
+	 *
+	 * @param uri the URI to read.
+	 * @return the body, completed exceptionally if reading the URI fails.
+	 */
+	private CompletableFuture<byte[]> fetchCached(final URI uri) {
+		final String key = uri.toString();
+		final PomCache.Entry cached = cache.lookup(key);
+		final HttpRequest.Builder request = newRequest(uri);
+		if (cached != null) {
+			if (cached.getEtag() != null) {
+				request.header("If-None-Match", cached.getEtag());
+			}
+			if (cached.getLastModified() != null) {
+				request.header("If-Modified-Since", cached.getLastModified());
+			}
 		}
 
-		// Read the model for an artifact and a given version
-		final Model model = MavenPomReader.readModelFromFile(outputFile, null);
-		modules.add(model);
+		return send(request.build()).thenCompose(new Function<HttpResponse<byte[]>, CompletableFuture<byte[]>>() {
+			public CompletableFuture<byte[]> apply(final HttpResponse<byte[]> response) {
+				if (cached != null && response.statusCode() == 304) {
+					final byte[] body = cache.read(cached);
+					if (body != null) {
+						return CompletableFuture.completedFuture(body);
+					}
+					// The cached copy has gone, fetch it again without validators
+					return fetchCached(uri);
+				}
+
+				final byte[] body = download(response);
+				cache.store(key, response.headers().firstValue("ETag").orElse(null),
+						response.headers().firstValue("Last-Modified").orElse(null), body);
+				return CompletableFuture.completedFuture(body);
+			}
+		});
+	}
 
-		// Find all children
-		final List<String> subModules = model.getModules();
-		for (final String subModule : subModules) {
-			final String newPath = subDir + subModule + "/";
-			recursivelyReadPomsAt(modules, repo, newPath);
+	/**
+	 * Create a request for a URI, with basic HTTP auth if needed.
+	 *
+	 * @param uri the URI.
+	 * @return the request, to add any further headers to.
+	 */
+	private HttpRequest.Builder newRequest(final URI uri) {
+		final HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(Duration.ofMillis(readTimeout)).GET();
+		if ("http".equalsIgnoreCase(uri.getScheme())) {
+			// HTTP/2 is negotiated over TLS; offering a cleartext upgrade instead leaves servers closing connections the client reuses
+			request.version(HttpClient.Version.HTTP_1_1);
+		}
+		final String authorization = authorization(username, password);
+		if (authorization != null) {
+			request.header("Authorization", authorization);
 		}
+		return request;
 	}
 
+	/**
+	 * Send a request through the scheduler without waiting for the response.
+	 *
+	 * @param request the request.
+	 * @return the response, with the body read in full.
+	 */
+	private CompletableFuture<HttpResponse<byte[]>> send(final HttpRequest request) {
+		final HttpClient client = getClient();
+		return getScheduler().send(request.uri().getAuthority(), new Supplier<CompletableFuture<HttpResponse<byte[]>>>() {
+			public CompletableFuture<HttpResponse<byte[]>> get() {
+				return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+			}
+		});
+	}
+
+	/**
+	 * Get the body of a successful response.
+	 *
+	 * @param response the response.
+	 * @return the body.
+	 * @throws CompletionException wrapping an {@link IOException} if the request did not succeed.
+	 */
+	private byte[] download(final HttpResponse<byte[]> response) {
+		if (response.statusCode() / 100 != 2) {
+			throw new CompletionException(new IOException("Server returned HTTP response code: " + response.statusCode() + " for URL: "
+					+ response.uri()));
+		}
+		final byte[] body = response.body();
+		if (getMetrics() != null) {
+			getMetrics().recordDownload(body.length);
+		}
+		return body;
+	}
+
+	/**
+	 * Get the client, building it on first use.
+	 *
+	 * @return the client.
+	 */
+	private synchronized HttpClient getClient() {
+		if (client == null) {
+			client = HttpClient.newBuilder()
+					.version(HttpClient.Version.HTTP_2)
+					.followRedirects(HttpClient.Redirect.NORMAL)
+					.connectTimeout(Duration.ofMillis(connectTimeout))
+					.executor(getExecutor())
+					.build();
+		}
+		return client;
+	}
+
+	/**
+	 * Get the threads the client handles responses on, starting them on
+	 * first use.
+	 *
+	 * @return the executor.
+	 */
+	synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = newExecutor();
+		}
+		return executor;
+	}
+
+	/**
+	 * Stop the threads responses are handled on, once the reads in flight
+	 * finish. A read after closing starts new ones.
+	 */
+	public synchronized void close() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		client = null;
+	}
+
+	/**
+	 * Get the scheduler, building it on first use.
+	 *
+	 * @return the scheduler.
+	 */
+	synchronized FetchScheduler getScheduler() {
+		if (scheduler == null) {
+			scheduler = new FetchScheduler(maxRetries, hostConcurrency);
+		}
+		scheduler.setMetrics(getMetrics());
+		return scheduler;
+	}
+
+	/**
+	 * Create the threads the client handles responses and parses poms on,
+	 * one for each processor but at least {@link #MIN_CLIENT_THREADS}, none
+	 * of which keep the JVM alive.
+	 *
+	 * @return the executor.
+	 */
+	private static ExecutorService newExecutor() {
+		final int threads = Math.max(MIN_CLIENT_THREADS, Runtime.getRuntime().availableProcessors());
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "RepoURLReader");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
 }
@@ -0,0 +1,219 @@
+package fr.loria;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the {@link GraphViz.Renderer} class, driving shell scripts that
+ * stand in for dot.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class GraphVizTest {
+
+	/** The stand-in scripts written, to delete. */
+	private final List<File> scripts = new ArrayList<File>();
+
+	/**
+	 * Skip the tests where there is no shell to run the stand-ins with.
+	 */
+	@Before
+	public void setUp() {
+		Assume.assumeTrue(new File("/bin/sh").canExecute());
+	}
+
+	/**
+	 * Delete the stand-in scripts.
+	 */
+	@After
+	public void tearDown() {
+		for (final File script : scripts) {
+			script.delete();
+		}
+	}
+
+	/**
+	 * Test that the source is piped in and the image copied out whole, with
+	 * the type passed as <code>-T&lt;type&gt;</code>, even when both are far
+	 * larger than the pipes between us.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testImageCopied() throws Exception {
+		final String source = source(100000);
+		Assert.assertEquals("-Tpng\n" + source, render(stub("echo \"$1\"; cat"), source, 10000));
+	}
+
+	/**
+	 * Test that a dot exiting with an error fails the render with its exit
+	 * value and what it wrote to stderr, even when it stops reading first.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testFailureReported() throws Exception {
+		final String dot = stub("echo 'syntax error in line 1' >&2; exit 3");
+		try {
+			render(dot, source(100000), 10000);
+			Assert.fail("Expected the render to fail");
+		} catch (final IOException e) {
+			Assert.assertEquals("dot exited with 3: syntax error in line 1", e.getMessage());
+		}
+	}
+
+	/**
+	 * Test that a dot still running once the timeout passes is stopped.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testTimeout() throws Exception {
+		final String dot = stub("exec sleep 30");
+		final long start = System.nanoTime();
+		try {
+			render(dot, "digraph G {}", 200);
+			Assert.fail("Expected the render to time out");
+		} catch (final IOException e) {
+			Assert.assertEquals("dot did not finish within the timeout", e.getMessage());
+		}
+		Assert.assertTrue(System.nanoTime() - start < 10000000000L);
+	}
+
+	/**
+	 * Test that a dot still waiting for its source is stopped when the
+	 * render is abandoned.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testDestroy() throws Exception {
+		final GraphViz.Renderer renderer = new GraphViz.Renderer(stub("cat"), "png", new ByteArrayOutputStream(), 60000);
+		renderer.getDotInput().write("digraph G {".getBytes(StandardCharsets.UTF_8));
+		Assert.assertTrue(renderer.isRunning());
+
+		renderer.destroy();
+		final long start = System.nanoTime();
+		while (renderer.isRunning() && System.nanoTime() - start < 10000000000L) {
+			Thread.sleep(10);
+		}
+		Assert.assertFalse(renderer.isRunning());
+	}
+
+	/**
+	 * Test that renders running at once each get their own image.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testConcurrentRenders() throws Exception {
+		final String dot = stub("cat");
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<String>> images = new ArrayList<Future<String>>();
+			for (int i = 0; i < 8; i++) {
+				final String source = source(10000 + i);
+				images.add(executor.submit(new Callable<String>() {
+					public String call() throws Exception {
+						return render(dot, source, 10000);
+					}
+				}));
+			}
+			for (int i = 0; i < images.size(); i++) {
+				Assert.assertEquals(source(10000 + i), images.get(i).get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Test that the dot program can be named by a system property.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testDotProperty() throws Exception {
+		final String dot = stub("echo \"$1\"");
+		System.setProperty(GraphViz.DOT_PROPERTY, dot);
+		try {
+			Assert.assertEquals(dot, GraphViz.getDotExecutable());
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			GraphViz.render(new StringReader("digraph G {}"), "svg", out, 10000);
+			Assert.assertEquals("-Tsvg\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+		} finally {
+			System.clearProperty(GraphViz.DOT_PROPERTY);
+		}
+	}
+
+	/**
+	 * Render a source through a stand-in as png.
+	 *
+	 * @param dot the stand-in.
+	 * @param source the source.
+	 * @param timeout how long it may run for, in milliseconds.
+	 * @return the image.
+	 * @throws IOException if the render fails.
+	 */
+	private static String render(final String dot, final String source, final long timeout) throws IOException {
+		final ByteArrayOutputStream image = new ByteArrayOutputStream();
+		final GraphViz.Renderer renderer = new GraphViz.Renderer(dot, "png", image, timeout);
+		try {
+			final OutputStream in = renderer.getDotInput();
+			in.write(source.getBytes(StandardCharsets.UTF_8));
+			in.flush();
+		} catch (final IOException e) {
+			// The stand-in stopped reading, finish() says why
+		}
+		renderer.finish();
+		return new String(image.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Write a shell script to stand in for dot.
+	 *
+	 * @param body the commands of the script.
+	 * @return the path of the script.
+	 * @throws IOException if the script cannot be written.
+	 */
+	private String stub(final String body) throws IOException {
+		final File script = File.createTempFile("dot", ".sh");
+		scripts.add(script);
+		Files.write(script.toPath(), Arrays.asList("#!/bin/sh", body), StandardCharsets.UTF_8);
+		script.setExecutable(true);
+		return script.getPath();
+	}
+
+	/**
+	 * Make a source of some edges.
+	 *
+	 * @param edges the number of edges.
+	 * @return the source.
+	 */
+	private static String source(final int edges) {
+		final StringBuilder source = new StringBuilder("digraph G {\n");
+		for (int i = 0; i < edges; i++) {
+			source.append("    Node_").append(i).append(" -> Node_").append(i + 1).append(";\n");
+		}
+		return source.append("}\n").toString();
+	}
+}
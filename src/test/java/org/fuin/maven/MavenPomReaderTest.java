@@ -0,0 +1,302 @@
+package org.fuin.maven;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the {@link MavenPomReader} class.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public class MavenPomReaderTest {
+
+	/** A minimal POM with a parent, a module and a dependency. */
+	static final String POM = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<project>\n"
+			+ "  <modelVersion>4.0.0</modelVersion>\n"
+			+ "  <parent>\n"
+			+ "    <groupId>uk.me.thega</groupId>\n"
+			+ "    <artifactId>parent</artifactId>\n"
+			+ "    <version>1.0</version>\n"
+			+ "  </parent>\n"
+			+ "  <artifactId>child</artifactId>\n"
+			+ "  <modules>\n"
+			+ "    <module>core</module>\n"
+			+ "  </modules>\n"
+			+ "  <dependencies>\n"
+			+ "    <dependency>\n"
+			+ "      <groupId>junit</groupId>\n"
+			+ "      <artifactId>junit</artifactId>\n"
+			+ "      <version>4.11</version>\n"
+			+ "      <scope>test</scope>\n"
+			+ "    </dependency>\n"
+			+ "  </dependencies>\n"
+			+ "</project>\n";
+
+	/**
+	 * Test that a POM can be read straight from a stream.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testReadModelFromStream() throws Exception {
+		final InputStream in = new ByteArrayInputStream(POM.getBytes("UTF-8"));
+		final Model model = MavenPomReader.readModel(in);
+
+		Assert.assertNull(model.getGroupId());
+		Assert.assertEquals("uk.me.thega", model.getParent().getGroupId());
+		Assert.assertEquals("child", model.getArtifactId());
+		Assert.assertEquals(1, model.getModules().size());
+		Assert.assertEquals("core", model.getModules().get(0));
+
+		final Dependency dependency = model.getDependencies().get(0);
+		Assert.assertEquals("junit", dependency.getArtifactId());
+		Assert.assertEquals("4.11", dependency.getVersion());
+		Assert.assertEquals("test", dependency.getScope());
+	}
+
+	/**
+	 * Test that merging a child into its parent inherits the parent's values,
+	 * lets the child override them, and leaves the parent untouched.
+	 */
+	@Test
+	public void testMerge() {
+		final Model parent = createModel(0);
+		final Model child = createModel(1);
+		child.setGroupId(null);
+
+		final Model merged = MavenPomReader.merge(parent, child);
+
+		Assert.assertEquals("com.acme.level0", merged.getGroupId());
+		Assert.assertEquals("artifact-1", merged.getArtifactId());
+		Assert.assertEquals("com.acme.level0", merged.getParent().getGroupId());
+		Assert.assertEquals(20, merged.getDependencies().size());
+		Assert.assertEquals("1.0", merged.getProperties().getProperty("level0.version"));
+		Assert.assertEquals("1.1", merged.getProperties().getProperty("level1.version"));
+		Assert.assertEquals(2, merged.getBuild().getPlugins().size());
+		Assert.assertEquals("1.6", ((Xpp3Dom) merged.getBuild().getPlugins().get(1).getConfiguration()).getChild("source").getValue());
+
+		// Nothing is shared with, or added to, the parent
+		Assert.assertNotSame(parent.getBuild(), merged.getBuild());
+		Assert.assertEquals(1, parent.getBuild().getPlugins().size());
+		Assert.assertEquals(10, parent.getDependencies().size());
+	}
+
+	/**
+	 * Write a file, creating its directory.
+	 * 
+	 * @param file the file
+	 * @param content the content
+	 * @throws Exception the exception
+	 */
+	private static void write(final File file, final String content) throws Exception {
+		file.getParentFile().mkdirs();
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Delete a directory tree.
+	 * 
+	 * @param file the root of the tree
+	 */
+	private static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Test that a parent from a local repository is parsed once, and then
+	 * served from the cache to every child that refers to it.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testParentResolvedOnce() throws Exception {
+		final File repositoryDir = File.createTempFile("repository", "");
+		repositoryDir.delete();
+		try {
+			final File parentDir = new File(repositoryDir, "uk/me/thega/parent");
+			write(new File(parentDir, "1.0/parent-1.0.pom"), "<project><modelVersion>4.0.0</modelVersion>"
+					+ "<groupId>uk.me.thega</groupId><artifactId>parent</artifactId><version>1.0</version>"
+					+ "<properties><inherited>yes</inherited></properties></project>");
+			write(new File(parentDir, "maven-metadata-local.xml"), "<metadata><versioning><versions>"
+					+ "<version>1.0</version></versions></versioning></metadata>");
+
+			MavenPomReader.getParentCache().clear();
+			for (int i = 0; i < 3; i++) {
+				final Model model = MavenPomReader.readModel(new ByteArrayInputStream(POM.getBytes("UTF-8")), repositoryDir);
+				Assert.assertEquals("uk.me.thega", model.getGroupId());
+				Assert.assertEquals("yes", model.getProperties().getProperty("inherited"));
+				Assert.assertEquals(1, model.getDependencies().size());
+			}
+			Assert.assertEquals(1, MavenPomReader.getParentCache().getMisses());
+			Assert.assertEquals(2, MavenPomReader.getParentCache().getHits());
+
+			// Without a version the latest is looked up, once
+			final Model latest = MavenPomReader.readModel(repositoryDir, "uk.me.thega", "parent");
+			Assert.assertEquals("1.0", latest.getVersion());
+			Assert.assertEquals("1.0", MavenPomReader.getLatestVersionCache().get(repositoryDir.getPath() + "|uk.me.thega:parent"));
+		} finally {
+			delete(repositoryDir);
+		}
+	}
+
+	/**
+	 * Test that the resolution cache is bounded, evicting the least recently used value.
+	 */
+	@Test
+	public void testResolutionCacheBound() {
+		final ResolutionCache<String> cache = new ResolutionCache<String>(2);
+		cache.put("a", "1");
+		cache.put("b", "2");
+		Assert.assertEquals("1", cache.get("a"));
+		cache.put("c", "3");
+
+		Assert.assertEquals(2, cache.size());
+		Assert.assertNull(cache.get("b"));
+		Assert.assertEquals("3", cache.get("c"));
+		Assert.assertEquals(2, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+	}
+
+	/**
+	 * Test that a value asked for by several threads at once is loaded only
+	 * once, and that one failing to load is not cached.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testResolutionCacheLoadsOnce() throws Exception {
+		final ResolutionCache<String> cache = new ResolutionCache<String>(2);
+		final AtomicInteger loads = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch(1);
+		final Callable<String> loader = new Callable<String>() {
+			public String call() throws Exception {
+				loads.incrementAndGet();
+				started.countDown();
+				Thread.sleep(200);
+				return "1";
+			}
+		};
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			final List<Future<String>> values = new ArrayList<Future<String>>();
+			values.add(executor.submit(new Callable<String>() {
+				public String call() {
+					return cache.get("a", loader);
+				}
+			}));
+			started.await();
+			for (int i = 1; i < 8; i++) {
+				values.add(executor.submit(new Callable<String>() {
+					public String call() {
+						return cache.get("a", loader);
+					}
+				}));
+			}
+			for (final Future<String> value : values) {
+				Assert.assertEquals("1", value.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertEquals(1, loads.get());
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(7, cache.getHits());
+
+		try {
+			cache.get("b", new Callable<String>() {
+				public String call() {
+					throw new IllegalStateException("broken");
+				}
+			});
+			Assert.fail("Expected the load to fail");
+		} catch (final IllegalStateException e) {
+			Assert.assertEquals("broken", e.getMessage());
+		}
+		Assert.assertNull(cache.get("b"));
+	}
+
+	/**
+	 * Create a model resembling a corporate parent or module POM.
+	 * 
+	 * @param level the position in the chain.
+	 * @return the model.
+	 */
+	private static Model createModel(final int level) {
+		final Model model = new Model();
+		model.setModelVersion("4.0.0");
+		model.setGroupId("com.acme.level" + level);
+		model.setArtifactId("artifact-" + level);
+		model.setVersion("1." + level);
+		if (level > 0) {
+			final Parent parent = new Parent();
+			parent.setGroupId("com.acme.level" + (level - 1));
+			parent.setArtifactId("artifact-" + (level - 1));
+			parent.setVersion("1." + (level - 1));
+			model.setParent(parent);
+		}
+		model.addProperty("level" + level + ".version", "1." + level);
+
+		final DependencyManagement management = new DependencyManagement();
+		for (int i = 0; i < 10; i++) {
+			final Dependency dependency = new Dependency();
+			dependency.setGroupId("com.acme.lib" + i);
+			dependency.setArtifactId("lib-" + level + "-" + i);
+			dependency.setVersion("2." + i);
+			management.addDependency(dependency);
+			model.addDependency(dependency.clone());
+		}
+		model.setDependencyManagement(management);
+
+		final Build build = new Build();
+		final Plugin plugin = new Plugin();
+		plugin.setArtifactId("maven-compiler-plugin");
+		plugin.setVersion("2.3." + level);
+		final Xpp3Dom configuration = new Xpp3Dom("configuration");
+		final Xpp3Dom source = new Xpp3Dom("source");
+		source.setValue("1.6");
+		configuration.addChild(source);
+		plugin.setConfiguration(configuration);
+		final PluginExecution execution = new PluginExecution();
+		execution.setId("default-" + level);
+		execution.addGoal("compile");
+		plugin.addExecution(execution);
+		build.addPlugin(plugin);
+		model.setBuild(build);
+		return model;
+	}
+}
@@ -1,10 +1,20 @@
 package uk.me.thega;
 
+import java.util.Arrays;
+
+import javax.naming.ConfigurationException;
+
 import org.apache.commons.cli.MissingOptionException;
 import org.junit.Assert;
 
 import org.junit.Test;
 
+import uk.me.thega.graph.GraphQuery;
+import uk.me.thega.pom.ModelPomParser;
+import uk.me.thega.pom.StaxPomParser;
+import uk.me.thega.url.FetchScheduler;
+import uk.me.thega.url.RepoURLReader;
+
 /**
  * Test for the {@link AnalyserCLI} class.
  * 
@@ -87,6 +97,422 @@ public class AnalyserCLITest {
 		Assert.assertEquals("Expected password to be 'pwhittlesea'", "pwhittlesea", cli.getUsername());
 	}
 
+	/**
+	 * Test that the number of threads defaults to one.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testThreadsDefault() throws Exception {
+		final String[] args = {
+				"-" + AnalyserCLI.FILE_ARGUMENT, 
+				"a"
+		};
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(args);
+
+		Assert.assertEquals("Expected threads to be 1", 1, cli.getThreads());
+	}
+
+	/**
+	 * Test that the number of threads is detected.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testThreadsProvided() throws Exception {
+		final String[] args = {
+				"-" + AnalyserCLI.FILE_ARGUMENT, 
+				"a", 
+				"-" + AnalyserCLI.THREADS_ARGUMENT, 
+				"8"
+		};
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(args);
+
+		Assert.assertEquals("Expected threads to be 8", 8, cli.getThreads());
+	}
+
+	/**
+	 * Test that the metrics report file is detected by its long name.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testMetricsOutProvided() throws Exception {
+		final String[] args = {
+				"-" + AnalyserCLI.FILE_ARGUMENT, 
+				"a", 
+				"--" + AnalyserCLI.METRICS_OUT_LONG_ARGUMENT, 
+				"metrics.json"
+		};
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(args);
+
+		Assert.assertEquals("Expected metrics report to be 'metrics.json'", "metrics.json", cli.getMetricsOut());
+	}
+
+	/**
+	 * Test that the snapshot file is picked up, and absent when missing.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testSnapshotProvided() throws Exception {
+		final AnalyserCLI defaults = new AnalyserCLI();
+		defaults.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a" });
+		Assert.assertNull(defaults.getSnapshot());
+
+		final String[] args = {
+				"-" + AnalyserCLI.FILE_ARGUMENT, 
+				"a", 
+				"-" + AnalyserCLI.SNAPSHOT_ARGUMENT, 
+				"poms.snapshot"
+		};
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(args);
+
+		Assert.assertEquals("poms.snapshot", cli.getSnapshot());
+	}
+
+	/**
+	 * Test that the saved graph files are picked up, and that the repo file
+	 * is not needed when a saved graph is loaded.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testGraphFilesProvided() throws Exception {
+		final AnalyserCLI defaults = new AnalyserCLI();
+		defaults.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a" });
+		Assert.assertNull(defaults.getGraphIn());
+		Assert.assertNull(defaults.getGraphOut());
+
+		final String[] args = {
+				"-" + AnalyserCLI.GRAPH_IN_ARGUMENT, 
+				"old.graph", 
+				"-" + AnalyserCLI.GRAPH_OUT_ARGUMENT, 
+				"new.graph"
+		};
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(args);
+
+		Assert.assertNull(cli.getFile());
+		Assert.assertEquals("old.graph", cli.getGraphIn());
+		Assert.assertEquals("new.graph", cli.getGraphOut());
+	}
+
+	/**
+	 * Test that the parser defaults to the full model and can be switched to
+	 * streaming.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testParserProvided() throws Exception {
+		final AnalyserCLI defaults = new AnalyserCLI();
+		defaults.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a" });
+		Assert.assertTrue("Expected the model parser", defaults.getParser() instanceof ModelPomParser);
+
+		final String[] args = {
+				"-" + AnalyserCLI.FILE_ARGUMENT, 
+				"a", 
+				"-" + AnalyserCLI.PARSER_ARGUMENT, 
+				"stax"
+		};
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(args);
+
+		Assert.assertTrue("Expected the StAX parser", cli.getParser() instanceof StaxPomParser);
+	}
+
+	/**
+	 * Test that a local repository makes the model parser merge parents.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testRepositoryProvided() throws Exception {
+		final AnalyserCLI defaults = new AnalyserCLI();
+		defaults.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a" });
+		Assert.assertNull(defaults.getRepository());
+		Assert.assertNull(((ModelPomParser) defaults.getParser()).getRepositoryDir());
+
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a", "-" + AnalyserCLI.REPOSITORY_ARGUMENT, "repo" });
+		Assert.assertEquals("repo", ((ModelPomParser) cli.getParser()).getRepositoryDir().getPath());
+	}
+
+	/**
+	 * Test that a local repository is rejected with the streaming parser,
+	 * which cannot merge parents.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test(expected = ConfigurationException.class)
+	public void testRepositoryWithStaxParser() throws Exception {
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a", "-" + AnalyserCLI.REPOSITORY_ARGUMENT, "repo",
+				"-" + AnalyserCLI.PARSER_ARGUMENT, "stax" });
+		cli.getParser();
+	}
+
+	/**
+	 * Test that a snapshot is rejected for POMs merged with their parents,
+	 * as a change to a parent would not be seen.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test(expected = ConfigurationException.class)
+	public void testRepositoryWithSnapshot() throws Exception {
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a", "-" + AnalyserCLI.REPOSITORY_ARGUMENT, "repo",
+				"-" + AnalyserCLI.SNAPSHOT_ARGUMENT, "poms.snapshot" });
+		cli.getSnapshot();
+	}
+
+	/**
+	 * Test that the pipeline preference and format can be specified, and
+	 * default to a staged crawl written as dot.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testPipelineAndFormatProvided() throws Exception {
+		final AnalyserCLI defaults = new AnalyserCLI();
+		defaults.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a" });
+		Assert.assertFalse("Expected no pipeline", defaults.getPipelinePreference());
+		Assert.assertEquals(Analyser.DOT_FORMAT, defaults.getFormat());
+
+		final String[] args = {
+				"-" + AnalyserCLI.FILE_ARGUMENT, 
+				"a", 
+				"-" + AnalyserCLI.PIPELINE_ARGUMENT, 
+				"true", 
+				"-" + AnalyserCLI.FORMAT_ARGUMENT, 
+				"edges"
+		};
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(args);
+
+		Assert.assertTrue("Expected a pipeline", cli.getPipelinePreference());
+		Assert.assertEquals(Analyser.EDGES_FORMAT, cli.getFormat());
+	}
+
+	/**
+	 * Test that the filter patterns and scopes are split on commas, and
+	 * default to empty.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testFiltersProvided() throws Exception {
+		final AnalyserCLI defaults = new AnalyserCLI();
+		defaults.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a" });
+		Assert.assertTrue(defaults.getIncludes().isEmpty());
+		Assert.assertTrue(defaults.getExcludedPaths().isEmpty());
+
+		final String[] args = {
+				"-" + AnalyserCLI.FILE_ARGUMENT, 
+				"a", 
+				"-" + AnalyserCLI.INCLUDE_ARGUMENT, 
+				"com.acme.*, regex:org\\..*", 
+				"-" + AnalyserCLI.EXCLUDE_ARGUMENT, 
+				"*:*-test", 
+				"-" + AnalyserCLI.EXCLUDE_SCOPES_ARGUMENT, 
+				"provided,system", 
+				"-" + AnalyserCLI.EXCLUDE_PATHS_ARGUMENT, 
+				"*/legacy/"
+		};
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(args);
+
+		Assert.assertEquals(Arrays.asList("com.acme.*", "regex:org\\..*"), cli.getIncludes());
+		Assert.assertEquals(Arrays.asList("*:*-test"), cli.getExcludes());
+		Assert.assertEquals(Arrays.asList("provided", "system"), cli.getExcludedScopes());
+		Assert.assertEquals(Arrays.asList("*/legacy/"), cli.getExcludedPaths());
+	}
+
+	/**
+	 * Test that the timeouts can be specified, and default to those of the
+	 * {@link RepoURLReader}.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testTimeoutsProvided() throws Exception {
+		final AnalyserCLI defaults = new AnalyserCLI();
+		defaults.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a" });
+		Assert.assertEquals(RepoURLReader.DEFAULT_CONNECT_TIMEOUT, defaults.getConnectTimeout());
+		Assert.assertEquals(RepoURLReader.DEFAULT_READ_TIMEOUT, defaults.getReadTimeout());
+
+		final String[] args = {
+				"-" + AnalyserCLI.FILE_ARGUMENT, 
+				"a", 
+				"-" + AnalyserCLI.CONNECT_TIMEOUT_ARGUMENT, 
+				"500", 
+				"-" + AnalyserCLI.READ_TIMEOUT_ARGUMENT, 
+				"2000"
+		};
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(args);
+
+		Assert.assertEquals(500, cli.getConnectTimeout());
+		Assert.assertEquals(2000, cli.getReadTimeout());
+	}
+
+	/**
+	 * Test that a timeout that is not a positive number is rejected.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test(expected = ConfigurationException.class)
+	public void testInvalidTimeout() throws Exception {
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a", "-" + AnalyserCLI.READ_TIMEOUT_ARGUMENT, "0" });
+		cli.getReadTimeout();
+	}
+
+	/**
+	 * Test that the retries and host concurrency are picked up, with their
+	 * defaults when missing.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testFetchLimitsProvided() throws Exception {
+		final AnalyserCLI defaults = new AnalyserCLI();
+		defaults.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a" });
+		Assert.assertEquals(FetchScheduler.DEFAULT_MAX_RETRIES, defaults.getRetries());
+		Assert.assertEquals(FetchScheduler.DEFAULT_HOST_CONCURRENCY, defaults.getHostConcurrency());
+
+		final String[] args = {
+				"-" + AnalyserCLI.FILE_ARGUMENT, 
+				"a", 
+				"-" + AnalyserCLI.RETRIES_ARGUMENT, 
+				"0", 
+				"-" + AnalyserCLI.HOST_CONCURRENCY_ARGUMENT, 
+				"4"
+		};
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(args);
+
+		Assert.assertEquals(0, cli.getRetries());
+		Assert.assertEquals(4, cli.getHostConcurrency());
+	}
+
+	/**
+	 * Test that a host concurrency that is not a positive number is rejected.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test(expected = ConfigurationException.class)
+	public void testInvalidHostConcurrency() throws Exception {
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a", "-" + AnalyserCLI.HOST_CONCURRENCY_ARGUMENT, "0" });
+		cli.getHostConcurrency();
+	}
+
+	/**
+	 * Test that the query artifacts and depth are picked up, by their long
+	 * forms, and default to writing everything.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testQueryProvided() throws Exception {
+		final AnalyserCLI defaults = new AnalyserCLI();
+		defaults.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a" });
+		Assert.assertNull(defaults.getDependentsOf());
+		Assert.assertNull(defaults.getDependenciesOf());
+		Assert.assertEquals(GraphQuery.UNLIMITED, defaults.getDepth());
+
+		final String[] args = {
+				"-" + AnalyserCLI.FILE_ARGUMENT, 
+				"a", 
+				"--" + AnalyserCLI.DEPENDENTS_OF_LONG_ARGUMENT, 
+				"com.acme:auth-core", 
+				"--" + AnalyserCLI.DEPENDENCIES_OF_LONG_ARGUMENT, 
+				"com.acme:service", 
+				"-" + AnalyserCLI.DEPTH_ARGUMENT, 
+				"2"
+		};
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(args);
+
+		Assert.assertEquals("com.acme:auth-core", cli.getDependentsOf());
+		Assert.assertEquals("com.acme:service", cli.getDependenciesOf());
+		Assert.assertEquals(2, cli.getDepth());
+	}
+
+	/**
+	 * Test that a query artifact that is not a groupId:artifactId is rejected.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test(expected = ConfigurationException.class)
+	public void testInvalidQueryArtifact() throws Exception {
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a", "--" + AnalyserCLI.DEPENDENTS_OF_LONG_ARGUMENT, "auth-core" });
+		cli.getDependentsOf();
+	}
+
+	/**
+	 * Test that the cycles mode is picked up, and absent when missing.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testCyclesProvided() throws Exception {
+		final AnalyserCLI defaults = new AnalyserCLI();
+		defaults.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a" });
+		Assert.assertNull(defaults.getCycles());
+
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a", "-" + AnalyserCLI.CYCLES_ARGUMENT, Analyser.CYCLES_FAIL });
+		Assert.assertEquals(Analyser.CYCLES_FAIL, cli.getCycles());
+	}
+
+	/**
+	 * Test that an unknown cycles mode is rejected.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test(expected = ConfigurationException.class)
+	public void testInvalidCycles() throws Exception {
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a", "-" + AnalyserCLI.CYCLES_ARGUMENT, "true" });
+		cli.getCycles();
+	}
+
+	/**
+	 * Test that the reduce mode is picked up, and absent when missing.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testReduceProvided() throws Exception {
+		final AnalyserCLI defaults = new AnalyserCLI();
+		defaults.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a" });
+		Assert.assertNull(defaults.getReduce());
+
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a", "-" + AnalyserCLI.REDUCE_ARGUMENT, Analyser.REDUCE_MARK });
+		Assert.assertEquals(Analyser.REDUCE_MARK, cli.getReduce());
+	}
+
+	/**
+	 * Test that an unknown reduce mode is rejected.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test(expected = ConfigurationException.class)
+	public void testInvalidReduce() throws Exception {
+		final AnalyserCLI cli = new AnalyserCLI();
+		cli.parse(new String[] { "-" + AnalyserCLI.FILE_ARGUMENT, "a", "-" + AnalyserCLI.REDUCE_ARGUMENT, "true" });
+		cli.getReduce();
+	}
+
 	/**
 	 * Test that failing to specify an input file will cause an
 	 * exception, specifically a {@link MissingOptionException}.
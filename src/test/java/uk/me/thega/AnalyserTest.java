@@ -0,0 +1,411 @@
+package uk.me.thega;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fuin.maven.MavenPomReader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.me.thega.graph.DependencyGraph;
+import uk.me.thega.pom.ModelPomParser;
+import uk.me.thega.pom.PomParser;
+import uk.me.thega.pom.PomSummary;
+import uk.me.thega.url.PomCache;
+import uk.me.thega.url.StandInRepoServer;
+
+/**
+ * Test for the {@link Analyser} class, against a {@link StandInRepoServer}.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public class AnalyserTest {
+
+	/** The server of the repos. */
+	private StandInRepoServer server;
+
+	/** The file each graph is written to. */
+	private File output;
+
+	/**
+	 * Start a server with 2 repos of 1 + 3 + 9 POMs.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		server = new StandInRepoServer(2, 3, 2);
+		server.start();
+		output = File.createTempFile("graph", ".out");
+	}
+
+	/**
+	 * Stop the server.
+	 */
+	@After
+	public void tearDown() {
+		server.stop();
+		output.delete();
+	}
+
+	/**
+	 * Analyse the repos, excluding test dependencies.
+	 * 
+	 * @param pipelined do we pipeline the crawl and aggregation?
+	 * @param format the format to write the graph in.
+	 * @return the graph written.
+	 * @throws Exception the exception
+	 */
+	private String analyse(final boolean pipelined, final String format) throws Exception {
+		return analyse(server.getRepos(), 4, pipelined, format);
+	}
+
+	/**
+	 * Analyse some repos, excluding test dependencies.
+	 * 
+	 * @param repos the repos.
+	 * @param threads the number of concurrent fetches.
+	 * @param pipelined do we pipeline the crawl and aggregation?
+	 * @param format the format to write the graph in.
+	 * @return the graph written.
+	 * @throws Exception the exception
+	 */
+	private String analyse(final List<String> repos, final int threads, final boolean pipelined, final String format) throws Exception {
+		final Analyser analyser = new Analyser(repos, "", null, null, false);
+		analyser.setThreads(threads);
+		analyser.setPipelined(pipelined);
+		analyser.setFormat(format);
+		analyser.setOutput(output);
+		analyser.analyse();
+		return new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Test that a pipelined analysis writes the same graph as a staged one.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testPipelinedMatchesStaged() throws Exception {
+		Assert.assertEquals(analyse(false, Analyser.DOT_FORMAT), analyse(true, Analyser.DOT_FORMAT));
+		Assert.assertEquals(analyse(false, Analyser.EDGES_FORMAT), analyse(true, Analyser.EDGES_FORMAT));
+	}
+
+	/**
+	 * Test that the edge list holds one line per distinct dependency, in
+	 * the order the crawl found them.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testEdgeList() throws Exception {
+		final String[] lines = analyse(true, Analyser.EDGES_FORMAT).split("\n");
+
+		// Each of the 26 POMs depends on the other repo, and each module on its own repo root
+		Assert.assertEquals(26 + 24, lines.length);
+		Assert.assertEquals("com.acme.repo0:repo0\tcom.acme.repo1:repo1\t1.0", lines[0]);
+		Assert.assertEquals("com.acme.repo0:repo0-0\tcom.acme.repo1:repo1\t1.1", lines[1]);
+		Assert.assertEquals("com.acme.repo0:repo0-0\tcom.acme.repo0:repo0\t1.0", lines[2]);
+	}
+
+	/**
+	 * Test that a module found at a second location is added once, leaving
+	 * the graph as it would be without it.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testDuplicateModulesSkipped() throws Exception {
+		final List<String> repos = new ArrayList<String>(server.getRepos());
+		// The same repo under a second URL, which only a serial crawl is sure to fetch again
+		repos.add(repos.get(0).replace("http://", "HTTP://"));
+
+		final String expected = analyse(false, Analyser.EDGES_FORMAT);
+		server.resetStatistics();
+		Assert.assertEquals(expected, analyse(repos, 1, false, Analyser.EDGES_FORMAT));
+		Assert.assertEquals(26 + 13, server.getRequests());
+		Assert.assertEquals(expected, analyse(repos, 4, true, Analyser.EDGES_FORMAT));
+	}
+
+	/**
+	 * Test that a run from a snapshot parses only the changed POM, yet
+	 * writes the same graph as a run that parses them all.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testIncrementalMatchesFull() throws Exception {
+		final File snapshot = File.createTempFile("poms", ".snapshot");
+		snapshot.delete();
+		try {
+			final CountingParser first = new CountingParser();
+			analyse(snapshot, first);
+			Assert.assertEquals(26, first.count.get());
+
+			final String path = "/repo0/module-1/pom.xml";
+			server.setPom(path, new String(server.getPom(path), StandardCharsets.UTF_8).replace("<version>1.1</version>", "<version>2.0</version>")
+					.getBytes(StandardCharsets.UTF_8));
+			final CountingParser second = new CountingParser();
+			final String incremental = analyse(snapshot, second);
+			Assert.assertEquals(1, second.count.get());
+			Assert.assertTrue(incremental, incremental.contains("com.acme.repo0:repo0-1\tcom.acme.repo1:repo1\t2.0"));
+			Assert.assertEquals(analyse(false, Analyser.EDGES_FORMAT), incremental);
+		} finally {
+			snapshot.delete();
+		}
+	}
+
+	/**
+	 * Analyse the repos as an edge list, through a snapshot.
+	 * 
+	 * @param snapshot the snapshot.
+	 * @param parser the parser of changed POMs.
+	 * @return the graph written.
+	 * @throws Exception the exception
+	 */
+	private String analyse(final File snapshot, final PomParser parser) throws Exception {
+		final Analyser analyser = new Analyser(server.getRepos(), "", null, null, false);
+		analyser.setThreads(4);
+		analyser.setFormat(Analyser.EDGES_FORMAT);
+		analyser.setParser(parser);
+		analyser.setSnapshot(snapshot);
+		analyser.setOutput(output);
+		analyser.analyse();
+		return new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A parser that counts the POMs it parses.
+	 */
+	private static final class CountingParser implements PomParser {
+
+		/** The number of POMs parsed. */
+		private final AtomicInteger count = new AtomicInteger();
+
+		public PomSummary parse(final InputStream in) throws IOException {
+			count.incrementAndGet();
+			return new ModelPomParser().parse(in);
+		}
+	}
+
+	/**
+	 * Test that a saved graph loaded again writes the same graph as the
+	 * crawl that saved it, and that excluded scopes still apply to it.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testSavedGraphMatchesCrawled() throws Exception {
+		final File saved = File.createTempFile("graph", ".snapshot");
+		try {
+			final Analyser crawled = new Analyser(server.getRepos(), "", null, null, false);
+			crawled.setGraphOut(saved);
+			crawled.setOutput(output);
+			crawled.analyse();
+			final String dot = new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+			Assert.assertEquals(dot, load(saved, false, Analyser.DOT_FORMAT));
+
+			// Save the test dependencies too, and leave them out when loaded
+			final Analyser withTests = new Analyser(server.getRepos(), "", null, null, true);
+			withTests.setGraphOut(saved);
+			withTests.setOutput(output);
+			withTests.analyse();
+			Assert.assertTrue(load(saved, true, Analyser.EDGES_FORMAT).contains("junit:junit"));
+			Assert.assertEquals(analyse(false, Analyser.EDGES_FORMAT), load(saved, false, Analyser.EDGES_FORMAT));
+		} finally {
+			saved.delete();
+		}
+	}
+
+	/**
+	 * Write a saved graph, without reading the repos.
+	 * 
+	 * @param saved the saved graph.
+	 * @param printTest do we want test dependencies?
+	 * @param format the format to write the graph in.
+	 * @return the graph written.
+	 * @throws Exception the exception
+	 */
+	private String load(final File saved, final boolean printTest, final String format) throws Exception {
+		final Analyser analyser = new Analyser(new ArrayList<String>(), "", null, null, printTest);
+		analyser.setGraphIn(saved);
+		analyser.setFormat(format);
+		analyser.setOutput(output);
+		analyser.analyse();
+		return new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Test that a query writes only the artifacts an artifact depends upon,
+	 * to the depth asked for, and the links between them.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testDependenciesQuery() throws Exception {
+		final Analyser analyser = new Analyser(server.getRepos(), "", null, null, false);
+		analyser.setDependenciesOf("com.acme.repo0:repo0-0-1");
+		analyser.setDepth(1);
+		analyser.setFormat(Analyser.EDGES_FORMAT);
+		analyser.setOutput(output);
+		analyser.analyse();
+		final String[] lines = new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8).split("\n");
+
+		// The module depends on its repo root and the other one, and they on each other
+		Assert.assertEquals(Arrays.asList("com.acme.repo0:repo0\tcom.acme.repo1:repo1\t1.0", "com.acme.repo0:repo0-0-1\tcom.acme.repo1:repo1\t1.0",
+				"com.acme.repo0:repo0-0-1\tcom.acme.repo0:repo0\t1.0", "com.acme.repo1:repo1\tcom.acme.repo0:repo0\t1.0"), Arrays.asList(lines));
+	}
+
+	/**
+	 * Test that the two repo roots, which depend upon each other, are found
+	 * as the one cycle, and only the links between them highlighted.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testCyclesFound() throws Exception {
+		final Analyser analyser = new Analyser(server.getRepos(), "", null, null, false);
+		analyser.setCycles(Analyser.CYCLES_REPORT);
+		analyser.setOutput(output);
+		analyser.analyse();
+		final String dot = new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+
+		Assert.assertEquals(1, analyser.getCycleCount());
+		Assert.assertEquals(2, dot.split("color=crimson").length - 1);
+		final DependencyGraph graph = analyser.getDependencyGraph();
+		final String repo0 = "Node_" + graph.findArtifact("com.acme.repo0", "repo0");
+		final String repo1 = "Node_" + graph.findArtifact("com.acme.repo1", "repo1");
+		Assert.assertTrue(dot.contains("    " + repo0 + " -> " + repo1 + " [color=crimson"));
+		Assert.assertTrue(dot.contains("    " + repo1 + " -> " + repo0 + " [color=crimson"));
+	}
+
+	/**
+	 * Test that the test dependencies of the modules, implied by those of
+	 * their repo roots, are left out or marked, and every other link kept.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testReduced() throws Exception {
+		final int junit = reduce(Analyser.REDUCE_DROP).getDependencyGraph().findArtifact("junit", "junit");
+		final String dropped = new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+		Assert.assertEquals(26 + 24 + 2, dropped.split(" -> ").length - 1);
+		Assert.assertEquals(2, dropped.split(" -> Node_" + junit + " ").length - 1);
+
+		reduce(Analyser.REDUCE_MARK);
+		final String marked = new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8);
+		Assert.assertEquals(26 + 24 + 26, marked.split(" -> ").length - 1);
+		Assert.assertEquals(24, marked.split("style=dotted").length - 1);
+	}
+
+	/**
+	 * Analyse the repos with test dependencies, reducing the links.
+	 * 
+	 * @param reduce what to do with the links implied by others.
+	 * @return the analyser.
+	 * @throws Exception the exception
+	 */
+	private Analyser reduce(final String reduce) throws Exception {
+		final Analyser analyser = new Analyser(server.getRepos(), "", null, null, true);
+		analyser.setReduce(reduce);
+		analyser.setOutput(output);
+		analyser.analyse();
+		return analyser;
+	}
+
+	/**
+	 * Test that the links of excluded artifacts and scopes are left out,
+	 * while those touching an included artifact are kept.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testFiltered() throws Exception {
+		final Analyser analyser = new Analyser(server.getRepos(), "com.acme.repo1:repo1-2", null, null, true);
+		analyser.setIncludes(Arrays.asList("regex:com\\.acme\\.repo0:repo0-0(-.*)?"));
+		analyser.setExcludes(Arrays.asList("*:repo0-0-2"));
+		analyser.setExcludedScopes(Arrays.asList("compile"));
+		analyser.setFormat(Analyser.EDGES_FORMAT);
+		analyser.setOutput(output);
+		analyser.analyse();
+		final String[] lines = new String(Files.readAllBytes(output.toPath()), StandardCharsets.UTF_8).split("\n");
+
+		// Only test scoped junit remains, from repo0-0, repo0-0-0, repo0-0-1, repo1-2 and the 3 modules of repo1-2
+		Assert.assertEquals(7, lines.length);
+		Assert.assertEquals("com.acme.repo0:repo0-0\tjunit:junit\t4.11", lines[0]);
+		Assert.assertEquals("com.acme.repo1:repo1-2-2\tjunit:junit\t4.11", lines[6]);
+	}
+
+	/**
+	 * Test that the counts of the POM cache are recorded in the metrics of
+	 * each run through it.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testCacheCountsRecorded() throws Exception {
+		final File directory = Files.createTempDirectory("pomcache").toFile();
+		try {
+			for (int run = 0; run < 2; run++) {
+				final Analyser analyser = new Analyser(server.getRepos(), "", null, null, false);
+				analyser.setCache(new PomCache(directory, 1024 * 1024));
+				analyser.setOutput(output);
+				analyser.analyse();
+
+				Assert.assertEquals((run == 0) ? 0 : 26, analyser.getMetrics().getCacheCount("pom", "hits"));
+				Assert.assertEquals((run == 0) ? 26 : 0, analyser.getMetrics().getCacheCount("pom", "misses"));
+			}
+		} finally {
+			for (final File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	/**
+	 * Test that two modules sharing a parent from a local repository parse
+	 * it once, and that the parent cache counts are recorded in the metrics.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testParentCacheCountsRecorded() throws Exception {
+		final File repository = Files.createTempDirectory("repository").toFile();
+		final File parentPom = new File(repository, "uk/me/thega/parent/1.0/parent-1.0.pom");
+		try {
+			parentPom.getParentFile().mkdirs();
+			Files.write(parentPom.toPath(), ("<project><modelVersion>4.0.0</modelVersion><groupId>uk.me.thega</groupId>"
+					+ "<artifactId>parent</artifactId><version>1.0</version></project>").getBytes(StandardCharsets.UTF_8));
+			for (int module = 0; module < 2; module++) {
+				server.setPom("/repo0/module-" + module + "/pom.xml", ("<project><modelVersion>4.0.0</modelVersion>"
+						+ "<parent><groupId>uk.me.thega</groupId><artifactId>parent</artifactId><version>1.0</version></parent>"
+						+ "<artifactId>child-" + module + "</artifactId></project>").getBytes(StandardCharsets.UTF_8));
+			}
+			MavenPomReader.getParentCache().clear();
+
+			final Analyser analyser = new Analyser(server.getRepos(), "", null, null, false);
+			analyser.setParser(new ModelPomParser(repository));
+			analyser.setOutput(output);
+			analyser.analyse();
+
+			Assert.assertEquals(1, analyser.getMetrics().getCacheCount("parent", "misses"));
+			Assert.assertEquals(1, analyser.getMetrics().getCacheCount("parent", "hits"));
+		} finally {
+			parentPom.delete();
+			for (File dir = parentPom.getParentFile(); !dir.equals(repository.getParentFile()); dir = dir.getParentFile()) {
+				dir.delete();
+			}
+		}
+	}
+}
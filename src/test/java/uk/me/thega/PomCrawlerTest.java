@@ -0,0 +1,29 @@
+package uk.me.thega;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the {@link PomCrawler} class.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class PomCrawlerTest {
+
+	/**
+	 * Test that a location ends in a '/' and has any relative segments of
+	 * module paths resolved, however it was reached.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testLocation() throws Exception {
+		Assert.assertEquals("http://host/repo/", PomCrawler.location("http://host/repo", ""));
+		Assert.assertEquals("http://host/repo/core/", PomCrawler.location("http://host/repo/", "core/"));
+		Assert.assertEquals("http://host/other/", PomCrawler.location("http://host/repo/", "core/../../other/"));
+		Assert.assertEquals("http://host/repo/core/", PomCrawler.location("http://host/repo/./", "./core/"));
+		Assert.assertEquals("/repos/a/web/", PomCrawler.location("/repos/c", "../a/web/"));
+		Assert.assertEquals("../a/", PomCrawler.location("..", "a/"));
+	}
+}
@@ -0,0 +1,180 @@
+package uk.me.thega.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.me.thega.filter.Patterns;
+import uk.me.thega.metrics.Metrics;
+import uk.me.thega.pom.PomSummary;
+
+/**
+ * Test for the {@link RepoDirectoryReader} class.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public class RepoDirectoryReaderTest {
+
+	/** The directory the repos are checked out in. */
+	private Path directory;
+
+	/**
+	 * Check out two repos: one with a module tree, one with a single pom.
+	 * 
+	 * @throws IOException the exception
+	 */
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("repos");
+		writePom("a", "a", "core", "web", "missing");
+		writePom("a/core", "a-core", "api", "impl");
+		writePom("a/core/api", "a-api");
+		writePom("a/core/impl", "a-impl");
+		writePom("a/web", "a-web");
+		writePom("b", "b");
+	}
+
+	/**
+	 * Remove the repos.
+	 */
+	@After
+	public void tearDown() {
+		delete(directory.toFile());
+	}
+
+	/**
+	 * Test that each module is read depth first in declared order, skipping
+	 * those that are not checked out, whether read serially or concurrently.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testReadPomsAt() throws Exception {
+		final List<String> repos = Arrays.asList(directory.resolve("a").toString() + "/", directory.resolve("b").toString());
+		final List<String> expected = Arrays.asList("a", "a-core", "a-api", "a-impl", "a-web", "b");
+
+		Assert.assertEquals(expected, artifactIds(new RepoDirectoryReader().readPomsAt(repos, 1)));
+		Assert.assertEquals(expected, artifactIds(new RepoDirectoryReader().readPomsAt(repos, 4)));
+	}
+
+	/**
+	 * Test that a module reached from two repos, or through a relative path
+	 * from a third, is read once, whether read serially or concurrently.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testOverlappingReposReadOnce() throws Exception {
+		writePom("c", "c", "../a/web");
+		final List<String> repos = Arrays.asList(directory.resolve("a/core").toString(), directory.resolve("a").toString(),
+				directory.resolve("c").toString());
+		final List<String> expected = Arrays.asList("a-core", "a-api", "a-impl", "a", "a-web", "c");
+
+		Assert.assertEquals(expected, artifactIds(new RepoDirectoryReader().readPomsAt(repos, 1)));
+		Assert.assertEquals(expected, artifactIds(new RepoDirectoryReader().readPomsAt(repos, 4)));
+	}
+
+	/**
+	 * Test that an excluded module, and the modules beneath it, are never
+	 * read, whether read serially or concurrently.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testExcludedPathsPruned() throws Exception {
+		final List<String> repos = Arrays.asList(directory.resolve("a").toString(), directory.resolve("b").toString());
+		final List<String> expected = Arrays.asList("a", "a-web", "b");
+
+		for (final int threads : new int[] { 1, 4 }) {
+			final Metrics metrics = new Metrics();
+			final RepoDirectoryReader reader = new RepoDirectoryReader();
+			reader.setMetrics(metrics);
+			reader.setExcludedPaths(new Patterns(Arrays.asList("*/a/core/", "*/missing/")));
+			Assert.assertEquals(expected, artifactIds(reader.readPomsAt(repos, threads)));
+			Assert.assertEquals(3, metrics.getFetches(RepoDirectoryReader.METRICS_HOST).getCount());
+		}
+	}
+
+	/**
+	 * Test that each read and parse is recorded in the metrics.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testMetricsRecorded() throws Exception {
+		final Metrics metrics = new Metrics();
+		final RepoDirectoryReader reader = new RepoDirectoryReader();
+		reader.setMetrics(metrics);
+		reader.readPomsAt(Arrays.asList(directory.resolve("a").toString()), 4);
+
+		Assert.assertEquals(6, metrics.getFetches(RepoDirectoryReader.METRICS_HOST).getCount());
+		Assert.assertEquals(5, metrics.getParsed());
+	}
+
+	/**
+	 * Write a pom.
+	 * 
+	 * @param dir the directory of the pom, relative to the checkouts
+	 * @param artifactId the artifactId
+	 * @param modules the modules
+	 * @throws IOException the exception
+	 */
+	private void writePom(final String dir, final String artifactId, final String... modules) throws IOException {
+		final StringBuilder xml = new StringBuilder();
+		xml.append("<project>\n");
+		xml.append("  <modelVersion>4.0.0</modelVersion>\n");
+		xml.append("  <groupId>uk.me.thega</groupId>\n");
+		xml.append("  <artifactId>").append(artifactId).append("</artifactId>\n");
+		xml.append("  <version>1.0</version>\n");
+		xml.append("  <modules>\n");
+		for (final String module : modules) {
+			xml.append("    <module>").append(module).append("</module>\n");
+		}
+		xml.append("  </modules>\n");
+		xml.append("</project>\n");
+
+		final Path path = directory.resolve(dir);
+		Files.createDirectories(path);
+		Files.write(path.resolve("pom.xml"), xml.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Get the artifactIds of some models.
+	 * 
+	 * @param models the models
+	 * @return the artifactIds, in order
+	 */
+	private static List<String> artifactIds(final List<PomSummary> models) {
+		final List<String> artifactIds = new ArrayList<String>();
+		for (final PomSummary model : models) {
+			artifactIds.add(model.getArtifactId());
+		}
+		return artifactIds;
+	}
+
+	/**
+	 * Delete a directory and everything in it.
+	 * 
+	 * @param file the directory or file
+	 */
+	private static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,57 @@
+package uk.me.thega.filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the {@link ArtifactFilter} class.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class ArtifactFilterTest {
+
+	/**
+	 * Test that excludes win over includes, and that everything not
+	 * excluded is included when there are no includes.
+	 */
+	@Test
+	public void testClassify() {
+		final ArtifactFilter filter = new ArtifactFilter(Arrays.asList("com.acme*"), Arrays.asList("*:*-test"),
+				Collections.<String> emptyList());
+		Assert.assertEquals(ArtifactFilter.INCLUDED, filter.classify("com.acme", "core"));
+		Assert.assertEquals(ArtifactFilter.EXCLUDED, filter.classify("com.acme", "core-test"));
+		Assert.assertEquals(ArtifactFilter.UNMATCHED, filter.classify("org.other", "lib"));
+
+		final ArtifactFilter all = new ArtifactFilter(Collections.<String> emptyList(), Arrays.asList("junit:*"),
+				Collections.<String> emptyList());
+		Assert.assertEquals(ArtifactFilter.INCLUDED, all.classify("org.other", "lib"));
+		Assert.assertEquals(ArtifactFilter.EXCLUDED, all.classify("junit", "junit"));
+	}
+
+	/**
+	 * Test that a link needs an included end and no excluded one.
+	 */
+	@Test
+	public void testIsLinked() {
+		Assert.assertTrue(ArtifactFilter.isLinked(ArtifactFilter.INCLUDED, ArtifactFilter.UNMATCHED));
+		Assert.assertTrue(ArtifactFilter.isLinked(ArtifactFilter.UNMATCHED, ArtifactFilter.INCLUDED));
+		Assert.assertFalse(ArtifactFilter.isLinked(ArtifactFilter.UNMATCHED, ArtifactFilter.UNMATCHED));
+		Assert.assertFalse(ArtifactFilter.isLinked(ArtifactFilter.INCLUDED, ArtifactFilter.EXCLUDED));
+	}
+
+	/**
+	 * Test that a missing scope is the compile scope.
+	 */
+	@Test
+	public void testIncludesScope() {
+		final ArtifactFilter filter = new ArtifactFilter(Collections.<String> emptyList(), Collections.<String> emptyList(),
+				Arrays.asList("compile", "test"));
+		Assert.assertFalse(filter.includesScope(null));
+		Assert.assertFalse(filter.includesScope("test"));
+		Assert.assertTrue(filter.includesScope("runtime"));
+	}
+}
@@ -0,0 +1,52 @@
+package uk.me.thega.filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the {@link Patterns} class.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class PatternsTest {
+
+	/**
+	 * Test that globs match in full, with only '*' and '?' special.
+	 */
+	@Test
+	public void testGlobs() {
+		final Patterns patterns = new Patterns(Arrays.asList("com.acme.*:core", "glob:org.?ther:lib-*"));
+		Assert.assertTrue(patterns.matches("com.acme.web:core"));
+		Assert.assertTrue(patterns.matches("org.other:lib-1"));
+		Assert.assertTrue(patterns.matches("org.0ther:lib-"));
+		Assert.assertFalse(patterns.matches("com.acme.web:core-api"));
+		Assert.assertFalse(patterns.matches("comXacme.web:core"));
+		Assert.assertFalse(patterns.matches("org.other:lib"));
+	}
+
+	/**
+	 * Test that regular expressions match in full, each with its own groups.
+	 */
+	@Test
+	public void testRegexes() {
+		final Patterns patterns = new Patterns(Arrays.asList("regex:(a+)b\\1", "regex:(x)(y)\\2"));
+		Assert.assertTrue(patterns.matches("aabaa"));
+		Assert.assertTrue(patterns.matches("xyy"));
+		Assert.assertFalse(patterns.matches("aaba"));
+		Assert.assertFalse(patterns.matches("xyyz"));
+	}
+
+	/**
+	 * Test that no patterns match nothing.
+	 */
+	@Test
+	public void testEmpty() {
+		final Patterns patterns = new Patterns(Collections.<String> emptyList());
+		Assert.assertTrue(patterns.isEmpty());
+		Assert.assertFalse(patterns.matches(""));
+	}
+}
@@ -0,0 +1,98 @@
+package uk.me.thega.graph;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the {@link ComponentIndex} class.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class ComponentIndexTest {
+
+	/**
+	 * Test that the artifacts of each cycle are grouped, in order, that a
+	 * self dependency is a cycle of its own, and that only the edges inside
+	 * a cycle are flagged.
+	 */
+	@Test
+	public void testCycles() {
+		final DependencyGraph graph = new DependencyGraph();
+		final int app = graph.addArtifact("com.acme", "app");
+		final int a = graph.addArtifact("com.acme", "a");
+		final int b = graph.addArtifact("org.other", "b");
+		final int c = graph.addArtifact("org.other", "c");
+		final int self = graph.addArtifact("com.acme", "self");
+		final int leaf = graph.addArtifact("com.acme", "leaf");
+		final int version = graph.addVersion("1");
+		graph.addDependency(app, a, version);
+		graph.addDependency(a, b, version);
+		graph.addDependency(b, c, version);
+		graph.addDependency(c, a, version);
+		graph.addDependency(c, leaf, version);
+		graph.addDependency(self, self, version);
+		graph.addDependency(self, leaf, version);
+
+		final ComponentIndex index = new ComponentIndex(graph);
+		Assert.assertEquals(4, index.getComponentCount());
+		final List<int[]> cycles = index.findCycles();
+		Assert.assertEquals(2, cycles.size());
+		Assert.assertArrayEquals(new int[] { a, b, c }, cycles.get(0));
+		Assert.assertArrayEquals(new int[] { self }, cycles.get(1));
+		Assert.assertFalse(index.isCyclic(index.getComponent(app)));
+		Assert.assertFalse(index.isCyclic(index.getComponent(leaf)));
+
+		final boolean[] inCycle = index.findCycleEdges();
+		Assert.assertEquals("[false, true, true, true, false, true, false]", Arrays.toString(inCycle));
+
+		// Every edge between components goes to a lower number
+		for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+			Assert.assertTrue(index.getComponent(graph.getDependee(edge)) >= index.getComponent(graph.getDependency(edge)));
+		}
+	}
+
+	/**
+	 * Test that only the edges asked for are followed.
+	 */
+	@Test
+	public void testFollowedEdges() {
+		final DependencyGraph graph = new DependencyGraph();
+		final int a = graph.addArtifact("g", "a");
+		final int b = graph.addArtifact("g", "b");
+		final int version = graph.addVersion("1");
+		graph.addDependency(a, b, version);
+		graph.addDependency(b, a, version);
+
+		Assert.assertEquals(1, new ComponentIndex(graph).findCycles().size());
+		final ComponentIndex index = new ComponentIndex(graph, new boolean[] { true, false });
+		Assert.assertEquals(0, index.findCycles().size());
+		Assert.assertTrue(index.getComponent(a) > index.getComponent(b));
+	}
+
+	/**
+	 * Test that a chain far deeper than a recursive search could follow is
+	 * indexed, and closing it makes one cycle of every artifact.
+	 */
+	@Test
+	public void testDeepChain() {
+		final DependencyGraph graph = new DependencyGraph();
+		final int version = graph.addVersion("1");
+		final int length = 200000;
+		int previous = graph.addArtifact("g", "a0");
+		for (int i = 1; i < length; i++) {
+			final int next = graph.addArtifact("g", "a" + i);
+			graph.addDependency(previous, next, version);
+			previous = next;
+		}
+		Assert.assertEquals(length, new ComponentIndex(graph).getComponentCount());
+
+		graph.addDependency(previous, 0, version);
+		final List<int[]> cycles = new ComponentIndex(graph).findCycles();
+		Assert.assertEquals(1, cycles.size());
+		Assert.assertEquals(length, cycles.get(0).length);
+	}
+}
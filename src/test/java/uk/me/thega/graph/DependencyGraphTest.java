@@ -0,0 +1,122 @@
+package uk.me.thega.graph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the {@link DependencyGraph} class.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public class DependencyGraphTest {
+
+	/**
+	 * Test that artifacts, groups and versions are interned once.
+	 */
+	@Test
+	public void testInterning() {
+		final DependencyGraph graph = new DependencyGraph();
+		final int a = graph.addArtifact("uk.me.thega", "a");
+		final int b = graph.addArtifact("uk.me.thega", "b");
+		final int c = graph.addArtifact("org.other", "a");
+
+		Assert.assertEquals(a, graph.addArtifact("uk.me.thega", "a"));
+		Assert.assertEquals(3, graph.getArtifactCount());
+		Assert.assertEquals(2, graph.getGroupCount());
+		Assert.assertEquals(graph.getGroup(a), graph.getGroup(b));
+		Assert.assertEquals("org.other", graph.getGroupId(c));
+		Assert.assertEquals("a", graph.getArtifactId(c));
+		Assert.assertEquals(b, graph.findArtifact("uk.me.thega", "b"));
+		Assert.assertEquals(-1, graph.findArtifact("uk.me.thega", "c"));
+
+		Assert.assertEquals(graph.addVersion("1.0"), graph.addVersion("1.0"));
+		Assert.assertEquals(graph.addVersion(null), graph.addVersion(null));
+		Assert.assertNull(graph.getVersion(graph.addVersion(null)));
+	}
+
+	/**
+	 * Test that duplicate edges are ignored.
+	 */
+	@Test
+	public void testDuplicateEdges() {
+		final DependencyGraph graph = new DependencyGraph();
+		final int a = graph.addArtifact("g", "a");
+		final int b = graph.addArtifact("g", "b");
+		final int v1 = graph.addVersion("1");
+		final int v2 = graph.addVersion("2");
+
+		Assert.assertTrue(graph.addDependency(a, b, v1));
+		Assert.assertFalse(graph.addDependency(a, b, v1));
+		Assert.assertTrue(graph.addDependency(a, b, v2));
+		Assert.assertEquals(2, graph.getEdgeCount());
+	}
+
+	/**
+	 * Test that an edge declared in several scopes keeps the widest, in
+	 * whichever order they are added.
+	 */
+	@Test
+	public void testScopes() {
+		final DependencyGraph graph = new DependencyGraph();
+		final int a = graph.addArtifact("g", "a");
+		final int b = graph.addArtifact("g", "b");
+		final int c = graph.addArtifact("g", "c");
+		final int v1 = graph.addVersion("1");
+		final int test = graph.addScope("test");
+		final int compile = graph.addScope("compile");
+		final int runtime = graph.addScope("runtime");
+
+		Assert.assertTrue(graph.addDependency(a, b, v1, test));
+		Assert.assertFalse(graph.addDependency(a, b, v1, compile));
+		Assert.assertFalse(graph.addDependency(a, b, v1, runtime));
+		Assert.assertEquals(compile, graph.getEdgeScope(0));
+
+		Assert.assertTrue(graph.addDependency(a, c, v1, runtime));
+		Assert.assertFalse(graph.addDependency(a, c, v1, test));
+		Assert.assertEquals(runtime, graph.getEdgeScope(1));
+
+		Assert.assertEquals(2, graph.getEdgeCount());
+		Assert.assertEquals("test", graph.getScope(test));
+		Assert.assertEquals(3, graph.getScopeCount());
+	}
+
+	/**
+	 * Test that the indexes hold every edge against the right artifact,
+	 * across enough edges to grow the arrays several times.
+	 */
+	@Test
+	public void testIndexes() {
+		final DependencyGraph graph = new DependencyGraph();
+		final int count = 1000;
+		final int version = graph.addVersion("1");
+		for (int i = 0; i < count; i++) {
+			graph.addArtifact("g" + (i % 7), "a" + i);
+		}
+		for (int i = 1; i < count; i++) {
+			graph.addDependency(i, i / 2, version);
+		}
+
+		final DependencyGraph.Index dependencies = graph.getDependencies();
+		final DependencyGraph.Index dependents = graph.getDependents();
+		for (int i = 1; i < count; i++) {
+			Assert.assertEquals(1, dependencies.end(i) - dependencies.start(i));
+			Assert.assertEquals(i / 2, graph.getDependency(dependencies.get(dependencies.start(i))));
+		}
+		for (int i = 0; i < count; i++) {
+			for (int p = dependents.start(i); p < dependents.end(i); p++) {
+				Assert.assertEquals(i, graph.getDependee(dependents.get(p)) / 2);
+			}
+		}
+
+		final DependencyGraph.Index members = graph.getGroupMembers();
+		int total = 0;
+		for (int group = 0; group < graph.getGroupCount(); group++) {
+			for (int p = members.start(group); p < members.end(group); p++) {
+				Assert.assertEquals(group, graph.getGroup(members.get(p)));
+				total++;
+			}
+		}
+		Assert.assertEquals(count, total);
+	}
+}
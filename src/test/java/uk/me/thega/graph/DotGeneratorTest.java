@@ -0,0 +1,170 @@
+package uk.me.thega.graph;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.BitSet;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the {@link DotGenerator} class.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public class DotGeneratorTest {
+
+	/** The graph to generate. */
+	private DependencyGraph graph;
+
+	/**
+	 * Create a small graph.
+	 */
+	@Before
+	public void setUp() {
+		graph = new DependencyGraph();
+		final int a = graph.addArtifact("uk.me.thega", "a");
+		final int b = graph.addArtifact("uk.me.thega", "b");
+		final int c = graph.addArtifact("org.other", "c");
+		graph.addDependency(a, b, graph.addVersion("1"));
+		graph.addDependency(a, c, graph.addVersion("2"));
+	}
+
+	/**
+	 * Generate the graph with a started generator.
+	 * 
+	 * @param generator the generator.
+	 * @return the result of ending the graph.
+	 * @throws Exception the exception
+	 */
+	private String generate(final DotGenerator generator) throws Exception {
+		generator.writeNodesToGraph(true, graph);
+		generator.linkNodesOnGraph(1, 0, false);
+		generator.linkNodesOnGraph(2, 0, true);
+		return generator.end();
+	}
+
+	/**
+	 * Test that the graph built in memory contains the nodes and links.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testInMemory() throws Exception {
+		final DotGenerator generator = new DotGenerator();
+		generator.start(100, 100);
+		final String dot = generate(generator);
+
+		Assert.assertTrue(dot.startsWith("digraph G {\n"));
+		Assert.assertTrue(dot.contains(DotGenerator.nodeString("Node_2", "c")));
+		Assert.assertTrue(dot.contains("    Node_0 -> Node_1 [color=") && dot.contains(",penwidth=" + DotGenerator.CURRENT_WEIGHT + "];"));
+		Assert.assertTrue(dot.contains("    Node_0 -> Node_2 [color=") && dot.contains(",penwidth=" + DotGenerator.STALE_WEIGHT + "];"));
+		Assert.assertTrue(dot.endsWith("}\n\n"));
+	}
+
+	/**
+	 * Test that writing some of the artifacts leaves out the others, and the
+	 * clusters of groups with none, while keeping each group's colour.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testSelectedNodes() throws Exception {
+		final DotGenerator generator = new DotGenerator();
+		generator.start(100, 100);
+		final BitSet selected = new BitSet();
+		selected.set(2);
+		generator.writeNodesToGraph(true, graph, selected);
+		final String dot = generator.end();
+		final DotColours colours = new DotColours();
+		colours.next();
+
+		Assert.assertFalse(dot.contains("Node_0"));
+		Assert.assertFalse(dot.contains("label=\"uk.me.thega\""));
+		Assert.assertTrue(dot.contains("    subgraph cluster_0 {\n        label=\"org.other\";\n        color=" + colours.next() + ";"));
+		Assert.assertTrue(dot.contains(DotGenerator.nodeString("Node_2", "c")));
+	}
+
+	/**
+	 * Test that a link in a dependency cycle is highlighted rather than
+	 * coloured by its group.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testCycleLink() throws Exception {
+		final DotGenerator generator = new DotGenerator();
+		generator.start(100, 100);
+		generator.writeNodesToGraph(true, graph);
+		generator.linkNodesOnGraph(1, 0, false, true);
+		final String dot = generator.end();
+
+		Assert.assertTrue(dot.contains("    Node_0 -> Node_1 [color=" + DotGenerator.CYCLE_COLOUR + ",penwidth=" + DotGenerator.CURRENT_WEIGHT + ",style="
+				+ DotGenerator.CYCLE_STYLE + "];"));
+	}
+
+	/**
+	 * Test that a link implied by others is marked, and left out of the
+	 * layout.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testImpliedLink() throws Exception {
+		final DotGenerator generator = new DotGenerator();
+		generator.start(100, 100);
+		generator.writeNodesToGraph(true, graph);
+		generator.linkImpliedNodesOnGraph(2, 0);
+		final String dot = generator.end();
+
+		Assert.assertTrue(dot.contains("    Node_0 -> Node_2 [color=" + DotGenerator.IMPLIED_COLOUR + ",style=" + DotGenerator.IMPLIED_STYLE + ",constraint=false];"));
+	}
+
+	/**
+	 * Test that streaming to a writer produces the same graph as building it in memory.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testStreamToWriter() throws Exception {
+		final DotGenerator inMemory = new DotGenerator();
+		inMemory.start(100, 100);
+		final String expected = generate(inMemory);
+
+		final DotGenerator generator = new DotGenerator();
+		final StringWriter writer = new StringWriter();
+		generator.start(writer, 100, 100);
+		Assert.assertNull(generate(generator));
+		Assert.assertEquals(expected, writer.toString());
+	}
+
+	/**
+	 * Test that a gzipped stream decompresses to the same graph as building it in memory.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testStreamGzipped() throws Exception {
+		final DotGenerator inMemory = new DotGenerator();
+		inMemory.start(100, 100);
+		final String expected = generate(inMemory);
+
+		final DotGenerator generator = new DotGenerator();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		generator.start(bytes, true, 100, 100);
+		generate(generator);
+
+		final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		final ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			unzipped.write(buffer, 0, read);
+		}
+		Assert.assertEquals(expected, unzipped.toString("UTF-8"));
+	}
+}
@@ -0,0 +1,78 @@
+package uk.me.thega.graph;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the {@link EdgeListWriter} class.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class EdgeListWriterTest {
+
+	/** The expected list of the graph. */
+	private static final String EXPECTED = "uk.me.thega:a\tuk.me.thega:b\t1\nuk.me.thega:a\torg.other:c\t\n";
+
+	/** The graph to write. */
+	private DependencyGraph graph;
+
+	/**
+	 * Create a small graph.
+	 */
+	@Before
+	public void setUp() {
+		graph = new DependencyGraph();
+		final int a = graph.addArtifact("uk.me.thega", "a");
+		final int b = graph.addArtifact("uk.me.thega", "b");
+		final int c = graph.addArtifact("org.other", "c");
+		graph.addDependency(a, b, graph.addVersion("1"));
+		graph.addDependency(a, c, graph.addVersion(null));
+	}
+
+	/**
+	 * Test that each edge is written as a line, with an empty missing version.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testStreamToWriter() throws Exception {
+		final EdgeListWriter writer = new EdgeListWriter();
+		final StringWriter out = new StringWriter();
+		writer.start(out);
+		writer.writeEdge(graph, 0);
+		writer.writeEdge(graph, 1);
+		writer.end();
+		Assert.assertEquals(EXPECTED, out.toString());
+	}
+
+	/**
+	 * Test that a gzipped stream decompresses to the same list.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testStreamGzipped() throws Exception {
+		final EdgeListWriter writer = new EdgeListWriter();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		writer.start(bytes, true);
+		writer.writeEdge(graph, 0);
+		writer.writeEdge(graph, 1);
+		writer.end();
+
+		final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		final ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			unzipped.write(buffer, 0, read);
+		}
+		Assert.assertEquals(EXPECTED, unzipped.toString("UTF-8"));
+	}
+}
@@ -0,0 +1,112 @@
+package uk.me.thega.graph;
+
+import java.util.BitSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the {@link GraphQuery} class.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class GraphQueryTest {
+
+	/** The graph to query. */
+	private DependencyGraph graph;
+
+	/** The artifacts of the graph. */
+	private int app, service, client, core, util, other;
+
+	/**
+	 * Create a graph where app depends on service, which depends on client
+	 * and core, client depends on core, core depends on util, and util on
+	 * core again; other stands alone.
+	 */
+	@Before
+	public void setUp() {
+		graph = new DependencyGraph();
+		app = graph.addArtifact("com.acme", "app");
+		service = graph.addArtifact("com.acme", "service");
+		client = graph.addArtifact("com.acme", "client");
+		core = graph.addArtifact("com.acme", "core");
+		util = graph.addArtifact("org.other", "util");
+		other = graph.addArtifact("org.other", "other");
+		final int version = graph.addVersion("1");
+		graph.addDependency(app, service, version);
+		graph.addDependency(service, client, version);
+		graph.addDependency(service, core, version);
+		graph.addDependency(client, core, version);
+		graph.addDependency(core, util, version);
+		graph.addDependency(util, core, graph.addVersion("2"));
+	}
+
+	/**
+	 * Create a bit set of artifacts.
+	 *
+	 * @param artifacts the Ids of the artifacts.
+	 * @return the bit set.
+	 */
+	private static BitSet of(final int... artifacts) {
+		final BitSet set = new BitSet();
+		for (final int artifact : artifacts) {
+			set.set(artifact);
+		}
+		return set;
+	}
+
+	/**
+	 * Test that every artifact depending on another, however indirectly, is
+	 * found once, through the cycle.
+	 */
+	@Test
+	public void testDependents() {
+		final GraphQuery query = new GraphQuery(graph);
+		Assert.assertEquals(of(core, app, service, client, util), query.findDependents(core, GraphQuery.UNLIMITED));
+		Assert.assertEquals(of(app), query.findDependents(app, GraphQuery.UNLIMITED));
+		Assert.assertEquals(of(other), query.findDependents(other, GraphQuery.UNLIMITED));
+	}
+
+	/**
+	 * Test that every artifact depended upon, however indirectly, is found.
+	 */
+	@Test
+	public void testDependencies() {
+		final GraphQuery query = new GraphQuery(graph);
+		Assert.assertEquals(of(app, service, client, core, util), query.findDependencies(app, GraphQuery.UNLIMITED));
+		Assert.assertEquals(of(util, core), query.findDependencies(util, GraphQuery.UNLIMITED));
+	}
+
+	/**
+	 * Test that a depth stops the search after that many levels of edges,
+	 * taking each artifact at the shortest distance.
+	 */
+	@Test
+	public void testDepth() {
+		final GraphQuery query = new GraphQuery(graph);
+		Assert.assertEquals(of(app, service), query.findDependencies(app, 1));
+		Assert.assertEquals(of(app, service, client, core), query.findDependencies(app, 2));
+		Assert.assertEquals(of(core, service, client, util), query.findDependents(core, 1));
+	}
+
+	/**
+	 * Test that only the edges followed are walked, so an artifact reached
+	 * only through a left out edge is not found.
+	 */
+	@Test
+	public void testOnlyFollowedEdges() {
+		final int test = graph.addScope("test");
+		graph.addDependency(other, core, graph.addVersion("1"), test);
+		final boolean[] followed = new boolean[graph.getEdgeCount()];
+		for (int edge = 0; edge < followed.length; edge++) {
+			followed[edge] = graph.getEdgeScope(edge) != test;
+		}
+
+		Assert.assertEquals(of(other, core, util), new GraphQuery(graph).findDependencies(other, GraphQuery.UNLIMITED));
+		final GraphQuery query = new GraphQuery(graph, followed);
+		Assert.assertEquals(of(other), query.findDependencies(other, GraphQuery.UNLIMITED));
+		Assert.assertEquals(of(core, util, client, service, app), query.findDependents(core, GraphQuery.UNLIMITED));
+	}
+}
@@ -0,0 +1,169 @@
+package uk.me.thega.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the {@link GraphSnapshot} class.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class GraphSnapshotTest {
+
+	/** The file each snapshot is written to. */
+	private File file;
+
+	/**
+	 * Create the snapshot file.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("graph", ".snapshot");
+	}
+
+	/**
+	 * Delete the snapshot file.
+	 */
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	/**
+	 * Test that a graph read back has the same names, edges and out of date
+	 * flags as the one written, and can still be added to.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		final DependencyGraph graph = new DependencyGraph();
+		for (int i = 0; i < 100; i++) {
+			final int dependee = graph.addArtifact("g" + (i % 7), "a" + i);
+			final int dependency = graph.addArtifact("g\u00e9", "a" + (i % 13));
+			final int version = graph.addVersion((i % 10 == 0) ? null : "1." + (i % 4));
+			graph.addDependency(dependee, dependency, version, graph.addScope((i % 3 == 0) ? null : "test"));
+		}
+		final boolean[] stale = new VersionIndex(graph).findStaleEdges();
+		new GraphSnapshot(graph, stale).write(file);
+
+		final GraphSnapshot read = GraphSnapshot.read(file);
+		final DependencyGraph copy = read.getGraph();
+		Assert.assertEquals(graph.getGroupCount(), copy.getGroupCount());
+		Assert.assertEquals(graph.getArtifactCount(), copy.getArtifactCount());
+		Assert.assertEquals(graph.getVersionCount(), copy.getVersionCount());
+		Assert.assertEquals(graph.getScopeCount(), copy.getScopeCount());
+		Assert.assertEquals(graph.getEdgeCount(), copy.getEdgeCount());
+		for (int artifact = 0; artifact < graph.getArtifactCount(); artifact++) {
+			Assert.assertEquals(graph.getGroupId(artifact), copy.getGroupId(artifact));
+			Assert.assertEquals(graph.getArtifactId(artifact), copy.getArtifactId(artifact));
+		}
+		for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+			Assert.assertEquals(graph.getDependee(edge), copy.getDependee(edge));
+			Assert.assertEquals(graph.getDependency(edge), copy.getDependency(edge));
+			Assert.assertEquals(graph.getVersion(graph.getEdgeVersion(edge)), copy.getVersion(copy.getEdgeVersion(edge)));
+			Assert.assertEquals(graph.getScope(graph.getEdgeScope(edge)), copy.getScope(copy.getEdgeScope(edge)));
+			Assert.assertEquals(stale[edge], read.getStaleEdges()[edge]);
+		}
+		Assert.assertEquals(graph.findArtifact("g\u00e9", "a5"), copy.findArtifact("g\u00e9", "a5"));
+
+		// The edge table is built on the first edge added
+		final int a0 = copy.findArtifact("g0", "a0");
+		final int a1 = copy.findArtifact("g1", "a1");
+		Assert.assertFalse(copy.addDependency(copy.getDependee(0), copy.getDependency(0), copy.getEdgeVersion(0)));
+		Assert.assertTrue(copy.addDependency(a0, a1, copy.addVersion("2.0")));
+		Assert.assertEquals(graph.getEdgeCount() + 1, copy.getEdgeCount());
+		Assert.assertEquals(graph.getEdgeCount(), copy.getDependents().get(copy.getDependents().end(a1) - 1));
+	}
+
+	/**
+	 * Test that a snapshot that fails part way through being written leaves
+	 * the previous one in place, and no partial file behind.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testFailedWriteCleanedUp() throws Exception {
+		final DependencyGraph graph = new DependencyGraph();
+		graph.addDependency(graph.addArtifact("g", "a0"), graph.addArtifact("g", "a1"), graph.addVersion("1.0"), graph.addScope(null));
+		new GraphSnapshot(graph, new boolean[1]).write(file);
+
+		try {
+			// Too few out of date flags for the edges
+			new GraphSnapshot(graph, new boolean[0]).write(file);
+			Assert.fail("Expected the write to fail");
+		} catch (final ArrayIndexOutOfBoundsException e) {
+			// Expected
+		}
+		Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+		Assert.assertEquals(1, GraphSnapshot.read(file).getGraph().getEdgeCount());
+	}
+
+	/**
+	 * Test that an empty graph replaces an existing file, is read back empty,
+	 * and can be added to.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testEmpty() throws Exception {
+		new GraphSnapshot(new DependencyGraph(), new boolean[0]).write(file);
+		Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+
+		final DependencyGraph copy = GraphSnapshot.read(file).getGraph();
+		Assert.assertEquals(0, copy.getArtifactCount());
+		Assert.assertEquals(0, copy.getEdgeCount());
+		Assert.assertTrue(copy.addDependency(copy.addArtifact("g", "a"), copy.addArtifact("g", "b"), copy.addVersion("1")));
+	}
+
+	/**
+	 * Test that a file that is not a snapshot, or is cut short, is refused.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testInvalidFiles() throws Exception {
+		final DependencyGraph graph = new DependencyGraph();
+		graph.addDependency(graph.addArtifact("g", "a"), graph.addArtifact("g", "b"), graph.addVersion("1"));
+		new GraphSnapshot(graph, new boolean[1]).write(file);
+
+		final RandomAccessFile raw = new RandomAccessFile(file, "rw");
+		try {
+			raw.setLength(raw.length() - 1);
+		} finally {
+			raw.close();
+		}
+		assertUnreadable("Truncated graph snapshot");
+
+		final RandomAccessFile overwritten = new RandomAccessFile(file, "rw");
+		try {
+			overwritten.writeInt(0);
+		} finally {
+			overwritten.close();
+		}
+		assertUnreadable("is not a graph snapshot");
+	}
+
+	/**
+	 * Assert that the snapshot file cannot be read.
+	 *
+	 * @param message part of the message expected.
+	 */
+	private void assertUnreadable(final String message) {
+		try {
+			GraphSnapshot.read(file);
+			Assert.fail("Expected the snapshot to be refused");
+		} catch (final IOException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+	}
+}
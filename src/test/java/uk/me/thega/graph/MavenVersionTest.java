@@ -0,0 +1,68 @@
+package uk.me.thega.graph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test that {@link MavenVersion} orders versions the way Maven does.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public class MavenVersionTest {
+
+	/**
+	 * Assert that each version is older than the next.
+	 * 
+	 * @param versions the versions, oldest first
+	 */
+	private static void assertOrder(final String... versions) {
+		for (int i = 0; i < versions.length - 1; i++) {
+			final MavenVersion older = new MavenVersion(versions[i]);
+			final MavenVersion newer = new MavenVersion(versions[i + 1]);
+			Assert.assertTrue(versions[i] + " < " + versions[i + 1], older.compareTo(newer) < 0);
+			Assert.assertTrue(versions[i + 1] + " > " + versions[i], newer.compareTo(older) > 0);
+		}
+	}
+
+	/**
+	 * Assert that two versions are equivalent.
+	 * 
+	 * @param a the first version
+	 * @param b the second version
+	 */
+	private static void assertEquivalent(final String a, final String b) {
+		Assert.assertEquals(a + " == " + b, 0, new MavenVersion(a).compareTo(new MavenVersion(b)));
+	}
+
+	/**
+	 * Test that numbers compare numerically.
+	 */
+	@Test
+	public void testNumeric() {
+		assertOrder("1", "1.1", "1.2", "1.9", "1.10", "1.10.1", "2", "10");
+	}
+
+	/**
+	 * Test that qualifiers come before the release, apart from service packs.
+	 */
+	@Test
+	public void testQualifiers() {
+		assertOrder("1.0-alpha-1", "1.0-alpha-2", "1.0-beta-1", "1.0-milestone-1", "1.0-rc1", "1.0-SNAPSHOT", "1.0", "1.0-sp1", "1.0-zzz", "1.0.1");
+		assertOrder("2.0-SNAPSHOT", "2.0");
+		assertOrder("1.0-SNAPSHOT", "1.1-SNAPSHOT");
+	}
+
+	/**
+	 * Test that equivalent spellings of a version are equal.
+	 */
+	@Test
+	public void testEquivalence() {
+		assertEquivalent("1", "1.0");
+		assertEquivalent("1.0", "1.0.0");
+		assertEquivalent("1.0", "1.0-GA");
+		assertEquivalent("1.0-final", "1.0");
+		assertEquivalent("1.0-a1", "1.0-alpha-1");
+		assertEquivalent("1.0-CR1", "1.0-rc-1");
+	}
+}
@@ -0,0 +1,147 @@
+package uk.me.thega.graph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the {@link TransitiveReduction} class.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class TransitiveReductionTest {
+
+	/**
+	 * Test that a shortcut past a chain is redundant, in any version, while
+	 * the links of a diamond are not.
+	 */
+	@Test
+	public void testShortcut() {
+		final DependencyGraph graph = new DependencyGraph();
+		final int a = graph.addArtifact("g", "a");
+		final int b = graph.addArtifact("g", "b");
+		final int c = graph.addArtifact("g", "c");
+		final int d = graph.addArtifact("g", "d");
+		final int version = graph.addVersion("1");
+		graph.addDependency(a, b, version);
+		graph.addDependency(a, c, version);
+		graph.addDependency(b, d, version);
+		graph.addDependency(c, d, version);
+		graph.addDependency(a, d, version);
+		graph.addDependency(a, d, graph.addVersion("2"));
+
+		Assert.assertEquals("[false, false, false, false, true, true]", Arrays.toString(new TransitiveReduction(graph).findRedundantEdges()));
+	}
+
+	/**
+	 * Test that a cycle is reduced as one artifact, keeping the links within
+	 * it and those into it from several of its artifacts.
+	 */
+	@Test
+	public void testCycle() {
+		final DependencyGraph graph = new DependencyGraph();
+		final int app = graph.addArtifact("g", "app");
+		final int a = graph.addArtifact("g", "a");
+		final int b = graph.addArtifact("g", "b");
+		final int leaf = graph.addArtifact("g", "leaf");
+		final int version = graph.addVersion("1");
+		graph.addDependency(app, a, version);
+		graph.addDependency(app, b, version);
+		graph.addDependency(a, b, version);
+		graph.addDependency(b, a, version);
+		graph.addDependency(b, leaf, version);
+		graph.addDependency(app, leaf, version);
+
+		Assert.assertEquals("[false, false, false, false, false, true]", Arrays.toString(new TransitiveReduction(graph).findRedundantEdges()));
+	}
+
+	/**
+	 * Test that only the edges included are reduced, and the others neither
+	 * imply them nor are flagged.
+	 */
+	@Test
+	public void testIncludedEdges() {
+		final DependencyGraph graph = new DependencyGraph();
+		final int a = graph.addArtifact("g", "a");
+		final int b = graph.addArtifact("g", "b");
+		final int c = graph.addArtifact("g", "c");
+		final int version = graph.addVersion("1");
+		graph.addDependency(a, b, version);
+		graph.addDependency(b, c, version);
+		graph.addDependency(a, c, version);
+
+		final boolean[] included = { true, false, true };
+		Assert.assertEquals("[false, false, false]", Arrays.toString(new TransitiveReduction(graph, included).findRedundantEdges()));
+	}
+
+	/**
+	 * Test against a direct search of random graphs that an edge is
+	 * redundant exactly when its dependency is reachable without it.
+	 */
+	@Test
+	public void testRandomGraphs() {
+		final Random random = new Random(42);
+		for (int run = 0; run < 50; run++) {
+			final DependencyGraph graph = new DependencyGraph();
+			final int count = 2 + random.nextInt(30);
+			for (int i = 0; i < count; i++) {
+				graph.addArtifact("g", "a" + i);
+			}
+			final int version = graph.addVersion("1");
+			final int edges = random.nextInt(count * 3);
+			for (int i = 0; i < edges; i++) {
+				final int from = random.nextInt(count);
+				final int to = random.nextInt(count);
+				// Mostly acyclic, from higher to lower Ids, with the odd cycle
+				if (from > to || random.nextInt(10) == 0) {
+					graph.addDependency(from, to, version);
+				}
+			}
+
+			final ComponentIndex components = new ComponentIndex(graph);
+			final boolean[] redundant = new TransitiveReduction(graph).findRedundantEdges();
+			for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+				final int from = components.getComponent(graph.getDependee(edge));
+				final int to = components.getComponent(graph.getDependency(edge));
+				final boolean expected = from != to && reachesAvoiding(graph, components, from, to);
+				Assert.assertEquals("Edge " + edge + " of run " + run, expected, redundant[edge]);
+			}
+		}
+	}
+
+	/**
+	 * Can one component reach another other than by a direct edge between
+	 * them, that is through a third component?
+	 *
+	 * @param graph the graph.
+	 * @param components the components of the graph.
+	 * @param from the component to start from.
+	 * @param to the component to reach.
+	 * @return true if some other component leads from one to the other.
+	 */
+	private static boolean reachesAvoiding(final DependencyGraph graph, final ComponentIndex components, final int from, final int to) {
+		final boolean[] reached = new boolean[components.getComponentCount()];
+		for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+			final int middle = components.getComponent(graph.getDependency(edge));
+			if (components.getComponent(graph.getDependee(edge)) == from && middle != from && middle != to) {
+				reached[middle] = true;
+			}
+		}
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+				final int dependee = components.getComponent(graph.getDependee(edge));
+				final int dependency = components.getComponent(graph.getDependency(edge));
+				if (reached[dependee] && !reached[dependency]) {
+					reached[dependency] = true;
+					changed = true;
+				}
+			}
+		}
+		return reached[to];
+	}
+}
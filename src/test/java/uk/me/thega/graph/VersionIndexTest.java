@@ -0,0 +1,45 @@
+package uk.me.thega.graph;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the {@link VersionIndex} class.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public class VersionIndexTest {
+
+	/**
+	 * Test that only edges to an older version than the newest in use are stale.
+	 */
+	@Test
+	public void testStaleEdges() {
+		final DependencyGraph graph = new DependencyGraph();
+		final int a = graph.addArtifact("g", "a");
+		final int b = graph.addArtifact("g", "b");
+		final int c = graph.addArtifact("g", "c");
+		final int lib = graph.addArtifact("lib", "lib");
+		final int other = graph.addArtifact("lib", "other");
+
+		graph.addDependency(a, lib, graph.addVersion("1.9"));
+		graph.addDependency(b, lib, graph.addVersion("1.10"));
+		graph.addDependency(c, lib, graph.addVersion("1.10.0"));
+		graph.addDependency(a, other, graph.addVersion(null));
+		graph.addDependency(b, other, graph.addVersion("${other.version}"));
+		graph.addDependency(c, other, graph.addVersion("2.0-SNAPSHOT"));
+
+		final VersionIndex index = new VersionIndex(graph);
+		Assert.assertEquals("1.10", graph.getVersion(index.findLatestVersions()[lib]));
+		Assert.assertEquals("2.0-SNAPSHOT", graph.getVersion(index.findLatestVersions()[other]));
+		Assert.assertEquals(-1, index.findLatestVersions()[a]);
+		Assert.assertEquals(index.getRank(graph.addVersion("1.10")), index.getRank(graph.addVersion("1.10.0")));
+		Assert.assertEquals(VersionIndex.UNRANKED, index.getRank(graph.addVersion(null)));
+
+		final boolean[] stale = index.findStaleEdges();
+		Assert.assertEquals("[true, false, false, false, false, false]", Arrays.toString(stale));
+	}
+}
@@ -0,0 +1,128 @@
+package uk.me.thega.metrics;
+
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import uk.me.thega.graph.DependencyGraph;
+
+/**
+ * Test for the {@link Metrics} and {@link Histogram} classes.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public class MetricsTest {
+
+	/**
+	 * Test that percentiles are estimated from the bucket they fall in,
+	 * capped at the longest duration.
+	 */
+	@Test
+	public void testHistogramPercentiles() {
+		final Histogram histogram = new Histogram();
+		Assert.assertEquals(0, histogram.getPercentile(50));
+
+		for (int i = 0; i < 98; i++) {
+			histogram.record(3000000);
+		}
+		histogram.record(150000000);
+		histogram.record(160000000);
+
+		Assert.assertEquals(100, histogram.getCount());
+		Assert.assertEquals(98, histogram.getBucketCount(2));
+		Assert.assertEquals(1, histogram.getBucketCount(12));
+		Assert.assertEquals(1, histogram.getBucketCount(13));
+		Assert.assertEquals(3000000, histogram.getPercentile(50));
+		Assert.assertEquals(150000000, histogram.getPercentile(99));
+		Assert.assertEquals(160000000, histogram.getPercentile(100));
+		Assert.assertEquals(160000000, histogram.getMax());
+	}
+
+	/**
+	 * Test that the report holds each phase, host and count recorded.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testWriteJson() throws Exception {
+		final Metrics metrics = new Metrics();
+		metrics.startPhase("crawl").end();
+		metrics.startThreadPhase("aggregate").end();
+		metrics.recordFetch("example.com", 2000000, true);
+		metrics.recordFetch("example.com", 4000000, false);
+		metrics.recordFetch("other:8080", 1000000, true);
+		metrics.recordDownload(1234);
+		metrics.recordParse(500000);
+		metrics.recordRetry("example.com");
+		metrics.recordBreakerOpen("example.com");
+		metrics.recordFailure("http://example.com/pom.xml", "IOException: \"refused\"");
+		metrics.recordCache("pom", "hits", 3);
+		metrics.recordCache("pom", "misses", 1);
+
+		final DependencyGraph graph = new DependencyGraph();
+		graph.addDependency(graph.addArtifact("a", "a"), graph.addArtifact("b", "b"), graph.addVersion("1"));
+		metrics.recordGraph(graph);
+		metrics.recordGraph(new DependencyGraph());
+
+		final StringWriter writer = new StringWriter();
+		metrics.writeJson(writer);
+		final String json = writer.toString();
+
+		Assert.assertTrue(json, json.indexOf("\"crawl\": {\"wallMillis\": ") < json.indexOf("\"aggregate\": {\"wallMillis\": "));
+		Assert.assertTrue(json, json.matches("(?s).*\"crawl\": \\{[^}]*\"cpuOf\": \"process\"}.*"));
+		Assert.assertTrue(json, json.matches("(?s).*\"aggregate\": \\{[^}]*\"cpuOf\": \"thread\"}.*"));
+		Assert.assertTrue(json, json.contains("\"failures\": 1,"));
+		Assert.assertTrue(json, json.contains("\"bytesDownloaded\": 1234,"));
+		Assert.assertTrue(json, json.contains("\"example.com\": {\"count\": 2, \"totalMillis\": 6.000, \"p50Millis\": 2.000, \"p99Millis\": 4.000"));
+		Assert.assertTrue(json, json.contains("\"other:8080\": {\"count\": 1,"));
+		Assert.assertTrue(json, json.contains("\"retries\": 1, \"breakerOpens\": 1, "));
+		Assert.assertTrue(json, json.contains("\"failed\": [\n    {\"location\": \"http://example.com/pom.xml\", \"reason\": \"IOException: \\\"refused\\\"\"}\n  ],"));
+		Assert.assertTrue(json, json.contains("\"parse\": {\"count\": 1, \"totalMillis\": 0.500, "));
+		Assert.assertTrue(json, json.contains("\"peakGraph\": {\"artifacts\": 2, \"edges\": 1, \"versions\": 1, \"groups\": 2}"));
+		Assert.assertTrue(json, json.contains("\"caches\": {\n    \"pom\": {\"hits\": 3, \"misses\": 1}\n  }\n}"));
+		Assert.assertEquals(1, metrics.getCacheCount("pom", "misses"));
+	}
+
+	/**
+	 * Test that a phase charged its own thread's CPU time is not charged
+	 * that of another thread busy while it runs.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testThreadPhaseCpuTime() throws Exception {
+		final Metrics metrics = new Metrics();
+		final Metrics.Phase phase = metrics.startThreadPhase("aggregate");
+		final Thread busy = new Thread() {
+			public void run() {
+				final long end = System.nanoTime() + 300000000L;
+				while (System.nanoTime() < end) {
+					// Burn CPU on another thread
+				}
+			}
+		};
+		busy.start();
+		busy.join();
+		phase.end();
+
+		Assert.assertTrue(metrics.getWallTime("aggregate") >= 300000000L);
+		Assert.assertTrue(String.valueOf(metrics.getCpuTime("aggregate")), metrics.getCpuTime("aggregate") < 100000000L);
+	}
+
+	/**
+	 * Test that an empty report is still well formed.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testWriteEmptyJson() throws Exception {
+		final StringWriter writer = new StringWriter();
+		new Metrics().writeJson(writer);
+
+		Assert.assertTrue(writer.toString(), writer.toString().startsWith("{\n  \"phases\": {},\n  \"fetch\": {\n"));
+		Assert.assertTrue(writer.toString(), writer.toString().contains("\"hosts\": {}\n"));
+		Assert.assertTrue(writer.toString(), writer.toString().endsWith("\"caches\": {}\n}\n"));
+	}
+}
@@ -0,0 +1,51 @@
+package uk.me.thega.pom;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the {@link IncrementalPomParser} class.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class IncrementalPomParserTest {
+
+	/** A pom. */
+	private static final String POM = "<project><groupId>com.acme</groupId><artifactId>core</artifactId><dependencies>"
+			+ "<dependency><groupId>junit</groupId><artifactId>junit</artifactId><version>4.11</version></dependency></dependencies></project>";
+
+	/**
+	 * Test that only a pom whose content is not in the earlier snapshot is
+	 * parsed, and that both are kept for the next run.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testParsesOnlyChanged() throws Exception {
+		final IncrementalPomParser first = new IncrementalPomParser(new StaxPomParser(), new PomSnapshot());
+		final PomSummary summary = first.parse(stream(POM));
+		Assert.assertEquals(1, first.getParsed());
+
+		final IncrementalPomParser second = new IncrementalPomParser(new StaxPomParser(), first.getSnapshot());
+		Assert.assertEquals(summary, second.parse(stream(POM)));
+		final PomSummary changed = second.parse(stream(POM.replace("4.11", "4.12")));
+		Assert.assertEquals("4.12", changed.getDependencies().get(0).getVersion());
+		Assert.assertEquals(1, second.getParsed());
+		Assert.assertEquals(1, second.getReused());
+		Assert.assertEquals(2, second.getSnapshot().size());
+	}
+
+	/**
+	 * Create a stream of a pom.
+	 *
+	 * @param pom the pom.
+	 * @return the stream.
+	 */
+	private static ByteArrayInputStream stream(final String pom) {
+		return new ByteArrayInputStream(pom.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,142 @@
+package uk.me.thega.pom;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.fuin.maven.MavenPomReader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the {@link ModelPomParser} class, merging parents from a local
+ * repository.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class ModelPomParserTest {
+
+	/** The local repository. */
+	private File repository;
+
+	/**
+	 * Create an empty local repository.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		repository = Files.createTempDirectory("repository").toFile();
+		MavenPomReader.getParentCache().clear();
+	}
+
+	/**
+	 * Delete the local repository.
+	 */
+	@After
+	public void tearDown() {
+		delete(repository);
+	}
+
+	/**
+	 * Test that a pom takes the dependencies of its parent, but not its
+	 * modules.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testModulesNotInherited() throws Exception {
+		install("com.acme", "parent", "1.0", "<modules><module>a</module><module>b</module></modules>"
+				+ "<dependencies><dependency><groupId>junit</groupId><artifactId>junit</artifactId><version>4.11</version></dependency></dependencies>");
+		final ModelPomParser parser = new ModelPomParser(repository);
+
+		final PomSummary a = parser.parse(child("a", ""));
+		Assert.assertEquals(Collections.emptyList(), a.getModules());
+		Assert.assertEquals(Arrays.asList(new PomSummary.Dependency("junit", "junit", "4.11", null)), a.getDependencies());
+
+		final PomSummary b = parser.parse(child("b", "<modules><module>core</module></modules>"));
+		Assert.assertEquals(Arrays.asList("core"), b.getModules());
+	}
+
+	/**
+	 * Test that a pom whose parent is not in the repository is summarised on
+	 * its own, and that the parent is looked for only once.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testMissingParentLookedForOnce() throws Exception {
+		final ModelPomParser parser = new ModelPomParser(repository);
+		for (int i = 0; i < 2; i++) {
+			final PomSummary a = parser.parse(child("a", "<modules><module>core</module></modules>"));
+			Assert.assertEquals("a", a.getArtifactId());
+			Assert.assertEquals(new PomSummary.Coordinate("com.acme", "parent", "1.0"), a.getParent());
+			Assert.assertEquals(Arrays.asList("core"), a.getModules());
+		}
+		Assert.assertEquals(1, MavenPomReader.getParentCache().getMisses());
+		Assert.assertEquals(1, MavenPomReader.getParentCache().getHits());
+	}
+
+	/**
+	 * Test that a pom whose parent is not well formed fails, rather than
+	 * being summarised on its own.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test(expected = IOException.class)
+	public void testMalformedParent() throws Exception {
+		install("com.acme", "parent", "1.0", "<dependencies>");
+		new ModelPomParser(repository).parse(child("a", ""));
+	}
+
+	/**
+	 * Install a pom in the local repository.
+	 *
+	 * @param groupId the groupId
+	 * @param artifactId the artifactId
+	 * @param version the version
+	 * @param content the elements of the project after its coordinates
+	 * @throws Exception the exception
+	 */
+	private void install(final String groupId, final String artifactId, final String version, final String content) throws Exception {
+		final File pom = new File(repository, MavenPomReader.createPathAndFilename(groupId, artifactId, version, "pom"));
+		pom.getParentFile().mkdirs();
+		Files.write(pom.toPath(), ("<project><modelVersion>4.0.0</modelVersion><groupId>" + groupId + "</groupId><artifactId>" + artifactId
+				+ "</artifactId><version>" + version + "</version>" + content + "</project>").getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Make a pom whose parent is com.acme:parent:1.0.
+	 *
+	 * @param artifactId the artifactId
+	 * @param content the elements of the project after its artifactId
+	 * @return the pom
+	 */
+	private static ByteArrayInputStream child(final String artifactId, final String content) {
+		return new ByteArrayInputStream(("<project><modelVersion>4.0.0</modelVersion>"
+				+ "<parent><groupId>com.acme</groupId><artifactId>parent</artifactId><version>1.0</version></parent>"
+				+ "<artifactId>" + artifactId + "</artifactId>" + content + "</project>").getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Delete a directory tree.
+	 *
+	 * @param file the root of the tree
+	 */
+	private static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
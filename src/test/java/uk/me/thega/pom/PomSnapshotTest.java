@@ -0,0 +1,147 @@
+package uk.me.thega.pom;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the {@link PomSnapshot} class.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class PomSnapshotTest {
+
+	/** The file the snapshot is kept in. */
+	private File file;
+
+	/**
+	 * Pick a file that does not yet exist.
+	 *
+	 * @throws IOException the exception
+	 */
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("poms", ".snapshot");
+		file.delete();
+	}
+
+	/**
+	 * Remove the file.
+	 */
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	/**
+	 * Test that every summary, missing values and all, reads back as it was
+	 * written, and that a missing file reads as an empty snapshot.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testWriteAndRead() throws Exception {
+		Assert.assertEquals(0, PomSnapshot.read(file).size());
+
+		final PomSummary parent = new PomSummary(new PomSummary.Coordinate("com.acme", "parent", "1.0"), null, Arrays.asList("core", "../web"),
+				Arrays.asList(new PomSummary.Dependency("junit", "junit", "4.11", "test")));
+		final PomSummary child = new PomSummary(new PomSummary.Coordinate(null, "core", null), new PomSummary.Coordinate("com.acme", "parent", "1.0"),
+				Collections.<String> emptyList(), Arrays.asList(new PomSummary.Dependency("com.acme", "util", null, null)));
+		final PomSnapshot snapshot = new PomSnapshot();
+		snapshot.put(1, parent);
+		snapshot.put(-2, child);
+		snapshot.write(file);
+
+		final PomSnapshot read = PomSnapshot.read(file);
+		Assert.assertEquals(2, read.size());
+		Assert.assertEquals(parent, read.get(1));
+		Assert.assertEquals(child, read.get(-2));
+		Assert.assertNull(read.get(3));
+	}
+
+	/**
+	 * Test that writing over a snapshot replaces it whole, leaving nothing
+	 * alongside.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testReplaced() throws Exception {
+		final PomSummary summary = new PomSummary(new PomSummary.Coordinate("com.acme", "core", "1.0"), null, Collections.<String> emptyList(),
+				Collections.<PomSummary.Dependency> emptyList());
+		final PomSnapshot first = new PomSnapshot();
+		first.put(1, summary);
+		first.put(2, summary);
+		first.write(file);
+		final PomSnapshot second = new PomSnapshot();
+		second.put(3, summary);
+		second.write(file);
+
+		final PomSnapshot read = PomSnapshot.read(file);
+		Assert.assertEquals(1, read.size());
+		Assert.assertEquals(summary, read.get(3));
+		Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+	}
+
+	/**
+	 * Test that a snapshot that fails part way through being written leaves
+	 * the previous one in place, and no partial file behind.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testFailedWriteCleanedUp() throws Exception {
+		final PomSummary summary = new PomSummary(new PomSummary.Coordinate("com.acme", "core", "1.0"), null, Collections.<String> emptyList(),
+				Collections.<PomSummary.Dependency> emptyList());
+		final PomSnapshot first = new PomSnapshot();
+		first.put(1, summary);
+		first.write(file);
+
+		final PomSnapshot broken = new PomSnapshot();
+		broken.put(2, new PomSummary(null, null, Collections.<String> emptyList(), Collections.<PomSummary.Dependency> emptyList()));
+		try {
+			broken.write(file);
+			Assert.fail("Expected the write to fail");
+		} catch (final NullPointerException e) {
+			// The summary has no coordinates to write
+		}
+		Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+		Assert.assertEquals(summary, PomSnapshot.read(file).get(1));
+	}
+
+	/**
+	 * Test that a file that is not a snapshot is refused rather than
+	 * treated as empty, and so never overwritten.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test(expected = IOException.class)
+	public void testNotASnapshot() throws Exception {
+		final DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		out.write("digraph G {}".getBytes(StandardCharsets.UTF_8));
+		out.close();
+		PomSnapshot.read(file);
+	}
+
+	/**
+	 * Test that the hash depends on the content alone.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testHash() throws Exception {
+		final byte[] pom = "<project/>".getBytes(StandardCharsets.UTF_8);
+		Assert.assertEquals(PomSnapshot.hash(pom), PomSnapshot.hash(pom.clone()));
+		Assert.assertNotEquals(PomSnapshot.hash(pom), PomSnapshot.hash("<project />".getBytes(StandardCharsets.UTF_8)));
+	}
+}
@@ -0,0 +1,93 @@
+package uk.me.thega.pom;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the {@link StaxPomParser} class, against the {@link ModelPomParser}.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public class StaxPomParserTest {
+
+	/**
+	 * Test that a plugin heavy pom is summarised just as from its model,
+	 * ignoring the look-alike elements outside the project's own modules
+	 * and dependencies.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testPluginHeavyPom() throws Exception {
+		final PomSummary summary = assertSameAsModel(getClass().getResourceAsStream("/poms/plugin-heavy.xml"));
+
+		Assert.assertNull(summary.getGroupId());
+		Assert.assertEquals("acme-&-core", summary.getArtifactId());
+		Assert.assertEquals(new PomSummary.Coordinate("com.acme", "acme-parent", "3.1"), summary.getParent());
+		Assert.assertEquals(Arrays.asList("api", "impl", "web"), summary.getModules());
+		Assert.assertEquals(Arrays.asList(
+				new PomSummary.Dependency("org.springframework", "spring-context", "${spring.version}", null),
+				new PomSummary.Dependency("junit", "junit", "4.11", "test"),
+				new PomSummary.Dependency("com.acme", "acme-util", null, null)), summary.getDependencies());
+	}
+
+	/**
+	 * Test that this project's pom is summarised just as from its model.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testProjectPom() throws Exception {
+		final PomSummary summary = assertSameAsModel(new FileInputStream("pom.xml"));
+
+		Assert.assertEquals("dependency-visualizer", summary.getArtifactId());
+		Assert.assertNull(summary.getParent());
+		Assert.assertTrue(summary.getModules().isEmpty());
+	}
+
+	/**
+	 * Test that a pom that is not well formed fails with an {@link IOException}, as it does for the model.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testMalformedPom() throws Exception {
+		final byte[] pom = "<project><artifactId>a</project>".getBytes("UTF-8");
+		for (final PomParser parser : Arrays.asList(new ModelPomParser(), new StaxPomParser())) {
+			try {
+				parser.parse(new ByteArrayInputStream(pom));
+				Assert.fail("Expected " + parser.getClass().getSimpleName() + " to fail");
+			} catch (final IOException e) {
+				Assert.assertNotNull(e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Parse a pom with both parsers and check the summaries are equal.
+	 * 
+	 * @param in the pom, which is closed
+	 * @return the summary
+	 * @throws Exception the exception
+	 */
+	private static PomSummary assertSameAsModel(final InputStream in) throws Exception {
+		final byte[] pom;
+		try {
+			pom = IOUtil.toByteArray(in);
+		} finally {
+			in.close();
+		}
+		final PomSummary expected = new ModelPomParser().parse(new ByteArrayInputStream(pom));
+		final PomSummary actual = new StaxPomParser().parse(new ByteArrayInputStream(pom));
+		Assert.assertEquals(expected, actual);
+		return actual;
+	}
+}
@@ -0,0 +1,275 @@
+package uk.me.thega.url;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+
+import javax.net.ssl.SSLSession;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test for the {@link FetchScheduler} class, with attempts answered in
+ * memory.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class FetchSchedulerTest {
+
+	/** The host every request is to. */
+	private static final String HOST = "example.com";
+
+	/**
+	 * Test that no more requests are in flight to a host than its cap, and
+	 * that a waiting request starts as soon as one completes.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testConcurrencyCapped() throws Exception {
+		final FetchScheduler scheduler = new FetchScheduler(0, 2);
+		final List<CompletableFuture<HttpResponse<byte[]>>> started = new ArrayList<CompletableFuture<HttpResponse<byte[]>>>();
+		final Supplier<CompletableFuture<HttpResponse<byte[]>>> attempt = new Supplier<CompletableFuture<HttpResponse<byte[]>>>() {
+			public CompletableFuture<HttpResponse<byte[]>> get() {
+				final CompletableFuture<HttpResponse<byte[]>> future = new CompletableFuture<HttpResponse<byte[]>>();
+				started.add(future);
+				return future;
+			}
+		};
+
+		final List<CompletableFuture<HttpResponse<byte[]>>> results = new ArrayList<CompletableFuture<HttpResponse<byte[]>>>();
+		for (int i = 0; i < 5; i++) {
+			results.add(scheduler.send(HOST, attempt));
+		}
+		Assert.assertEquals(2, started.size());
+
+		started.get(0).complete(new Response(200));
+		Assert.assertEquals(200, results.get(0).join().statusCode());
+		Assert.assertEquals(3, started.size());
+	}
+
+	/**
+	 * Test that throttling halves a host's cap, once for a burst of throttled
+	 * requests, and that successes grow it back one at a time.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testThrottlingCutsLimit() throws Exception {
+		final FetchScheduler scheduler = new FetchScheduler(0, 8);
+		final List<CompletableFuture<HttpResponse<byte[]>>> started = new ArrayList<CompletableFuture<HttpResponse<byte[]>>>();
+		final Supplier<CompletableFuture<HttpResponse<byte[]>>> attempt = new Supplier<CompletableFuture<HttpResponse<byte[]>>>() {
+			public CompletableFuture<HttpResponse<byte[]>> get() {
+				final CompletableFuture<HttpResponse<byte[]>> future = new CompletableFuture<HttpResponse<byte[]>>();
+				started.add(future);
+				return future;
+			}
+		};
+		for (int i = 0; i < 3; i++) {
+			scheduler.send(HOST, attempt);
+		}
+		for (final CompletableFuture<HttpResponse<byte[]>> future : new ArrayList<CompletableFuture<HttpResponse<byte[]>>>(started)) {
+			future.complete(new Response(429));
+		}
+		Assert.assertEquals(4, scheduler.getLimit(HOST));
+
+		final Supplier<CompletableFuture<HttpResponse<byte[]>>> success = respond(200);
+		for (int i = 0; i < 4; i++) {
+			scheduler.send(HOST, success).join();
+		}
+		Assert.assertEquals(4, scheduler.getLimit(HOST));
+		scheduler.send(HOST, success).join();
+		Assert.assertEquals(5, scheduler.getLimit(HOST));
+	}
+
+	/**
+	 * Test that a request is retried after a server error until it succeeds,
+	 * but a missing pom is not.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testRetried() throws Exception {
+		final FetchScheduler scheduler = new FetchScheduler(3, 4);
+		scheduler.setBackoff(1, 10);
+		final AtomicInteger attempts = new AtomicInteger();
+		final HttpResponse<byte[]> response = scheduler.send(HOST, new Supplier<CompletableFuture<HttpResponse<byte[]>>>() {
+			public CompletableFuture<HttpResponse<byte[]>> get() {
+				return CompletableFuture.completedFuture((HttpResponse<byte[]>) new Response((attempts.incrementAndGet() < 3) ? 503 : 200));
+			}
+		}).join();
+		Assert.assertEquals(200, response.statusCode());
+		Assert.assertEquals(3, attempts.get());
+
+		final CountingSupplier missing = new CountingSupplier(respond(404));
+		Assert.assertEquals(404, scheduler.send(HOST, missing).join().statusCode());
+		Assert.assertEquals(1, missing.count);
+	}
+
+	/**
+	 * Test that once the retries run out the last failure is returned.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testRetriesExhausted() throws Exception {
+		final FetchScheduler scheduler = new FetchScheduler(2, 4);
+		scheduler.setBackoff(1, 10);
+		final CountingSupplier failing = new CountingSupplier(fail());
+		try {
+			scheduler.send(HOST, failing).join();
+			Assert.fail("Expected the request to fail");
+		} catch (final CompletionException e) {
+			Assert.assertTrue(e.getCause() instanceof IOException);
+		}
+		Assert.assertEquals(3, failing.count);
+	}
+
+	/**
+	 * Test that the circuit breaker fails requests without attempting them
+	 * while open, then closes again once a trial request succeeds.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testCircuitBreaker() throws Exception {
+		final FetchScheduler scheduler = new FetchScheduler(0, 4);
+		scheduler.setBreaker(2, 100);
+		final CountingSupplier failing = new CountingSupplier(fail());
+		for (int i = 0; i < 2; i++) {
+			Assert.assertTrue(scheduler.send(HOST, failing).isCompletedExceptionally());
+		}
+		Assert.assertEquals(2, failing.count);
+
+		final CountingSupplier success = new CountingSupplier(respond(200));
+		Assert.assertTrue(scheduler.send(HOST, success).isCompletedExceptionally());
+		Assert.assertEquals(0, success.count);
+		Assert.assertEquals(200, scheduler.send("other.com", success).join().statusCode());
+
+		Thread.sleep(150);
+		Assert.assertEquals(1, scheduler.getLimit(HOST));
+		Assert.assertEquals(200, scheduler.send(HOST, success).join().statusCode());
+		Assert.assertEquals(4, scheduler.getLimit(HOST));
+	}
+
+	/**
+	 * Create attempts answered at once with a status.
+	 *
+	 * @param status the status.
+	 * @return the attempts.
+	 */
+	private static Supplier<CompletableFuture<HttpResponse<byte[]>>> respond(final int status) {
+		return new Supplier<CompletableFuture<HttpResponse<byte[]>>>() {
+			public CompletableFuture<HttpResponse<byte[]>> get() {
+				return CompletableFuture.completedFuture((HttpResponse<byte[]>) new Response(status));
+			}
+		};
+	}
+
+	/**
+	 * Create attempts that fail at once with an I/O error.
+	 *
+	 * @return the attempts.
+	 */
+	private static Supplier<CompletableFuture<HttpResponse<byte[]>>> fail() {
+		return new Supplier<CompletableFuture<HttpResponse<byte[]>>>() {
+			public CompletableFuture<HttpResponse<byte[]>> get() {
+				return CompletableFuture.failedFuture(new IOException("Connection refused"));
+			}
+		};
+	}
+
+	/**
+	 * Attempts that count how many were made.
+	 */
+	private static final class CountingSupplier implements Supplier<CompletableFuture<HttpResponse<byte[]>>> {
+
+		/** The attempts counted. */
+		private final Supplier<CompletableFuture<HttpResponse<byte[]>>> attempts;
+
+		/** The number of attempts made. */
+		private volatile int count;
+
+		/**
+		 * Default constructor.
+		 *
+		 * @param attempts the attempts to count.
+		 */
+		CountingSupplier(final Supplier<CompletableFuture<HttpResponse<byte[]>>> attempts) {
+			this.attempts = attempts;
+		}
+
+		public CompletableFuture<HttpResponse<byte[]>> get() {
+			count++;
+			return attempts.get();
+		}
+	}
+
+	/**
+	 * A response with nothing but a status.
+	 */
+	private static final class Response implements HttpResponse<byte[]> {
+
+		/** The status. */
+		private final int status;
+
+		/**
+		 * Default constructor.
+		 *
+		 * @param status the status.
+		 */
+		Response(final int status) {
+			this.status = status;
+		}
+
+		public int statusCode() {
+			return status;
+		}
+
+		public HttpRequest request() {
+			return HttpRequest.newBuilder(uri()).build();
+		}
+
+		public Optional<HttpResponse<byte[]>> previousResponse() {
+			return Optional.empty();
+		}
+
+		public HttpHeaders headers() {
+			return HttpHeaders.of(Collections.<String, List<String>> emptyMap(), new BiPredicate<String, String>() {
+				public boolean test(final String name, final String value) {
+					return true;
+				}
+			});
+		}
+
+		public byte[] body() {
+			return new byte[0];
+		}
+
+		public Optional<SSLSession> sslSession() {
+			return Optional.empty();
+		}
+
+		public URI uri() {
+			return URI.create("http://" + HOST + "/pom.xml");
+		}
+
+		public HttpClient.Version version() {
+			return HttpClient.Version.HTTP_1_1;
+		}
+	}
+}
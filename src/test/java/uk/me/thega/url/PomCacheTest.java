@@ -0,0 +1,100 @@
+package uk.me.thega.url;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for the {@link PomCache} class.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public class PomCacheTest {
+
+	/** The directory the cache under test lives in. */
+	private File directory;
+
+	/**
+	 * Create an empty cache directory.
+	 * 
+	 * @throws IOException the exception
+	 */
+	@Before
+	public void setUp() throws IOException {
+		directory = File.createTempFile("pomcache", "");
+		directory.delete();
+	}
+
+	/**
+	 * Remove the cache directory.
+	 */
+	@After
+	public void tearDown() {
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Test that a stored body and its validators survive reopening the cache.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testStoreAndReopen() throws Exception {
+		final PomCache cache = new PomCache(directory, 1024);
+		cache.store("http://a/pom.xml", "\"abc\"", null, "<project/>".getBytes("UTF-8"));
+
+		final PomCache reopened = new PomCache(directory, 1024);
+		final PomCache.Entry entry = reopened.lookup("http://a/pom.xml");
+		Assert.assertNotNull(entry);
+		Assert.assertEquals("\"abc\"", entry.getEtag());
+		Assert.assertNull(entry.getLastModified());
+		Assert.assertEquals("<project/>", new String(reopened.read(entry), "UTF-8"));
+		Assert.assertEquals(1, reopened.getHits());
+		Assert.assertEquals(1, reopened.getRevalidations());
+		Assert.assertEquals(10, reopened.getBytesSaved());
+	}
+
+	/**
+	 * Test that bodies without validators are not kept.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testNoValidators() throws Exception {
+		final PomCache cache = new PomCache(directory, 1024);
+		cache.store("http://a/pom.xml", null, null, "<project/>".getBytes("UTF-8"));
+
+		Assert.assertNull(cache.lookup("http://a/pom.xml"));
+		Assert.assertEquals(1, cache.getMisses());
+	}
+
+	/**
+	 * Test that the least recently used entry is evicted first.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testLeastRecentlyUsedEviction() throws Exception {
+		final PomCache cache = new PomCache(directory, 25);
+		cache.store("http://a/pom.xml", "a", null, "0123456789".getBytes("UTF-8"));
+		cache.store("http://b/pom.xml", "b", null, "0123456789".getBytes("UTF-8"));
+		cache.read(cache.lookup("http://a/pom.xml"));
+		cache.store("http://c/pom.xml", "c", null, "0123456789".getBytes("UTF-8"));
+
+		Assert.assertNotNull(cache.lookup("http://a/pom.xml"));
+		Assert.assertNull(cache.lookup("http://b/pom.xml"));
+		Assert.assertNotNull(cache.lookup("http://c/pom.xml"));
+		Assert.assertEquals(4, directory.listFiles().length);
+	}
+}
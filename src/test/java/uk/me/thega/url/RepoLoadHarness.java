@@ -0,0 +1,82 @@
+package uk.me.thega.url;
+
+import java.io.File;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import uk.me.thega.Analyser;
+import uk.me.thega.metrics.Histogram;
+
+/**
+ * Load test of the fetch path: runs the {@link Analyser} against a
+ * {@link StandInRepoServer} and reports POMs read per second and the p50 and
+ * p99 time to fetch a POM, as seen by the analyser and by the server.
+ * <br>
+ * Run with <code>mvn -Pload-test test</code>, configured with these system
+ * properties:
+ * <ul>
+ * <li><code>load.repos</code>: the number of repos (default 4)</li>
+ * <li><code>load.width</code>: the modules declared by each POM above the bottom level (default 5)</li>
+ * <li><code>load.depth</code>: the levels of modules below each repo root (default 3)</li>
+ * <li><code>load.threads</code>: the number of concurrent fetches (default 8)</li>
+ * <li><code>load.latency</code>: the delay before each response in milliseconds (default 20)</li>
+ * <li><code>load.failureRate</code>: the share of requests failed (default 0)</li>
+ * <li><code>load.runs</code>: the number of crawls (default 3)</li>
+ * </ul>
+ * 
+ * @author pwhittlesea
+ *
+ */
+public class RepoLoadHarness {
+
+	/** The basic HTTP credentials the server checks. */
+	private static final String USERNAME = "load", PASSWORD = "test";
+
+	/**
+	 * The main method.
+	 * 
+	 * @param args ignored, see the system properties
+	 * @throws Exception if a crawl fails
+	 */
+	public static void main(final String[] args) throws Exception {
+		final int repos = Integer.getInteger("load.repos", 4);
+		final int width = Integer.getInteger("load.width", 5);
+		final int depth = Integer.getInteger("load.depth", 3);
+		final int threads = Integer.getInteger("load.threads", 8);
+		final long latency = Long.getLong("load.latency", 20);
+		final double failureRate = Double.parseDouble(System.getProperty("load.failureRate", "0"));
+		final int runs = Integer.getInteger("load.runs", 3);
+
+		final StandInRepoServer server = new StandInRepoServer(repos, width, depth);
+		server.setLatency(latency);
+		server.setFailureRate(failureRate);
+		server.setCredentials(USERNAME, PASSWORD);
+		server.start();
+		final File output = File.createTempFile("graph", ".dot");
+		try {
+			System.out.println("Serving " + server.getPomCount() + " POMs in " + repos + " repos, " + latency + "ms latency, "
+					+ failureRate + " failure rate, " + threads + " threads");
+			for (int run = 1; run <= runs; run++) {
+				server.resetStatistics();
+				final Analyser analyser = new Analyser(server.getRepos(), "", USERNAME, PASSWORD, false);
+				analyser.setThreads(threads);
+				analyser.setOutput(output);
+
+				final long start = System.nanoTime();
+				analyser.analyse();
+				final long elapsed = System.nanoTime() - start;
+
+				final long[] latencies = server.getLatencies();
+				final Histogram fetches = analyser.getMetrics().getFetches(new URL(server.getRepos().get(0)).getAuthority());
+				System.out.println(String.format("Run %d: %d requests in %d ms, %.1f POMs/sec, p50 %.1f ms, p99 %.1f ms"
+						+ " (server p50 %.1f ms, p99 %.1f ms), %d failures", run, server.getRequests(), TimeUnit.NANOSECONDS.toMillis(elapsed),
+						analyser.getMetrics().getParsed() * 1e9 / elapsed, fetches.getPercentile(50) / 1e6, fetches.getPercentile(99) / 1e6,
+						StandInRepoServer.percentile(latencies, 50) / 1e6, StandInRepoServer.percentile(latencies, 99) / 1e6,
+						server.getFailures()));
+			}
+		} finally {
+			server.stop();
+			output.delete();
+		}
+	}
+}
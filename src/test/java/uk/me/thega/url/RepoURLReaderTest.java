@@ -0,0 +1,385 @@
+package uk.me.thega.url;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.me.thega.PomHandler;
+import uk.me.thega.filter.Patterns;
+import uk.me.thega.metrics.Metrics;
+import uk.me.thega.pom.ModelPomParser;
+import uk.me.thega.pom.PomParser;
+import uk.me.thega.pom.PomSummary;
+import uk.me.thega.pom.StaxPomParser;
+
+/**
+ * Test for the {@link RepoURLReader} class, against a {@link StandInRepoServer}.
+ * 
+ * @author pwhittlesea
+ *
+ */
+public class RepoURLReaderTest {
+
+	/** The server under the reader. */
+	private StandInRepoServer server;
+
+	/**
+	 * Start a server with 2 repos of 1 + 3 + 9 POMs.
+	 * 
+	 * @throws IOException the exception
+	 */
+	@Before
+	public void setUp() throws IOException {
+		server = new StandInRepoServer(2, 3, 2);
+		server.start();
+	}
+
+	/**
+	 * Stop the server.
+	 */
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	/**
+	 * Test that every module is read, in the same order whether the repos are
+	 * crawled serially or concurrently.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testConcurrentCrawlMatchesSerial() throws Exception {
+		final RepoURLReader reader = new RepoURLReader(null, null);
+		final List<String> serial = artifactIds(reader.readPomsAt(server.getRepos(), 1));
+		final List<String> concurrent = artifactIds(reader.readPomsAt(server.getRepos(), 8));
+
+		Assert.assertEquals(26, serial.size());
+		Assert.assertEquals("repo0", serial.get(0));
+		Assert.assertEquals("repo0-0", serial.get(1));
+		Assert.assertEquals("repo0-0-0", serial.get(2));
+		Assert.assertEquals("repo1", serial.get(13));
+		Assert.assertEquals(serial, concurrent);
+	}
+
+	/**
+	 * Test that a concurrent crawl passes each pom on, on the calling thread,
+	 * before the crawl has finished.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testConcurrentCrawlStreamsPoms() throws Exception {
+		final Thread caller = Thread.currentThread();
+		final List<String> handled = new ArrayList<String>();
+		final long[] requestsAtFirst = new long[1];
+		new RepoURLReader(null, null).readPomsAt(server.getRepos(), 8, new PomHandler() {
+			public void handlePom(final PomSummary pom) {
+				Assert.assertSame(caller, Thread.currentThread());
+				if (handled.isEmpty()) {
+					requestsAtFirst[0] = server.getRequests();
+				}
+				handled.add(pom.getArtifactId());
+			}
+		});
+
+		Assert.assertEquals(artifactIds(new RepoURLReader(null, null).readPomsAt(server.getRepos(), 1)), handled);
+		Assert.assertTrue(requestsAtFirst[0] < 26);
+	}
+
+	/**
+	 * Test that no request is made for an excluded module or those beneath it.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testExcludedPathsNotFetched() throws Exception {
+		final RepoURLReader reader = new RepoURLReader(null, null);
+		reader.setExcludedPaths(new Patterns(Arrays.asList("*/module-1/")));
+		final List<String> artifactIds = artifactIds(reader.readPomsAt(server.getRepos(), 4));
+
+		// Each repo loses module-1 and its 3 modules, and module-1 of the other 2
+		Assert.assertEquals(14, artifactIds.size());
+		Assert.assertFalse(artifactIds.contains("repo0-1"));
+		Assert.assertFalse(artifactIds.contains("repo1-1-0"));
+		Assert.assertFalse(artifactIds.contains("repo1-2-1"));
+		Assert.assertEquals(14, server.getRequests());
+	}
+
+	/**
+	 * Test that the requests of a crawl share a connection for each read in
+	 * flight, rather than opening one each.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testConnectionsReused() throws Exception {
+		Assert.assertEquals(26, new RepoURLReader(null, null).readPomsAt(server.getRepos(), 4).size());
+		Assert.assertEquals(26, server.getRequests());
+		Assert.assertTrue("Expected at most 4 connections but saw " + server.getConnections(), server.getConnections() <= 4);
+	}
+
+	/**
+	 * Test that a response slower than the read timeout fails the fetch.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testReadTimeout() throws Exception {
+		server.setLatency(1000);
+		final Metrics metrics = new Metrics();
+		final RepoURLReader reader = new RepoURLReader(null, null);
+		reader.setMetrics(metrics);
+		reader.setReadTimeout(100);
+		reader.setMaxRetries(0);
+
+		final long start = System.nanoTime();
+		Assert.assertEquals(0, reader.readPomsAt(server.getRepos(), 4).size());
+		Assert.assertTrue(System.nanoTime() - start < 1000000000L);
+		Assert.assertEquals(2, metrics.getFetches(new URL(server.getRepos().get(0)).getAuthority()).getCount());
+	}
+
+	/**
+	 * Test that each fetch and parse is recorded in the metrics.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testMetricsRecorded() throws Exception {
+		final Metrics metrics = new Metrics();
+		final RepoURLReader reader = new RepoURLReader(null, null);
+		reader.setMetrics(metrics);
+		reader.setMaxRetries(0);
+		server.setFailureRate(1);
+		reader.readPomsAt(server.getRepos(), 1);
+		server.setFailureRate(0);
+		reader.readPomsAt(server.getRepos(), 4);
+
+		final String host = new URL(server.getRepos().get(0)).getAuthority();
+		Assert.assertEquals(28, metrics.getFetches(host).getCount());
+		Assert.assertEquals(26, metrics.getParsed());
+		Assert.assertTrue(metrics.getBytesDownloaded() > 26 * 100);
+	}
+
+	/**
+	 * Test that basic HTTP credentials are sent with each request.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testBasicAuth() throws Exception {
+		server.setCredentials("user", "secret");
+
+		Assert.assertEquals(0, new RepoURLReader("user", "wrong").readPomsAt(server.getRepos(), 1).size());
+		Assert.assertEquals(2, server.getUnauthorized());
+		Assert.assertEquals(26, new RepoURLReader("user", "secret").readPomsAt(server.getRepos(), 4).size());
+		Assert.assertEquals(2, server.getUnauthorized());
+	}
+
+	/**
+	 * Test that a module listed as a repo of its own, as well as beneath
+	 * its parent, is fetched once, whether crawled serially or concurrently.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testOverlappingReposFetchedOnce() throws Exception {
+		final List<String> repos = new ArrayList<String>(server.getRepos());
+		repos.add(repos.get(0) + "module-1/");
+		repos.add(repos.get(1) + "module-0/module-2/../");
+
+		Assert.assertEquals(26, new RepoURLReader(null, null).readPomsAt(repos, 1).size());
+		Assert.assertEquals(26, server.getRequests());
+		server.resetStatistics();
+		Assert.assertEquals(26, new RepoURLReader(null, null).readPomsAt(repos, 4).size());
+		Assert.assertEquals(26, server.getRequests());
+	}
+
+	/**
+	 * Test that concurrent reads of the same URL share a single fetch, and
+	 * that a read after they complete fetches again.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testConcurrentReadsCoalesced() throws Exception {
+		server.setLatency(200);
+		final RepoURLReader reader = new RepoURLReader(null, null);
+		final String repo = server.getRepos().get(0);
+
+		final CompletableFuture<PomSummary> first = reader.readPomAtAsync(repo, "module-0/", null);
+		final CompletableFuture<PomSummary> second = reader.readPomAtAsync(repo, "module-0/", null);
+		Assert.assertSame(first, second);
+		Assert.assertEquals("repo0-0", first.join().getArtifactId());
+		Assert.assertEquals(1, server.getRequests());
+
+		Assert.assertEquals("repo0-0", reader.readPomAt(repo, "module-0/").getArtifactId());
+		Assert.assertEquals(2, server.getRequests());
+	}
+
+	/**
+	 * Test that a module that fails to be fetched is skipped, with its own
+	 * modules.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testFailuresSkipped() throws Exception {
+		server.setFailureRate(1);
+		final Metrics metrics = new Metrics();
+		final RepoURLReader reader = new RepoURLReader(null, null);
+		reader.setMetrics(metrics);
+		reader.setMaxRetries(0);
+
+		Assert.assertEquals(0, reader.readPomsAt(server.getRepos(), 4).size());
+		Assert.assertEquals(2, server.getFailures());
+		Assert.assertEquals(2, metrics.getFailures().size());
+		Assert.assertTrue(metrics.getFailures().get(0).getReason(), metrics.getFailures().get(0).getReason().contains("500"));
+	}
+
+	/**
+	 * Test that a module served a body that is not a POM, such as a login
+	 * page, is skipped with its own modules by either parser, and recorded.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testMalformedPomSkipped() throws Exception {
+		server.setPom("/repo0/module-1/pom.xml", "<!DOCTYPE html><html><body>Sign in<br></body></html>".getBytes("UTF-8"));
+		for (final PomParser parser : Arrays.asList(new ModelPomParser(), new StaxPomParser())) {
+			final Metrics metrics = new Metrics();
+			final RepoURLReader reader = new RepoURLReader(null, null);
+			reader.setMetrics(metrics);
+			reader.setParser(parser);
+
+			Assert.assertEquals(22, reader.readPomsAt(server.getRepos(), 4).size());
+			Assert.assertEquals(1, metrics.getFailures().size());
+			Assert.assertEquals(server.getRepos().get(0) + "module-1/pom.xml", metrics.getFailures().get(0).getLocation());
+		}
+	}
+
+	/**
+	 * Test that fetches failing with server errors are retried until they
+	 * succeed.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testFailuresRetried() throws Exception {
+		server.setFailureRate(0.3);
+		final Metrics metrics = new Metrics();
+		final RepoURLReader reader = new RepoURLReader(null, null);
+		reader.setMetrics(metrics);
+		reader.setMaxRetries(10);
+		reader.getScheduler().setBackoff(1, 10);
+
+		Assert.assertEquals(26, reader.readPomsAt(server.getRepos(), 1).size());
+		final String host = new URL(server.getRepos().get(0)).getAuthority();
+		Assert.assertTrue(server.getFailures() > 0);
+		Assert.assertEquals(server.getFailures(), metrics.getRetries(host));
+		Assert.assertTrue(metrics.getFailures().isEmpty());
+	}
+
+	/**
+	 * Test that a host failing every request trips its circuit breaker, after
+	 * which its requests fail without being sent, and that each is recorded.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testCircuitBreakerOpens() throws Exception {
+		server.setFailureRate(1);
+		final Metrics metrics = new Metrics();
+		final RepoURLReader reader = new RepoURLReader(null, null);
+		reader.setMetrics(metrics);
+		reader.setMaxRetries(10);
+		reader.getScheduler().setBackoff(1, 10);
+		reader.getScheduler().setBreaker(3, 60000);
+
+		Assert.assertEquals(0, reader.readPomsAt(server.getRepos(), 1).size());
+		final String host = new URL(server.getRepos().get(0)).getAuthority();
+		Assert.assertEquals(3, server.getFailures());
+		Assert.assertEquals(1, metrics.getBreakerOpens(host));
+		Assert.assertEquals(2, metrics.getFailures().size());
+		Assert.assertTrue(metrics.getFailures().get(1).getReason(), metrics.getFailures().get(1).getReason().contains("Circuit breaker open"));
+	}
+
+	/**
+	 * Test that the clients a reader builds share its threads, and that
+	 * closing the reader stops them.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testExecutorSharedAndClosed() throws Exception {
+		final RepoURLReader reader = new RepoURLReader(null, null);
+		Assert.assertEquals(26, reader.readPomsAt(server.getRepos(), 4).size());
+		final ExecutorService executor = reader.getExecutor();
+
+		reader.setConnectTimeout(5000);
+		Assert.assertEquals(26, reader.readPomsAt(server.getRepos(), 4).size());
+		Assert.assertSame(executor, reader.getExecutor());
+
+		reader.close();
+		Assert.assertTrue(executor.isShutdown());
+		Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Test that a second crawl through the cache is answered with not
+	 * modified responses alone.
+	 * 
+	 * @throws Exception the exception
+	 */
+	@Test
+	public void testCacheRevalidatesWithEtag() throws Exception {
+		final File directory = File.createTempFile("pomcache", "");
+		directory.delete();
+		try {
+			final RepoURLReader reader = new RepoURLReader(null, null);
+			final PomCache cache = new PomCache(directory, 1024 * 1024);
+			reader.setCache(cache);
+
+			final List<String> first = artifactIds(reader.readPomsAt(server.getRepos(), 4));
+			Assert.assertEquals(0, server.getNotModified());
+
+			final List<String> second = artifactIds(reader.readPomsAt(server.getRepos(), 4));
+			Assert.assertEquals(first, second);
+			Assert.assertEquals(26, server.getNotModified());
+			Assert.assertEquals(26, cache.getHits());
+		} finally {
+			final File[] files = directory.listFiles();
+			if (files != null) {
+				for (final File file : files) {
+					file.delete();
+				}
+			}
+			directory.delete();
+		}
+	}
+
+	/**
+	 * Get the artifactIds of some models.
+	 * 
+	 * @param models the models
+	 * @return the artifactIds, in order
+	 */
+	private static List<String> artifactIds(final List<PomSummary> models) {
+		final List<String> artifactIds = new ArrayList<String>();
+		for (final PomSummary model : models) {
+			artifactIds.add(model.getArtifactId());
+		}
+		return artifactIds;
+	}
+}
@@ -0,0 +1,428 @@
+package uk.me.thega.url;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codehaus.plexus.util.Base64;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embedded HTTP server standing in for the Git hosts {@link RepoURLReader}
+ * crawls, serving a generated tree of multi-module POMs at
+ * <code>repo + subDir + "pom.xml"</code>.
+ * <br>
+ * Each of the repos is a tree <code>depth</code> levels deep in which every
+ * POM above the bottom level declares <code>width</code> modules, so a repo
+ * holds <code>1 + width + ... + width^depth</code> POMs. Responses can be
+ * slowed down, failed at random and guarded by basic HTTP auth, and carry an
+ * ETag that conditional requests are answered with a 304 against.
+ *
+ * @author pwhittlesea
+ *
+ */
+public class StandInRepoServer {
+
+	static {
+		// Headers and body are written separately, so Nagle would hold each body back for a delayed ACK
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	/** The number of repos. */
+	private final int repos;
+
+	/** The number of modules each POM above the bottom level declares. */
+	private final int width;
+
+	/** The number of levels of modules below each repo root. */
+	private final int depth;
+
+	/** The POMs by request path. */
+	private final Map<String, byte[]> poms = new ConcurrentHashMap<String, byte[]>();
+
+	/** The delay before each response in milliseconds. */
+	private volatile long latency = 0;
+
+	/** The share of requests failed with a server error. */
+	private volatile double failureRate = 0;
+
+	/** The expected Authorization header, or null to allow anyone. */
+	private volatile String authorization;
+
+	/** The source of failures. */
+	private final Random random = new Random(42);
+
+	/** The number of requests received. */
+	private final AtomicLong requests = new AtomicLong();
+
+	/** The number of requests answered as not modified. */
+	private final AtomicLong notModified = new AtomicLong();
+
+	/** The number of requests failed with a server error. */
+	private final AtomicLong failures = new AtomicLong();
+
+	/** The number of requests refused for bad credentials. */
+	private final AtomicLong unauthorized = new AtomicLong();
+
+	/** The client addresses requests have come from, one for each connection. */
+	private final Set<InetSocketAddress> connections = Collections.newSetFromMap(new ConcurrentHashMap<InetSocketAddress, Boolean>());
+
+	/** The time taken to serve each request, in nanoseconds. */
+	private final List<Long> latencies = new ArrayList<Long>();
+
+	/** The server, or null if not started. */
+	private HttpServer server;
+
+	/** The threads serving requests, or null if not started. */
+	private ExecutorService executor;
+
+	/**
+	 * Default constructor.
+	 *
+	 * @param repos the number of repos.
+	 * @param width the number of modules each POM above the bottom level declares.
+	 * @param depth the number of levels of modules below each repo root.
+	 */
+	public StandInRepoServer(final int repos, final int width, final int depth) {
+		this.repos = repos;
+		this.width = width;
+		this.depth = depth;
+		for (int repo = 0; repo < repos; repo++) {
+			generate(repo, "", "repo" + repo, 0);
+		}
+	}
+
+	/**
+	 * Set the delay before each response.
+	 *
+	 * @param latency the delay in milliseconds.
+	 */
+	public void setLatency(final long latency) {
+		this.latency = latency;
+	}
+
+	/**
+	 * Set the share of requests failed with a server error.
+	 *
+	 * @param failureRate the share, from 0 for none to 1 for all.
+	 */
+	public void setFailureRate(final double failureRate) {
+		this.failureRate = failureRate;
+	}
+
+	/**
+	 * Set the basic HTTP credentials every request must carry.
+	 *
+	 * @param username the user name, or null to allow anyone.
+	 * @param password the password.
+	 */
+	public void setCredentials(final String username, final String password) {
+		if (username == null) {
+			authorization = null;
+		} else {
+			authorization = "Basic " + new String(Base64.encodeBase64((username + ":" + password).getBytes()));
+		}
+	}
+
+	/**
+	 * Start serving on a free port of the loopback interface.
+	 *
+	 * @throws IOException if the server cannot be started.
+	 */
+	public void start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			public void handle(final HttpExchange exchange) throws IOException {
+				final long start = System.nanoTime();
+				try {
+					serve(exchange);
+				} finally {
+					exchange.close();
+					synchronized (latencies) {
+						latencies.add(System.nanoTime() - start);
+					}
+				}
+			}
+		});
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Stop serving.
+	 */
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+			server = null;
+			executor = null;
+		}
+	}
+
+	/**
+	 * Get the repo base URLs, to be read by {@link RepoURLReader}.
+	 *
+	 * @return the URLs, each ending in a '/'.
+	 */
+	public List<String> getRepos() {
+		final List<String> urls = new ArrayList<String>();
+		for (int repo = 0; repo < repos; repo++) {
+			urls.add("http://127.0.0.1:" + server.getAddress().getPort() + "/repo" + repo + "/");
+		}
+		return urls;
+	}
+
+	/**
+	 * Get a POM served.
+	 *
+	 * @param path the request path, such as <code>/repo0/module-1/pom.xml</code>.
+	 * @return the POM, or null if there is none at the path.
+	 */
+	public byte[] getPom(final String path) {
+		return poms.get(path);
+	}
+
+	/**
+	 * Replace a POM served, as a commit to the repo would.
+	 *
+	 * @param path the request path, such as <code>/repo0/module-1/pom.xml</code>.
+	 * @param pom the new POM.
+	 */
+	public void setPom(final String path, final byte[] pom) {
+		poms.put(path, pom);
+	}
+
+	/**
+	 * Get the number of POMs served across all repos.
+	 *
+	 * @return the number of POMs.
+	 */
+	public int getPomCount() {
+		return poms.size();
+	}
+
+	/**
+	 * Get the number of requests received.
+	 *
+	 * @return the number of requests.
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * Get the number of connections requests have been received on.
+	 * 
+	 * @return the number of connections.
+	 */
+	public int getConnections() {
+		return connections.size();
+	}
+
+	/**
+	 * Get the number of requests answered as not modified.
+	 *
+	 * @return the number of 304 responses.
+	 */
+	public long getNotModified() {
+		return notModified.get();
+	}
+
+	/**
+	 * Get the number of requests failed with a server error.
+	 *
+	 * @return the number of 500 responses.
+	 */
+	public long getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * Get the number of requests refused for bad credentials.
+	 *
+	 * @return the number of 401 responses.
+	 */
+	public long getUnauthorized() {
+		return unauthorized.get();
+	}
+
+	/**
+	 * Get the time taken to serve each request so far, including the delay.
+	 *
+	 * @return the times in nanoseconds, sorted.
+	 */
+	public long[] getLatencies() {
+		final long[] sorted;
+		synchronized (latencies) {
+			sorted = new long[latencies.size()];
+			for (int i = 0; i < sorted.length; i++) {
+				sorted[i] = latencies.get(i);
+			}
+		}
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * Reset the counts and times.
+	 */
+	public void resetStatistics() {
+		requests.set(0);
+		notModified.set(0);
+		failures.set(0);
+		unauthorized.set(0);
+		connections.clear();
+		synchronized (latencies) {
+			latencies.clear();
+		}
+	}
+
+	/**
+	 * Get a percentile of some sorted times.
+	 *
+	 * @param sorted the sorted times.
+	 * @param percentile the percentile, from 0 to 100.
+	 * @return the time, or 0 if there are none.
+	 */
+	public static long percentile(final long[] sorted, final double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+	/**
+	 * Serve a request.
+	 *
+	 * @param exchange the request and response.
+	 * @throws IOException if the response cannot be written.
+	 */
+	private void serve(final HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		connections.add(exchange.getRemoteAddress());
+		if (latency > 0) {
+			try {
+				Thread.sleep(latency);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		final String expected = authorization;
+		if (expected != null && !expected.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+			unauthorized.incrementAndGet();
+			exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"stand-in\"");
+			exchange.sendResponseHeaders(401, -1);
+			return;
+		}
+
+		final boolean fail;
+		synchronized (random) {
+			fail = failureRate > 0 && random.nextDouble() < failureRate;
+		}
+		if (fail) {
+			failures.incrementAndGet();
+			exchange.sendResponseHeaders(500, -1);
+			return;
+		}
+
+		final byte[] body = poms.get(exchange.getRequestURI().getPath());
+		if (body == null) {
+			exchange.sendResponseHeaders(404, -1);
+			return;
+		}
+
+		final String etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+		exchange.getResponseHeaders().set("ETag", etag);
+		if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+			notModified.incrementAndGet();
+			exchange.sendResponseHeaders(304, -1);
+			return;
+		}
+
+		exchange.getResponseHeaders().set("Content-Type", "application/xml");
+		exchange.sendResponseHeaders(200, body.length);
+		final OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	/**
+	 * Generate the POM at a sub-directory of a repo, and those of its modules.
+	 *
+	 * @param repo the repo number.
+	 * @param subDir the sub-directory, empty or ending in a '/'.
+	 * @param artifactId the artifactId of the POM.
+	 * @param level the level of the POM, 0 for the repo root.
+	 */
+	private void generate(final int repo, final String subDir, final String artifactId, final int level) {
+		final String groupId = "com.acme.repo" + repo;
+		final StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		xml.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n");
+		xml.append("\t<modelVersion>4.0.0</modelVersion>\n");
+		xml.append("\t<groupId>").append(groupId).append("</groupId>\n");
+		xml.append("\t<artifactId>").append(artifactId).append("</artifactId>\n");
+		xml.append("\t<version>1.").append(level).append("</version>\n");
+		if (level < depth) {
+			xml.append("\t<packaging>pom</packaging>\n");
+			xml.append("\t<modules>\n");
+			for (int module = 0; module < width; module++) {
+				xml.append("\t\t<module>module-").append(module).append("</module>\n");
+			}
+			xml.append("\t</modules>\n");
+		}
+		xml.append("\t<dependencies>\n");
+		dependency(xml, "com.acme.repo" + ((repo + 1) % repos), "repo" + ((repo + 1) % repos), "1." + (level % 2), null);
+		if (level > 0) {
+			dependency(xml, groupId, "repo" + repo, "1.0", null);
+		}
+		dependency(xml, "junit", "junit", "4.11", "test");
+		xml.append("\t</dependencies>\n");
+		xml.append("</project>\n");
+		poms.put("/repo" + repo + "/" + subDir + "pom.xml", xml.toString().getBytes());
+
+		if (level < depth) {
+			for (int module = 0; module < width; module++) {
+				generate(repo, subDir + "module-" + module + "/", artifactId + "-" + module, level + 1);
+			}
+		}
+	}
+
+	/**
+	 * Append a dependency element.
+	 *
+	 * @param xml the XML being built.
+	 * @param groupId the groupId.
+	 * @param artifactId the artifactId.
+	 * @param version the version.
+	 * @param scope the scope, or null.
+	 */
+	private static void dependency(final StringBuilder xml, final String groupId, final String artifactId, final String version, final String scope) {
+		xml.append("\t\t<dependency>\n");
+		xml.append("\t\t\t<groupId>").append(groupId).append("</groupId>\n");
+		xml.append("\t\t\t<artifactId>").append(artifactId).append("</artifactId>\n");
+		xml.append("\t\t\t<version>").append(version).append("</version>\n");
+		if (scope != null) {
+			xml.append("\t\t\t<scope>").append(scope).append("</scope>\n");
+		}
+		xml.append("\t\t</dependency>\n");
+	}
+}